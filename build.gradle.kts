@@ -9,14 +9,56 @@ repositories {
     mavenCentral()
 }
 
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+configurations {
+    named("jmhImplementation") {
+        extendsFrom(configurations.implementation.get())
+    }
+}
+
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
     testImplementation("org.junit.jupiter:junit-jupiter")
     implementation("jcifs:jcifs:1.3.17")
 
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 tasks.test {
     useJUnitPlatform()
     useJUnit()
-}
\ No newline at end of file
+}
+
+// Запуск бенчмарков: ./gradlew jmh [-PjmhInclude=CopyBenchmark] [-PjmhArgs="-f 1 -wi 2"]
+// Результаты в JSON: build/reports/jmh/results-<version>.json
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs JMH benchmarks and writes JSON results."
+    dependsOn(tasks.named("jmhClasses"))
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+
+    val results = layout.buildDirectory.file("reports/jmh/results-${project.version}.json")
+    outputs.file(results)
+    outputs.upToDateWhen { false }
+
+    val include = providers.gradleProperty("jmhInclude").orNull
+    val extraArgs = providers.gradleProperty("jmhArgs").orNull
+    argumentProviders.add(CommandLineArgumentProvider {
+        buildList {
+            if (include != null) add(include)
+            if (extraArgs != null) addAll(extraArgs.split(" ").filter { it.isNotBlank() })
+            addAll(listOf("-rf", "json", "-rff", results.get().asFile.absolutePath))
+        }
+    })
+    doFirst {
+        results.get().asFile.parentFile.mkdirs()
+    }
+}
@@ -0,0 +1,82 @@
+package org.n0throw.benchmark;
+
+import org.n0throw.installer.archive.ArchiveExtractor;
+import org.n0throw.installer.archive.ArchiveFormat;
+import org.n0throw.installer.archive.ParallelArchiveExtractor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Распаковка синтетических архивов разной формы последовательным и параллельным распаковщиком.
+ * Каждый вызов распаковывает в пустую папку, удаление предыдущей распаковки в измерение не входит.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArchiveExtractionBenchmark {
+    @Param({"ManySmall", "FewLarge", "Deep"})
+    public String shape;
+
+    @Param({"Zip", "Tar", "TarGz"})
+    public String format;
+
+    @Param({"Sequential", "Parallel"})
+    public String extractorType;
+
+    private Path directory;
+    private Path archive;
+    private Path target;
+    private ArchiveExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("archive-benchmark");
+        archive = directory.resolve("archive");
+        SyntheticArchives.write(archive, SyntheticArchives.Shape.valueOf(shape), format);
+        extractor = "Parallel".equals(extractorType) ? new ParallelArchiveExtractor() : new ArchiveExtractor();
+    }
+
+    @Setup(Level.Invocation)
+    public void cleanTarget() throws IOException {
+        target = directory.resolve("target");
+        deleteRecursively(target);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Path extract() throws IOException {
+        extractor.extract(archive, ArchiveFormat.valueOf(format), target);
+        return target;
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
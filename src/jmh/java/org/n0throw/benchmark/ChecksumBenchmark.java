@@ -0,0 +1,59 @@
+package org.n0throw.benchmark;
+
+import org.n0throw.utils.files.ChecksumAlgorithm;
+import org.n0throw.utils.files.ChecksumInputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность вычисления контрольных сумм при чтении потока.
+ * Данные в памяти, поэтому измеряется только стоимость алгоритма и обёртки потока.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChecksumBenchmark {
+    /**
+     * Алгоритм ("All" - все алгоритмы за одно чтение).
+     */
+    @Param({"Sha256", "Sha512", "Crc32c", "All"})
+    public String algorithm;
+
+    /**
+     * Размер данных.
+     */
+    @Param({"16777216"})
+    public int size;
+
+    private byte[] data;
+    private byte[] buffer;
+    private Set<ChecksumAlgorithm> algorithms;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = new byte[size];
+        new Random(42).nextBytes(data);
+        buffer = new byte[64 * 1024];
+        algorithms = "All".equals(algorithm)
+                ? EnumSet.allOf(ChecksumAlgorithm.class)
+                : EnumSet.of(ChecksumAlgorithm.valueOf(algorithm));
+    }
+
+    @Benchmark
+    public String digest() throws IOException {
+        ChecksumInputStream stream = new ChecksumInputStream(new ByteArrayInputStream(data), algorithms);
+        while (stream.read(buffer) != -1) {
+            // данные не нужны, только суммы
+        }
+        return stream.getValue(algorithms.iterator().next());
+    }
+}
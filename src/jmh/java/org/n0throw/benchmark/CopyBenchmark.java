@@ -0,0 +1,147 @@
+package org.n0throw.benchmark;
+
+import org.n0throw.utils.files.TempFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Копирование потока дистрибутива в файл: {@link TempFile#createFromInputStream} в сравнении
+ * с копированием через буфер заданного размера, {@link FileChannel#transferFrom} и записью в отображённый файл.
+ * Источник - поток файла (как поток из сети, но без сетевых задержек).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CopyBenchmark {
+    /**
+     * Размер копируемых данных.
+     */
+    @Param({"1048576", "67108864"})
+    public int size;
+
+    /**
+     * Размер буфера копирования.
+     */
+    @Param({"8192", "65536", "1048576"})
+    public int bufferSize;
+
+    private Path directory;
+    private Path source;
+    private Path target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("copy-benchmark");
+        source = directory.resolve("source.bin");
+        target = directory.resolve("target.bin");
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        Files.write(source, data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * Текущая реализация временного файла (Files.copy с собственным буфером), поток читается через буфер заданного размера.
+     */
+    @Benchmark
+    public long tempFile() throws IOException {
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(source), bufferSize)) {
+            File file = TempFile.createFromInputStream(stream, "copy-benchmark", ".bin", new String[0]);
+            long length = file.length();
+            TempFile.delete(file);
+            return length;
+        }
+    }
+
+    /**
+     * Копирование через буфер заданного размера.
+     */
+    @Benchmark
+    public long streamCopy() throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        long copied = 0;
+        try (InputStream stream = Files.newInputStream(source);
+             var out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                copied += read;
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Передача из канала потока в канал файла. Размер буфера не используется: его выбирает JDK.
+     */
+    @Benchmark
+    public long transferFromStream() throws IOException {
+        try (ReadableByteChannel in = Channels.newChannel(Files.newInputStream(source));
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            return transferAll(in, out);
+        }
+    }
+
+    /**
+     * Передача из канала файла в канал файла (без копирования в пространство пользователя, если ОС это поддерживает).
+     */
+    @Benchmark
+    public long transferFromFile() throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            return transferAll(in, out);
+        }
+    }
+
+    /**
+     * Чтение потока через буфер заданного размера в отображённый в память файл.
+     */
+    @Benchmark
+    public long mmap() throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        try (InputStream stream = Files.newInputStream(source);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapped = out.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                mapped.put(buffer, 0, read);
+            }
+            return mapped.position();
+        }
+    }
+
+    private long transferAll(ReadableByteChannel in, FileChannel out) throws IOException {
+        long position = 0;
+        while (position < size) {
+            long transferred = out.transferFrom(in, position, size - position);
+            if (transferred <= 0) break;
+            position += transferred;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,40 @@
+package org.n0throw.benchmark;
+
+import org.n0throw.utils.files.FileExtensionHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Определение типа файла по наименованию.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileExtensionBenchmark {
+    /**
+     * Типичные наименования дистрибутивов: простые, с версией через точки, архивы с составным расширением.
+     */
+    private final String[] sFileNames = {
+            "setup.exe",
+            "installer.msi",
+            "distribution.zip",
+            "app-1.2.3.tar.gz",
+            "jdk-17.0.9_windows-x64_bin.exe",
+            "README",
+            "archive.tgz",
+            "Setup.EXE"
+    };
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void getFromFileName(Blackhole blackhole) {
+        for (String sFileName : sFileNames) {
+            blackhole.consume(FileExtensionHelper.getFromFileName(sFileName));
+        }
+    }
+}
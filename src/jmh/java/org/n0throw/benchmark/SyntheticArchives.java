@@ -0,0 +1,168 @@
+package org.n0throw.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Генерация синтетических архивов для бенчмарков.
+ */
+final class SyntheticArchives {
+    /**
+     * Форма архива.
+     */
+    enum Shape {
+        /**
+         * Много мелких файлов (2000 по 4 КБ), как у дистрибутивов с исходниками или ресурсами.
+         */
+        ManySmall,
+        /**
+         * Несколько крупных файлов (4 по 16 МБ), как у дистрибутивов с бинарными библиотеками.
+         */
+        FewLarge,
+        /**
+         * Глубокая вложенность папок (200 файлов по 16 КБ на глубине до 20 папок).
+         */
+        Deep
+    }
+
+    private SyntheticArchives() {
+    }
+
+    /**
+     * Создаёт архив.
+     *
+     * @param path   Путь к архиву.
+     * @param shape  Форма архива.
+     * @param format Формат архива: Zip, Tar или TarGz.
+     * @throws IOException Если не удалось записать архив.
+     */
+    static void write(Path path, Shape shape, String format) throws IOException {
+        List<Entry> entries = createEntries(shape);
+        try (OutputStream out = Files.newOutputStream(path)) {
+            switch (format) {
+                case "Zip" -> writeZip(out, entries);
+                case "Tar" -> writeTar(out, entries);
+                case "TarGz" -> {
+                    GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+                    writeTar(gzip, entries);
+                    gzip.finish();
+                }
+                default -> throw new IllegalArgumentException("Неизвестный формат архива: " + format);
+            }
+        }
+    }
+
+    private static List<Entry> createEntries(Shape shape) {
+        Random random = new Random(42);
+        List<Entry> entries = new ArrayList<>();
+        switch (shape) {
+            case ManySmall -> {
+                for (int i = 0; i < 2000; i++) {
+                    entries.add(new Entry("dir" + (i % 20) + "/file" + i + ".txt", createData(random, 4 * 1024)));
+                }
+            }
+            case FewLarge -> {
+                for (int i = 0; i < 4; i++) {
+                    entries.add(new Entry("lib/library" + i + ".bin", createData(random, 16 * 1024 * 1024)));
+                }
+            }
+            case Deep -> {
+                for (int i = 0; i < 200; i++) {
+                    StringBuilder sName = new StringBuilder();
+                    for (int depth = 0; depth < i % 20; depth++) {
+                        sName.append("level").append(depth).append('/');
+                    }
+                    entries.add(new Entry(sName + "file" + i + ".dat", createData(random, 16 * 1024)));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Наполовину случайные данные, чтобы архивы сжимались как реальные дистрибутивы, а не идеально.
+     */
+    private static byte[] createData(Random random, int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        for (int i = 0; i < size; i += 2) {
+            data[i] = (byte) (i & 0x0F);
+        }
+        return data;
+    }
+
+    private static void writeZip(OutputStream out, List<Entry> entries) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        for (Entry entry : entries) {
+            zip.putNextEntry(new ZipEntry(entry.sName));
+            zip.write(entry.data);
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    private static void writeTar(OutputStream out, List<Entry> entries) throws IOException {
+        for (Entry entry : entries) {
+            out.write(createTarHeader(entry.sName, entry.data.length));
+            out.write(entry.data);
+            int padding = (512 - entry.data.length % 512) % 512;
+            out.write(new byte[padding]);
+        }
+        out.write(new byte[1024]);
+    }
+
+    /**
+     * Заголовок ustar обычного файла. Длинные наименования делятся на префикс (до 155 байт) и имя (до 100 байт).
+     */
+    private static byte[] createTarHeader(String sName, long size) {
+        byte[] header = new byte[512];
+        if (sName.length() > 100) {
+            int separator = sName.indexOf('/', sName.length() - 101);
+            putString(header, 345, sName.substring(0, separator));
+            sName = sName.substring(separator + 1);
+        }
+        putString(header, 0, sName);
+        putString(header, 100, "0000644");
+        putString(header, 108, "0000000");
+        putString(header, 116, "0000000");
+        putString(header, 124, String.format("%011o", size));
+        putString(header, 136, String.format("%011o", System.currentTimeMillis() / 1000));
+        header[156] = '0';
+        putString(header, 257, "ustar");
+        putString(header, 263, "00");
+        long checksum = 0;
+        for (int i = 0; i < header.length; i++) {
+            checksum += i >= 148 && i < 156 ? ' ' : header[i] & 0xFF;
+        }
+        putString(header, 148, String.format("%06o", checksum));
+        header[155] = ' ';
+        return header;
+    }
+
+    private static void putString(byte[] header, int offset, String sValue) {
+        byte[] bytes = sValue.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+
+    /**
+     * Элемент архива.
+     */
+    private static final class Entry {
+        private final String sName;
+        private final byte[] data;
+
+        Entry(String sName, byte[] data) {
+            this.sName = sName;
+            this.data = data;
+        }
+    }
+}
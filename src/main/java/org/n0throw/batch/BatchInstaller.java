@@ -0,0 +1,172 @@
+package org.n0throw.batch;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.utils.concurrent.AsyncTasks;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Пакетная установка дистрибутивов по плану.
+ * Все дистрибутивы скачиваются одновременно, а установка каждого элемента начинается,
+ * как только скачан его дистрибутив и установлены его зависимости.
+ * Время выполнения плана ограничено самой длинной цепочкой зависимостей, а не суммой всех шагов.
+ */
+public class BatchInstaller {
+    /**
+     * Количество одновременных установок.
+     */
+    private final int installParallelism;
+
+    /**
+     * Пакетная установка с количеством одновременных установок по числу процессоров.
+     */
+    public BatchInstaller() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param installParallelism Количество одновременных установок.
+     * @throws IllegalArgumentException Если количество одновременных установок не положительное.
+     */
+    public BatchInstaller(int installParallelism) {
+        if (installParallelism <= 0) {
+            throw new IllegalArgumentException("Количество одновременных установок должно быть положительным.");
+        }
+        this.installParallelism = installParallelism;
+    }
+
+    /**
+     * Возвращает количество одновременных установок.
+     */
+    public int getInstallParallelism() {
+        return installParallelism;
+    }
+
+    /**
+     * Выполняет план установки. Ошибки отдельных элементов не прерывают план:
+     * элемент получает статус {@link InstallStatus#Failed}, а зависящие от него элементы - {@link InstallStatus#Skipped}.
+     *
+     * @param plan План установки.
+     * @return Отчёт с результатами всех элементов плана.
+     * @throws IllegalArgumentException Если зависимость не входит в план или зависимости образуют цикл.
+     */
+    @NotNull
+    public InstallReport execute(@NotNull InstallPlan plan) {
+        List<InstallItem> items = plan.getOrderedItems();
+        long start = System.nanoTime();
+        ExecutorService downloads = AsyncTasks.newBlockingExecutor("BatchDownload");
+        ExecutorService installs = Executors.newFixedThreadPool(installParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "BatchInstall");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Map<String, CompletableFuture<InstallItemResult>> futures = new HashMap<>();
+            for (InstallItem item : items) {
+                CompletableFuture<Download> download = CompletableFuture.supplyAsync(() -> download(item), downloads);
+                List<CompletableFuture<InstallItemResult>> dependencies = new ArrayList<>();
+                for (String sDependency : item.getDependencies()) {
+                    dependencies.add(futures.get(sDependency));
+                }
+                CompletableFuture<?>[] awaited = new CompletableFuture<?>[dependencies.size() + 1];
+                awaited[0] = download;
+                for (int i = 0; i < dependencies.size(); i++) {
+                    awaited[i + 1] = dependencies.get(i);
+                }
+                futures.put(item.getId(), CompletableFuture.allOf(awaited).thenApplyAsync(
+                        ignored -> install(item, download.join(), dependencies),
+                        installs
+                ));
+            }
+
+            List<InstallItemResult> results = new ArrayList<>(items.size());
+            for (InstallItem item : items) {
+                results.add(futures.get(item.getId()).join());
+            }
+            return new InstallReport(results, Duration.ofNanos(System.nanoTime() - start));
+        } finally {
+            downloads.shutdownNow();
+            installs.shutdownNow();
+        }
+    }
+
+    /**
+     * Скачивает дистрибутив элемента. Ошибка скачивания сохраняется в результате.
+     */
+    private static Download download(InstallItem item) {
+        long start = System.nanoTime();
+        try {
+            File file = item.getDownloader().download(item.getUrl(), item.getFileName(), item.getFileExt(), new String[0]);
+            return new Download(file, null, start, System.nanoTime());
+        } catch (Exception e) {
+            return new Download(null, e, start, System.nanoTime());
+        }
+    }
+
+    /**
+     * Устанавливает скачанный дистрибутив элемента, если все его зависимости установлены успешно.
+     */
+    private static InstallItemResult install(
+            InstallItem item,
+            Download download,
+            List<CompletableFuture<InstallItemResult>> dependencies
+    ) {
+        long start = System.nanoTime();
+        Duration downloadDuration = Duration.ofNanos(download.finish - download.start);
+        Duration waitDuration = Duration.ofNanos(start - download.finish);
+        for (CompletableFuture<InstallItemResult> dependency : dependencies) {
+            if (dependency.join().getStatus() != InstallStatus.Success) {
+                return new InstallItemResult(
+                        item.getId(), InstallStatus.Skipped, downloadDuration, waitDuration, Duration.ZERO, null);
+            }
+        }
+        if (download.file == null) {
+            return new InstallItemResult(
+                    item.getId(), InstallStatus.Failed, downloadDuration, waitDuration, Duration.ZERO, download.error);
+        }
+
+        InstallStatus status;
+        Throwable error = null;
+        try {
+            status = item.getInstaller().install(download.file, item.getPath(), true)
+                    ? InstallStatus.Success
+                    : InstallStatus.Failed;
+        } catch (Exception e) {
+            status = InstallStatus.Failed;
+            error = e;
+        }
+        return new InstallItemResult(
+                item.getId(), status, downloadDuration, waitDuration, Duration.ofNanos(System.nanoTime() - start), error);
+    }
+
+    /**
+     * Результат скачивания дистрибутива элемента.
+     */
+    private static final class Download {
+        @Nullable
+        final File file;
+
+        @Nullable
+        final Throwable error;
+
+        final long start;
+
+        final long finish;
+
+        Download(@Nullable File file, @Nullable Throwable error, long start, long finish) {
+            this.file = file;
+            this.error = error;
+            this.start = start;
+            this.finish = finish;
+        }
+    }
+}
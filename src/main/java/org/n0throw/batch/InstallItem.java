@@ -0,0 +1,153 @@
+package org.n0throw.batch;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.downloader.IDistributionDownloader;
+import org.n0throw.installer.IDistributionInstaller;
+
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Элемент плана установки: дистрибутив, способ его скачивания и установки, и зависимости.
+ */
+public final class InstallItem {
+    /**
+     * Идентификатор элемента в плане.
+     */
+    private final String sId;
+
+    /**
+     * Загрузчик дистрибутива.
+     */
+    private final IDistributionDownloader downloader;
+
+    /**
+     * Путь до дистрибутива.
+     */
+    private final URL url;
+
+    /**
+     * Наименование файла.
+     */
+    private final String sFileName;
+
+    /**
+     * Расширение файла.
+     */
+    @Nullable
+    private final String sFileExt;
+
+    /**
+     * Установщик дистрибутива.
+     */
+    private final IDistributionInstaller installer;
+
+    /**
+     * Путь куда установить дистрибутив.
+     */
+    @Nullable
+    private final Path path;
+
+    /**
+     * Идентификаторы элементов, которые должны быть установлены раньше.
+     */
+    private final List<String> dependencies;
+
+    /**
+     * @param sId          Идентификатор элемента в плане.
+     * @param downloader   Загрузчик дистрибутива.
+     * @param url          Путь до дистрибутива.
+     * @param sFileName    Наименование файла.
+     * @param sFileExt     Расширение файла.
+     * @param installer    Установщик дистрибутива.
+     * @param path         Путь куда установить дистрибутив (null, если указывать путь не требуется).
+     * @param dependencies Идентификаторы элементов, которые должны быть установлены раньше.
+     */
+    public InstallItem(
+            @NonNls @NotNull String sId,
+            @NotNull IDistributionDownloader downloader,
+            @NotNull URL url,
+            @NonNls @NotNull String sFileName,
+            @NonNls @Nullable String sFileExt,
+            @NotNull IDistributionInstaller installer,
+            @Nullable Path path,
+            @NotNull Collection<String> dependencies
+    ) {
+        this.sId = sId;
+        this.downloader = downloader;
+        this.url = url;
+        this.sFileName = sFileName;
+        this.sFileExt = sFileExt;
+        this.installer = installer;
+        this.path = path;
+        this.dependencies = List.copyOf(dependencies);
+    }
+
+    /**
+     * Возвращает идентификатор элемента в плане.
+     */
+    @NotNull
+    public String getId() {
+        return sId;
+    }
+
+    /**
+     * Возвращает загрузчик дистрибутива.
+     */
+    @NotNull
+    public IDistributionDownloader getDownloader() {
+        return downloader;
+    }
+
+    /**
+     * Возвращает путь до дистрибутива.
+     */
+    @NotNull
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Возвращает наименование файла.
+     */
+    @NotNull
+    public String getFileName() {
+        return sFileName;
+    }
+
+    /**
+     * Возвращает расширение файла.
+     */
+    @Nullable
+    public String getFileExt() {
+        return sFileExt;
+    }
+
+    /**
+     * Возвращает установщик дистрибутива.
+     */
+    @NotNull
+    public IDistributionInstaller getInstaller() {
+        return installer;
+    }
+
+    /**
+     * Возвращает путь куда установить дистрибутив.
+     */
+    @Nullable
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Возвращает идентификаторы элементов, которые должны быть установлены раньше.
+     */
+    @NotNull
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+}
@@ -0,0 +1,123 @@
+package org.n0throw.batch;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+
+/**
+ * Результат установки элемента плана с замерами времени.
+ */
+public final class InstallItemResult {
+    /**
+     * Идентификатор элемента в плане.
+     */
+    private final String sId;
+
+    /**
+     * Итог установки.
+     */
+    private final InstallStatus status;
+
+    /**
+     * Длительность скачивания.
+     */
+    private final Duration downloadDuration;
+
+    /**
+     * Длительность ожидания зависимостей после окончания скачивания.
+     */
+    private final Duration waitDuration;
+
+    /**
+     * Длительность установки.
+     */
+    private final Duration installDuration;
+
+    /**
+     * Ошибка, из-за которой элемент не установлен.
+     */
+    @Nullable
+    private final Throwable error;
+
+    /**
+     * @param sId              Идентификатор элемента в плане.
+     * @param status           Итог установки.
+     * @param downloadDuration Длительность скачивания.
+     * @param waitDuration     Длительность ожидания зависимостей после окончания скачивания.
+     * @param installDuration  Длительность установки.
+     * @param error            Ошибка, из-за которой элемент не установлен.
+     */
+    public InstallItemResult(
+            @NotNull String sId,
+            @NotNull InstallStatus status,
+            @NotNull Duration downloadDuration,
+            @NotNull Duration waitDuration,
+            @NotNull Duration installDuration,
+            @Nullable Throwable error
+    ) {
+        this.sId = sId;
+        this.status = status;
+        this.downloadDuration = downloadDuration;
+        this.waitDuration = waitDuration;
+        this.installDuration = installDuration;
+        this.error = error;
+    }
+
+    /**
+     * Возвращает идентификатор элемента в плане.
+     */
+    @NotNull
+    public String getId() {
+        return sId;
+    }
+
+    /**
+     * Возвращает итог установки.
+     */
+    @NotNull
+    public InstallStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Возвращает длительность скачивания.
+     */
+    @NotNull
+    public Duration getDownloadDuration() {
+        return downloadDuration;
+    }
+
+    /**
+     * Возвращает длительность ожидания зависимостей после окончания скачивания.
+     */
+    @NotNull
+    public Duration getWaitDuration() {
+        return waitDuration;
+    }
+
+    /**
+     * Возвращает длительность установки.
+     */
+    @NotNull
+    public Duration getInstallDuration() {
+        return installDuration;
+    }
+
+    /**
+     * Возвращает ошибку, из-за которой элемент не установлен.
+     */
+    @Nullable
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return sId + ": " + status
+                + " (скачивание " + downloadDuration.toMillis() + " мс"
+                + ", ожидание " + waitDuration.toMillis() + " мс"
+                + ", установка " + installDuration.toMillis() + " мс)"
+                + (error != null ? " " + error : "");
+    }
+}
@@ -0,0 +1,83 @@
+package org.n0throw.batch;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * План пакетной установки: набор дистрибутивов и зависимости между ними.
+ */
+public final class InstallPlan {
+    /**
+     * Элементы плана в порядке добавления.
+     */
+    private final Map<String, InstallItem> items = new LinkedHashMap<>();
+
+    /**
+     * Добавляет элемент в план.
+     *
+     * @param item Элемент плана.
+     * @return Этот же план.
+     * @throws IllegalArgumentException Если элемент с таким идентификатором уже добавлен.
+     */
+    @NotNull
+    public InstallPlan add(@NotNull InstallItem item) {
+        if (items.putIfAbsent(item.getId(), item) != null) {
+            throw new IllegalArgumentException("Элемент плана уже добавлен: " + item.getId());
+        }
+        return this;
+    }
+
+    /**
+     * Возвращает элементы плана.
+     */
+    @NotNull
+    public Collection<InstallItem> getItems() {
+        return items.values();
+    }
+
+    /**
+     * Возвращает элементы плана в топологическом порядке (зависимости раньше зависящих от них элементов).
+     *
+     * @return Элементы плана.
+     * @throws IllegalArgumentException Если зависимость не входит в план или зависимости образуют цикл.
+     */
+    @NotNull
+    public List<InstallItem> getOrderedItems() {
+        Map<String, Integer> state = new HashMap<>();
+        List<InstallItem> ordered = new ArrayList<>(items.size());
+        for (InstallItem item : items.values()) {
+            visit(item, state, ordered);
+        }
+        return ordered;
+    }
+
+    /**
+     * Обход в глубину для топологической сортировки (1 - в обработке, 2 - обработан).
+     */
+    private void visit(InstallItem item, Map<String, Integer> state, List<InstallItem> ordered) {
+        Integer itemState = state.get(item.getId());
+        if (itemState != null) {
+            if (itemState == 1) {
+                throw new IllegalArgumentException("Зависимости плана образуют цикл через элемент " + item.getId());
+            }
+            return;
+        }
+        state.put(item.getId(), 1);
+        for (String sDependency : item.getDependencies()) {
+            InstallItem dependency = items.get(sDependency);
+            if (dependency == null) {
+                throw new IllegalArgumentException(
+                        "Элемент " + item.getId() + " зависит от отсутствующего в плане элемента " + sDependency);
+            }
+            visit(dependency, state, ordered);
+        }
+        state.put(item.getId(), 2);
+        ordered.add(item);
+    }
+}
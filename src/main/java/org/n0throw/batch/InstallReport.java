@@ -0,0 +1,82 @@
+package org.n0throw.batch;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Отчёт о пакетной установке.
+ */
+public final class InstallReport {
+    /**
+     * Результаты элементов плана в топологическом порядке.
+     */
+    private final List<InstallItemResult> results;
+
+    /**
+     * Общая длительность выполнения плана.
+     */
+    private final Duration duration;
+
+    /**
+     * @param results  Результаты элементов плана.
+     * @param duration Общая длительность выполнения плана.
+     */
+    public InstallReport(@NotNull List<InstallItemResult> results, @NotNull Duration duration) {
+        this.results = List.copyOf(results);
+        this.duration = duration;
+    }
+
+    /**
+     * Возвращает результаты элементов плана в топологическом порядке.
+     */
+    @NotNull
+    public List<InstallItemResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Возвращает результат элемента плана.
+     *
+     * @param sId Идентификатор элемента.
+     * @return Результат (null, если элемента нет в плане).
+     */
+    @Nullable
+    public InstallItemResult getResult(@NotNull String sId) {
+        for (InstallItemResult result : results) {
+            if (result.getId().equals(sId)) return result;
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает общую длительность выполнения плана.
+     */
+    @NotNull
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Возвращает флаг, что все элементы плана установлены успешно.
+     */
+    public boolean isSuccessful() {
+        for (InstallItemResult result : results) {
+            if (result.getStatus() != InstallStatus.Success) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Пакетная установка за ")
+                .append(duration.toMillis())
+                .append(" мс");
+        for (InstallItemResult result : results) {
+            builder.append(System.lineSeparator()).append("  ").append(result);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,10 @@
+package org.n0throw.batch;
+
+/**
+ * Итог установки элемента плана.
+ */
+public enum InstallStatus {
+    Success,
+    Failed,
+    Skipped
+}
@@ -0,0 +1,80 @@
+package org.n0throw.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.downloader.ResourceVersion;
+
+/**
+ * Запись кэша дистрибутивов: соответствие пути до ресурса и хеша его содержимого.
+ */
+public final class CacheEntry {
+    /**
+     * Путь до ресурса.
+     */
+    private final String sUrl;
+
+    /**
+     * SHA-256 хеш содержимого.
+     */
+    private final String sHash;
+
+    /**
+     * Размер содержимого.
+     */
+    private final long size;
+
+    /**
+     * Версия ресурса на момент скачивания.
+     */
+    @Nullable
+    private final ResourceVersion version;
+
+    /**
+     * @param sUrl    Путь до ресурса.
+     * @param sHash   SHA-256 хеш содержимого.
+     * @param size    Размер содержимого.
+     * @param version Версия ресурса на момент скачивания.
+     */
+    public CacheEntry(
+            @NotNull String sUrl,
+            @NotNull String sHash,
+            long size,
+            @Nullable ResourceVersion version
+    ) {
+        this.sUrl = sUrl;
+        this.sHash = sHash;
+        this.size = size;
+        this.version = version;
+    }
+
+    /**
+     * Возвращает путь до ресурса.
+     */
+    @NotNull
+    public String getUrl() {
+        return sUrl;
+    }
+
+    /**
+     * Возвращает SHA-256 хеш содержимого.
+     */
+    @NotNull
+    public String getHash() {
+        return sHash;
+    }
+
+    /**
+     * Возвращает размер содержимого.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Возвращает версию ресурса на момент скачивания.
+     */
+    @Nullable
+    public ResourceVersion getVersion() {
+        return version;
+    }
+}
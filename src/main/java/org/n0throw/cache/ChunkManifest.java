@@ -0,0 +1,113 @@
+package org.n0throw.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Описание файла в хранилище блоков: последовательность блоков, из которых он собирается.
+ */
+public final class ChunkManifest {
+    /**
+     * Ключ файла (например, наименование и версия дистрибутива).
+     */
+    private final String sKey;
+
+    /**
+     * Размер файла.
+     */
+    private final long size;
+
+    /**
+     * SHA-256 хеш файла.
+     */
+    private final String sHash;
+
+    /**
+     * Блоки файла по порядку.
+     */
+    private final List<Chunk> chunks;
+
+    /**
+     * @param sKey   Ключ файла.
+     * @param size   Размер файла.
+     * @param sHash  SHA-256 хеш файла.
+     * @param chunks Блоки файла по порядку.
+     */
+    public ChunkManifest(@NotNull String sKey, long size, @NotNull String sHash, @NotNull List<Chunk> chunks) {
+        this.sKey = sKey;
+        this.size = size;
+        this.sHash = sHash;
+        this.chunks = List.copyOf(chunks);
+    }
+
+    /**
+     * Возвращает ключ файла.
+     */
+    @NotNull
+    public String getKey() {
+        return sKey;
+    }
+
+    /**
+     * Возвращает размер файла.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Возвращает SHA-256 хеш файла.
+     */
+    @NotNull
+    public String getHash() {
+        return sHash;
+    }
+
+    /**
+     * Возвращает блоки файла по порядку.
+     */
+    @NotNull
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Блок файла.
+     */
+    public static final class Chunk {
+        /**
+         * SHA-256 хеш содержимого блока.
+         */
+        private final String sHash;
+
+        /**
+         * Размер блока.
+         */
+        private final int length;
+
+        /**
+         * @param sHash  SHA-256 хеш содержимого блока.
+         * @param length Размер блока.
+         */
+        public Chunk(@NotNull String sHash, int length) {
+            this.sHash = sHash;
+            this.length = length;
+        }
+
+        /**
+         * Возвращает SHA-256 хеш содержимого блока.
+         */
+        @NotNull
+        public String getHash() {
+            return sHash;
+        }
+
+        /**
+         * Возвращает размер блока.
+         */
+        public int getLength() {
+            return length;
+        }
+    }
+}
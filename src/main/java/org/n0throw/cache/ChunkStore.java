@@ -0,0 +1,654 @@
+package org.n0throw.cache;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.utils.files.ChecksumMismatchException;
+import org.n0throw.utils.files.ExpectedChecksum;
+import org.n0throw.utils.files.FileHashHelper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище версий дистрибутивов с дедупликацией.
+ * Файлы разбиваются на блоки по содержимому ({@link FastCdcChunker}), каждый уникальный блок хранится один раз
+ * под своим SHA-256 хешем, а для файла сохраняется список его блоков. Соседние версии дистрибутива совпадают
+ * в большинстве блоков, поэтому каждая следующая версия занимает на диске только изменившиеся данные.
+ * <p>
+ * Файл собирается по требованию: целиком ({@link #restore(String, Path)}) или потоком, который можно передать
+ * прямо в {@link org.n0throw.installer.IStreamDistributionInstaller} ({@link #openStream(String)}).
+ * Блоки, на которые не ссылается ни один файл, удаляются сборкой мусора ({@link #collectGarbage()}).
+ */
+public class ChunkStore {
+    /**
+     * Минимальный размер блока по умолчанию.
+     */
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * Средний размер блока по умолчанию.
+     */
+    public static final int DEFAULT_AVERAGE_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Максимальный размер блока по умолчанию.
+     */
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * Наименование папки с блоками.
+     */
+    @NonNls
+    private static final String CHUNKS_DIRECTORY = "chunks";
+
+    /**
+     * Наименование папки с описаниями файлов.
+     */
+    @NonNls
+    private static final String MANIFESTS_DIRECTORY = "manifests";
+
+    /**
+     * Расширение файла описания.
+     */
+    @NonNls
+    private static final String MANIFEST_EXTENSION = ".manifest";
+
+    /**
+     * Расширение временного файла, который переименовывается после записи.
+     */
+    @NonNls
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    /**
+     * Сигнатура и версия формата файла описания.
+     */
+    private static final int MANIFEST_MAGIC = 0x43484D01;
+
+    /**
+     * Корневая папка хранилища.
+     */
+    private final Path directory;
+
+    /**
+     * Разбиение на блоки.
+     */
+    private final FastCdcChunker chunker;
+
+    /**
+     * Сборка мусора берёт блокировку на запись, остальные операции - на чтение,
+     * чтобы блоки записываемого файла не были удалены до сохранения его описания.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Описания файлов по ключу.
+     */
+    private final Map<String, ChunkManifest> manifests = new ConcurrentHashMap<>();
+
+    /**
+     * Количество ссылок на блок (из описаний и открытых потоков) по хешу блока.
+     */
+    private final Map<String, Integer> references = new HashMap<>();
+
+    /**
+     * Размеры блоков по хешу.
+     */
+    private final Map<String, Integer> chunkSizes = new HashMap<>();
+
+    /**
+     * Повреждённые описания, пропущенные при загрузке. Удаляются сборкой мусора.
+     */
+    private final Set<Path> brokenManifests = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param directory Корневая папка хранилища.
+     * @throws IOException Если не удалось создать папки или прочитать описания файлов.
+     */
+    public ChunkStore(@NotNull Path directory) throws IOException {
+        this(directory, DEFAULT_MIN_CHUNK_SIZE, DEFAULT_AVERAGE_CHUNK_SIZE, DEFAULT_MAX_CHUNK_SIZE);
+    }
+
+    /**
+     * @param directory        Корневая папка хранилища.
+     * @param minChunkSize     Минимальный размер блока.
+     * @param averageChunkSize Средний размер блока (степень двойки).
+     * @param maxChunkSize     Максимальный размер блока.
+     * @throws IOException              Если не удалось создать папки или прочитать описания файлов.
+     * @throws IllegalArgumentException Если размеры блоков не согласованы.
+     */
+    public ChunkStore(
+            @NotNull Path directory,
+            int minChunkSize,
+            int averageChunkSize,
+            int maxChunkSize
+    ) throws IOException {
+        this.directory = directory;
+        this.chunker = new FastCdcChunker(minChunkSize, averageChunkSize, maxChunkSize);
+        Files.createDirectories(directory.resolve(CHUNKS_DIRECTORY));
+        Files.createDirectories(directory.resolve(MANIFESTS_DIRECTORY));
+        load();
+    }
+
+    /**
+     * Помещает файл в хранилище. Файл с тем же ключом заменяется.
+     *
+     * @param sKey Ключ файла (например, наименование и версия дистрибутива).
+     * @param file Файл.
+     * @return Описание файла.
+     * @throws IOException Если не удалось прочитать файл или записать блоки.
+     */
+    @NotNull
+    public ChunkManifest put(@NotNull String sKey, @NotNull Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            return put(sKey, stream);
+        }
+    }
+
+    /**
+     * Помещает данные потока в хранилище. Файл с тем же ключом заменяется. Поток не закрывается.
+     *
+     * @param sKey   Ключ файла (например, наименование и версия дистрибутива).
+     * @param stream Поток данных.
+     * @return Описание файла.
+     * @throws IOException Если не удалось прочитать поток или записать блоки.
+     */
+    @NotNull
+    public ChunkManifest put(@NotNull String sKey, @NotNull InputStream stream) throws IOException {
+        lock.readLock().lock();
+        try {
+            MessageDigest fileDigest = FileHashHelper.createDigest(FileHashHelper.SHA_256);
+            MessageDigest chunkDigest = FileHashHelper.createDigest(FileHashHelper.SHA_256);
+            List<ChunkManifest.Chunk> chunks = new ArrayList<>();
+            long size = 0;
+
+            byte[] buffer = new byte[chunker.getMaxSize() * 2];
+            int start = 0;
+            int end = 0;
+            boolean eof = false;
+            while (true) {
+                // Для поиска границы в буфере должен быть хотя бы один максимальный блок, если данные не кончились
+                if (!eof && end - start < chunker.getMaxSize()) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+                    while (end < buffer.length) {
+                        int read = stream.read(buffer, end, buffer.length - end);
+                        if (read == -1) {
+                            eof = true;
+                            break;
+                        }
+                        end += read;
+                    }
+                }
+                if (start == end) break;
+
+                int length = chunker.cut(buffer, start, end - start);
+                fileDigest.update(buffer, start, length);
+                chunkDigest.update(buffer, start, length);
+                String sHash = FileHashHelper.toHex(chunkDigest.digest());
+                writeChunk(sHash, buffer, start, length);
+                chunks.add(new ChunkManifest.Chunk(sHash, length));
+                size += length;
+                start += length;
+            }
+
+            ChunkManifest manifest = new ChunkManifest(sKey, size, FileHashHelper.toHex(fileDigest.digest()), chunks);
+            writeManifest(manifest);
+            ChunkManifest previous = manifests.put(sKey, manifest);
+            retain(manifest);
+            if (previous != null) release(previous);
+            return manifest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает описание файла.
+     *
+     * @param sKey Ключ файла.
+     * @return Описание (null, если файла нет в хранилище).
+     */
+    @Nullable
+    public ChunkManifest get(@NotNull String sKey) {
+        return manifests.get(sKey);
+    }
+
+    /**
+     * Открывает поток файла, собирая его из блоков по мере чтения.
+     * Пока поток открыт, его блоки не удаляются сборкой мусора, даже если файл удалён из хранилища.
+     * Прочитанные данные сверяются с хешем из описания: при несовпадении в конце потока вместо -1
+     * выбрасывается {@link ChecksumMismatchException}.
+     *
+     * @param sKey Ключ файла.
+     * @return Поток файла.
+     * @throws NoSuchFileException Если файла нет в хранилище.
+     */
+    @NotNull
+    public InputStream openStream(@NotNull String sKey) throws IOException {
+        lock.readLock().lock();
+        try {
+            ChunkManifest manifest = manifests.get(sKey);
+            if (manifest == null) {
+                throw new NoSuchFileException(sKey, null, "Файл отсутствует в хранилище блоков.");
+            }
+            retain(manifest);
+            return new ChunkInputStream(manifest);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Собирает файл из блоков и сверяет его с хешем из описания.
+     *
+     * @param sKey   Ключ файла.
+     * @param target Путь к итоговому файлу (существующий файл будет заменён).
+     * @throws NoSuchFileException       Если файла нет в хранилище.
+     * @throws ChecksumMismatchException Если собранный файл не совпал с хешем (блоки повреждены).
+     * @throws IOException               Если не удалось прочитать блоки или записать файл.
+     */
+    public void restore(@NotNull String sKey, @NotNull Path target) throws IOException {
+        Path tempTarget = target.resolveSibling(target.getFileName() + TEMP_EXTENSION);
+        // Поток сам сверяет хеш в конце данных
+        try (InputStream stream = openStream(sKey)) {
+            Files.copy(stream, tempTarget, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempTarget);
+            throw e;
+        }
+        Files.move(tempTarget, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Удаляет файл из хранилища. Его блоки удаляются при следующей сборке мусора.
+     *
+     * @param sKey Ключ файла.
+     * @return Флаг, был ли файл в хранилище.
+     * @throws IOException Если не удалось удалить описание файла.
+     */
+    public boolean remove(@NotNull String sKey) throws IOException {
+        lock.readLock().lock();
+        try {
+            ChunkManifest manifest = manifests.remove(sKey);
+            if (manifest == null) return false;
+            Files.deleteIfExists(getManifestPath(sKey));
+            release(manifest);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет блоки, на которые не ссылается ни один файл и ни один открытый поток,
+     * временные файлы прерванных записей блоков и описаний, а также повреждённые описания,
+     * пропущенные при загрузке.
+     *
+     * @return Объём освобождённого места в байтах.
+     * @throws IOException Если не удалось просмотреть папку блоков или описаний.
+     */
+    public long collectGarbage() throws IOException {
+        lock.writeLock().lock();
+        try {
+            long freed = 0;
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(directory.resolve(CHUNKS_DIRECTORY))) {
+                files = walk.filter(Files::isRegularFile).toList();
+            }
+            for (Path file : files) {
+                String sName = file.getFileName().toString();
+                boolean referenced;
+                synchronized (references) {
+                    referenced = references.containsKey(sName);
+                }
+                if (referenced) continue;
+                freed += deleteGarbage(file);
+            }
+            // Описания пишутся под блокировкой на чтение, поэтому оставшиеся временные файлы брошены
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(
+                    directory.resolve(MANIFESTS_DIRECTORY),
+                    "*" + MANIFEST_EXTENSION + TEMP_EXTENSION
+            )) {
+                for (Path path : paths) {
+                    freed += deleteGarbage(path);
+                }
+            }
+            for (Path path : brokenManifests) {
+                // Описание могло быть перезаписано новой версией файла с тем же ключом
+                if (!isManifestLoaded(path)) freed += deleteGarbage(path);
+                brokenManifests.remove(path);
+            }
+            return freed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Проверяет, что файл описания принадлежит одному из загруженных файлов.
+     */
+    private boolean isManifestLoaded(Path path) {
+        for (String sKey : manifests.keySet()) {
+            if (getManifestPath(sKey).equals(path)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Удаляет файл, не попавший ни в одно описание.
+     *
+     * @return Размер удалённого файла (0, если удалить не удалось).
+     */
+    private static long deleteGarbage(Path file) {
+        try {
+            long size = Files.size(file);
+            return Files.deleteIfExists(file) ? size : 0;
+        } catch (IOException e) {
+            // todo slf4j
+            return 0;
+        }
+    }
+
+    /**
+     * Возвращает статистику хранилища: объём файлов, объём уникальных блоков и коэффициент дедупликации.
+     * Блоки, ожидающие сборки мусора, не учитываются.
+     */
+    @NotNull
+    public ChunkStoreStats getStats() {
+        long logicalBytes = 0;
+        int fileCount = 0;
+        for (ChunkManifest manifest : manifests.values()) {
+            logicalBytes += manifest.getSize();
+            fileCount++;
+        }
+        long storedBytes = 0;
+        int chunkCount;
+        synchronized (references) {
+            for (String sHash : references.keySet()) {
+                storedBytes += chunkSizes.get(sHash);
+            }
+            chunkCount = references.size();
+        }
+        return new ChunkStoreStats(fileCount, chunkCount, logicalBytes, storedBytes);
+    }
+
+    /**
+     * Возвращает корневую папку хранилища.
+     */
+    @NotNull
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Записывает блок, если его ещё нет. Блок пишется во временный файл и переименовывается,
+     * поэтому одновременная запись одного блока несколькими потоками безопасна.
+     */
+    private void writeChunk(String sHash, byte[] data, int offset, int length) throws IOException {
+        Path chunk = getChunkPath(sHash);
+        if (Files.exists(chunk)) return;
+        Files.createDirectories(chunk.getParent());
+        Path tempChunk = Files.createTempFile(chunk.getParent(), sHash, TEMP_EXTENSION);
+        try {
+            try (OutputStream output = Files.newOutputStream(tempChunk)) {
+                output.write(data, offset, length);
+            }
+            Files.move(tempChunk, chunk, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempChunk);
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает путь к блоку. Блоки раскладываются по подпапкам по первым двум символам хеша.
+     */
+    private Path getChunkPath(String sHash) {
+        return directory.resolve(CHUNKS_DIRECTORY).resolve(sHash.substring(0, 2)).resolve(sHash);
+    }
+
+    /**
+     * Возвращает путь к описанию файла. Наименование - SHA-256 ключа, чтобы ключ мог содержать любые символы.
+     */
+    private Path getManifestPath(String sKey) {
+        MessageDigest digest = FileHashHelper.createDigest(FileHashHelper.SHA_256);
+        String sName = FileHashHelper.toHex(digest.digest(sKey.getBytes(StandardCharsets.UTF_8)));
+        return directory.resolve(MANIFESTS_DIRECTORY).resolve(sName + MANIFEST_EXTENSION);
+    }
+
+    /**
+     * Увеличивает количество ссылок на блоки файла.
+     */
+    private void retain(ChunkManifest manifest) {
+        synchronized (references) {
+            for (ChunkManifest.Chunk chunk : manifest.getChunks()) {
+                references.merge(chunk.getHash(), 1, Integer::sum);
+                chunkSizes.put(chunk.getHash(), chunk.getLength());
+            }
+        }
+    }
+
+    /**
+     * Уменьшает количество ссылок на блоки файла.
+     */
+    private void release(ChunkManifest manifest) {
+        synchronized (references) {
+            for (ChunkManifest.Chunk chunk : manifest.getChunks()) {
+                if (references.merge(chunk.getHash(), -1, Integer::sum) <= 0) {
+                    references.remove(chunk.getHash());
+                    chunkSizes.remove(chunk.getHash());
+                }
+            }
+        }
+    }
+
+    /**
+     * Атомарно сохраняет описание файла.
+     */
+    private void writeManifest(ChunkManifest manifest) throws IOException {
+        Path path = getManifestPath(manifest.getKey());
+        Path tempPath = path.resolveSibling(path.getFileName() + TEMP_EXTENSION);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            output.writeInt(MANIFEST_MAGIC);
+            output.writeUTF(manifest.getKey());
+            output.writeLong(manifest.getSize());
+            output.writeUTF(manifest.getHash());
+            output.writeInt(manifest.getChunks().size());
+            for (ChunkManifest.Chunk chunk : manifest.getChunks()) {
+                output.writeUTF(chunk.getHash());
+                output.writeInt(chunk.getLength());
+            }
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Загружает описания файлов с диска. Описания другого формата пропускаются,
+     * повреждённые пропускаются и удаляются при следующей сборке мусора.
+     */
+    private void load() throws IOException {
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(
+                directory.resolve(MANIFESTS_DIRECTORY),
+                "*" + MANIFEST_EXTENSION
+        )) {
+            for (Path path : paths) {
+                ChunkManifest manifest;
+                try {
+                    manifest = readManifest(path);
+                } catch (IOException e) {
+                    // todo slf4j
+                    brokenManifests.add(path);
+                    continue;
+                }
+                if (manifest == null) continue;
+                manifests.put(manifest.getKey(), manifest);
+                retain(manifest);
+            }
+        }
+    }
+
+    /**
+     * Читает описание файла.
+     *
+     * @return Описание или null, если описание другого формата.
+     * @throws IOException Если описание обрезано или повреждено.
+     */
+    @Nullable
+    private static ChunkManifest readManifest(Path path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MANIFEST_MAGIC) return null;
+            String sKey = input.readUTF();
+            long size = input.readLong();
+            String sHash = input.readUTF();
+            int count = input.readInt();
+            if (count < 0) throw new IOException("Некорректное количество блоков в описании " + path + ": " + count);
+            // Количество не проверено: список растёт по мере чтения, а не выделяется заранее
+            List<ChunkManifest.Chunk> chunks = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                chunks.add(new ChunkManifest.Chunk(input.readUTF(), input.readInt()));
+            }
+            return new ChunkManifest(sKey, size, sHash, chunks);
+        }
+    }
+
+    /**
+     * Поток файла, открывающий блоки по очереди и сверяющий данные с хешем файла.
+     * При закрытии освобождает блоки файла.
+     */
+    private final class ChunkInputStream extends InputStream {
+        private final ChunkManifest manifest;
+
+        /**
+         * Хеш прочитанных данных.
+         */
+        private final MessageDigest digest = FileHashHelper.createDigest(FileHashHelper.SHA_256);
+
+        /**
+         * Несовпадение хеша, обнаруженное в конце потока (null, если конец не достигнут или хеш совпал).
+         */
+        @Nullable
+        private ChecksumMismatchException mismatch;
+
+        /**
+         * Флаг, что хеш уже сверен.
+         */
+        private boolean verified;
+
+        /**
+         * Индекс следующего блока.
+         */
+        private int nextChunk;
+
+        /**
+         * Поток текущего блока.
+         */
+        @Nullable
+        private InputStream current;
+
+        /**
+         * Количество байт, оставшихся в текущем блоке.
+         */
+        private int remaining;
+
+        private boolean closed;
+
+        ChunkInputStream(ChunkManifest manifest) {
+            this.manifest = manifest;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (closed) throw new IOException("Поток закрыт.");
+            if (length == 0) return 0;
+            while (current == null || remaining == 0) {
+                if (!openNext()) return -1;
+            }
+            int read = current.read(buffer, offset, Math.min(length, remaining));
+            if (read == -1) {
+                throw new EOFException("Блок файла " + manifest.getKey() + " короче ожидаемого.");
+            }
+            digest.update(buffer, offset, read);
+            remaining -= read;
+            return read;
+        }
+
+        /**
+         * Открывает следующий блок.
+         *
+         * @return Флаг, был ли ещё блок.
+         */
+        private boolean openNext() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            if (nextChunk == manifest.getChunks().size()) {
+                verify();
+                return false;
+            }
+            ChunkManifest.Chunk chunk = manifest.getChunks().get(nextChunk++);
+            Path path = getChunkPath(chunk.getHash());
+            if (Files.size(path) != chunk.getLength()) {
+                throw new IOException("Блок " + chunk.getHash() + " повреждён.");
+            }
+            current = Files.newInputStream(path);
+            remaining = chunk.getLength();
+            return true;
+        }
+
+        /**
+         * Сверяет хеш прочитанных данных с описанием файла. Размеры блоков уже сверены при открытии,
+         * а подмену содержимого того же размера выявляет только хеш.
+         *
+         * @throws ChecksumMismatchException Если хеш не совпал.
+         */
+        private void verify() throws ChecksumMismatchException {
+            if (!verified) {
+                verified = true;
+                String sActual = FileHashHelper.toHex(digest.digest());
+                if (!sActual.equalsIgnoreCase(manifest.getHash())) {
+                    mismatch = new ChecksumMismatchException(ExpectedChecksum.sha256(manifest.getHash()), sActual);
+                }
+            }
+            if (mismatch != null) throw mismatch;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            release(manifest);
+            if (current != null) current.close();
+        }
+    }
+}
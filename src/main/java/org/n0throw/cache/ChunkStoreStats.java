@@ -0,0 +1,86 @@
+package org.n0throw.cache;
+
+import java.util.Locale;
+
+/**
+ * Статистика хранилища блоков.
+ */
+public final class ChunkStoreStats {
+    /**
+     * Количество файлов.
+     */
+    private final int fileCount;
+
+    /**
+     * Количество уникальных блоков.
+     */
+    private final int chunkCount;
+
+    /**
+     * Суммарный размер файлов.
+     */
+    private final long logicalBytes;
+
+    /**
+     * Суммарный размер уникальных блоков.
+     */
+    private final long storedBytes;
+
+    /**
+     * @param fileCount    Количество файлов.
+     * @param chunkCount   Количество уникальных блоков.
+     * @param logicalBytes Суммарный размер файлов.
+     * @param storedBytes  Суммарный размер уникальных блоков.
+     */
+    public ChunkStoreStats(int fileCount, int chunkCount, long logicalBytes, long storedBytes) {
+        this.fileCount = fileCount;
+        this.chunkCount = chunkCount;
+        this.logicalBytes = logicalBytes;
+        this.storedBytes = storedBytes;
+    }
+
+    /**
+     * Возвращает количество файлов.
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Возвращает количество уникальных блоков.
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Возвращает суммарный размер файлов (сколько бы они занимали целиком).
+     */
+    public long getLogicalBytes() {
+        return logicalBytes;
+    }
+
+    /**
+     * Возвращает суммарный размер уникальных блоков (сколько данные занимают на диске).
+     */
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * Возвращает коэффициент дедупликации: во сколько раз файлы целиком больше хранимых блоков
+     * (1, если хранилище пустое).
+     */
+    public double getDedupRatio() {
+        return storedBytes == 0 ? 1 : (double) logicalBytes / storedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "файлов " + fileCount
+                + ", блоков " + chunkCount
+                + ", данных " + logicalBytes + " байт"
+                + ", на диске " + storedBytes + " байт"
+                + String.format(Locale.ROOT, ", дедупликация %.2f", getDedupRatio());
+    }
+}
@@ -0,0 +1,451 @@
+package org.n0throw.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.downloader.ResourceVersion;
+import org.n0throw.utils.files.FileHashHelper;
+import org.n0throw.utils.files.LocalFileCopier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Локальный кэш дистрибутивов.
+ * Содержимое хранится один раз под своим SHA-256 хешем, а индекс сопоставляет пути до ресурсов с хешами.
+ * При превышении допустимого размера удаляются давно не использованные записи.
+ */
+public class DistributionCache {
+    /**
+     * Допустимый размер кэша по умолчанию (10 ГБ).
+     */
+    public static final long DEFAULT_MAX_SIZE = 10L * 1024 * 1024 * 1024;
+
+    /**
+     * Наименование папки с содержимым.
+     */
+    private static final String OBJECTS_DIRECTORY = "objects";
+
+    /**
+     * Наименование файла индекса.
+     */
+    private static final String INDEX_FILE = "index.bin";
+
+    /**
+     * Сигнатура и версия формата файла индекса.
+     */
+    private static final int INDEX_MAGIC = 0x44434902;
+
+    /**
+     * Корневая папка кэша.
+     */
+    private final Path directory;
+
+    /**
+     * Допустимый размер содержимого кэша в байтах.
+     */
+    private final long maxSize;
+
+    /**
+     * Записи кэша в порядке от давно использованных к недавно использованным.
+     */
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Время изменения содержимого по хешу на момент помещения в кэш (или последней сверки с хешем).
+     * Содержимое, изменённое после этого (например, через жёсткую ссылку), считается повреждённым.
+     */
+    private final Map<String, Long> objectTimes = new HashMap<>();
+
+    /**
+     * Количество незавершённых копирований содержимого по хешу. Такое содержимое не удаляется,
+     * даже если на него больше не ссылается ни одна запись: оно удалится по окончании копирования.
+     */
+    private final Map<String, Integer> pins = new HashMap<>();
+
+    /**
+     * Текущий размер содержимого кэша (каждый хеш учитывается один раз).
+     */
+    private long size;
+
+    /**
+     * @param directory Корневая папка кэша.
+     * @throws IOException Если не удалось создать папку или прочитать индекс.
+     */
+    public DistributionCache(@NotNull Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param directory Корневая папка кэша.
+     * @param maxSize   Допустимый размер содержимого кэша в байтах.
+     * @throws IOException              Если не удалось создать папку или прочитать индекс.
+     * @throws IllegalArgumentException Если допустимый размер не положительный.
+     */
+    public DistributionCache(@NotNull Path directory, long maxSize) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Допустимый размер кэша должен быть положительным.");
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        Files.createDirectories(directory.resolve(OBJECTS_DIRECTORY));
+        load();
+    }
+
+    /**
+     * Возвращает запись кэша для ресурса и отмечает её как недавно использованную.
+     *
+     * @param sUrl Путь до ресурса.
+     * @return Запись кэша (null, если ресурс не закэширован).
+     */
+    @Nullable
+    public CacheEntry get(@NotNull String sUrl) {
+        CacheEntry entry;
+        Long objectTime;
+        synchronized (this) {
+            entry = entries.get(sUrl);
+            if (entry == null) return null;
+            objectTime = objectTimes.get(entry.getHash());
+        }
+        if (isObjectValid(entry, objectTime)) return entry;
+        synchronized (this) {
+            if (entries.remove(sUrl, entry)) release(entry);
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает путь к закэшированному содержимому по его хешу.
+     *
+     * @param sHash SHA-256 хеш содержимого.
+     * @return Путь к содержимому (null, если содержимое отсутствует в кэше).
+     */
+    @Nullable
+    public Path findByHash(@NotNull String sHash) {
+        Path object = getObjectPath(sHash);
+        return Files.isRegularFile(object) ? object : null;
+    }
+
+    /**
+     * Помещает скачанный файл в кэш. Файл переносится в кэш (или удаляется, если такое содержимое уже есть).
+     *
+     * @param sUrl    Путь до ресурса.
+     * @param version Версия ресурса на момент скачивания.
+     * @param file    Скачанный файл.
+     * @return Запись кэша.
+     * @throws IOException Если не удалось прочитать или перенести файл.
+     */
+    @NotNull
+    public CacheEntry put(
+            @NotNull String sUrl,
+            @Nullable ResourceVersion version,
+            @NotNull Path file
+    ) throws IOException {
+        return put(sUrl, version, file, FileHashHelper.sha256(file));
+    }
+
+    /**
+     * Помещает скачанный файл с уже известным хешем в кэш.
+     * Файл переносится в кэш (или удаляется, если такое содержимое уже есть). Если у файла есть другие
+     * жёсткие ссылки, то в кэш кладётся его копия, чтобы содержимое кэша не менялось вместе с чужим файлом.
+     * Копирование выполняется вне блокировки кэша: блокируется только обновление индекса.
+     *
+     * @param sUrl    Путь до ресурса.
+     * @param version Версия ресурса на момент скачивания.
+     * @param file    Скачанный файл.
+     * @param sHash   SHA-256 хеш содержимого файла.
+     * @return Запись кэша.
+     * @throws IOException Если не удалось перенести файл.
+     */
+    @NotNull
+    public CacheEntry put(
+            @NotNull String sUrl,
+            @Nullable ResourceVersion version,
+            @NotNull Path file,
+            @NotNull String sHash
+    ) throws IOException {
+        long fileSize = Files.size(file);
+        Path object = getObjectPath(sHash);
+        Path tempObject = Files.isRegularFile(object) ? null : prepareObject(file, object);
+        synchronized (this) {
+            if (Files.isRegularFile(object)) {
+                Files.delete(tempObject != null ? tempObject : file);
+            } else {
+                // Содержимое могло быть удалено другим потоком после проверки
+                if (tempObject == null) tempObject = prepareObject(file, object);
+                Files.move(tempObject, object, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                objectTimes.put(sHash, Files.getLastModifiedTime(object).toMillis());
+                size += fileSize;
+            }
+
+            CacheEntry entry = new CacheEntry(sUrl, sHash, fileSize, version);
+            CacheEntry previous = entries.put(sUrl, entry);
+            if (previous != null && !previous.getHash().equals(sHash)) {
+                release(previous);
+            }
+            evict(sHash);
+            save();
+            return entry;
+        }
+    }
+
+    /**
+     * Копирует закэшированное содержимое в файл.
+     * По возможности создаётся жёсткая ссылка или клон, иначе файл копируется ядром ОС
+     * (см. {@link LocalFileCopier}). Из-за жёсткой ссылки изменять полученный файл нельзя.
+     * Пока идёт копирование, содержимое не удаляется из кэша, даже если запись вытесняется другим потоком.
+     *
+     * @param entry  Запись кэша.
+     * @param target Путь к итоговому файлу (существующий файл будет заменён).
+     * @throws NoSuchFileException Если содержимое уже удалено из кэша или повреждено.
+     * @throws IOException         Если не удалось создать файл.
+     */
+    public void copyTo(@NotNull CacheEntry entry, @NotNull Path target) throws IOException {
+        String sHash = entry.getHash();
+        Path object = getObjectPath(sHash);
+        synchronized (this) {
+            if (!isObjectValid(entry)) {
+                throw new NoSuchFileException(object.toString(), null, "Содержимое отсутствует в кэше.");
+            }
+            pins.merge(sHash, 1, Integer::sum);
+        }
+        try {
+            LocalFileCopier.copy(object, target, true);
+        } finally {
+            unpin(entry);
+        }
+    }
+
+    /**
+     * Удаляет запись кэша для ресурса.
+     *
+     * @param sUrl Путь до ресурса.
+     * @throws IOException Если не удалось сохранить индекс.
+     */
+    public synchronized void remove(@NotNull String sUrl) throws IOException {
+        CacheEntry entry = entries.remove(sUrl);
+        if (entry != null) {
+            release(entry);
+            save();
+        }
+    }
+
+    /**
+     * Возвращает текущий размер содержимого кэша в байтах.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Возвращает допустимый размер содержимого кэша в байтах.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Возвращает корневую папку кэша.
+     */
+    @NotNull
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Возвращает путь к содержимому по хешу. Содержимое раскладывается по подпапкам по первым двум символам хеша.
+     */
+    private Path getObjectPath(String sHash) {
+        if (sHash.length() < 3) {
+            throw new IllegalArgumentException("Некорректный хеш: " + sHash);
+        }
+        return directory.resolve(OBJECTS_DIRECTORY).resolve(sHash.substring(0, 2)).resolve(sHash);
+    }
+
+    /**
+     * Переносит (или копирует, если у файла есть другие жёсткие ссылки) файл во временный файл рядом с содержимым.
+     *
+     * @return Временный файл.
+     */
+    private static Path prepareObject(Path file, Path object) throws IOException {
+        Files.createDirectories(object.getParent());
+        Path tempObject = Files.createTempFile(object.getParent(), object.getFileName().toString(), ".tmp");
+        if (LocalFileCopier.hasOtherLinks(file)) {
+            // Файл - жёсткая ссылка (например, на исходный файл пользователя): кэш хранит свою копию
+            LocalFileCopier.copy(file, tempObject, false);
+            Files.delete(file);
+        } else {
+            Files.move(file, tempObject, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return tempObject;
+    }
+
+    /**
+     * Проверяет, что содержимое записи существует, имеет ожидаемый размер и не изменялось после помещения в кэш.
+     */
+    private boolean isObjectValid(CacheEntry entry) {
+        return isObjectValid(entry, objectTimes.get(entry.getHash()));
+    }
+
+    /**
+     * Проверяет, что содержимое записи существует, имеет ожидаемый размер и указанное время изменения.
+     *
+     * @param objectTime Время изменения содержимого на момент помещения в кэш (null, если неизвестно).
+     */
+    private boolean isObjectValid(CacheEntry entry, @Nullable Long objectTime) {
+        if (objectTime == null) return false;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(getObjectPath(entry.getHash()), BasicFileAttributes.class);
+            return attributes.isRegularFile()
+                    && attributes.size() == entry.getSize()
+                    && attributes.lastModifiedTime().toMillis() == objectTime;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Завершает копирование содержимого и удаляет его, если за время копирования запись была вытеснена.
+     */
+    private synchronized void unpin(CacheEntry entry) {
+        pins.computeIfPresent(entry.getHash(), (sHash, count) -> count > 1 ? count - 1 : null);
+        release(entry);
+    }
+
+    /**
+     * Удаляет содержимое записи, если на него больше не ссылается ни одна запись и оно не копируется.
+     */
+    private void release(CacheEntry entry) {
+        if (pins.containsKey(entry.getHash())) return;
+        for (CacheEntry other : entries.values()) {
+            if (other.getHash().equals(entry.getHash())) return;
+        }
+        try {
+            if (Files.deleteIfExists(getObjectPath(entry.getHash()))) {
+                size -= entry.getSize();
+            }
+            objectTimes.remove(entry.getHash());
+        } catch (IOException e) {
+            // todo slf4j
+        }
+    }
+
+    /**
+     * Удаляет давно не использованные записи, пока размер кэша превышает допустимый.
+     *
+     * @param sKeepHash Хеш только что добавленного содержимого, которое удалять нельзя.
+     */
+    private void evict(String sKeepHash) {
+        Iterator<CacheEntry> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            CacheEntry entry = iterator.next();
+            if (entry.getHash().equals(sKeepHash)) continue;
+            iterator.remove();
+            release(entry);
+        }
+    }
+
+    /**
+     * Загружает индекс с диска. Записи без содержимого отбрасываются.
+     * Если индекс другой версии, то кэш собирается заново: содержимое без записей удаляется.
+     */
+    private void load() throws IOException {
+        Path indexPath = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexPath)) return;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (input.readInt() != INDEX_MAGIC) {
+                clearObjects();
+                return;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String sUrl = input.readUTF();
+                String sHash = input.readUTF();
+                long entrySize = input.readLong();
+                ResourceVersion version = null;
+                if (input.readBoolean()) {
+                    String eTag = input.readBoolean() ? input.readUTF() : null;
+                    String lastModified = input.readBoolean() ? input.readUTF() : null;
+                    version = new ResourceVersion(eTag, lastModified, input.readLong());
+                }
+                objectTimes.putIfAbsent(sHash, input.readLong());
+                CacheEntry entry = new CacheEntry(sUrl, sHash, entrySize, version);
+                if (isObjectValid(entry)) entries.put(sUrl, entry);
+            }
+        }
+        Set<String> hashes = new HashSet<>();
+        for (CacheEntry entry : entries.values()) {
+            if (hashes.add(entry.getHash())) size += entry.getSize();
+        }
+    }
+
+    /**
+     * Удаляет всё содержимое кэша.
+     */
+    private void clearObjects() throws IOException {
+        Path objects = directory.resolve(OBJECTS_DIRECTORY);
+        Files.walkFileTree(objects, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                if (e != null) throw e;
+                if (!directory.equals(objects)) Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Атомарно сохраняет индекс на диск.
+     */
+    private void save() throws IOException {
+        Path indexPath = directory.resolve(INDEX_FILE);
+        Path tempPath = directory.resolve(INDEX_FILE + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(entries.size());
+            for (CacheEntry entry : entries.values()) {
+                output.writeUTF(entry.getUrl());
+                output.writeUTF(entry.getHash());
+                output.writeLong(entry.getSize());
+                ResourceVersion version = entry.getVersion();
+                output.writeBoolean(version != null);
+                if (version != null) {
+                    writeNullableUTF(output, version.getETag());
+                    writeNullableUTF(output, version.getLastModified());
+                    output.writeLong(version.getLength());
+                }
+                output.writeLong(objectTimes.get(entry.getHash()));
+            }
+        }
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Записывает строку, которая может отсутствовать.
+     */
+    private static void writeNullableUTF(DataOutputStream output, @Nullable String sValue) throws IOException {
+        output.writeBoolean(sValue != null);
+        if (sValue != null) output.writeUTF(sValue);
+    }
+}
@@ -0,0 +1,113 @@
+package org.n0throw.cache;
+
+/**
+ * Разбиение данных на блоки по содержимому (FastCDC с нормализацией).
+ * Граница блока определяется Gear хешем последних байт, поэтому вставка или удаление данных сдвигает
+ * только соседние границы, а остальные блоки новой версии совпадают с блоками старой.
+ */
+final class FastCdcChunker {
+    /**
+     * Таблица Gear хеша. Генерируется из фиксированного начального значения,
+     * чтобы границы блоков совпадали на всех хостах и во всех версиях.
+     */
+    private static final long[] GEAR = createGear();
+
+    /**
+     * Минимальный размер блока.
+     */
+    private final int minSize;
+
+    /**
+     * Средний (ожидаемый) размер блока.
+     */
+    private final int averageSize;
+
+    /**
+     * Максимальный размер блока.
+     */
+    private final int maxSize;
+
+    /**
+     * Маска до среднего размера (больше бит, граница менее вероятна).
+     */
+    private final long maskSmall;
+
+    /**
+     * Маска после среднего размера (меньше бит, граница более вероятна).
+     */
+    private final long maskLarge;
+
+    /**
+     * @param minSize     Минимальный размер блока.
+     * @param averageSize Средний размер блока (степень двойки).
+     * @param maxSize     Максимальный размер блока.
+     * @throws IllegalArgumentException Если размеры не согласованы.
+     */
+    FastCdcChunker(int minSize, int averageSize, int maxSize) {
+        if (minSize <= 0 || minSize > averageSize || averageSize > maxSize || Integer.bitCount(averageSize) != 1) {
+            throw new IllegalArgumentException(
+                    "Некорректные размеры блоков: " + minSize + "/" + averageSize + "/" + maxSize
+            );
+        }
+        int bits = Integer.numberOfTrailingZeros(averageSize);
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+        this.maskSmall = mask(bits + 2);
+        this.maskLarge = mask(Math.max(1, bits - 2));
+    }
+
+    /**
+     * Возвращает длину следующего блока.
+     *
+     * @param data   Данные.
+     * @param offset Начало блока.
+     * @param length Количество доступных байт. Должно быть не меньше максимального размера блока,
+     *               если это не конец данных.
+     * @return Длина блока.
+     */
+    int cut(byte[] data, int offset, int length) {
+        if (length <= minSize) return length;
+        int end = Math.min(length, maxSize);
+        int normal = Math.min(end, averageSize);
+        long hash = 0;
+        int i = minSize;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((hash & maskSmall) == 0) return i + 1;
+        }
+        for (; i < end; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((hash & maskLarge) == 0) return i + 1;
+        }
+        return end;
+    }
+
+    /**
+     * Возвращает максимальный размер блока.
+     */
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Маска из старших бит: после сдвигов влево они зависят от последних 64 байт.
+     */
+    private static long mask(int bits) {
+        return -1L << (64 - bits);
+    }
+
+    private static long[] createGear() {
+        long[] gear = new long[256];
+        long state = 0x6E30746872307721L;
+        for (int i = 0; i < gear.length; i++) {
+            // splitmix64
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            gear[i] = z ^ (z >>> 31);
+        }
+        return gear;
+    }
+}
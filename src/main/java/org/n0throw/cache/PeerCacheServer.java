@@ -0,0 +1,256 @@
+package org.n0throw.cache;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.n0throw.diagnostics.MetricsRegistry;
+import org.n0throw.utils.concurrent.AsyncTasks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Раздача содержимого локального кэша другим узлам установки по HTTP.
+ * Содержимое адресуется SHA-256 хешем: {@code GET /objects/<sha256>} (поддерживается один диапазон в заголовке Range)
+ * и {@code HEAD /objects/<sha256>}. Хеш служит ETag, поэтому получатель сверяет данные с ожидаемым хешем сам
+ * и не доверяет узлу.
+ */
+public class PeerCacheServer implements Closeable {
+    /**
+     * Путь, по которому раздаётся содержимое.
+     */
+    @NonNls
+    public static final String OBJECTS_PATH = "/objects/";
+
+    /**
+     * Допустимое количество одновременных раздач по умолчанию.
+     */
+    public static final int DEFAULT_MAX_UPLOADS = 8;
+
+    /**
+     * Наименование SHA-256 хеша в нижнем регистре.
+     */
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     * Заголовок Range с одним диапазоном: {@code bytes=начало-[конец]} или {@code bytes=-длина_с_конца}.
+     */
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    /**
+     * Кэш, содержимое которого раздаётся.
+     */
+    private final DistributionCache cache;
+
+    /**
+     * Встроенный HTTP сервер.
+     */
+    private final HttpServer server;
+
+    /**
+     * Пул обработки запросов.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Разрешения на одновременные раздачи. При их отсутствии узел отвечает 503, и получатель идёт к другому узлу.
+     */
+    private final Semaphore uploads;
+
+    /**
+     * @param cache   Кэш, содержимое которого раздаётся.
+     * @param address Адрес прослушивания (порт 0 — любой свободный).
+     * @throws IOException Если не удалось занять адрес.
+     */
+    public PeerCacheServer(@NotNull DistributionCache cache, @NotNull InetSocketAddress address) throws IOException {
+        this(cache, address, DEFAULT_MAX_UPLOADS);
+    }
+
+    /**
+     * @param cache      Кэш, содержимое которого раздаётся.
+     * @param address    Адрес прослушивания (порт 0 — любой свободный).
+     * @param maxUploads Допустимое количество одновременных раздач.
+     * @throws IOException              Если не удалось занять адрес.
+     * @throws IllegalArgumentException Если допустимое количество раздач не положительное.
+     */
+    public PeerCacheServer(
+            @NotNull DistributionCache cache,
+            @NotNull InetSocketAddress address,
+            int maxUploads
+    ) throws IOException {
+        if (maxUploads <= 0) {
+            throw new IllegalArgumentException("Допустимое количество раздач должно быть положительным.");
+        }
+        this.cache = cache;
+        this.uploads = new Semaphore(maxUploads);
+        this.executor = AsyncTasks.newBlockingExecutor("PeerCache");
+        this.server = HttpServer.create(address, 0);
+        this.server.createContext(OBJECTS_PATH, this::handle);
+        this.server.setExecutor(executor);
+    }
+
+    /**
+     * Начинает принимать запросы.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Возвращает адрес, на котором принимаются запросы (с фактическим портом).
+     */
+    @NotNull
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Останавливает сервер. Начатые раздачи прерываются.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String sMethod = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(sMethod);
+            if (!head && !"GET".equals(sMethod)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                respond(exchange, 405, "miss");
+                return;
+            }
+
+            String sHash = exchange.getRequestURI().getPath().substring(OBJECTS_PATH.length());
+            Path object = HASH.matcher(sHash).matches() ? cache.findByHash(sHash) : null;
+            if (object == null) {
+                respond(exchange, 404, "miss");
+                return;
+            }
+            if (!uploads.tryAcquire()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "busy");
+                return;
+            }
+            try {
+                // Канал открыт до конца раздачи: вытеснение объекта из кэша не обрывает её
+                try (FileChannel channel = FileChannel.open(object, StandardOpenOption.READ)) {
+                    serve(exchange, channel, sHash, head);
+                }
+            } finally {
+                uploads.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void serve(HttpExchange exchange, FileChannel channel, String sHash, boolean head) throws IOException {
+        long size = channel.size();
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Accept-Ranges", "bytes");
+        headers.set("ETag", "\"" + sHash + "\"");
+        headers.set("Content-Type", "application/octet-stream");
+
+        long start = 0;
+        long length = size;
+        int responseCode = 200;
+        String sRange = exchange.getRequestHeaders().getFirst("Range");
+        if (sRange != null) {
+            long[] range = parseRange(sRange, size);
+            if (range == null) {
+                headers.set("Content-Range", "bytes */" + size);
+                respond(exchange, 416, "miss");
+                return;
+            }
+            start = range[0];
+            length = range[1] - range[0] + 1;
+            responseCode = 206;
+            headers.set("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + size);
+        }
+
+        if (head) {
+            headers.set("Content-Length", Long.toString(length));
+            exchange.sendResponseHeaders(responseCode, -1);
+            record("hit", 0);
+            return;
+        }
+        exchange.sendResponseHeaders(responseCode, length == 0 ? -1 : length);
+        long position = start;
+        long end = start + length;
+        try (OutputStream body = exchange.getResponseBody()) {
+            WritableByteChannel target = Channels.newChannel(body);
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    throw new IOException("Содержимое " + sHash + " оборвалось при раздаче.");
+                }
+                position += transferred;
+            }
+        } finally {
+            record("hit", position - start);
+        }
+    }
+
+    /**
+     * Разбирает один диапазон из заголовка Range.
+     *
+     * @return Начало и конец диапазона включительно (null, если диапазон некорректен или вне содержимого).
+     */
+    private static long[] parseRange(String sRange, long size) {
+        Matcher matcher = RANGE.matcher(sRange.trim());
+        if (!matcher.matches()) return null;
+        String sStart = matcher.group(1);
+        String sEnd = matcher.group(2);
+        try {
+            if (sStart.isEmpty()) {
+                if (sEnd.isEmpty()) return null;
+                long suffix = Long.parseLong(sEnd);
+                if (suffix == 0 || size == 0) return null;
+                return new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(sStart);
+            long end = sEnd.isEmpty() ? size - 1 : Math.min(Long.parseLong(sEnd), size - 1);
+            if (start >= size || end < start) return null;
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int responseCode, String sResult) throws IOException {
+        exchange.sendResponseHeaders(responseCode, -1);
+        record(sResult, 0);
+    }
+
+    private static void record(String sResult, long bytes) {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        if (!registry.isEnabled()) return;
+        registry.counter(
+                "peer_cache_requests_total",
+                "Количество запросов к раздаче кэша.",
+                "result", sResult
+        ).increment();
+        if (bytes > 0) {
+            registry.counter(
+                    "peer_cache_served_bytes_total",
+                    "Количество байт, отданных другим узлам."
+            ).add(bytes);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.n0throw.diagnostics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Монотонно возрастающий счётчик.
+ */
+public final class Counter {
+    /**
+     * Значение счётчика.
+     */
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Увеличивает счётчик на 1.
+     */
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * Увеличивает счётчик.
+     *
+     * @param amount Величина (не отрицательная).
+     * @throws IllegalArgumentException Если величина отрицательная.
+     */
+    public void add(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Счётчик не может уменьшаться.");
+        }
+        value.add(amount);
+    }
+
+    /**
+     * Возвращает значение счётчика.
+     */
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,40 @@
+package org.n0throw.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JFR: скачивание дистрибутива.
+ */
+@Name("org.n0throw.Download")
+@Label("Distribution Download")
+@Category({"Distribution Installer", "Download"})
+@Description("Скачивание дистрибутива от запроса до готового временного файла")
+final class DownloadEvent extends jdk.jfr.Event {
+    @Label("URL Scheme")
+    String scheme;
+
+    @Label("Host")
+    String host;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Reused Bytes")
+    @DataAmount
+    long reusedBytes;
+
+    @Label("Wire Bytes")
+    @DataAmount
+    long wireBytes;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("Error")
+    String error;
+}
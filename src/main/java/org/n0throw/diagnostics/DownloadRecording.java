@@ -0,0 +1,144 @@
+package org.n0throw.diagnostics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Locale;
+
+/**
+ * Запись одного скачивания в JFR и реестр метрик.
+ * Если событие JFR не включено в записи, а реестр выключен, то запись сводится к созданию объекта.
+ */
+public final class DownloadRecording {
+    private final DownloadEvent event = new DownloadEvent();
+
+    /**
+     * Схема URL.
+     */
+    private final String sScheme;
+
+    /**
+     * Хост источника.
+     */
+    private final String sHost;
+
+    /**
+     * Время начала (0, если реестр выключен).
+     */
+    private final long startTime;
+
+    /**
+     * Объём данных, взятых из локальной копии вместо скачивания.
+     */
+    private long reusedBytes;
+
+    /**
+     * Объём данных, полученных по сети (-1, если совпадает со скачанными байтами).
+     */
+    private long wireBytes = -1;
+
+    private DownloadRecording(URL url) {
+        this.sScheme = url.getProtocol().toLowerCase(Locale.ROOT);
+        this.sHost = url.getHost();
+        this.startTime = MetricsRegistry.getInstance().isEnabled() ? System.nanoTime() : 0;
+        event.begin();
+    }
+
+    /**
+     * Начинает запись скачивания.
+     *
+     * @param url Путь до дистрибутива.
+     */
+    @NotNull
+    public static DownloadRecording start(@NotNull URL url) {
+        return new DownloadRecording(url);
+    }
+
+    /**
+     * Учитывает данные, взятые из локальной копии (например, при разностном скачивании).
+     * Они не входят в количество скачанных байт.
+     *
+     * @param bytes Количество байт.
+     */
+    public void reused(long bytes) {
+        reusedBytes += bytes;
+    }
+
+    /**
+     * Учитывает объём данных, полученных по сети, если он отличается от размера файла
+     * (например, при сжатой передаче).
+     *
+     * @param bytes Количество байт.
+     */
+    public void received(long bytes) {
+        wireBytes = Math.max(0, wireBytes) + bytes;
+    }
+
+    /**
+     * Завершает запись успешного скачивания.
+     *
+     * @param file Скачанный файл.
+     * @return Тот же файл.
+     */
+    @NotNull
+    public File succeeded(@NotNull File file) {
+        finish(Math.max(0, file.length() - reusedBytes), null);
+        return file;
+    }
+
+    /**
+     * Завершает запись неудачного скачивания.
+     *
+     * @param error Причина.
+     */
+    public void failed(@NotNull Throwable error) {
+        finish(0, error);
+    }
+
+    private void finish(long bytes, @Nullable Throwable error) {
+        long wire = wireBytes >= 0 ? wireBytes : bytes;
+        event.end();
+        if (event.shouldCommit()) {
+            event.scheme = sScheme;
+            event.host = sHost;
+            event.bytes = bytes;
+            event.reusedBytes = reusedBytes;
+            event.wireBytes = wire;
+            event.success = error == null;
+            event.error = error != null ? error.getClass().getName() : null;
+            event.commit();
+        }
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        if (startTime == 0 || !registry.isEnabled()) return;
+        registry.histogram(
+                "distribution_download_duration_seconds",
+                "Длительность скачивания дистрибутива.",
+                "scheme", sScheme,
+                "result", error == null ? "success" : "failure"
+        ).observeNanos(System.nanoTime() - startTime);
+        if (bytes > 0) {
+            registry.counter(
+                    "distribution_download_bytes_total",
+                    "Количество скачанных байт.",
+                    "scheme", sScheme
+            ).add(bytes);
+        }
+        if (wire > 0) {
+            registry.counter(
+                    "distribution_download_wire_bytes_total",
+                    "Количество байт, полученных по сети (для сжатой передачи меньше скачанных).",
+                    "scheme", sScheme
+            ).add(wire);
+        }
+        if (reusedBytes > 0) {
+            registry.counter(
+                    "distribution_download_reused_bytes_total",
+                    "Количество байт, взятых из локальной копии вместо скачивания.",
+                    "scheme", sScheme
+            ).add(reusedBytes);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.n0throw.diagnostics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма длительностей с фиксированными границами корзин.
+ * Каждое наблюдение увеличивает одну корзину, накопительные значения считаются только при выгрузке.
+ */
+public final class Histogram {
+    /**
+     * Границы корзин по умолчанию в секундах: от миллисекунд (создание файла) до десятков минут (установка).
+     */
+    static final double[] DEFAULT_BUCKETS = {
+            0.001, 0.005, 0.01, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300, 600, 1800
+    };
+
+    /**
+     * Верхние границы корзин в секундах (по возрастанию).
+     */
+    private final double[] bounds;
+
+    /**
+     * Верхние границы корзин в наносекундах.
+     */
+    private final long[] boundNanos;
+
+    /**
+     * Количество наблюдений в каждой корзине. Последняя корзина - наблюдения больше всех границ.
+     */
+    private final LongAdder[] buckets;
+
+    /**
+     * Сумма наблюдений в наносекундах.
+     */
+    private final LongAdder sumNanos = new LongAdder();
+
+    /**
+     * @param bounds Верхние границы корзин в секундах (по возрастанию).
+     * @throws IllegalArgumentException Если границы не возрастают.
+     */
+    Histogram(double[] bounds) {
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Границы корзин гистограммы должны возрастать.");
+            }
+        }
+        this.bounds = bounds.clone();
+        this.boundNanos = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            boundNanos[i] = (long) (bounds[i] * 1_000_000_000L);
+        }
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Учитывает длительность.
+     *
+     * @param duration Длительность.
+     */
+    public void observe(@NotNull Duration duration) {
+        observeNanos(duration.toNanos());
+    }
+
+    /**
+     * Учитывает длительность в наносекундах.
+     *
+     * @param nanos Длительность в наносекундах.
+     */
+    public void observeNanos(long nanos) {
+        int index = 0;
+        while (index < boundNanos.length && nanos > boundNanos[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Возвращает количество наблюдений.
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает сумму наблюдений в секундах.
+     */
+    public double getSum() {
+        return sumNanos.sum() / 1e9;
+    }
+
+    /**
+     * Возвращает верхние границы корзин в секундах.
+     */
+    double[] getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Возвращает количество наблюдений в корзинах (не накопительно). Последняя корзина - больше всех границ.
+     */
+    long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+}
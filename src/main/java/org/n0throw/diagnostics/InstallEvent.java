@@ -0,0 +1,33 @@
+package org.n0throw.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JFR: установка дистрибутива.
+ */
+@Name("org.n0throw.Install")
+@Label("Distribution Install")
+@Category({"Distribution Installer", "Install"})
+@Description("Установка дистрибутива: распаковка архива или выполнение процесса установщика")
+final class InstallEvent extends jdk.jfr.Event {
+    @Label("Installer")
+    String installer;
+
+    @Label("File")
+    String file;
+
+    @Label("Result")
+    String result;
+
+    /**
+     * Код завершения процесса (-1, если неизвестен).
+     */
+    @Label("Exit Code")
+    int exitCode;
+
+    @Label("Error")
+    String error;
+}
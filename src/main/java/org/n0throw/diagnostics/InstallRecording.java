@@ -0,0 +1,93 @@
+package org.n0throw.diagnostics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+
+/**
+ * Запись одной установки в JFR и реестр метрик.
+ */
+public final class InstallRecording {
+    private final InstallEvent event = new InstallEvent();
+
+    /**
+     * Имя установщика.
+     */
+    private final String sInstaller;
+
+    /**
+     * Файл дистрибутива.
+     */
+    private final File file;
+
+    /**
+     * Время начала (0, если реестр выключен).
+     */
+    private final long startTime;
+
+    private InstallRecording(String sInstaller, File file) {
+        this.sInstaller = sInstaller;
+        this.file = file;
+        this.startTime = MetricsRegistry.getInstance().isEnabled() ? System.nanoTime() : 0;
+        event.begin();
+    }
+
+    /**
+     * Начинает запись установки.
+     *
+     * @param installer Класс установщика (в метрики попадает его простое имя).
+     * @param file      Файл дистрибутива.
+     */
+    @NotNull
+    public static InstallRecording start(@NotNull Class<?> installer, @NotNull File file) {
+        return new InstallRecording(installer.getSimpleName(), file);
+    }
+
+    /**
+     * Завершает запись установки, которая дошла до конца.
+     *
+     * @param success  Успешна ли установка.
+     * @param exitCode Код завершения процесса (null, если процесса нет).
+     */
+    public void finished(boolean success, @Nullable Integer exitCode) {
+        finish(success ? "success" : "failure", exitCode, null);
+    }
+
+    /**
+     * Завершает запись установки, окончание которой не ожидается (процесс только запущен).
+     */
+    public void started() {
+        finish("started", null, null);
+    }
+
+    /**
+     * Завершает запись установки, прерванной ошибкой.
+     *
+     * @param error Причина.
+     */
+    public void failed(@NotNull Throwable error) {
+        finish("failure", null, error);
+    }
+
+    private void finish(String sResult, @Nullable Integer exitCode, @Nullable Throwable error) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.installer = sInstaller;
+            event.file = file.getPath();
+            event.result = sResult;
+            event.exitCode = exitCode != null ? exitCode : -1;
+            event.error = error != null ? error.getClass().getName() : null;
+            event.commit();
+        }
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        if (startTime == 0 || !registry.isEnabled()) return;
+        registry.histogram(
+                "distribution_install_duration_seconds",
+                "Длительность установки дистрибутива.",
+                "installer", sInstaller,
+                "result", sResult
+        ).observeNanos(System.nanoTime() - startTime);
+    }
+}
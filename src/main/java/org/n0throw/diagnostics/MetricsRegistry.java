@@ -0,0 +1,244 @@
+package org.n0throw.diagnostics;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Реестр метрик (счётчики и гистограммы длительностей) с выгрузкой в текстовом формате Prometheus.
+ * Метрика определяется именем и набором меток, повторный запрос возвращает тот же экземпляр.
+ * Если реестр выключен (системное свойство {@value #ENABLED_PROPERTY} = false или {@link #setEnabled(boolean)}),
+ * то загрузчики и установщики не обращаются к нему.
+ */
+public final class MetricsRegistry {
+    /**
+     * Системное свойство, выключающее общий реестр.
+     */
+    @NonNls
+    public static final String ENABLED_PROPERTY = "org.n0throw.metrics.enabled";
+
+    /**
+     * Общий реестр.
+     */
+    private static final MetricsRegistry instance =
+            new MetricsRegistry(!"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY)));
+
+    /**
+     * Семейства метрик по имени (в порядке имён для стабильной выгрузки).
+     */
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * Флаг, включён ли реестр.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * @param enabled Включён ли реестр.
+     */
+    public MetricsRegistry(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Возвращает общий реестр, в который пишут загрузчики, временные файлы и установщики.
+     */
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Возвращает флаг, включён ли реестр.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Включает или выключает запись метрик. Накопленные значения сохраняются.
+     *
+     * @param enabled Включён ли реестр.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Возвращает счётчик, создавая его при первом обращении.
+     *
+     * @param sName   Имя метрики.
+     * @param sHelp   Описание метрики.
+     * @param sLabels Пары имя/значение меток.
+     * @return Счётчик.
+     * @throws IllegalArgumentException Если имя уже занято гистограммой, или метки заданы не парами.
+     */
+    @NotNull
+    public Counter counter(
+            @NonNls @NotNull String sName,
+            @NotNull String sHelp,
+            @NonNls @NotNull String... sLabels
+    ) {
+        return (Counter) getFamily(sName, sHelp, Type.Counter).metrics
+                .computeIfAbsent(formatLabels(sLabels), sKey -> new Counter());
+    }
+
+    /**
+     * Возвращает гистограмму длительностей с границами корзин по умолчанию, создавая её при первом обращении.
+     *
+     * @param sName   Имя метрики.
+     * @param sHelp   Описание метрики.
+     * @param sLabels Пары имя/значение меток.
+     * @return Гистограмма.
+     * @throws IllegalArgumentException Если имя уже занято счётчиком, или метки заданы не парами.
+     */
+    @NotNull
+    public Histogram histogram(
+            @NonNls @NotNull String sName,
+            @NotNull String sHelp,
+            @NonNls @NotNull String... sLabels
+    ) {
+        return (Histogram) getFamily(sName, sHelp, Type.Histogram).metrics
+                .computeIfAbsent(formatLabels(sLabels), sKey -> new Histogram(Histogram.DEFAULT_BUCKETS));
+    }
+
+    /**
+     * Выгружает все метрики в текстовом формате Prometheus (версия 0.0.4).
+     *
+     * @param out Получатель текста.
+     * @throws IOException Если не удалось записать текст.
+     */
+    public void writePrometheus(@NotNull Appendable out) throws IOException {
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String sName = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(sName).append(' ').append(escapeHelp(family.sHelp)).append('\n');
+            out.append("# TYPE ").append(sName).append(' ')
+                    .append(family.type == Type.Counter ? "counter" : "histogram").append('\n');
+            for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+                if (family.type == Type.Counter) {
+                    writeSample(out, sName, metric.getKey(), null, Long.toString(((Counter) metric.getValue()).get()));
+                } else {
+                    writeHistogram(out, sName, metric.getKey(), (Histogram) metric.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Возвращает все метрики в текстовом формате Prometheus (версия 0.0.4).
+     */
+    @NotNull
+    public String toPrometheusText() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            writePrometheus(builder);
+        } catch (IOException e) {
+            // StringBuilder не бросает IOException
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    private Family getFamily(String sName, String sHelp, Type type) {
+        Family family = families.computeIfAbsent(Objects.requireNonNull(sName), sKey -> {
+            if (!sKey.matches("[a-zA-Z_:][a-zA-Z0-9_:]*")) {
+                throw new IllegalArgumentException("Недопустимое имя метрики: " + sKey);
+            }
+            return new Family(type, sHelp);
+        });
+        if (family.type != type) {
+            throw new IllegalArgumentException("Метрика " + sName + " уже зарегистрирована с другим типом.");
+        }
+        return family;
+    }
+
+    private static void writeHistogram(Appendable out, String sName, String sLabels, Histogram histogram)
+            throws IOException {
+        double[] bounds = histogram.getBounds();
+        long[] counts = histogram.getBucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String sBound = i < bounds.length ? Double.toString(bounds[i]) : "+Inf";
+            writeSample(out, sName + "_bucket", sLabels, sBound, Long.toString(cumulative));
+        }
+        writeSample(out, sName + "_sum", sLabels, null, Double.toString(histogram.getSum()));
+        writeSample(out, sName + "_count", sLabels, null, Long.toString(cumulative));
+    }
+
+    private static void writeSample(Appendable out, String sName, String sLabels, String sBound, String sValue)
+            throws IOException {
+        out.append(sName);
+        if (!sLabels.isEmpty() || sBound != null) {
+            out.append('{').append(sLabels);
+            if (sBound != null) {
+                if (!sLabels.isEmpty()) out.append(',');
+                out.append("le=\"").append(sBound).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ').append(sValue).append('\n');
+    }
+
+    /**
+     * Форматирует метки в вид name="value",... (без фигурных скобок).
+     */
+    private static String formatLabels(String... sLabels) {
+        if (sLabels.length % 2 != 0) {
+            throw new IllegalArgumentException("Метки должны задаваться парами имя/значение.");
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < sLabels.length; i += 2) {
+            if (i > 0) builder.append(',');
+            builder.append(sLabels[i]).append("=\"");
+            String sValue = sLabels[i + 1] != null ? sLabels[i + 1] : "";
+            for (int j = 0; j < sValue.length(); j++) {
+                char c = sValue.charAt(j);
+                if (c == '\\' || c == '"') {
+                    builder.append('\\').append(c);
+                } else if (c == '\n') {
+                    builder.append("\\n");
+                } else {
+                    builder.append(c);
+                }
+            }
+            builder.append('"');
+        }
+        return builder.toString();
+    }
+
+    private static String escapeHelp(String sHelp) {
+        return sHelp.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    /**
+     * Тип метрики.
+     */
+    private enum Type {
+        Counter,
+        Histogram
+    }
+
+    /**
+     * Семейство метрик с одним именем и разными метками.
+     */
+    private static final class Family {
+        private final Type type;
+        private final String sHelp;
+
+        /**
+         * Метрики по отформатированным меткам.
+         */
+        private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+        Family(Type type, String sHelp) {
+            this.type = type;
+            this.sHelp = sHelp;
+        }
+    }
+}
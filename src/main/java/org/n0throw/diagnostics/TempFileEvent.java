@@ -0,0 +1,29 @@
+package org.n0throw.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JFR: создание или удаление временного файла.
+ */
+@Name("org.n0throw.TempFile")
+@Label("Temporary File")
+@Category({"Distribution Installer", "Temporary Files"})
+@Description("Создание временного файла или его удаление после освобождения JVM")
+final class TempFileEvent extends jdk.jfr.Event {
+    @Label("Action")
+    String action;
+
+    @Label("Path")
+    String path;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,80 @@
+package org.n0throw.diagnostics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+
+/**
+ * Запись создания или удаления временного файла в JFR и реестр метрик.
+ */
+public final class TempFileRecording {
+    private final TempFileEvent event = new TempFileEvent();
+
+    /**
+     * Время начала (0, если реестр выключен).
+     */
+    private final long startTime;
+
+    private TempFileRecording() {
+        this.startTime = MetricsRegistry.getInstance().isEnabled() ? System.nanoTime() : 0;
+        event.begin();
+    }
+
+    /**
+     * Начинает запись операции с временным файлом.
+     */
+    @NotNull
+    public static TempFileRecording start() {
+        return new TempFileRecording();
+    }
+
+    /**
+     * Завершает запись создания файла.
+     *
+     * @param file Созданный файл.
+     * @return Тот же файл.
+     */
+    @NotNull
+    public File created(@NotNull File file) {
+        commit("Create", file.getPath(), 0, true);
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        if (startTime == 0 || !registry.isEnabled()) return file;
+        registry.counter(
+                "distribution_temp_files_created_total",
+                "Количество созданных временных файлов."
+        ).increment();
+        registry.histogram(
+                "distribution_temp_file_create_duration_seconds",
+                "Длительность создания временного файла."
+        ).observeNanos(System.nanoTime() - startTime);
+        return file;
+    }
+
+    /**
+     * Завершает запись удаления файла.
+     *
+     * @param sPath   Путь к файлу.
+     * @param size    Размер файла до удаления.
+     * @param success Удалён ли файл.
+     */
+    public void deleted(@NotNull String sPath, long size, boolean success) {
+        commit("Delete", sPath, size, success);
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        if (startTime == 0 || !registry.isEnabled()) return;
+        registry.counter(
+                "distribution_temp_files_deleted_total",
+                "Количество удалённых временных файлов.",
+                "result", success ? "success" : "failure"
+        ).increment();
+    }
+
+    private void commit(String sAction, String sPath, long size, boolean success) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.action = sAction;
+        event.path = sPath;
+        event.size = size;
+        event.success = success;
+        event.commit();
+    }
+}
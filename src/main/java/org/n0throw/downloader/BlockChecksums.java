@@ -0,0 +1,270 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.n0throw.utils.files.FileHashHelper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Контрольные суммы блоков файла для разностного скачивания (по принципу zsync).
+ * Издатель вычисляет их для нового дистрибутива ({@link #compute(Path)}) и публикует рядом с ним
+ * под именем с суффиксом {@value #FILE_SUFFIX}. Клиент находит такие же блоки в старой версии дистрибутива
+ * по скользящей и строгой сумме и скачивает только недостающие диапазоны.
+ * <p>
+ * Формат файла: сигнатура, размер блока, размер файла, количество блоков, SHA-256 файла и для каждого блока
+ * скользящая сумма (4 байта) и MD5 (16 байт).
+ */
+public final class BlockChecksums {
+    /**
+     * Суффикс файла контрольных сумм рядом с дистрибутивом.
+     */
+    @NonNls
+    public static final String FILE_SUFFIX = ".blocks";
+
+    /**
+     * Размер блока по умолчанию.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    /**
+     * Максимальный размер блока.
+     */
+    private static final int MAX_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * Сигнатура и версия формата файла.
+     */
+    private static final int MAGIC = 0x424C4B02;
+
+    /**
+     * Количество блоков, под которое память выделяется сразу при чтении. Остальная память выделяется
+     * по мере чтения, чтобы заголовок с огромным размером файла не приводил к выделению памяти без данных.
+     */
+    private static final int INITIAL_READ_BLOCKS = 64 * 1024;
+
+    /**
+     * Алгоритм строгой суммы блока.
+     */
+    @NonNls
+    static final String STRONG_ALGORITHM = "MD5";
+
+    /**
+     * Размер строгой суммы блока.
+     */
+    static final int STRONG_SIZE = 16;
+
+    /**
+     * Размер SHA-256 хеша.
+     */
+    private static final int SHA_256_SIZE = 32;
+
+    /**
+     * Размер блока.
+     */
+    private final int blockSize;
+
+    /**
+     * Размер файла.
+     */
+    private final long length;
+
+    /**
+     * SHA-256 хеш файла.
+     */
+    private final byte[] sha256;
+
+    /**
+     * Скользящие суммы блоков.
+     */
+    private final int[] rollingSums;
+
+    /**
+     * Строгие суммы блоков подряд.
+     */
+    private final byte[] strongSums;
+
+    private BlockChecksums(int blockSize, long length, byte[] sha256, int[] rollingSums, byte[] strongSums) {
+        this.blockSize = blockSize;
+        this.length = length;
+        this.sha256 = sha256;
+        this.rollingSums = rollingSums;
+        this.strongSums = strongSums;
+    }
+
+    /**
+     * Вычисляет контрольные суммы блоков файла с размером блока по умолчанию.
+     *
+     * @param file Файл.
+     * @return Контрольные суммы.
+     * @throws IOException Если не удалось прочитать файл.
+     */
+    @NotNull
+    public static BlockChecksums compute(@NotNull Path file) throws IOException {
+        return compute(file, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Вычисляет контрольные суммы блоков файла.
+     *
+     * @param file      Файл.
+     * @param blockSize Размер блока.
+     * @return Контрольные суммы.
+     * @throws IOException              Если не удалось прочитать файл.
+     * @throws IllegalArgumentException Если размер блока не положительный или слишком большой.
+     */
+    @NotNull
+    public static BlockChecksums compute(@NotNull Path file, int blockSize) throws IOException {
+        if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Некорректный размер блока: " + blockSize);
+        }
+        long length = Files.size(file);
+        int blockCount = getBlockCount(length, blockSize);
+        int[] rollingSums = new int[blockCount];
+        byte[] strongSums = new byte[blockCount * STRONG_SIZE];
+        MessageDigest fileDigest = FileHashHelper.createDigest(FileHashHelper.SHA_256);
+        MessageDigest blockDigest = FileHashHelper.createDigest(STRONG_ALGORITHM);
+        byte[] block = new byte[blockSize];
+        try (InputStream stream = Files.newInputStream(file)) {
+            for (int i = 0; i < blockCount; i++) {
+                int read = stream.readNBytes(block, 0, blockSize);
+                fileDigest.update(block, 0, read);
+                rollingSums[i] = RollingChecksum.of(blockSize, block, 0, read);
+                blockDigest.update(block, 0, read);
+                System.arraycopy(blockDigest.digest(), 0, strongSums, i * STRONG_SIZE, STRONG_SIZE);
+            }
+        }
+        return new BlockChecksums(blockSize, length, fileDigest.digest(), rollingSums, strongSums);
+    }
+
+    /**
+     * Читает контрольные суммы из потока.
+     *
+     * @param stream Поток файла контрольных сумм.
+     * @return Контрольные суммы.
+     * @throws IOException Если поток не содержит контрольные суммы в ожидаемом формате.
+     */
+    @NotNull
+    public static BlockChecksums read(@NotNull InputStream stream) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(stream));
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Неизвестный формат файла контрольных сумм блоков.");
+        }
+        int blockSize = input.readInt();
+        long length = input.readLong();
+        int blockCount = input.readInt();
+        // Размер файла и блока проверяются до деления, количество блоков - до выделения памяти
+        if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE || length < 0
+                || length / blockSize > Integer.MAX_VALUE / STRONG_SIZE
+                || blockCount != getBlockCount(length, blockSize)) {
+            throw new IOException("Некорректный заголовок файла контрольных сумм блоков.");
+        }
+        byte[] sha256 = new byte[SHA_256_SIZE];
+        input.readFully(sha256);
+        int capacity = Math.min(blockCount, INITIAL_READ_BLOCKS);
+        int[] rollingSums = new int[capacity];
+        byte[] strongSums = new byte[capacity * STRONG_SIZE];
+        for (int i = 0; i < blockCount; i++) {
+            if (i == capacity) {
+                capacity = (int) Math.min(blockCount, capacity * 2L);
+                rollingSums = Arrays.copyOf(rollingSums, capacity);
+                strongSums = Arrays.copyOf(strongSums, capacity * STRONG_SIZE);
+            }
+            rollingSums[i] = input.readInt();
+            input.readFully(strongSums, i * STRONG_SIZE, STRONG_SIZE);
+        }
+        return new BlockChecksums(blockSize, length, sha256, rollingSums, strongSums);
+    }
+
+    /**
+     * Записывает контрольные суммы в поток. Поток не закрывается.
+     *
+     * @param stream Поток.
+     * @throws IOException Если не удалось записать данные.
+     */
+    public void write(@NotNull OutputStream stream) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+        output.writeInt(MAGIC);
+        output.writeInt(blockSize);
+        output.writeLong(length);
+        output.writeInt(rollingSums.length);
+        output.write(sha256);
+        for (int i = 0; i < rollingSums.length; i++) {
+            output.writeInt(rollingSums[i]);
+            output.write(strongSums, i * STRONG_SIZE, STRONG_SIZE);
+        }
+        output.flush();
+    }
+
+    /**
+     * Возвращает путь до файла контрольных сумм, опубликованного рядом с дистрибутивом.
+     *
+     * @param url Путь до дистрибутива.
+     * @return Путь до файла контрольных сумм.
+     * @throws MalformedURLException Если путь не удалось построить.
+     */
+    @NotNull
+    public static URL getUrl(@NotNull URL url) throws MalformedURLException {
+        return new URL(url, url.getPath() + FILE_SUFFIX);
+    }
+
+    /**
+     * Возвращает размер блока.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Возвращает размер файла.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Возвращает количество блоков (последний блок может быть неполным).
+     */
+    public int getBlockCount() {
+        return rollingSums.length;
+    }
+
+    /**
+     * Возвращает SHA-256 хеш файла в шестнадцатеричном виде.
+     */
+    @NotNull
+    public String getSha256() {
+        return FileHashHelper.toHex(sha256);
+    }
+
+    /**
+     * Возвращает скользящую сумму блока.
+     */
+    int getRollingSum(int block) {
+        return rollingSums[block];
+    }
+
+    /**
+     * Сравнивает строгую сумму блока с вычисленной.
+     */
+    boolean isStrongSumEqual(int block, byte[] digest) {
+        int offset = block * STRONG_SIZE;
+        return Arrays.equals(strongSums, offset, offset + STRONG_SIZE, digest, 0, STRONG_SIZE);
+    }
+
+    private static int getBlockCount(long length, int blockSize) {
+        return (int) (length / blockSize + (length % blockSize == 0 ? 0 : 1));
+    }
+}
@@ -0,0 +1,101 @@
+package org.n0throw.downloader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Диапазон байт файла (границы включительно).
+ */
+public final class ByteRange {
+    /**
+     * Позиция первого байта диапазона.
+     */
+    private final long start;
+
+    /**
+     * Позиция последнего байта диапазона.
+     */
+    private final long end;
+
+    /**
+     * @param start Позиция первого байта диапазона.
+     * @param end   Позиция последнего байта диапазона.
+     * @throws IllegalArgumentException Если границы диапазона некорректны.
+     */
+    public ByteRange(long start, long end) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Некорректный диапазон байт: " + start + "-" + end);
+        }
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Разбивает файл на равные по размеру диапазоны.
+     *
+     * @param length Размер файла.
+     * @param count  Количество диапазонов.
+     * @return Список диапазонов, покрывающих весь файл.
+     */
+    public static List<ByteRange> split(long length, int count) {
+        if (length <= 0 || count <= 0) {
+            throw new IllegalArgumentException("Некорректные параметры разбиения: " + length + "/" + count);
+        }
+        final int rangeCount = (int) Math.min(count, length);
+        final long rangeSize = length / rangeCount;
+        List<ByteRange> ranges = new ArrayList<>(rangeCount);
+        long start = 0;
+        for (int i = 0; i < rangeCount; i++) {
+            long end = i == rangeCount - 1 ? length - 1 : start + rangeSize - 1;
+            ranges.add(new ByteRange(start, end));
+            start = end + 1;
+        }
+        return ranges;
+    }
+
+    /**
+     * Возвращает позицию первого байта диапазона.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Возвращает позицию последнего байта диапазона.
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Возвращает количество байт в диапазоне.
+     */
+    public long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * Возвращает значение заголовка Range для HTTP запроса.
+     */
+    public String toHeaderValue() {
+        return "bytes=" + start + "-" + end;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ByteRange)) return false;
+        ByteRange other = (ByteRange) o;
+        return start == other.start && end == other.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(start) * 31 + Long.hashCode(end);
+    }
+
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+}
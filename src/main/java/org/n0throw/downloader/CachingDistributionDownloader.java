@@ -0,0 +1,158 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.cache.CacheEntry;
+import org.n0throw.cache.DistributionCache;
+import org.n0throw.utils.files.TempFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Класс для скачивания дистрибутивов через локальный кэш.
+ * Оборачивает любой загрузчик: если закэшированная копия актуальна, то дистрибутив берётся из кэша,
+ * иначе скачивается исходным загрузчиком и помещается в кэш.
+ * Актуальность проверяется загрузчиком, если он реализует {@link IResourceVersionProvider}.
+ * Если закэшированная копия устарела, а загрузчик реализует {@link IDeltaDistributionDownloader},
+ * то новая версия скачивается разностно относительно закэшированной.
+ */
+public class CachingDistributionDownloader implements IDistributionDownloader {
+    /**
+     * Исходный загрузчик.
+     */
+    private final IDistributionDownloader downloader;
+
+    /**
+     * Кэш дистрибутивов.
+     */
+    private final DistributionCache cache;
+
+    /**
+     * @param downloader Исходный загрузчик.
+     * @param cache      Кэш дистрибутивов.
+     */
+    public CachingDistributionDownloader(
+            @NotNull IDistributionDownloader downloader,
+            @NotNull DistributionCache cache
+    ) {
+        this.downloader = downloader;
+        this.cache = cache;
+    }
+
+    /**
+     * Скачивает дистрибутив или берёт его из кэша, если закэшированная копия актуальна.
+     *
+     * @param url           Путь до дистрибутива.
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла.
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Файл дистрибутива. Файл может быть жёсткой ссылкой на кэш, изменять его нельзя.
+     * @throws IOException              Если не удалось создать файл или скачать дистрибутив.
+     * @throws IllegalArgumentException Если наименование файла содержит неразрешённые символы.
+     * @throws SecurityException        Если нет прав на создание файла.
+     */
+    @Override
+    public File download(
+            URL url,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        String sUrl = url.toString();
+        CacheEntry entry = cache.get(sUrl);
+        ResourceVersion known = entry != null ? entry.getVersion() : null;
+        ResourceVersion current = getVersion(url, known);
+
+        if (entry != null && isFresh(known, current)) {
+            final File tempFile = TempFile.createEmptyFile(sFileName, sFileExt, sResolvePaths);
+            try {
+                TempFile.reserve(tempFile, entry.getSize());
+                cache.copyTo(entry, tempFile.toPath());
+                return tempFile;
+            } catch (NoSuchFileException e) {
+                // todo slf4j: содержимое вытеснено из кэша другим потоком, дистрибутив скачивается заново
+                TempFile.delete(tempFile);
+                entry = null;
+            } catch (IOException e) {
+                TempFile.delete(tempFile);
+                throw e;
+            }
+        }
+
+        // Версия запрашивается до скачивания: если ресурс изменится во время скачивания,
+        // то при следующей проверке версия не совпадёт и дистрибутив будет скачан заново.
+        final File file = downloadChanged(url, entry, sFileName, sFileExt, sResolvePaths);
+        CacheEntry stored = cache.put(sUrl, current, file.toPath());
+        try {
+            cache.copyTo(stored, file.toPath());
+        } catch (NoSuchFileException e) {
+            // todo slf4j: содержимое вытеснено из кэша сразу после помещения, дистрибутив скачивается без кэша
+            return downloader.download(url, sFileName, sFileExt, sResolvePaths);
+        }
+        return file;
+    }
+
+    /**
+     * Открывает поток дистрибутива исходным загрузчиком, минуя кэш.
+     *
+     * @param url Путь до дистрибутива.
+     * @return Поток дистрибутива.
+     * @throws IOException Если не удалось подключиться к источнику.
+     */
+    @Override
+    public InputStream openStream(URL url) throws IOException {
+        return downloader.openStream(url);
+    }
+
+    /**
+     * Возвращает кэш дистрибутивов.
+     */
+    @NotNull
+    public DistributionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Скачивает изменившийся дистрибутив: разностно, если есть устаревшая копия и загрузчик это умеет, иначе целиком.
+     */
+    private File downloadChanged(
+            URL url,
+            @Nullable CacheEntry stale,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        if (stale != null && downloader instanceof IDeltaDistributionDownloader) {
+            Path basis = cache.findByHash(stale.getHash());
+            if (basis != null) {
+                return ((IDeltaDistributionDownloader) downloader)
+                        .downloadDelta(url, basis, sFileName, sFileExt, sResolvePaths);
+            }
+        }
+        return downloader.download(url, sFileName, sFileExt, sResolvePaths);
+    }
+
+    /**
+     * Возвращает текущую версию ресурса, если исходный загрузчик умеет её получать.
+     */
+    @Nullable
+    private ResourceVersion getVersion(URL url, @Nullable ResourceVersion known) throws IOException {
+        if (downloader instanceof IResourceVersionProvider) {
+            return ((IResourceVersionProvider) downloader).getVersion(url, known);
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает флаг, что закэшированная версия совпадает с текущей.
+     */
+    private static boolean isFresh(@Nullable ResourceVersion known, @Nullable ResourceVersion current) {
+        return known != null && known.isComparable() && known.equals(current);
+    }
+}
@@ -0,0 +1,357 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Потоковая распаковка содержимого HTTP ответа (Content-Encoding gzip или deflate) по мере получения порций.
+ * Распакованные данные отдаются получателю сразу, поэтому сжатый ответ никогда не хранится целиком.
+ * Deflate принимается как в обёртке zlib (по RFC 9110), так и без неё (так отвечают некоторые серверы).
+ */
+final class ContentDecoder {
+    /**
+     * Значение заголовка Accept-Encoding: поддерживаемые способы сжатия.
+     * Zstd и brotli не объявляются: в JDK нет их распаковки.
+     */
+    @NonNls
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    /**
+     * Размер буфера распакованных данных.
+     */
+    private static final int OUTPUT_SIZE = 64 * 1024;
+
+    /**
+     * Размер обязательной части заголовка gzip.
+     */
+    private static final int GZIP_HEADER_SIZE = 10;
+
+    /**
+     * Размер окончания gzip (CRC32 и размер распакованных данных).
+     */
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private static final int FLAG_HCRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+
+    /**
+     * Получатель распакованных данных.
+     */
+    interface IOutput {
+        /**
+         * @param buffer Распакованные данные (должны быть прочитаны целиком).
+         * @throws IOException Если не удалось записать данные.
+         */
+        void write(@NotNull ByteBuffer buffer) throws IOException;
+    }
+
+    /**
+     * Этап разбора потока.
+     */
+    private enum State {
+        Header,
+        Body,
+        Trailer,
+        Done
+    }
+
+    /**
+     * Флаг, что содержимое в формате gzip (иначе deflate).
+     */
+    private final boolean gzip;
+
+    private final CRC32 crc = new CRC32();
+
+    private final ByteBuffer output = ByteBuffer.allocate(OUTPUT_SIZE);
+
+    /**
+     * Обязательная часть заголовка gzip, первые байты deflate или окончание gzip.
+     */
+    private final byte[] header = new byte[Math.max(GZIP_HEADER_SIZE, GZIP_TRAILER_SIZE)];
+
+    /**
+     * Двухбайтовое поле заголовка gzip (длина дополнительного поля или CRC16 заголовка).
+     */
+    private final byte[] field = new byte[2];
+
+    /**
+     * Количество прочитанных байт поля заголовка.
+     */
+    private int fieldCount;
+
+    private Inflater inflater;
+
+    private State state = State.Header;
+
+    /**
+     * Количество прочитанных байт текущей части заголовка или окончания.
+     */
+    private int headerCount;
+
+    /**
+     * Флаги заголовка gzip, ещё не разобранные полностью.
+     */
+    private int pendingFlags;
+
+    /**
+     * Количество байт дополнительного поля gzip, которые нужно пропустить (-1, если длина ещё не прочитана).
+     */
+    private int extraRemaining = -1;
+
+    /**
+     * Количество распакованных байт текущей части gzip.
+     */
+    private long memberSize;
+
+    private ContentDecoder(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * Создаёт распаковку для значения заголовка Content-Encoding.
+     *
+     * @param sEncoding Значение заголовка Content-Encoding (null, если заголовка нет).
+     * @return Распаковка (null, если содержимое не сжато).
+     * @throws IOException Если способ сжатия не поддерживается.
+     */
+    @Nullable
+    static ContentDecoder create(@Nullable String sEncoding) throws IOException {
+        if (sEncoding == null) return null;
+        return switch (sEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "", "identity" -> null;
+            case "gzip", "x-gzip" -> new ContentDecoder(true);
+            case "deflate" -> new ContentDecoder(false);
+            default -> throw new IOException("Неподдерживаемое сжатие содержимого: " + sEncoding);
+        };
+    }
+
+    /**
+     * Оборачивает поток содержимого в распаковку по значению заголовка Content-Encoding.
+     *
+     * @param stream    Поток содержимого.
+     * @param sEncoding Значение заголовка Content-Encoding (null, если заголовка нет).
+     * @return Поток распакованного содержимого (тот же поток, если содержимое не сжато).
+     * @throws IOException Если способ сжатия не поддерживается или заголовок gzip повреждён.
+     */
+    @NotNull
+    static InputStream decode(@NotNull InputStream stream, @Nullable String sEncoding) throws IOException {
+        ContentDecoder decoder = create(sEncoding);
+        if (decoder == null) return stream;
+        if (decoder.gzip) return new GZIPInputStream(stream, OUTPUT_SIZE);
+
+        BufferedInputStream bufferedStream = new BufferedInputStream(stream, OUTPUT_SIZE);
+        bufferedStream.mark(2);
+        int first = bufferedStream.read();
+        int second = bufferedStream.read();
+        bufferedStream.reset();
+        Inflater inflater = new Inflater(!isZlib(first, second));
+        return new InflaterInputStream(bufferedStream, inflater, OUTPUT_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Распаковывает очередную порцию сжатого содержимого.
+     *
+     * @param input Порция сжатого содержимого (читается целиком).
+     * @param out   Получатель распакованных данных.
+     * @throws IOException Если содержимое повреждено или получатель не смог записать данные.
+     */
+    void decode(@NotNull ByteBuffer input, @NotNull IOutput out) throws IOException {
+        while (input.hasRemaining()) {
+            switch (state) {
+                case Header -> {
+                    if (gzip) {
+                        readGzipHeader(input);
+                    } else {
+                        readDeflateHeader(input, out);
+                    }
+                }
+                case Body -> inflate(input, out);
+                case Trailer -> readGzipTrailer(input);
+                case Done -> {
+                    if (gzip) {
+                        // Следующая часть gzip потока из нескольких частей
+                        state = State.Header;
+                        inflater.reset();
+                        crc.reset();
+                        memberSize = 0;
+                    } else {
+                        input.position(input.limit());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что сжатое содержимое получено полностью, и освобождает распаковку.
+     *
+     * @throws IOException Если содержимое оборвалось.
+     */
+    void finish() throws IOException {
+        try {
+            if (state != State.Done) {
+                throw new EOFException("Сжатое содержимое оборвалось.");
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Освобождает распаковку без проверки полноты содержимого.
+     */
+    void close() {
+        if (inflater != null) inflater.end();
+    }
+
+    private void readGzipHeader(ByteBuffer input) throws IOException {
+        while (headerCount < GZIP_HEADER_SIZE) {
+            if (!input.hasRemaining()) return;
+            header[headerCount++] = input.get();
+            if (headerCount == GZIP_HEADER_SIZE) {
+                if ((header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B || header[2] != 8) {
+                    throw new ZipException("Содержимое не является gzip потоком.");
+                }
+                pendingFlags = header[3] & 0xFF;
+            }
+        }
+        if ((pendingFlags & FLAG_EXTRA) != 0) {
+            if (extraRemaining == -1) {
+                if (!readField(input)) return;
+                extraRemaining = (field[0] & 0xFF) | (field[1] & 0xFF) << 8;
+            }
+            int skip = Math.min(extraRemaining, input.remaining());
+            input.position(input.position() + skip);
+            extraRemaining -= skip;
+            if (extraRemaining > 0) return;
+            pendingFlags &= ~FLAG_EXTRA;
+            extraRemaining = -1;
+        }
+        if ((pendingFlags & FLAG_NAME) != 0) {
+            if (!skipZeroTerminated(input)) return;
+            pendingFlags &= ~FLAG_NAME;
+        }
+        if ((pendingFlags & FLAG_COMMENT) != 0) {
+            if (!skipZeroTerminated(input)) return;
+            pendingFlags &= ~FLAG_COMMENT;
+        }
+        if ((pendingFlags & FLAG_HCRC) != 0) {
+            if (!readField(input)) return;
+            pendingFlags &= ~FLAG_HCRC;
+        }
+        if (inflater == null) inflater = new Inflater(true);
+        headerCount = 0;
+        state = State.Body;
+    }
+
+    private void readDeflateHeader(ByteBuffer input, IOutput out) throws IOException {
+        while (headerCount < 2 && input.hasRemaining()) {
+            header[headerCount++] = input.get();
+        }
+        if (headerCount < 2) return;
+        inflater = new Inflater(!isZlib(header[0] & 0xFF, header[1] & 0xFF));
+        state = State.Body;
+        inflate(ByteBuffer.wrap(header, 0, 2), out);
+        headerCount = 0;
+    }
+
+    private void readGzipTrailer(ByteBuffer input) throws IOException {
+        while (headerCount < GZIP_TRAILER_SIZE) {
+            if (!input.hasRemaining()) return;
+            header[headerCount++] = input.get();
+        }
+        headerCount = 0;
+        long expectedCrc = readIntLe(0) & 0xFFFFFFFFL;
+        long expectedSize = readIntLe(4) & 0xFFFFFFFFL;
+        if (expectedCrc != crc.getValue() || expectedSize != (memberSize & 0xFFFFFFFFL)) {
+            throw new ZipException("Контрольная сумма сжатого содержимого не совпала.");
+        }
+        state = State.Done;
+    }
+
+    private void inflate(ByteBuffer input, IOutput out) throws IOException {
+        inflater.setInput(input);
+        try {
+            while (true) {
+                int count = inflater.inflate(output);
+                if (count > 0) {
+                    output.flip();
+                    if (gzip) crc.update(output.duplicate());
+                    memberSize += count;
+                    out.write(output);
+                    output.clear();
+                }
+                if (inflater.finished()) {
+                    state = gzip ? State.Trailer : State.Done;
+                    return;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Сжатое содержимое требует словарь.");
+                }
+                if (count == 0 && inflater.needsInput()) return;
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Сжатое содержимое повреждено: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Читает двухбайтовое поле заголовка gzip в {@link #field}.
+     *
+     * @return Флаг, прочитано ли поле полностью.
+     */
+    private boolean readField(ByteBuffer input) {
+        while (fieldCount < field.length) {
+            if (!input.hasRemaining()) return false;
+            field[fieldCount++] = input.get();
+        }
+        fieldCount = 0;
+        return true;
+    }
+
+    private static boolean skipZeroTerminated(ByteBuffer input) {
+        while (input.hasRemaining()) {
+            if (input.get() == 0) return true;
+        }
+        return false;
+    }
+
+    private int readIntLe(int offset) {
+        return (header[offset] & 0xFF)
+                | (header[offset + 1] & 0xFF) << 8
+                | (header[offset + 2] & 0xFF) << 16
+                | (header[offset + 3] & 0xFF) << 24;
+    }
+
+    /**
+     * Проверяет, что первые два байта deflate являются заголовком zlib.
+     */
+    private static boolean isZlib(int first, int second) {
+        return first >= 0 && second >= 0 && (first & 0x0F) == 8 && (first >> 4) <= 7 && ((first << 8) | second) % 31 == 0;
+    }
+}
@@ -0,0 +1,266 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NotNull;
+import org.n0throw.utils.files.FileHashHelper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * План разностного скачивания: какие блоки новой версии есть в старой (и где), а какие нужно скачать.
+ * Старая версия просматривается окном размером в блок со скользящей суммой; при совпадении скользящей суммы
+ * блок сверяется по строгой сумме, и окно перескакивает на следующий блок.
+ */
+final class DeltaPlan {
+    /**
+     * Разрыв между недостающими диапазонами, при котором они скачиваются одним запросом.
+     */
+    static final long RANGE_MERGE_GAP = 64 * 1024;
+
+    /**
+     * Размер буфера чтения старой версии.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Контрольные суммы новой версии.
+     */
+    private final BlockChecksums checksums;
+
+    /**
+     * Смещение блока новой версии в старой версии (-1, если блок нужно скачать).
+     */
+    private final long[] sourceOffsets;
+
+    private DeltaPlan(BlockChecksums checksums, long[] sourceOffsets) {
+        this.checksums = checksums;
+        this.sourceOffsets = sourceOffsets;
+    }
+
+    /**
+     * Находит блоки новой версии в старой версии файла.
+     * Неполный последний блок всегда скачивается.
+     *
+     * @param checksums Контрольные суммы новой версии.
+     * @param basis     Старая версия файла.
+     * @return План скачивания.
+     * @throws IOException Если не удалось прочитать старую версию.
+     */
+    @NotNull
+    static DeltaPlan match(@NotNull BlockChecksums checksums, @NotNull Path basis) throws IOException {
+        int blockSize = checksums.getBlockSize();
+        long[] sourceOffsets = new long[checksums.getBlockCount()];
+        Arrays.fill(sourceOffsets, -1);
+        int fullBlocks = (int) (checksums.getLength() / blockSize);
+        if (fullBlocks == 0) return new DeltaPlan(checksums, sourceOffsets);
+
+        // Хеш-таблица блоков по скользящей сумме: цепочки через next, без упаковки в объекты
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, fullBlocks * 2 - 1));
+        int[] heads = new int[1 << bits];
+        Arrays.fill(heads, -1);
+        int[] next = new int[fullBlocks];
+        for (int i = fullBlocks - 1; i >= 0; i--) {
+            int slot = hash(checksums.getRollingSum(i), bits);
+            next[i] = heads[slot];
+            heads[slot] = i;
+        }
+
+        MessageDigest digest = FileHashHelper.createDigest(BlockChecksums.STRONG_ALGORITHM);
+        byte[] window = new byte[blockSize];
+        byte[] strong = new byte[BlockChecksums.STRONG_SIZE];
+        RollingChecksum rolling = new RollingChecksum(blockSize);
+        int remaining = fullBlocks;
+        try (BasisReader reader = new BasisReader(Files.newInputStream(basis))) {
+            if (!reader.fill(window)) return new DeltaPlan(checksums, sourceOffsets);
+            rolling.update(window, 0, blockSize, 0);
+            long position = 0;
+            int head = 0;
+            while (remaining > 0) {
+                int sum = rolling.getValue();
+                boolean matched = false;
+                boolean digested = false;
+                for (int i = heads[hash(sum, bits)]; i != -1; i = next[i]) {
+                    if (sourceOffsets[i] != -1 || checksums.getRollingSum(i) != sum) continue;
+                    if (!digested) {
+                        digest.update(window, head, blockSize - head);
+                        digest.update(window, 0, head);
+                        System.arraycopy(digest.digest(), 0, strong, 0, strong.length);
+                        digested = true;
+                    }
+                    if (checksums.isStrongSumEqual(i, strong)) {
+                        sourceOffsets[i] = position;
+                        remaining--;
+                        matched = true;
+                    }
+                }
+
+                if (matched) {
+                    // Совпавший блок не может пересекаться со следующим совпадением: перескакиваем через него
+                    if (!reader.fill(window)) break;
+                    head = 0;
+                    position += blockSize;
+                    rolling.reset();
+                    rolling.update(window, 0, blockSize, 0);
+                } else {
+                    int value = reader.read();
+                    if (value == -1) break;
+                    byte out = window[head];
+                    window[head] = (byte) value;
+                    head = head + 1 == blockSize ? 0 : head + 1;
+                    position++;
+                    rolling.roll(out, (byte) value);
+                }
+            }
+        }
+        return new DeltaPlan(checksums, sourceOffsets);
+    }
+
+    /**
+     * Возвращает объём данных, который берётся из старой версии.
+     */
+    long getReusedBytes() {
+        long reused = 0;
+        for (long offset : sourceOffsets) {
+            if (offset != -1) reused += checksums.getBlockSize();
+        }
+        return reused;
+    }
+
+    /**
+     * Возвращает диапазоны, которые нужно скачать. Диапазоны с небольшим разрывом объединяются,
+     * данные разрыва скачиваются повторно (они совпадают со скопированными).
+     */
+    @NotNull
+    List<ByteRange> getMissingRanges() {
+        List<ByteRange> ranges = new ArrayList<>();
+        long blockSize = checksums.getBlockSize();
+        long start = -1;
+        long end = -1;
+        for (int i = 0; i < sourceOffsets.length; i++) {
+            if (sourceOffsets[i] != -1) continue;
+            long blockStart = i * blockSize;
+            long blockEnd = Math.min(checksums.getLength(), blockStart + blockSize) - 1;
+            if (start != -1 && blockStart - end - 1 <= RANGE_MERGE_GAP) {
+                end = blockEnd;
+                continue;
+            }
+            if (start != -1) ranges.add(new ByteRange(start, end));
+            start = blockStart;
+            end = blockEnd;
+        }
+        if (start != -1) ranges.add(new ByteRange(start, end));
+        return ranges;
+    }
+
+    /**
+     * Копирует найденные блоки из старой версии в новый файл. Подряд идущие блоки копируются одной операцией.
+     *
+     * @param basis  Старая версия файла.
+     * @param target Канал нового файла.
+     * @throws IOException Если не удалось прочитать или записать данные.
+     */
+    void copyReused(@NotNull Path basis, @NotNull FileChannel target) throws IOException {
+        long blockSize = checksums.getBlockSize();
+        try (FileChannel source = FileChannel.open(basis, StandardOpenOption.READ)) {
+            int i = 0;
+            while (i < sourceOffsets.length) {
+                if (sourceOffsets[i] == -1) {
+                    i++;
+                    continue;
+                }
+                int first = i;
+                while (i + 1 < sourceOffsets.length && sourceOffsets[i + 1] != -1
+                        && sourceOffsets[i + 1] == sourceOffsets[i] + blockSize) {
+                    i++;
+                }
+                long count = (i - first + 1) * blockSize;
+                long sourcePosition = sourceOffsets[first];
+                long targetPosition = first * blockSize;
+                while (count > 0) {
+                    // transferFrom не пишет за концом файла, а новый файл ещё пустой
+                    target.position(targetPosition);
+                    long transferred = source.transferTo(sourcePosition, count, target);
+                    if (transferred <= 0) {
+                        throw new IOException("Не удалось скопировать блоки из старой версии файла " + basis);
+                    }
+                    sourcePosition += transferred;
+                    targetPosition += transferred;
+                    count -= transferred;
+                }
+                i++;
+            }
+        }
+    }
+
+    private static int hash(int sum, int bits) {
+        return (sum * 0x9E3779B1) >>> (32 - bits);
+    }
+
+    /**
+     * Побайтовое чтение старой версии через собственный буфер (без синхронизации {@link java.io.BufferedInputStream}).
+     */
+    private static final class BasisReader implements AutoCloseable {
+        private final InputStream stream;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int limit;
+
+        BasisReader(InputStream stream) {
+            this.stream = stream;
+        }
+
+        /**
+         * Читает следующий байт.
+         *
+         * @return Байт (-1, если данные закончились).
+         */
+        int read() throws IOException {
+            if (position == limit) {
+                limit = stream.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        /**
+         * Заполняет массив целиком.
+         *
+         * @return Флаг, хватило ли данных.
+         */
+        boolean fill(byte[] target) throws IOException {
+            int filled = 0;
+            while (filled < target.length) {
+                if (position == limit) {
+                    limit = stream.read(buffer);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return false;
+                    }
+                }
+                int count = Math.min(target.length - filled, limit - position);
+                System.arraycopy(buffer, position, target, filled, count);
+                position += count;
+                filled += count;
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.utils.files.FileHashHelper;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Журнал частично скачанного файла.
+ * Хранится рядом с файлом и содержит сведения о ресурсе и уже скачанные диапазоны байт,
+ * что позволяет продолжить скачивание после обрыва соединения или перезапуска JVM.
+ */
+final class DownloadJournal {
+    /**
+     * Расширение частично скачанного файла.
+     */
+    static final String PART_EXTENSION = ".part";
+
+    /**
+     * Расширение файла журнала.
+     */
+    static final String JOURNAL_EXTENSION = ".journal";
+
+    /**
+     * Время без изменений, после которого частично скачанный файл и его журнал считаются брошенными.
+     */
+    static final Duration ABANDONED_AGE = Duration.ofDays(7);
+
+    /**
+     * Путь к частично скачанному файлу.
+     */
+    private final Path partPath;
+
+    /**
+     * Путь к файлу журнала.
+     */
+    private final Path path;
+
+    /**
+     * Путь до ресурса.
+     */
+    private final String sUrl;
+
+    /**
+     * Значение заголовка ETag ресурса.
+     */
+    @Nullable
+    private final String eTag;
+
+    /**
+     * Значение заголовка Last-Modified ресурса.
+     */
+    @Nullable
+    private final String lastModified;
+
+    /**
+     * Размер ресурса.
+     */
+    private final long length;
+
+    /**
+     * Скачанные диапазоны: позиция первого байта -> позиция последнего байта.
+     * Соседние и пересекающиеся диапазоны объединяются.
+     */
+    private final TreeMap<Long, Long> completed = new TreeMap<>();
+
+    private DownloadJournal(Path partPath, Path path, String sUrl, HttpResourceInfo info) {
+        this.partPath = partPath;
+        this.path = path;
+        this.sUrl = sUrl;
+        this.eTag = info.getETag();
+        this.lastModified = info.getLastModified();
+        this.length = info.getLength();
+    }
+
+    /**
+     * Возвращает путь к частично скачанному файлу для ресурса.
+     *
+     * @param directory Папка для частично скачанных файлов.
+     * @param url       Путь до ресурса.
+     * @param sFileName Наименование файла.
+     */
+    static Path getPartPath(Path directory, URL url, String sFileName) {
+        return directory.resolve(sFileName + "-" + hash(url.toString()) + PART_EXTENSION);
+    }
+
+    /**
+     * Открывает журнал для частично скачанного файла.
+     * Если журнал отсутствует или описывает другую версию ресурса, то частично скачанный файл удаляется
+     * и создаётся пустой журнал.
+     *
+     * @param partPath Путь к частично скачанному файлу.
+     * @param url      Путь до ресурса.
+     * @param info     Актуальные сведения о ресурсе.
+     * @return Журнал.
+     * @throws IOException Если не удалось прочитать журнал или удалить устаревший файл.
+     */
+    static DownloadJournal open(Path partPath, URL url, HttpResourceInfo info) throws IOException {
+        Path journalPath = partPath.resolveSibling(partPath.getFileName() + JOURNAL_EXTENSION);
+        DownloadJournal journal = new DownloadJournal(partPath, journalPath, url.toString(), info);
+        if (Files.exists(journalPath) && Files.exists(partPath)) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            if (journal.matches(properties)) {
+                journal.parseRanges(properties.getProperty("ranges", ""));
+                return journal;
+            }
+        }
+        Files.deleteIfExists(partPath);
+        Files.deleteIfExists(journalPath);
+        return journal;
+    }
+
+    /**
+     * Отмечает диапазон как скачанный. Данные диапазона уже должны быть сброшены на диск.
+     *
+     * @param range Скачанный диапазон.
+     */
+    synchronized void markCompleted(@NotNull ByteRange range) {
+        long start = range.getStart();
+        long end = range.getEnd();
+        Map.Entry<Long, Long> floor = completed.floorEntry(start);
+        if (floor != null && floor.getValue() >= start - 1) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+        }
+        Map.Entry<Long, Long> next = completed.ceilingEntry(start);
+        while (next != null && next.getKey() <= end + 1) {
+            end = Math.max(end, next.getValue());
+            completed.remove(next.getKey());
+            next = completed.ceilingEntry(start);
+        }
+        completed.put(start, end);
+    }
+
+    /**
+     * Возвращает диапазоны, которые ещё не скачаны.
+     */
+    synchronized List<ByteRange> getMissingRanges() {
+        List<ByteRange> missing = new ArrayList<>();
+        long position = 0;
+        for (Map.Entry<Long, Long> entry : completed.entrySet()) {
+            if (entry.getKey() > position) {
+                missing.add(new ByteRange(position, entry.getKey() - 1));
+            }
+            position = Math.max(position, entry.getValue() + 1);
+        }
+        if (position < length) {
+            missing.add(new ByteRange(position, length - 1));
+        }
+        return missing;
+    }
+
+    /**
+     * Возвращает количество уже скачанных байт.
+     */
+    synchronized long getCompletedLength() {
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : completed.entrySet()) {
+            total += entry.getValue() - entry.getKey() + 1;
+        }
+        return total;
+    }
+
+    /**
+     * Возвращает флаг, скачан ли ресурс полностью.
+     */
+    boolean isComplete() {
+        return getMissingRanges().isEmpty();
+    }
+
+    /**
+     * Атомарно сохраняет журнал на диск.
+     *
+     * @throws IOException Если не удалось записать журнал.
+     */
+    synchronized void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", sUrl);
+        properties.setProperty("length", Long.toString(length));
+        if (eTag != null) properties.setProperty("etag", eTag);
+        if (lastModified != null) properties.setProperty("lastModified", lastModified);
+        StringBuilder ranges = new StringBuilder();
+        for (Map.Entry<Long, Long> entry : completed.entrySet()) {
+            if (ranges.length() > 0) ranges.append(',');
+            ranges.append(entry.getKey()).append('-').append(entry.getValue());
+        }
+        properties.setProperty("ranges", ranges.toString());
+
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Удаляет файл журнала.
+     *
+     * @throws IOException Если не удалось удалить журнал.
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Удаляет частично скачанный файл вместе с журналом, чтобы следующее скачивание началось с нуля.
+     *
+     * @throws IOException Если не удалось удалить файлы.
+     */
+    synchronized void discard() throws IOException {
+        completed.clear();
+        Files.deleteIfExists(partPath);
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Удаляет из папки частично скачанные файлы и журналы, которые не изменялись дольше {@link #ABANDONED_AGE}.
+     * Такие файлы остаются от скачиваний, которые так и не были продолжены, и не попадают в журналы временных
+     * файлов процессов, потому что должны переживать перезапуск JVM.
+     *
+     * @param directory Папка частично скачанных файлов.
+     * @param current   Частично скачанный файл текущего скачивания (не удаляется).
+     */
+    static void deleteAbandoned(Path directory, Path current) {
+        long threshold = System.currentTimeMillis() - ABANDONED_AGE.toMillis();
+        String sCurrent = current.getFileName().toString();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + PART_EXTENSION + "*")) {
+            for (Path file : paths) {
+                String sName = file.getFileName().toString();
+                if (sName.startsWith(sCurrent)) continue;
+                if (!sName.endsWith(PART_EXTENSION)
+                        && !sName.endsWith(PART_EXTENSION + JOURNAL_EXTENSION)
+                        && !sName.endsWith(PART_EXTENSION + JOURNAL_EXTENSION + ".tmp")) {
+                    continue;
+                }
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < threshold) Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // todo slf4j
+                }
+            }
+        } catch (IOException e) {
+            // todo slf4j
+        }
+    }
+
+    /**
+     * Проверяет, что сохранённый журнал относится к той же версии ресурса.
+     */
+    private boolean matches(Properties properties) {
+        return sUrl.equals(properties.getProperty("url"))
+                && Long.toString(length).equals(properties.getProperty("length"))
+                && Objects.equals(eTag, properties.getProperty("etag"))
+                && Objects.equals(lastModified, properties.getProperty("lastModified"));
+    }
+
+    /**
+     * Разбирает сохранённые диапазоны вида "0-99,200-299".
+     */
+    private void parseRanges(String sRanges) {
+        for (String sRange : sRanges.split(",")) {
+            int separatorIndex = sRange.indexOf('-');
+            if (separatorIndex <= 0) continue;
+            try {
+                long start = Long.parseLong(sRange.substring(0, separatorIndex).trim());
+                long end = Long.parseLong(sRange.substring(separatorIndex + 1).trim());
+                if (end < length) markCompleted(new ByteRange(start, end));
+            } catch (IllegalArgumentException e) {
+                // Повреждённый диапазон будет скачан заново.
+            }
+        }
+    }
+
+    /**
+     * Возвращает короткий хеш строки для имени файла.
+     */
+    private static String hash(String sValue) {
+        byte[] digest = FileHashHelper.createDigest(FileHashHelper.SHA_256).digest(sValue.getBytes(StandardCharsets.UTF_8));
+        return FileHashHelper.toHex(digest).substring(0, 16);
+    }
+}
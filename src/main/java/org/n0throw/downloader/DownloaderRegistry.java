@@ -0,0 +1,288 @@
+package org.n0throw.downloader;
+
+import jcifs.smb.NtlmPasswordAuthentication;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.progress.IProgressListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLStreamHandler;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Реестр загрузчиков по схеме URL (http, https, smb, file и пользовательские схемы).
+ * Загрузчик схемы и обработчик её URL создаются при первом обращении к схеме и дальше переиспользуются,
+ * поэтому, например, классы jcifs не загружаются, пока не встретится первый smb URL.
+ * <p>
+ * Сам реестр тоже является загрузчиком и передаёт скачивание и получение версии ресурса загрузчику схемы.
+ * Остальные возможности загрузчика (например, {@link IDeltaDistributionDownloader}) доступны через
+ * {@link #get(URL)}.
+ */
+public final class DownloaderRegistry implements IDistributionDownloader, IResourceVersionProvider {
+    /**
+     * Общий реестр со встроенными схемами.
+     */
+    private static final DownloaderRegistry instance = createDefault();
+
+    /**
+     * Фабрики загрузчиков по схеме (в нижнем регистре).
+     */
+    private final Map<String, Supplier<? extends IDistributionDownloader>> factories = new ConcurrentHashMap<>();
+
+    /**
+     * Созданные загрузчики по схеме.
+     */
+    private final Map<String, IDistributionDownloader> downloaders = new ConcurrentHashMap<>();
+
+    /**
+     * Фабрики обработчиков URL для схем, которые не поддерживаются JDK.
+     */
+    private final Map<String, Supplier<? extends URLStreamHandler>> handlerFactories = new ConcurrentHashMap<>();
+
+    /**
+     * Созданные обработчики URL по схеме.
+     */
+    private final Map<String, URLStreamHandler> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * Создаёт пустой реестр.
+     */
+    public DownloaderRegistry() {
+    }
+
+    /**
+     * Возвращает общий реестр со встроенными схемами. По умолчанию smb файлы читаются анонимно,
+     * для авторизации нужно зарегистрировать свой загрузчик схемы smb.
+     */
+    @NotNull
+    public static DownloaderRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Регистрирует загрузчик схемы. Загрузчик создаётся при первом обращении к схеме,
+     * ранее созданный загрузчик схемы заменяется.
+     *
+     * @param sScheme Схема URL (регистр не учитывается).
+     * @param factory Фабрика загрузчика.
+     * @throws IllegalArgumentException Если схема некорректна.
+     */
+    public void register(@NonNls @NotNull String sScheme, @NotNull Supplier<? extends IDistributionDownloader> factory) {
+        String sKey = normalize(sScheme);
+        factories.put(sKey, factory);
+        downloaders.remove(sKey);
+    }
+
+    /**
+     * Регистрирует обработчик URL для схемы, которую не поддерживает JDK. Обработчик создаётся при разборе
+     * первого URL этой схемы.
+     *
+     * @param sScheme Схема URL (регистр не учитывается).
+     * @param factory Фабрика обработчика.
+     * @throws IllegalArgumentException Если схема некорректна.
+     */
+    public void registerHandler(@NonNls @NotNull String sScheme, @NotNull Supplier<? extends URLStreamHandler> factory) {
+        String sKey = normalize(sScheme);
+        handlerFactories.put(sKey, factory);
+        handlers.remove(sKey);
+    }
+
+    /**
+     * Возвращает флаг, зарегистрирован ли загрузчик схемы.
+     *
+     * @param sScheme Схема URL (регистр не учитывается).
+     * @throws IllegalArgumentException Если схема некорректна.
+     */
+    public boolean isRegistered(@NonNls @NotNull String sScheme) {
+        return factories.containsKey(normalize(sScheme));
+    }
+
+    /**
+     * Возвращает загрузчик схемы, создавая его при первом обращении.
+     *
+     * @param sScheme Схема URL (регистр не учитывается).
+     * @return Загрузчик схемы.
+     * @throws IllegalArgumentException Если схема некорректна или загрузчик схемы не зарегистрирован.
+     */
+    @NotNull
+    public IDistributionDownloader get(@NonNls @NotNull String sScheme) {
+        String sKey = normalize(sScheme);
+        IDistributionDownloader downloader = downloaders.get(sKey);
+        if (downloader != null) return downloader;
+
+        Supplier<? extends IDistributionDownloader> factory = factories.get(sKey);
+        if (factory == null) {
+            throw new IllegalArgumentException("Не зарегистрирован загрузчик для схемы: " + sScheme);
+        }
+        return downloaders.computeIfAbsent(sKey, key -> factory.get());
+    }
+
+    /**
+     * Возвращает загрузчик схемы URL, создавая его при первом обращении.
+     *
+     * @param url Путь до дистрибутива.
+     * @return Загрузчик схемы.
+     * @throws IllegalArgumentException Если загрузчик схемы не зарегистрирован.
+     */
+    @NotNull
+    public IDistributionDownloader get(@NotNull URL url) {
+        return get(url.getProtocol());
+    }
+
+    /**
+     * Разбирает строку в URL. Обработчик URL передаётся только для схем, зарегистрированных через
+     * {@link #registerHandler(String, Supplier)}, остальные схемы разбираются обработчиками JDK.
+     *
+     * @param sSpec Путь до дистрибутива.
+     * @return URL дистрибутива.
+     * @throws MalformedURLException Если строка не является URL или схема не поддерживается.
+     */
+    @NotNull
+    public URL toUrl(@NonNls @NotNull String sSpec) throws MalformedURLException {
+        String sScheme = getScheme(sSpec);
+        Supplier<? extends URLStreamHandler> factory = sScheme != null ? handlerFactories.get(sScheme) : null;
+        if (factory == null) return new URL(sSpec);
+        return new URL(null, sSpec, handlers.computeIfAbsent(sScheme, key -> factory.get()));
+    }
+
+    /**
+     * Скачивает дистрибутив загрузчиком схемы URL.
+     *
+     * @throws IllegalArgumentException Если загрузчик схемы не зарегистрирован
+     *                                  или наименование файла содержит неразрешённые символы.
+     */
+    @Override
+    public File download(
+            URL url,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        return get(url).download(url, sFileName, sFileExt, sResolvePaths);
+    }
+
+    @Override
+    public File download(
+            URL url,
+            @NotNull IProgressListener listener,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        return get(url).download(url, listener, sFileName, sFileExt, sResolvePaths);
+    }
+
+    @Override
+    public InputStream openStream(URL url) throws IOException {
+        return get(url).openStream(url);
+    }
+
+    @Override
+    public CompletableFuture<File> downloadAsync(
+            URL url,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) {
+        IDistributionDownloader downloader;
+        try {
+            downloader = get(url);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return downloader.downloadAsync(url, sFileName, sFileExt, sResolvePaths);
+    }
+
+    /**
+     * Возвращает версию ресурса через загрузчик схемы URL.
+     *
+     * @return Текущая версия ресурса (null, если загрузчик схемы не сообщает версию).
+     * @throws IllegalArgumentException Если загрузчик схемы не зарегистрирован.
+     */
+    @Nullable
+    @Override
+    public ResourceVersion getVersion(URL url, @Nullable ResourceVersion known) throws IOException {
+        IDistributionDownloader downloader = get(url);
+        if (!(downloader instanceof IResourceVersionProvider)) return null;
+        return ((IResourceVersionProvider) downloader).getVersion(url, known);
+    }
+
+    /**
+     * Возвращает схему из начала строки URL (в нижнем регистре).
+     *
+     * @return Схема (null, если строка не начинается со схемы).
+     */
+    @Nullable
+    static String getScheme(@NotNull String sSpec) {
+        int start = 0;
+        while (start < sSpec.length() && sSpec.charAt(start) <= ' ') start++;
+        if (sSpec.regionMatches(true, start, "url:", 0, 4)) start += 4;
+
+        int end = sSpec.indexOf(':', start);
+        if (end <= start || !isSchemeStart(sSpec.charAt(start))) return null;
+        for (int i = start + 1; i < end; i++) {
+            if (!isSchemePart(sSpec.charAt(i))) return null;
+        }
+        return sSpec.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalize(String sScheme) {
+        if (sScheme.isEmpty() || !isSchemeStart(sScheme.charAt(0))
+                || !sScheme.chars().skip(1).allMatch(c -> isSchemePart((char) c))) {
+            throw new IllegalArgumentException("Некорректная схема URL: " + sScheme);
+        }
+        return sScheme.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isSchemeStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isSchemePart(char c) {
+        return isSchemeStart(c) || (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.';
+    }
+
+    private static DownloaderRegistry createDefault() {
+        DownloaderRegistry registry = new DownloaderRegistry();
+        registry.register("http", HttpDownloaderHolder::get);
+        registry.register("https", HttpDownloaderHolder::get);
+        registry.register("file", FileDistributionDownloader::new);
+        registry.register("smb", () -> Smb.createDownloader());
+        registry.registerHandler("smb", () -> Smb.createHandler());
+        return registry;
+    }
+
+    /**
+     * Общий HTTP загрузчик для схем http и https.
+     */
+    private static final class HttpDownloaderHolder {
+        private static final IDistributionDownloader downloader = new HttpDistributionDownloader();
+
+        static IDistributionDownloader get() {
+            return downloader;
+        }
+    }
+
+    /**
+     * Создание объектов jcifs. Вынесено в отдельный класс, чтобы классы jcifs загружались
+     * только при первом обращении к схеме smb, а не при загрузке реестра.
+     */
+    private static final class Smb {
+        static IDistributionDownloader createDownloader() {
+            return new SmbDistributionDownloader(NtlmPasswordAuthentication.ANONYMOUS);
+        }
+
+        static URLStreamHandler createHandler() {
+            return new jcifs.smb.Handler();
+        }
+    }
+}
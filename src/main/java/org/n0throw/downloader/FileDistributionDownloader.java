@@ -0,0 +1,228 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.diagnostics.DownloadRecording;
+import org.n0throw.progress.IProgressListener;
+import org.n0throw.progress.ProgressPhase;
+import org.n0throw.progress.ProgressTracker;
+import org.n0throw.utils.files.LocalCopyStrategy;
+import org.n0throw.utils.files.LocalFileCopier;
+import org.n0throw.utils.files.TempFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Класс для получения дистрибутивов из локальной файловой системы (file: и смонтированные сетевые папки).
+ * Способ копирования выбирается автоматически: жёсткая ссылка (если разрешена), клон файловой системы
+ * или копирование ядром ОС. Данные не проходят через кучу Java, поэтому скорость ограничена диском.
+ * Жёсткие ссылки по умолчанию запрещены: полученный файл делил бы inode с исходным, и изменение одного
+ * (в том числе после помещения файла в кэш) меняло бы другой.
+ */
+public class FileDistributionDownloader implements IDistributionDownloader, IResourceVersionProvider {
+    /**
+     * Разрешены ли жёсткие ссылки на исходный файл.
+     */
+    private final boolean allowHardLinks;
+
+    /**
+     * Жёсткие ссылки запрещены: файл клонируется или копируется.
+     */
+    public FileDistributionDownloader() {
+        this(false);
+    }
+
+    /**
+     * @param allowHardLinks Разрешены ли жёсткие ссылки на исходный файл. Полученный по ссылке файл нельзя
+     *                       изменять, иначе изменится и исходный, а исходный файл не должен меняться, пока
+     *                       полученный используется.
+     */
+    public FileDistributionDownloader(boolean allowHardLinks) {
+        this.allowHardLinks = allowHardLinks;
+    }
+
+    /**
+     * Копирует дистрибутив во временный файл.
+     *
+     * @param url           Путь до дистрибутива (file:).
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла.
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Файл дистрибутива.
+     * @throws IOException              Если путь не является локальным, файл не найден или не удалось его скопировать.
+     * @throws IllegalArgumentException Если наименование файла содержит неразрешённые символы.
+     * @throws SecurityException        Если нет прав на создание файла.
+     */
+    @Override
+    public File download(
+            URL url,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        return download(toPath(url), null, sFileName, sFileExt, sResolvePaths);
+    }
+
+    /**
+     * Копирует дистрибутив во временный файл с отчётами о прогрессе.
+     * О жёсткой ссылке и клоне прогресс сообщается только по завершении.
+     *
+     * @param url           Путь до дистрибутива (file:).
+     * @param listener      Получатель прогресса.
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла.
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Файл дистрибутива.
+     * @throws IOException              Если путь не является локальным, файл не найден или не удалось его скопировать.
+     * @throws IllegalArgumentException Если наименование файла содержит неразрешённые символы.
+     * @throws SecurityException        Если нет прав на создание файла.
+     */
+    @Override
+    public File download(
+            URL url,
+            @NotNull IProgressListener listener,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        ProgressTracker tracker = new ProgressTracker(listener);
+        try {
+            return download(toPath(url), tracker, sFileName, sFileExt, sResolvePaths);
+        } finally {
+            tracker.complete();
+        }
+    }
+
+    /**
+     * Копирует дистрибутив по локальному пути во временный файл.
+     *
+     * @param source        Путь до дистрибутива.
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла.
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Файл дистрибутива.
+     * @throws IOException              Если файл не найден или не удалось его скопировать.
+     * @throws IllegalArgumentException Если наименование файла содержит неразрешённые символы.
+     * @throws SecurityException        Если нет прав на создание файла.
+     */
+    public File download(
+            @NotNull Path source,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        return download(source, null, sFileName, sFileExt, sResolvePaths);
+    }
+
+    /**
+     * Открывает поток локального файла.
+     *
+     * @param url Путь до дистрибутива (file:).
+     * @return Поток дистрибутива.
+     * @throws IOException Если путь не является локальным или файл не найден.
+     */
+    @Override
+    public InputStream openStream(URL url) throws IOException {
+        return Files.newInputStream(toPath(url));
+    }
+
+    /**
+     * Возвращает текущую версию файла по его размеру и дате последнего изменения.
+     *
+     * @param url   Путь до файла (file:).
+     * @param known Ранее полученная версия файла (не используется).
+     * @return Текущая версия файла (null, если файл не существует).
+     * @throws IOException Если путь не является локальным или не удалось прочитать атрибуты файла.
+     */
+    @Nullable
+    @Override
+    public ResourceVersion getVersion(URL url, @Nullable ResourceVersion known) throws IOException {
+        Path path = toPath(url);
+        if (!Files.isRegularFile(path)) return null;
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new ResourceVersion(null, Long.toString(attributes.lastModifiedTime().toMillis()), attributes.size());
+    }
+
+    private File download(
+            Path source,
+            @Nullable ProgressTracker tracker,
+            String sFileName,
+            String sFileExt,
+            String... sResolvePaths
+    ) throws IOException {
+        DownloadRecording recording = DownloadRecording.start(toUrl(source));
+        try {
+            return recording.succeeded(copy(source, tracker, sFileName, sFileExt, sResolvePaths));
+        } catch (IOException | RuntimeException e) {
+            recording.failed(e);
+            throw e;
+        }
+    }
+
+    private File copy(
+            Path source,
+            @Nullable ProgressTracker tracker,
+            String sFileName,
+            String sFileExt,
+            String... sResolvePaths
+    ) throws IOException {
+        if (!Files.isRegularFile(source)) {
+            throw new NoSuchFileException(source.toString(), null, "Дистрибутив не найден.");
+        }
+        long size = Files.size(source);
+        if (tracker != null) {
+            tracker.setTotalBytes(size);
+            tracker.startPhase(ProgressPhase.Transfer);
+        }
+
+        final File tempFile = TempFile.createEmptyFile(sFileName, sFileExt, sResolvePaths);
+        try {
+            LocalCopyStrategy strategy = LocalFileCopier.tryClone(source, tempFile.toPath(), allowHardLinks);
+            if (strategy == null) {
+                // Только копия занимает место на диске, поэтому в квоте учитывается только она
+                TempFile.reserve(tempFile, size);
+                LocalFileCopier.transfer(source, tempFile.toPath(), tracker);
+            } else if (tracker != null) {
+                tracker.addBytes(size);
+            }
+        } catch (IOException | RuntimeException e) {
+            TempFile.delete(tempFile);
+            throw e;
+        }
+        return tempFile;
+    }
+
+    /**
+     * Преобразует путь file: в путь файловой системы.
+     *
+     * @throws IOException Если путь не является локальным.
+     */
+    private static Path toPath(URL url) throws IOException {
+        if (!"file".equalsIgnoreCase(url.getProtocol())) {
+            throw new IOException("Поддерживаются только локальные пути (file:): " + url);
+        }
+        try {
+            return Path.of(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Некорректный путь до файла: " + url, e);
+        }
+    }
+
+    private static URL toUrl(Path path) throws IOException {
+        try {
+            return path.toUri().toURL();
+        } catch (MalformedURLException e) {
+            throw new IOException("Некорректный путь до файла: " + path, e);
+        }
+    }
+}
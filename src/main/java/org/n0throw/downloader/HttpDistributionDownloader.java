@@ -2,17 +2,217 @@ package org.n0throw.downloader;
 
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.diagnostics.DownloadRecording;
+import org.n0throw.progress.IProgressListener;
+import org.n0throw.progress.ProgressPhase;
+import org.n0throw.progress.ProgressTracker;
+import org.n0throw.utils.concurrent.AsyncTasks;
+import org.n0throw.utils.files.ChecksumMismatchException;
+import org.n0throw.utils.files.ExpectedChecksum;
+import org.n0throw.utils.files.FileFormat;
+import org.n0throw.utils.files.FileFormatRegistry;
+import org.n0throw.utils.files.FileHashHelper;
 import org.n0throw.utils.files.TempFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Класс для скачивания дистрибутивов по HTTP/HTTPS
  */
-public class HttpDistributionDownloader implements IDistributionDownloader {
+public class HttpDistributionDownloader
+        implements IDistributionDownloader, IResourceVersionProvider, IDeltaDistributionDownloader {
+    /**
+     * Количество сегментов по умолчанию (скачивание одним потоком).
+     */
+    public static final int DEFAULT_SEGMENT_COUNT = 1;
+
+    /**
+     * Минимальный размер сегмента по умолчанию.
+     */
+    public static final long DEFAULT_MIN_SEGMENT_SIZE = 8L * 1024 * 1024;
+
+    /**
+     * Форматы, содержимое которых уже сжато.
+     */
+    private static final Set<FileFormat> COMPRESSED_FORMATS = EnumSet.of(
+            FileFormat.Zip,
+            FileFormat.TarGz,
+            FileFormat.Gzip,
+            FileFormat.Xz,
+            FileFormat.Zstd,
+            FileFormat.Xar
+    );
+
+    /**
+     * Максимальное количество сегментов, на которое разбивается файл.
+     */
+    private final int segmentCount;
+
+    /**
+     * Минимальный размер одного сегмента.
+     */
+    private final long minSegmentSize;
+
+    /**
+     * Флаг, сохранять ли прогресс скачивания в журнал для продолжения после обрыва.
+     */
+    private final boolean resumable;
+
+    /**
+     * HTTP транспорт.
+     */
+    private final HttpTransport transport;
+
+    /**
+     * Планировщик передачи данных.
+     */
+    private final TransferScheduler scheduler;
+
+    /**
+     * Приоритет передачи.
+     */
+    private final TransferPriority priority;
+
+    /**
+     * Флаг, запрашивать ли сжатую передачу (Accept-Encoding) при скачивании одним запросом.
+     */
+    private final boolean compressed;
+
+    /**
+     * Скачивание одним потоком.
+     */
+    public HttpDistributionDownloader() {
+        this(DEFAULT_SEGMENT_COUNT, DEFAULT_MIN_SEGMENT_SIZE);
+    }
+
+    /**
+     * Сегментированное скачивание. Если сервер не поддерживает запросы диапазонов, то файл скачивается одним потоком.
+     *
+     * @param segmentCount   Максимальное количество сегментов, скачиваемых параллельно.
+     * @param minSegmentSize Минимальный размер одного сегмента в байтах.
+     * @throws IllegalArgumentException Если параметры не положительные.
+     */
+    public HttpDistributionDownloader(int segmentCount, long minSegmentSize) {
+        this(segmentCount, minSegmentSize, false);
+    }
+
+    /**
+     * Сегментированное скачивание с возможностью продолжения.
+     * Если resumable = true, то рядом с частично скачанным файлом ведётся журнал скачанных диапазонов,
+     * и повторный вызов (в том числе после перезапуска JVM) докачивает только недостающие диапазоны.
+     *
+     * @param segmentCount   Максимальное количество сегментов, скачиваемых параллельно.
+     * @param minSegmentSize Минимальный размер одного сегмента в байтах.
+     * @param resumable      Сохранять ли прогресс скачивания для продолжения после обрыва.
+     * @throws IllegalArgumentException Если параметры не положительные.
+     */
+    public HttpDistributionDownloader(int segmentCount, long minSegmentSize, boolean resumable) {
+        this(segmentCount, minSegmentSize, resumable, TransferScheduler.getInstance(), TransferPriority.Interactive);
+    }
+
+    /**
+     * Сегментированное скачивание через планировщик передачи данных.
+     *
+     * @param segmentCount   Максимальное количество сегментов, скачиваемых параллельно.
+     * @param minSegmentSize Минимальный размер одного сегмента в байтах.
+     * @param resumable      Сохранять ли прогресс скачивания для продолжения после обрыва.
+     * @param scheduler      Планировщик, ограничивающий скорость и количество соединений.
+     * @param priority       Приоритет передачи.
+     * @throws IllegalArgumentException Если параметры не положительные.
+     */
+    public HttpDistributionDownloader(
+            int segmentCount,
+            long minSegmentSize,
+            boolean resumable,
+            @NotNull TransferScheduler scheduler,
+            @NotNull TransferPriority priority
+    ) {
+        this(segmentCount, minSegmentSize, resumable, HttpTransport.getInstance(), scheduler, priority);
+    }
+
+    /**
+     * Сегментированное скачивание через указанный HTTP транспорт и планировщик передачи данных.
+     *
+     * @param segmentCount   Максимальное количество сегментов, скачиваемых параллельно.
+     * @param minSegmentSize Минимальный размер одного сегмента в байтах.
+     * @param resumable      Сохранять ли прогресс скачивания для продолжения после обрыва.
+     * @param transport      HTTP транспорт (пул соединений и таймауты).
+     * @param scheduler      Планировщик, ограничивающий скорость и количество соединений.
+     * @param priority       Приоритет передачи.
+     * @throws IllegalArgumentException Если параметры не положительные.
+     */
+    public HttpDistributionDownloader(
+            int segmentCount,
+            long minSegmentSize,
+            boolean resumable,
+            @NotNull HttpTransport transport,
+            @NotNull TransferScheduler scheduler,
+            @NotNull TransferPriority priority
+    ) {
+        this(segmentCount, minSegmentSize, resumable, true, transport, scheduler, priority);
+    }
+
+    /**
+     * Сегментированное скачивание через указанный HTTP транспорт и планировщик передачи данных.
+     * При скачивании одним запросом (и при открытии потока) загрузчик может запрашивать сжатую передачу:
+     * сервер сжимает содержимое gzip или deflate, а загрузчик распаковывает его по мере записи во временный файл.
+     * Сжатие не запрашивается для уже сжатых форматов (zip, tar.gz, xz и т.п.) и для запросов диапазонов.
+     *
+     * @param segmentCount   Максимальное количество сегментов, скачиваемых параллельно.
+     * @param minSegmentSize Минимальный размер одного сегмента в байтах.
+     * @param resumable      Сохранять ли прогресс скачивания для продолжения после обрыва.
+     * @param compressed     Запрашивать ли сжатую передачу.
+     * @param transport      HTTP транспорт (пул соединений и таймауты).
+     * @param scheduler      Планировщик, ограничивающий скорость и количество соединений.
+     * @param priority       Приоритет передачи.
+     * @throws IllegalArgumentException Если параметры не положительные.
+     */
+    public HttpDistributionDownloader(
+            int segmentCount,
+            long minSegmentSize,
+            boolean resumable,
+            boolean compressed,
+            @NotNull HttpTransport transport,
+            @NotNull TransferScheduler scheduler,
+            @NotNull TransferPriority priority
+    ) {
+        if (segmentCount <= 0) {
+            throw new IllegalArgumentException("Количество сегментов должно быть положительным.");
+        }
+        if (minSegmentSize <= 0) {
+            throw new IllegalArgumentException("Минимальный размер сегмента должен быть положительным.");
+        }
+        this.segmentCount = segmentCount;
+        this.minSegmentSize = minSegmentSize;
+        this.resumable = resumable;
+        this.transport = transport;
+        this.scheduler = scheduler;
+        this.priority = priority;
+        this.compressed = compressed;
+    }
+
     /**
      * Скачивает дистрибутив.
      *
@@ -32,12 +232,640 @@ public class HttpDistributionDownloader implements IDistributionDownloader {
             @NonNls String sFileExt,
             @NonNls @NotNull String... sResolvePaths
     ) throws IOException {
-        URLConnection connection = url.openConnection();
-        return TempFile.createFromInputStream(
-                connection.getInputStream(),
-                sFileName,
-                sFileExt,
-                sResolvePaths
+        return download(url, (ProgressTracker) null, sFileName, sFileExt, sResolvePaths);
+    }
+
+    /**
+     * Скачивает дистрибутив с отчётами о прогрессе: время подключения и до первого байта,
+     * переданные байты, скорость и оставшееся время (если сервер сообщил размер).
+     *
+     * @param url           Путь до дистрибутива.
+     * @param listener      Получатель прогресса.
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла.
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Файл дистрибутива
+     * @throws IOException              Если не удалось создать файл или подключиться/получить данные по протоколу HTTP/HTTPs.
+     * @throws IllegalArgumentException Если наименование файла содержит неразрешённые символы.
+     * @throws SecurityException        Если нет прав на создание файла.
+     */
+    @Override
+    public File download(
+            URL url,
+            @NotNull IProgressListener listener,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        ProgressTracker tracker = new ProgressTracker(listener);
+        try {
+            return download(url, tracker, sFileName, sFileExt, sResolvePaths);
+        } finally {
+            tracker.complete();
+        }
+    }
+
+    /**
+     * Скачивает дистрибутив с записью в JFR и реестр метрик.
+     */
+    private File download(
+            URL url,
+            @Nullable ProgressTracker tracker,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        DownloadRecording recording = DownloadRecording.start(url);
+        try {
+            return recording.succeeded(downloadFile(url, tracker, recording, sFileName, sFileExt, sResolvePaths));
+        } catch (IOException | RuntimeException e) {
+            recording.failed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Скачивает дистрибутив, выбирая способ скачивания по настройкам загрузчика и возможностям сервера.
+     */
+    private File downloadFile(
+            URL url,
+            @Nullable ProgressTracker tracker,
+            DownloadRecording recording,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        if (tracker != null) tracker.startPhase(ProgressPhase.Connect);
+        if ((segmentCount > 1 || resumable) && isHttp(url)) {
+            HttpResourceInfo info = HttpResourceInfo.probe(transport, url);
+            if (resumable && info.isRangeSupported() && info.getValidator() != null) {
+                return downloadResumable(url, info, tracker, sFileName, sFileExt, sResolvePaths);
+            }
+            int count = getSegmentCount(info);
+            if (count > 1) {
+                return downloadSegmented(url, info, count, tracker, sFileName, sFileExt, sResolvePaths);
+            }
+        }
+
+        if (isHttp(url)) {
+            return downloadSingle(url, tracker, recording, sFileName, sFileExt, sResolvePaths);
+        }
+        try (InputStream stream = openStream(url)) {
+            return TempFile.createFromInputStream(
+                    stream,
+                    List.of(),
+                    tracker,
+                    sFileName,
+                    sFileExt,
+                    sResolvePaths
+            );
+        }
+    }
+
+    /**
+     * Скачивает дистрибутив разностно: рядом с дистрибутивом должен лежать файл контрольных сумм блоков
+     * ({@link BlockChecksums}). Совпадающие блоки копируются из старой версии, недостающие диапазоны
+     * скачиваются запросами с заголовком Range, а результат сверяется с SHA-256 из файла контрольных сумм.
+     * Если файла контрольных сумм нет, он не соответствует дистрибутиву или сервер не поддерживает диапазоны,
+     * то дистрибутив скачивается целиком. Целиком дистрибутив скачивается и тогда, когда собранный файл
+     * не совпал с SHA-256: файл контрольных сумм устарел, хотя длина дистрибутива не изменилась.
+     * Скачанный целиком дистрибутив сверяется с хешем, который публикует сервер (Repr-Digest), а если сервер
+     * его не публикует - с SHA-256 из файла контрольных сумм той же длины.
+     *
+     * @param url           Путь до дистрибутива.
+     * @param basis         Старая версия дистрибутива.
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла.
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Файл дистрибутива.
+     * @throws ChecksumMismatchException Если скачанный целиком дистрибутив не совпал с ожидаемым хешем.
+     * @throws IOException               Если не удалось создать файл или подключиться/получить данные по протоколу HTTP/HTTPs.
+     * @throws IllegalArgumentException  Если наименование файла содержит неразрешённые символы.
+     * @throws SecurityException         Если нет прав на создание файла.
+     */
+    @Override
+    public File downloadDelta(
+            URL url,
+            @NotNull Path basis,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        if (!isHttp(url) || !Files.isRegularFile(basis)) {
+            return download(url, sFileName, sFileExt, sResolvePaths);
+        }
+        DownloadRecording recording = DownloadRecording.start(url);
+        try {
+            return recording.succeeded(downloadDeltaFile(url, basis, recording, sFileName, sFileExt, sResolvePaths));
+        } catch (IOException | RuntimeException e) {
+            recording.failed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Собирает дистрибутив из блоков старой версии и недостающих диапазонов.
+     */
+    private File downloadDeltaFile(
+            URL url,
+            Path basis,
+            DownloadRecording recording,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        BlockChecksums checksums;
+        URL blocksUrl = BlockChecksums.getUrl(url);
+        try (InputStream stream = scheduler.openStream(blocksUrl, priority, () -> transport.openStream(blocksUrl))) {
+            checksums = BlockChecksums.read(stream);
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            // todo slf4j: файл контрольных сумм не опубликован или повреждён
+            return downloadFile(url, null, recording, sFileName, sFileExt, sResolvePaths);
+        }
+        HttpResourceInfo info = HttpResourceInfo.probe(transport, url);
+        String sExpected = info.getSha256() != null
+                ? info.getSha256()
+                : info.getLength() == checksums.getLength() ? checksums.getSha256() : null;
+        if (!info.isRangeSupported() || info.getLength() != checksums.getLength()) {
+            return downloadVerified(url, sExpected, recording, sFileName, sFileExt, sResolvePaths);
+        }
+
+        DeltaPlan plan = DeltaPlan.match(checksums, basis);
+        final File tempFile = TempFile.createEmptyFile(sFileName, sFileExt, sResolvePaths);
+        boolean matched;
+        try {
+            TempFile.reserve(tempFile, checksums.getLength());
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+                plan.copyReused(basis, channel);
+            }
+            List<ByteRange> ranges = plan.getMissingRanges();
+            new HttpSegmentedDownload(
+                    url,
+                    info,
+                    ranges,
+                    segmentCount,
+                    null,
+                    transport,
+                    scheduler,
+                    priority
+            ).downloadTo(tempFile, null);
+            matched = FileHashHelper.sha256(tempFile.toPath()).equalsIgnoreCase(checksums.getSha256());
+        } catch (IOException e) {
+            TempFile.delete(tempFile);
+            throw e;
+        }
+        if (!matched) {
+            // todo slf4j: файл контрольных сумм устарел, дистрибутив скачивается целиком
+            TempFile.delete(tempFile);
+            return downloadVerified(url, sExpected, recording, sFileName, sFileExt, sResolvePaths);
+        }
+        recording.reused(plan.getReusedBytes());
+        return tempFile;
+    }
+
+    /**
+     * Скачивает дистрибутив целиком и сверяет его с ожидаемым хешем.
+     *
+     * @param sExpected Ожидаемый SHA-256 (null, если хеш неизвестен и сверка не нужна).
+     * @throws ChecksumMismatchException Если дистрибутив не совпал с ожидаемым хешем (файл удаляется).
+     */
+    private File downloadVerified(
+            URL url,
+            @Nullable String sExpected,
+            DownloadRecording recording,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        File file = downloadFile(url, null, recording, sFileName, sFileExt, sResolvePaths);
+        if (sExpected == null) return file;
+        String sActual;
+        try {
+            sActual = FileHashHelper.sha256(file.toPath());
+        } catch (IOException e) {
+            TempFile.delete(file);
+            throw e;
+        }
+        if (!sActual.equalsIgnoreCase(sExpected)) {
+            TempFile.delete(file);
+            throw new ChecksumMismatchException(ExpectedChecksum.sha256(sExpected), sActual);
+        }
+        return file;
+    }
+
+    /**
+     * Асинхронно скачивает дистрибутив.
+     * Скачивание одним запросом по HTTP/HTTPS выполняется без блокировки потоков: ответ записывается в файл
+     * по мере получения, а отмена задачи прерывает обмен с сервером и удаляет файл.
+     * Сегментированное скачивание и скачивание с продолжением выполняются в общем пуле блокирующих операций.
+     *
+     * @param url           Путь до дистрибутива.
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла.
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Задача с файлом дистрибутива.
+     */
+    @Override
+    public CompletableFuture<File> downloadAsync(
+            URL url,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) {
+        if (segmentCount > 1 || resumable || !isHttp(url)) {
+            return IDistributionDownloader.super.downloadAsync(url, sFileName, sFileExt, sResolvePaths);
+        }
+
+        DownloadRecording recording = DownloadRecording.start(url);
+        final File tempFile;
+        final FileChannel channel;
+        try {
+            tempFile = TempFile.createEmptyFile(sFileName, sFileExt, sResolvePaths);
+            channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE);
+        } catch (IOException | RuntimeException e) {
+            recording.failed(e);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<File> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<HttpResponse<Long>>> exchange = new AtomicReference<>();
+        // Поток блокируется только если соединение с хостом недоступно сразу.
+        TransferScheduler.Permit available = scheduler.tryAcquireConnection(url, priority);
+        CompletableFuture<TransferScheduler.Permit> permit = available != null
+                ? CompletableFuture.completedFuture(available)
+                : AsyncTasks.supplyAsync(() -> scheduler.acquireConnection(url, priority));
+        permit.thenCompose(acquired -> {
+            try {
+                if (result.isDone()) {
+                    throw new CancellationException();
+                }
+                exchange.set(transport.downloadAsync(
+                        url,
+                        getRequestHeaders(url),
+                        HttpURLConnection.HTTP_OK,
+                        channel,
+                        0,
+                        Long.MAX_VALUE,
+                        scheduler,
+                        priority,
+                        new TempFileWriteListener(tempFile, null, recording)
+                ));
+                return exchange.get().whenComplete((response, error) -> acquired.close());
+            } catch (IOException | RuntimeException e) {
+                acquired.close();
+                return CompletableFuture.failedFuture(e);
+            }
+        }).whenComplete((response, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause == null && response.statusCode() != HttpURLConnection.HTTP_OK) {
+                cause = new IOException("Сервер вернул код ответа " + response.statusCode() + ": " + url);
+            }
+            try {
+                channel.close();
+                if (cause != null) TempFile.delete(tempFile);
+            } catch (IOException e) {
+                if (cause == null) cause = e;
+            }
+            if (cause != null) {
+                result.completeExceptionally(cause);
+            } else {
+                result.complete(tempFile);
+            }
+        });
+        result.whenComplete((file, error) -> {
+            if (error != null) {
+                recording.failed(error);
+            } else {
+                recording.succeeded(file);
+            }
+            if (!result.isCancelled()) return;
+            permit.cancel(true);
+            CompletableFuture<HttpResponse<Long>> running = exchange.get();
+            if (running != null) running.cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Открывает поток ресурса через планировщик передачи данных.
+     * Соединение с хостом освобождается при закрытии потока.
+     *
+     * @param url Путь до дистрибутива.
+     * @return Поток дистрибутива.
+     * @throws IOException Если не удалось подключиться к источнику.
+     */
+    @Override
+    public InputStream openStream(URL url) throws IOException {
+        return scheduler.openStream(
+                url,
+                priority,
+                () -> isHttp(url) ? transport.openStream(url, isCompressible(url)) : url.openConnection().getInputStream()
         );
     }
+
+    /**
+     * Возвращает текущую версию ресурса условным HEAD запросом (If-None-Match/If-Modified-Since).
+     *
+     * @param url   Путь до ресурса.
+     * @param known Ранее полученная версия ресурса (null, если неизвестна).
+     * @return Текущая версия ресурса (null, если сервер не ответил на HEAD запрос).
+     * @throws IOException Если не удалось подключиться к серверу.
+     */
+    @Nullable
+    @Override
+    public ResourceVersion getVersion(URL url, @Nullable ResourceVersion known) throws IOException {
+        if (!isHttp(url)) return null;
+        Map<String, String> headers = new HashMap<>();
+        if (known != null && known.getETag() != null) {
+            headers.put("If-None-Match", known.getETag());
+        }
+        if (known != null && known.getLastModified() != null) {
+            headers.put("If-Modified-Since", known.getLastModified());
+        }
+        HttpResponse<Void> response = transport.head(url, headers);
+        if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED && known != null) {
+            return known;
+        }
+        if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+            return null;
+        }
+        return new ResourceVersion(
+                response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null),
+                response.headers().firstValueAsLong("Content-Length").orElse(-1)
+        );
+    }
+
+    /**
+     * Скачивает дистрибутив одним запросом, записывая содержимое ответа напрямую в файл.
+     */
+    private File downloadSingle(
+            URL url,
+            @Nullable ProgressTracker tracker,
+            DownloadRecording recording,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        final File tempFile = TempFile.createEmptyFile(sFileName, sFileExt, sResolvePaths);
+        TransferScheduler.Permit permit = scheduler.acquireConnection(url, priority);
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+            HttpResponse<Long> response = transport.download(
+                    url,
+                    getRequestHeaders(url),
+                    HttpURLConnection.HTTP_OK,
+                    channel,
+                    0,
+                    Long.MAX_VALUE,
+                    scheduler,
+                    priority,
+                    new TempFileWriteListener(tempFile, tracker, recording)
+            );
+            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Сервер вернул код ответа " + response.statusCode() + ": " + url);
+            }
+        } catch (IOException e) {
+            TempFile.delete(tempFile);
+            throw e;
+        } finally {
+            permit.close();
+        }
+        return tempFile;
+    }
+
+    /**
+     * Скачивает дистрибутив параллельно по диапазонам байт.
+     */
+    private File downloadSegmented(
+            URL url,
+            HttpResourceInfo info,
+            int count,
+            @Nullable ProgressTracker tracker,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        final File tempFile = TempFile.createEmptyFile(sFileName, sFileExt, sResolvePaths);
+        try {
+            TempFile.reserve(tempFile, info.getLength());
+            new HttpSegmentedDownload(
+                    url,
+                    info,
+                    ByteRange.split(info.getLength(), count),
+                    transport,
+                    scheduler,
+                    priority
+            ).downloadTo(tempFile, tracker);
+        } catch (IOException e) {
+            TempFile.delete(tempFile);
+            throw e;
+        }
+        return tempFile;
+    }
+
+    /**
+     * Скачивает дистрибутив с сохранением прогресса в журнал.
+     * Частично скачанный файл не удаляется при ошибке, чтобы следующий вызов мог продолжить скачивание.
+     * Если сервер сообщил SHA-256 хеш, то скачанный файл сверяется с ним: продолженное скачивание при несовпадении
+     * начинается с нуля (файл от прошлого запуска мог быть повреждён), а новое завершается ошибкой.
+     * После завершения файл переносится во временный файл, а журнал удаляется.
+     */
+    private File downloadResumable(
+            URL url,
+            HttpResourceInfo info,
+            @Nullable ProgressTracker tracker,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        Path directory = TempFile.getDirectory(sResolvePaths);
+        Path partPath = DownloadJournal.getPartPath(directory, url, sFileName);
+        DownloadJournal.deleteAbandoned(directory, partPath);
+        // Временный файл создаётся заранее, чтобы размер дистрибутива был учтён в квоте до скачивания
+        final File tempFile = TempFile.createEmptyFile(sFileName, sFileExt, sResolvePaths);
+        DownloadJournal journal;
+        try {
+            TempFile.reserve(tempFile, info.getLength());
+            journal = DownloadJournal.open(partPath, url, info);
+            boolean resumed = journal.getCompletedLength() > 0;
+            downloadParts(url, info, journal, partPath, tracker);
+            ChecksumMismatchException mismatch = verifyPart(partPath, info);
+            if (mismatch != null && resumed) {
+                // todo slf4j: частично скачанный файл от прошлого запуска повреждён, скачиваем с нуля
+                journal.discard();
+                journal = DownloadJournal.open(partPath, url, info);
+                downloadParts(url, info, journal, partPath, tracker);
+                mismatch = verifyPart(partPath, info);
+            }
+            if (mismatch != null) {
+                journal.discard();
+                throw mismatch;
+            }
+            Files.move(partPath, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            TempFile.delete(tempFile);
+            throw e;
+        }
+        journal.delete();
+        return tempFile;
+    }
+
+    /**
+     * Докачивает недостающие по журналу диапазоны в частично скачанный файл.
+     */
+    private void downloadParts(
+            URL url,
+            HttpResourceInfo info,
+            DownloadJournal journal,
+            Path partPath,
+            @Nullable ProgressTracker tracker
+    ) throws IOException {
+        int parallelism = Math.max(1, getSegmentCount(info));
+        new HttpSegmentedDownload(
+                url,
+                info,
+                splitMissingRanges(journal.getMissingRanges(), parallelism),
+                parallelism,
+                journal,
+                transport,
+                scheduler,
+                priority
+        ).downloadTo(partPath.toFile(), tracker);
+        if (!journal.isComplete()) {
+            throw new IOException("Дистрибутив скачан не полностью: " + url);
+        }
+    }
+
+    /**
+     * Сверяет скачанный файл с SHA-256 хешем, который сообщил сервер.
+     *
+     * @return Несовпадение хеша (null, если хеш совпал или сервер его не сообщил).
+     */
+    @Nullable
+    private static ChecksumMismatchException verifyPart(Path partPath, HttpResourceInfo info) throws IOException {
+        String sExpected = info.getSha256();
+        if (sExpected == null) return null;
+        String sActual = FileHashHelper.sha256(partPath);
+        if (sActual.equalsIgnoreCase(sExpected)) return null;
+        return new ChecksumMismatchException(ExpectedChecksum.sha256(sExpected), sActual);
+    }
+
+    /**
+     * Разбивает недостающие диапазоны на сегменты, чтобы их можно было скачать параллельно.
+     */
+    private List<ByteRange> splitMissingRanges(List<ByteRange> missing, int parallelism) {
+        long missingLength = 0;
+        for (ByteRange range : missing) {
+            missingLength += range.length();
+        }
+        long chunkSize = Math.max(minSegmentSize, (missingLength + parallelism - 1) / parallelism);
+
+        List<ByteRange> ranges = new ArrayList<>();
+        for (ByteRange range : missing) {
+            for (long start = range.getStart(); start <= range.getEnd(); start += chunkSize) {
+                ranges.add(new ByteRange(start, Math.min(range.getEnd(), start + chunkSize - 1)));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Возвращает количество сегментов для ресурса с учётом минимального размера сегмента.
+     */
+    private int getSegmentCount(HttpResourceInfo info) {
+        if (!info.isRangeSupported()) return 1;
+        return (int) Math.min(segmentCount, info.getLength() / minSegmentSize);
+    }
+
+    /**
+     * Возвращает заголовки запроса при скачивании одним запросом.
+     */
+    private Map<String, String> getRequestHeaders(URL url) {
+        return isCompressible(url) ? Map.of(HttpTransport.ACCEPT_ENCODING, ContentDecoder.ACCEPT_ENCODING) : Map.of();
+    }
+
+    /**
+     * Возвращает флаг, что сжатую передачу стоит запрашивать: она включена, и ресурс не является сжатым форматом.
+     * Повторное сжатие сжатых данных не уменьшает передачу, а некоторые серверы отдают архивы tar.gz
+     * с Content-Encoding: gzip, и распаковка изменила бы сам дистрибутив.
+     */
+    private boolean isCompressible(URL url) {
+        if (!compressed) return false;
+        FileFormat format = FileFormatRegistry.getInstance().fromFileName(url.getPath());
+        return format == null || !COMPRESSED_FORMATS.contains(format);
+    }
+
+    /**
+     * Возвращает флаг, что путь использует протокол HTTP/HTTPS.
+     */
+    private static boolean isHttp(URL url) {
+        String sProtocol = url.getProtocol();
+        return "http".equalsIgnoreCase(sProtocol) || "https".equalsIgnoreCase(sProtocol);
+    }
+
+    /**
+     * Учёт записанных байт при скачивании одним запросом: в квоте временных файлов и в прогрессе скачивания,
+     * а полученных по сети байт — в записи скачивания.
+     */
+    private static final class TempFileWriteListener implements HttpTransport.IWriteListener {
+        /**
+         * Путь к временному файлу, в который записываются данные.
+         * Сам файл не хранится: HTTP клиент может удерживать слушателя и после скачивания, и тогда файл не удалится.
+         */
+        private final String sPath;
+
+        /**
+         * Отслеживание прогресса (null, если не требуется).
+         */
+        @Nullable
+        private final ProgressTracker tracker;
+
+        /**
+         * Запись скачивания.
+         */
+        private final DownloadRecording recording;
+
+        /**
+         * Позиция после предыдущей записи.
+         */
+        private long position;
+
+        /**
+         * Количество байт, полученных по сети до предыдущей порции.
+         */
+        private long received;
+
+        TempFileWriteListener(File file, @Nullable ProgressTracker tracker, @NotNull DownloadRecording recording) {
+            this.sPath = file.getPath();
+            this.tracker = tracker;
+            this.recording = recording;
+        }
+
+        @Override
+        public void onHeaders(@NotNull HttpResponse.ResponseInfo responseInfo) {
+            if (tracker == null) return;
+            // Для сжатого содержимого Content-Length — это размер сжатых данных, а прогресс считается по записанным
+            boolean encoded = responseInfo.headers().firstValue("Content-Encoding").isPresent();
+            tracker.setTotalBytes(encoded ? -1 : responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1));
+        }
+
+        @Override
+        public void onReceived(long bytes) {
+            recording.received(bytes - received);
+            received = bytes;
+        }
+
+        @Override
+        public void onWritten(long position) throws IOException {
+            long written = position - this.position;
+            this.position = position;
+            TempFile.reserve(new File(sPath), written);
+            if (tracker != null) {
+                tracker.startPhase(ProgressPhase.Transfer);
+                tracker.addBytes(written);
+            }
+        }
+    }
 }
@@ -0,0 +1,195 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.utils.files.FileHashHelper;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Сведения о ресурсе на HTTP сервере, полученные HEAD запросом.
+ */
+public final class HttpResourceInfo {
+    /**
+     * Размер ресурса (-1, если сервер его не сообщил).
+     */
+    private final long length;
+
+    /**
+     * Флаг, поддерживает ли сервер запросы диапазонов байт.
+     */
+    private final boolean acceptRanges;
+
+    /**
+     * Значение заголовка ETag.
+     */
+    @Nullable
+    private final String eTag;
+
+    /**
+     * Значение заголовка Last-Modified.
+     */
+    @Nullable
+    private final String lastModified;
+
+    /**
+     * SHA-256 хеш содержимого в шестнадцатеричном виде из заголовка Repr-Digest или Digest.
+     */
+    @Nullable
+    private final String sSha256;
+
+    /**
+     * @param length       Размер ресурса (-1, если неизвестен).
+     * @param acceptRanges Поддерживает ли сервер запросы диапазонов байт.
+     * @param eTag         Значение заголовка ETag.
+     * @param lastModified Значение заголовка Last-Modified.
+     */
+    public HttpResourceInfo(
+            long length,
+            boolean acceptRanges,
+            @Nullable String eTag,
+            @Nullable String lastModified
+    ) {
+        this(length, acceptRanges, eTag, lastModified, null);
+    }
+
+    /**
+     * @param length       Размер ресурса (-1, если неизвестен).
+     * @param acceptRanges Поддерживает ли сервер запросы диапазонов байт.
+     * @param eTag         Значение заголовка ETag.
+     * @param lastModified Значение заголовка Last-Modified.
+     * @param sSha256      SHA-256 хеш содержимого в шестнадцатеричном виде (null, если неизвестен).
+     */
+    public HttpResourceInfo(
+            long length,
+            boolean acceptRanges,
+            @Nullable String eTag,
+            @Nullable String lastModified,
+            @Nullable String sSha256
+    ) {
+        this.length = length;
+        this.acceptRanges = acceptRanges;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.sSha256 = sSha256;
+    }
+
+    /**
+     * Запрашивает сведения о ресурсе HEAD запросом.
+     *
+     * @param url Путь до ресурса.
+     * @return Сведения о ресурсе. Если сервер не ответил на HEAD запрос, то размер ресурса неизвестен.
+     * @throws IOException Если не удалось подключиться к серверу.
+     */
+    public static HttpResourceInfo probe(URL url) throws IOException {
+        return probe(HttpTransport.getInstance(), url);
+    }
+
+    /**
+     * Запрашивает сведения о ресурсе HEAD запросом через указанный транспорт.
+     *
+     * @param transport HTTP транспорт.
+     * @param url       Путь до ресурса.
+     * @return Сведения о ресурсе. Если сервер не ответил на HEAD запрос, то размер ресурса неизвестен.
+     * @throws IOException Если не удалось подключиться к серверу.
+     */
+    public static HttpResourceInfo probe(@NotNull HttpTransport transport, URL url) throws IOException {
+        HttpResponse<Void> response = transport.head(url, Map.of());
+        if (response.statusCode() != 200) {
+            return new HttpResourceInfo(-1, false, null, null);
+        }
+        HttpHeaders headers = response.headers();
+        String sAcceptRanges = headers.firstValue("Accept-Ranges").orElse(null);
+        return new HttpResourceInfo(
+                headers.firstValueAsLong("Content-Length").orElse(-1),
+                sAcceptRanges != null && sAcceptRanges.toLowerCase(Locale.ROOT).contains("bytes"),
+                headers.firstValue("ETag").orElse(null),
+                headers.firstValue("Last-Modified").orElse(null),
+                parseSha256(headers)
+        );
+    }
+
+    /**
+     * Извлекает SHA-256 хеш из заголовков Repr-Digest ({@code sha-256=:base64:}, RFC 9530)
+     * или Digest ({@code SHA-256=base64}, RFC 3230).
+     *
+     * @return Хеш в шестнадцатеричном виде (null, если сервер его не сообщил или значение некорректно).
+     */
+    @Nullable
+    static String parseSha256(HttpHeaders headers) {
+        for (String sHeader : new String[]{"Repr-Digest", "Digest"}) {
+            for (String sValue : headers.allValues(sHeader)) {
+                for (String sItem : sValue.split(",")) {
+                    int separatorIndex = sItem.indexOf('=');
+                    if (separatorIndex == -1) continue;
+                    if (!sItem.substring(0, separatorIndex).trim().equalsIgnoreCase("sha-256")) continue;
+                    String sDigest = sItem.substring(separatorIndex + 1).trim();
+                    if (sDigest.length() > 1 && sDigest.startsWith(":") && sDigest.endsWith(":")) {
+                        sDigest = sDigest.substring(1, sDigest.length() - 1);
+                    }
+                    try {
+                        byte[] digest = Base64.getDecoder().decode(sDigest);
+                        if (digest.length == 32) return FileHashHelper.toHex(digest);
+                    } catch (IllegalArgumentException e) {
+                        // Некорректное значение заголовка не мешает скачиванию
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает размер ресурса (-1, если неизвестен).
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Возвращает флаг, можно ли скачивать ресурс по диапазонам байт.
+     */
+    public boolean isRangeSupported() {
+        return acceptRanges && length > 0;
+    }
+
+    /**
+     * Возвращает значение заголовка ETag.
+     */
+    @Nullable
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Возвращает значение заголовка Last-Modified.
+     */
+    @Nullable
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Возвращает SHA-256 хеш содержимого в шестнадцатеричном виде (null, если сервер его не сообщил).
+     */
+    @Nullable
+    public String getSha256() {
+        return sSha256;
+    }
+
+    /**
+     * Возвращает значение для заголовка If-Range.
+     * Слабые ETag для If-Range не подходят, поэтому в этом случае используется Last-Modified.
+     */
+    @Nullable
+    public String getValidator() {
+        if (eTag != null && !eTag.startsWith("W/")) return eTag;
+        return lastModified;
+    }
+}
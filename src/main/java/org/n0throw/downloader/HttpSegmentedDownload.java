@@ -0,0 +1,270 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.progress.ProgressPhase;
+import org.n0throw.progress.ProgressTracker;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Сегментированное скачивание ресурса по HTTP.
+ * Каждый диапазон байт скачивается отдельным запросом и записывается в файл по своему смещению.
+ * Если задан журнал, то скачанные части диапазонов периодически фиксируются в нём.
+ */
+final class HttpSegmentedDownload {
+    /**
+     * Код ответа с полным содержимым ресурса.
+     */
+    private static final int HTTP_OK = 200;
+
+    /**
+     * Код ответа с диапазоном содержимого.
+     */
+    private static final int HTTP_PARTIAL = 206;
+
+    /**
+     * Объём данных, после скачивания которого прогресс фиксируется в журнале.
+     */
+    private static final long JOURNAL_CHECKPOINT_SIZE = 4L * 1024 * 1024;
+
+    /**
+     * Путь до ресурса.
+     */
+    private final URL url;
+
+    /**
+     * Сведения о ресурсе.
+     */
+    private final HttpResourceInfo info;
+
+    /**
+     * Диапазоны байт, которые нужно скачать.
+     */
+    private final List<ByteRange> ranges;
+
+    /**
+     * Количество одновременно скачиваемых диапазонов.
+     */
+    private final int parallelism;
+
+    /**
+     * Журнал скачивания (null, если прогресс сохранять не требуется).
+     */
+    @Nullable
+    private final DownloadJournal journal;
+
+    /**
+     * HTTP транспорт.
+     */
+    private final HttpTransport transport;
+
+    /**
+     * Планировщик передачи данных.
+     */
+    private final TransferScheduler scheduler;
+
+    /**
+     * Приоритет передачи.
+     */
+    private final TransferPriority priority;
+
+    /**
+     * @param url       Путь до ресурса.
+     * @param info      Сведения о ресурсе.
+     * @param ranges    Диапазоны байт, которые нужно скачать. Каждый диапазон скачивается отдельным потоком.
+     * @param transport HTTP транспорт.
+     * @param scheduler Планировщик передачи данных.
+     * @param priority  Приоритет передачи.
+     */
+    HttpSegmentedDownload(
+            URL url,
+            HttpResourceInfo info,
+            List<ByteRange> ranges,
+            HttpTransport transport,
+            TransferScheduler scheduler,
+            TransferPriority priority
+    ) {
+        this(url, info, ranges, ranges.size(), null, transport, scheduler, priority);
+    }
+
+    /**
+     * @param url         Путь до ресурса.
+     * @param info        Сведения о ресурсе.
+     * @param ranges      Диапазоны байт, которые нужно скачать.
+     * @param parallelism Количество одновременно скачиваемых диапазонов.
+     * @param journal     Журнал скачивания (null, если прогресс сохранять не требуется).
+     * @param transport   HTTP транспорт.
+     * @param scheduler   Планировщик передачи данных.
+     * @param priority    Приоритет передачи.
+     */
+    HttpSegmentedDownload(
+            URL url,
+            HttpResourceInfo info,
+            List<ByteRange> ranges,
+            int parallelism,
+            @Nullable DownloadJournal journal,
+            HttpTransport transport,
+            TransferScheduler scheduler,
+            TransferPriority priority
+    ) {
+        this.url = url;
+        this.info = info;
+        this.ranges = ranges;
+        this.parallelism = Math.max(1, Math.min(parallelism, ranges.size()));
+        this.journal = journal;
+        this.transport = transport;
+        this.scheduler = scheduler;
+        this.priority = priority;
+    }
+
+    /**
+     * Скачивает все диапазоны в файл. Размер файла заранее выставляется равным размеру ресурса.
+     *
+     * @param file    Файл, в который записываются данные.
+     * @param tracker Отслеживание прогресса (null, если не требуется).
+     * @throws IOException Если не удалось скачать один из диапазонов.
+     */
+    void downloadTo(@NotNull File file, @Nullable ProgressTracker tracker) throws IOException {
+        if (ranges.isEmpty()) return;
+        if (tracker != null) {
+            long length = 0;
+            for (ByteRange range : ranges) {
+                length += range.length();
+            }
+            tracker.setTotalBytes(length);
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(info.getLength());
+            FileChannel channel = randomAccessFile.getChannel();
+
+            ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "HttpSegment");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<Void>> futures = new ArrayList<>(ranges.size());
+                for (ByteRange range : ranges) {
+                    futures.add(executor.submit(() -> {
+                        downloadRange(range, channel, tracker);
+                        return null;
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    await(future);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Скачивает один диапазон байт и записывает его в файл по смещению диапазона.
+     * Запрос отправляется, когда планировщик разрешит ещё одно соединение с хостом.
+     *
+     * @param range   Диапазон байт.
+     * @param channel Канал файла.
+     * @param tracker Отслеживание прогресса (null, если не требуется).
+     * @throws IOException Если сервер не вернул запрошенный диапазон или соединение оборвалось.
+     */
+    private void downloadRange(
+            ByteRange range,
+            FileChannel channel,
+            @Nullable ProgressTracker tracker
+    ) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Range", range.toHeaderValue());
+        String sValidator = info.getValidator();
+        if (sValidator != null) {
+            headers.put("If-Range", sValidator);
+        }
+
+        long[] checkpoint = {range.getStart()};
+        long[] written = {range.getStart()};
+        TransferScheduler.Permit permit = scheduler.acquireConnection(url, priority);
+        HttpResponse<Long> response;
+        try {
+            response = transport.download(
+                    url,
+                    headers,
+                    HTTP_PARTIAL,
+                    channel,
+                    range.getStart(),
+                    range.length(),
+                    scheduler,
+                    priority,
+                    position -> {
+                        if (tracker != null) {
+                            tracker.startPhase(ProgressPhase.Transfer);
+                            tracker.addBytes(position - written[0]);
+                        }
+                        written[0] = position;
+                        if (journal != null && position - checkpoint[0] >= JOURNAL_CHECKPOINT_SIZE) {
+                            commit(channel, new ByteRange(checkpoint[0], position - 1));
+                            checkpoint[0] = position;
+                        }
+                    }
+            );
+        } finally {
+            permit.close();
+        }
+
+        int responseCode = response.statusCode();
+        if (responseCode == HTTP_OK && sValidator != null) {
+            throw new IOException("Ресурс изменился на сервере во время скачивания.");
+        }
+        if (responseCode != HTTP_PARTIAL) {
+            throw new IOException("Сервер не вернул диапазон " + range + " (код ответа " + responseCode + ").");
+        }
+        long position = range.getStart() + response.body();
+        if (journal != null && position > checkpoint[0]) {
+            commit(channel, new ByteRange(checkpoint[0], position - 1));
+        }
+        if (response.body() != range.length()) {
+            throw new EOFException("Соединение оборвалось при скачивании диапазона " + range + ".");
+        }
+    }
+
+    /**
+     * Сбрасывает записанные данные на диск и только после этого фиксирует диапазон в журнале,
+     * чтобы журнал никогда не ссылался на несохранённые данные.
+     */
+    private void commit(FileChannel channel, ByteRange range) throws IOException {
+        channel.force(false);
+        journal.markCompleted(range);
+        journal.save();
+    }
+
+    /**
+     * Ожидает завершения скачивания сегмента и пробрасывает его ошибку.
+     */
+    private static void await(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Скачивание прервано.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Не удалось скачать сегмент.", cause);
+        }
+    }
+}
@@ -0,0 +1,711 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP транспорт на общем {@link HttpClient}.
+ * Клиент держит пул соединений (с поддержкой HTTP/2), поэтому запросы к одному серверу переиспользуют
+ * уже открытое соединение. Содержимое ответа записывается напрямую в канал файла.
+ * Если запрос содержит заголовок Accept-Encoding, то сжатое содержимое (gzip, deflate) распаковывается
+ * по мере получения.
+ */
+public final class HttpTransport {
+    /**
+     * Таймаут подключения по умолчанию.
+     */
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Таймаут чтения по умолчанию.
+     */
+    public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(60);
+
+    /**
+     * Заголовок запроса со способами сжатия, которые поддерживает клиент.
+     */
+    @NonNls
+    public static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+    /**
+     * Заголовок ответа со способом сжатия содержимого.
+     */
+    @NonNls
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+
+    /**
+     * Общий транспорт загрузчиков.
+     */
+    private static final HttpTransport instance = new HttpTransport(
+            DEFAULT_CONNECT_TIMEOUT,
+            DEFAULT_READ_TIMEOUT,
+            HttpClient.Redirect.NORMAL
+    );
+
+    /**
+     * Поток проверки таймаутов чтения.
+     */
+    private static final ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "HttpTransportWatchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * HTTP клиент с пулом соединений.
+     */
+    private final HttpClient client;
+
+    /**
+     * Таймаут чтения: максимальное время ожидания заголовков ответа и очередной порции содержимого.
+     */
+    private final Duration readTimeout;
+
+    /**
+     * @param connectTimeout Таймаут подключения.
+     * @param readTimeout    Таймаут чтения: максимальное время ожидания заголовков ответа и очередной порции содержимого.
+     * @param redirect       Правило перехода по перенаправлениям.
+     * @throws IllegalArgumentException Если таймауты не положительные.
+     */
+    public HttpTransport(
+            @NotNull Duration connectTimeout,
+            @NotNull Duration readTimeout,
+            @NotNull HttpClient.Redirect redirect
+    ) {
+        if (connectTimeout.isZero() || connectTimeout.isNegative() || readTimeout.isZero() || readTimeout.isNegative()) {
+            throw new IllegalArgumentException("Таймауты должны быть положительными.");
+        }
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(redirect)
+                .build();
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Возвращает общий транспорт, через который по умолчанию работают HTTP загрузчики.
+     */
+    @NotNull
+    public static HttpTransport getInstance() {
+        return instance;
+    }
+
+    /**
+     * Возвращает HTTP клиент транспорта.
+     */
+    @NotNull
+    public HttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Возвращает таймаут чтения.
+     */
+    @NotNull
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Выполняет HEAD запрос.
+     *
+     * @param url     Путь до ресурса.
+     * @param headers Заголовки запроса.
+     * @return Ответ сервера.
+     * @throws IOException Если не удалось подключиться к серверу.
+     */
+    @NotNull
+    public HttpResponse<Void> head(@NotNull URL url, @NotNull Map<String, String> headers) throws IOException {
+        HttpRequest request = newRequest(url, headers)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        return send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    /**
+     * Открывает поток содержимого ресурса GET запросом.
+     * Таймаут чтения ограничивает ожидание заголовков ответа и каждого чтения содержимого:
+     * если чтение не получило данных за таймаут, то поток закрывается и чтение завершается
+     * {@link HttpTimeoutException}.
+     *
+     * @param url Путь до ресурса.
+     * @return Поток содержимого (закрывает вызывающий).
+     * @throws IOException Если не удалось подключиться к серверу или сервер вернул ошибку.
+     */
+    @NotNull
+    public InputStream openStream(@NotNull URL url) throws IOException {
+        return openStream(url, false);
+    }
+
+    /**
+     * Открывает поток содержимого ресурса GET запросом.
+     * Таймаут чтения ограничивает ожидание заголовков ответа и каждого чтения содержимого:
+     * если чтение не получило данных за таймаут, то поток закрывается и чтение завершается
+     * {@link HttpTimeoutException}.
+     *
+     * @param url      Путь до ресурса.
+     * @param compress Запрашивать ли сжатое содержимое. Поток в любом случае возвращает распакованные данные.
+     * @return Поток содержимого (закрывает вызывающий).
+     * @throws IOException Если не удалось подключиться к серверу или сервер вернул ошибку.
+     */
+    @NotNull
+    public InputStream openStream(@NotNull URL url, boolean compress) throws IOException {
+        Map<String, String> headers = compress ? Map.of(ACCEPT_ENCODING, ContentDecoder.ACCEPT_ENCODING) : Map.of();
+        HttpRequest request = newRequest(url, headers).GET().build();
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Сервер вернул код ответа " + response.statusCode() + ": " + url);
+        }
+        InputStream body = new IdleTimeoutInputStream(response.body(), readTimeout);
+        if (!compress) return body;
+        try {
+            return ContentDecoder.decode(body, response.headers().firstValue(CONTENT_ENCODING).orElse(null));
+        } catch (IOException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Скачивает содержимое ресурса GET запросом и записывает его в канал файла с указанной позиции.
+     * Содержимое записывается, только если код ответа совпал с ожидаемым.
+     * Если заголовки содержат Accept-Encoding, то сжатое содержимое распаковывается при записи,
+     * а ограничение размера и позиции относятся к распакованным данным.
+     * Если очередная порция содержимого не пришла за таймаут чтения, то скачивание прерывается.
+     *
+     * @param url            Путь до ресурса.
+     * @param headers        Заголовки запроса.
+     * @param expectedStatus Код ответа, при котором содержимое записывается в файл.
+     * @param channel        Канал файла.
+     * @param position       Позиция в файле, с которой записывается содержимое.
+     * @param limit          Максимальный размер содержимого.
+     * @param scheduler      Планировщик, ограничивающий скорость записи (null, если ограничивать не требуется).
+     * @param priority       Приоритет передачи.
+     * @param listener       Получатель позиции после каждой записанной порции (null, если не требуется).
+     * @return Ответ сервера с количеством записанных байт (-1, если код ответа не совпал с ожидаемым).
+     * @throws HttpTimeoutException Если истёк таймаут чтения.
+     * @throws IOException          Если не удалось скачать содержимое или записать его в файл.
+     */
+    @NotNull
+    public HttpResponse<Long> download(
+            @NotNull URL url,
+            @NotNull Map<String, String> headers,
+            int expectedStatus,
+            @NotNull FileChannel channel,
+            long position,
+            long limit,
+            @Nullable TransferScheduler scheduler,
+            @NotNull TransferPriority priority,
+            @Nullable IWriteListener listener
+    ) throws IOException {
+        HttpRequest request = newRequest(url, headers).GET().build();
+        return send(
+                request,
+                newFileHandler(expectedStatus, channel, position, limit, isDecoded(headers), scheduler, priority, listener)
+        );
+    }
+
+    /**
+     * Асинхронно скачивает содержимое ресурса GET запросом и записывает его в канал файла с указанной позиции.
+     * Поток не блокируется ни на время ожидания ответа, ни на время получения содержимого.
+     * Отмена возвращённой задачи прерывает обмен с сервером.
+     *
+     * @param url            Путь до ресурса.
+     * @param headers        Заголовки запроса.
+     * @param expectedStatus Код ответа, при котором содержимое записывается в файл.
+     * @param channel        Канал файла.
+     * @param position       Позиция в файле, с которой записывается содержимое.
+     * @param limit          Максимальный размер содержимого.
+     * @param scheduler      Планировщик, ограничивающий скорость записи (null, если ограничивать не требуется).
+     * @param priority       Приоритет передачи.
+     * @param listener       Получатель позиции после каждой записанной порции (null, если не требуется).
+     * @return Задача с ответом сервера и количеством записанных байт (-1, если код ответа не совпал с ожидаемым).
+     * @throws IOException Если путь до ресурса некорректен.
+     */
+    @NotNull
+    public CompletableFuture<HttpResponse<Long>> downloadAsync(
+            @NotNull URL url,
+            @NotNull Map<String, String> headers,
+            int expectedStatus,
+            @NotNull FileChannel channel,
+            long position,
+            long limit,
+            @Nullable TransferScheduler scheduler,
+            @NotNull TransferPriority priority,
+            @Nullable IWriteListener listener
+    ) throws IOException {
+        HttpRequest request = newRequest(url, headers).GET().build();
+        return client.sendAsync(
+                request,
+                newFileHandler(expectedStatus, channel, position, limit, isDecoded(headers), scheduler, priority, listener)
+        );
+    }
+
+    /**
+     * Создаёт обработчик ответа, записывающий содержимое в канал файла при ожидаемом коде ответа.
+     */
+    private HttpResponse.BodyHandler<Long> newFileHandler(
+            int expectedStatus,
+            FileChannel channel,
+            long position,
+            long limit,
+            boolean decode,
+            @Nullable TransferScheduler scheduler,
+            TransferPriority priority,
+            @Nullable IWriteListener listener
+    ) {
+        return responseInfo -> {
+            if (responseInfo.statusCode() != expectedStatus) {
+                return HttpResponse.BodySubscribers.replacing(-1L);
+            }
+            ContentDecoder decoder = null;
+            IOException failure = null;
+            if (decode) {
+                try {
+                    decoder = ContentDecoder.create(responseInfo.headers().firstValue(CONTENT_ENCODING).orElse(null));
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (listener != null) listener.onHeaders(responseInfo);
+            return new FileChannelSubscriber(
+                    channel,
+                    position,
+                    limit,
+                    readTimeout,
+                    decoder,
+                    failure,
+                    scheduler,
+                    priority,
+                    listener
+            );
+        };
+    }
+
+    /**
+     * Возвращает флаг, что запрос объявляет поддержку сжатия, и содержимое нужно распаковывать.
+     */
+    private static boolean isDecoded(Map<String, String> headers) {
+        for (String sName : headers.keySet()) {
+            if (ACCEPT_ENCODING.equalsIgnoreCase(sName)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Создаёт запрос с таймаутом ожидания заголовков ответа.
+     */
+    private HttpRequest.Builder newRequest(URL url, Map<String, String> headers) throws IOException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(url.toURI()).timeout(readTimeout);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Некорректный путь до ресурса: " + url, e);
+        }
+        headers.forEach(builder::header);
+        return builder;
+    }
+
+    /**
+     * Отправляет запрос и ожидает ответа.
+     */
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return client.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Запрос прерван: " + request.uri());
+        }
+    }
+
+    /**
+     * Получатель позиции в файле после записи очередной порции содержимого.
+     */
+    @FunctionalInterface
+    public interface IWriteListener {
+        /**
+         * Вызывается при получении заголовков ответа с ожидаемым кодом, до записи содержимого.
+         *
+         * @param responseInfo Код и заголовки ответа.
+         */
+        default void onHeaders(@NotNull HttpResponse.ResponseInfo responseInfo) {
+        }
+
+        /**
+         * Вызывается после получения очередной порции содержимого, до её записи.
+         *
+         * @param bytes Количество байт, полученных по сети с начала ответа
+         *              (для сжатого содержимого меньше записанных).
+         */
+        default void onReceived(long bytes) {
+        }
+
+        /**
+         * @param position Позиция в файле после записанной порции.
+         * @throws IOException Если не удалось обработать запись. Скачивание прерывается.
+         */
+        void onWritten(long position) throws IOException;
+    }
+
+    /**
+     * Поток содержимого ответа с таймаутом чтения. Блокирующее чтение {@link HttpClient} не ограничено по времени,
+     * поэтому зависшее чтение прерывается закрытием потока из потока проверки таймаутов.
+     */
+    private static final class IdleTimeoutInputStream extends FilterInputStream {
+        private final Duration readTimeout;
+
+        /**
+         * Время начала текущего чтения (0, если поток не читается).
+         */
+        private volatile long readStarted;
+
+        /**
+         * Флаг, что поток закрыт по таймауту.
+         */
+        private volatile boolean timedOut;
+
+        private final ScheduledFuture<?> timeoutCheck;
+
+        IdleTimeoutInputStream(InputStream stream, Duration readTimeout) {
+            super(stream);
+            this.readTimeout = readTimeout;
+            long period = Math.max(1, readTimeout.toMillis() / 4);
+            this.timeoutCheck = watchdog.scheduleWithFixedDelay(this::checkTimeout, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int read() throws IOException {
+            beginRead();
+            try {
+                return super.read();
+            } catch (IOException e) {
+                throw translate(e);
+            } finally {
+                readStarted = 0;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            beginRead();
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                throw translate(e);
+            } finally {
+                readStarted = 0;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            beginRead();
+            try {
+                return super.skip(n);
+            } catch (IOException e) {
+                throw translate(e);
+            } finally {
+                readStarted = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            timeoutCheck.cancel(false);
+            super.close();
+        }
+
+        private void beginRead() throws IOException {
+            if (timedOut) throw newTimeoutException();
+            readStarted = Math.max(1, System.nanoTime());
+        }
+
+        private IOException translate(IOException e) {
+            if (!timedOut) return e;
+            HttpTimeoutException timeout = newTimeoutException();
+            timeout.initCause(e);
+            return timeout;
+        }
+
+        private HttpTimeoutException newTimeoutException() {
+            return new HttpTimeoutException("Истёк таймаут чтения содержимого (" + readTimeout.toMillis() + " мс).");
+        }
+
+        private void checkTimeout() {
+            long started = readStarted;
+            if (started == 0 || System.nanoTime() - started < readTimeout.toNanos()) return;
+            timedOut = true;
+            try {
+                close();
+            } catch (IOException e) {
+                // todo slf4j
+            }
+        }
+    }
+
+    /**
+     * Запись содержимого ответа в канал файла позиционными записями.
+     * Поток, доставляющий содержимое, не блокируется: при исчерпании полосы следующая порция запрашивается
+     * после паузы, а не ожидается внутри {@link #onNext(List)}.
+     */
+    private static final class FileChannelSubscriber implements HttpResponse.BodySubscriber<Long> {
+        // Состояния обработки порции (распаковщик используется только в состоянии BUSY)
+        private static final int IDLE = 0;
+        private static final int BUSY = 1;
+        private static final int CLOSE_REQUESTED = 2;
+        private static final int CLOSED = 3;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long limit;
+        private final Duration readTimeout;
+        @Nullable
+        private final ContentDecoder decoder;
+        @Nullable
+        private final IOException failure;
+        @Nullable
+        private final TransferScheduler scheduler;
+        private final TransferPriority priority;
+        @Nullable
+        private final IWriteListener listener;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        /**
+         * Флаг, что скачивание прервано. Выставляется один раз, первым из потоков, обнаруживших ошибку.
+         */
+        private final AtomicBoolean failed = new AtomicBoolean();
+
+        /**
+         * Состояние обработки порции. Распаковщик закрывает только поток, который им пользуется:
+         * если ошибка обнаружена во время обработки порции (например, таймаут), то распаковщик закроется
+         * по её окончании.
+         */
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+
+        /**
+         * Позиция следующей записи.
+         */
+        private long position;
+
+        /**
+         * Количество байт, полученных по сети.
+         */
+        private long received;
+
+        /**
+         * Время получения последней порции содержимого.
+         */
+        private volatile long lastActivity = System.nanoTime();
+
+        private volatile Flow.Subscription subscription;
+
+        private volatile ScheduledFuture<?> timeoutCheck;
+
+        /**
+         * Флаг, что следующая порция не запрашивается до появления полосы (ожидание полосы не считается простоем).
+         */
+        private volatile boolean throttled;
+
+        FileChannelSubscriber(
+                FileChannel channel,
+                long position,
+                long limit,
+                Duration readTimeout,
+                @Nullable ContentDecoder decoder,
+                @Nullable IOException failure,
+                @Nullable TransferScheduler scheduler,
+                TransferPriority priority,
+                @Nullable IWriteListener listener
+        ) {
+            this.channel = channel;
+            this.start = position;
+            this.position = position;
+            this.limit = limit;
+            this.readTimeout = readTimeout;
+            this.decoder = decoder;
+            this.failure = failure;
+            this.scheduler = scheduler;
+            this.priority = priority;
+            this.listener = listener;
+        }
+
+        @Override
+        public CompletionStage<Long> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (failure != null) {
+                subscription.cancel();
+                fail(failure);
+                return;
+            }
+            long period = Math.max(1, readTimeout.toMillis() / 4);
+            timeoutCheck = watchdog.scheduleWithFixedDelay(this::checkTimeout, period, period, TimeUnit.MILLISECONDS);
+            requestNext();
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (!state.compareAndSet(IDLE, BUSY)) return;
+            try {
+                // Полоса расходуется по сети, поэтому учитываются полученные, а не записанные байты
+                long count = 0;
+                for (ByteBuffer buffer : buffers) {
+                    count += buffer.remaining();
+                }
+                received += count;
+                if (listener != null) listener.onReceived(received);
+                for (ByteBuffer buffer : buffers) {
+                    if (decoder != null) {
+                        decoder.decode(buffer, this::write);
+                    } else {
+                        write(buffer);
+                    }
+                }
+                if (scheduler != null) scheduler.consume(count);
+                if (listener != null) listener.onWritten(position);
+                lastActivity = System.nanoTime();
+            } catch (IOException | RuntimeException e) {
+                subscription.cancel();
+                fail(e);
+            } finally {
+                release();
+            }
+            requestNext();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            stopTimeoutCheck();
+            if (decoder != null && state.compareAndSet(IDLE, BUSY)) {
+                try {
+                    decoder.finish();
+                } catch (IOException e) {
+                    fail(e);
+                } finally {
+                    release();
+                }
+            }
+            if (!failed.get()) result.complete(position - start);
+        }
+
+        /**
+         * Запрашивает следующую порцию, если у передачи есть полоса, иначе откладывает запрос до её появления.
+         */
+        private void requestNext() {
+            if (failed.get()) return;
+            long delay = scheduler != null ? scheduler.getBandwidthDelayNanos(priority) : 0;
+            if (delay > 0) {
+                throttled = true;
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(this::requestNext);
+                return;
+            }
+            if (throttled) {
+                lastActivity = System.nanoTime();
+                throttled = false;
+            }
+            subscription.request(1);
+        }
+
+        /**
+         * Записывает порцию содержимого в файл.
+         */
+        private void write(ByteBuffer buffer) throws IOException {
+            if (position - start + buffer.remaining() > limit) {
+                throw new IOException("Сервер вернул больше данных, чем ожидалось.");
+            }
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        /**
+         * Прерывает скачивание, если содержимое не приходит дольше таймаута чтения.
+         */
+        private void checkTimeout() {
+            if (throttled || state.get() == BUSY || System.nanoTime() - lastActivity < readTimeout.toNanos()) return;
+            subscription.cancel();
+            fail(new HttpTimeoutException("Истёк таймаут чтения содержимого (" + readTimeout.toMillis() + " мс)."));
+        }
+
+        private void fail(Throwable throwable) {
+            if (!failed.compareAndSet(false, true)) return;
+            stopTimeoutCheck();
+            closeDecoder();
+            if (throwable instanceof IOException) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.completeExceptionally(new IOException("Не удалось записать содержимое ответа.", throwable));
+            }
+        }
+
+        /**
+         * Закрывает распаковщик сразу, если им никто не пользуется, иначе поручает закрытие потоку,
+         * который обрабатывает порцию.
+         */
+        private void closeDecoder() {
+            while (true) {
+                int current = state.get();
+                if (current == IDLE && state.compareAndSet(IDLE, CLOSED)) {
+                    if (decoder != null) decoder.close();
+                    return;
+                }
+                if (current == BUSY && state.compareAndSet(BUSY, CLOSE_REQUESTED)) return;
+                if (current == CLOSE_REQUESTED || current == CLOSED) return;
+            }
+        }
+
+        /**
+         * Завершает обработку порции и закрывает распаковщик, если скачивание прервали во время обработки.
+         */
+        private void release() {
+            if (!state.compareAndSet(BUSY, IDLE) && state.compareAndSet(CLOSE_REQUESTED, CLOSED)) {
+                if (decoder != null) decoder.close();
+            }
+        }
+
+        private void stopTimeoutCheck() {
+            ScheduledFuture<?> check = timeoutCheck;
+            if (check != null) check.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+
+/**
+ * Общий интерфейс для разностного скачивания: новая версия дистрибутива собирается из блоков старой версии,
+ * а скачиваются только изменившиеся данные.
+ */
+public interface IDeltaDistributionDownloader {
+    /**
+     * Скачивает дистрибутив, используя совпадающие блоки старой версии.
+     * Если разностное скачивание невозможно, то дистрибутив скачивается целиком.
+     *
+     * @param url           Путь до дистрибутива.
+     * @param basis         Старая версия дистрибутива.
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла.
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Файл дистрибутива.
+     * @throws IOException              Если не удалось создать файл или скачать данные.
+     * @throws IllegalArgumentException Если наименование файла содержит неразрешённые символы.
+     * @throws SecurityException        Если нет прав на создание файла.
+     */
+    File downloadDelta(
+            URL url,
+            @NotNull Path basis,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException;
+}
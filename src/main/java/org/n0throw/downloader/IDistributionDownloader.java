@@ -2,10 +2,16 @@ package org.n0throw.downloader;
 
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.n0throw.progress.IProgressListener;
+import org.n0throw.progress.ProgressPhase;
+import org.n0throw.progress.ProgressTracker;
+import org.n0throw.utils.concurrent.AsyncTasks;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Общий интерфейс для скачивания дистрибутива.
@@ -31,7 +37,7 @@ public interface IDistributionDownloader {
     }
 
     /**
-     * Скачивает дистрибутив.
+     * Скачивает дистрибутив. Строка разбирается в URL через {@link DownloaderRegistry#toUrl(String)}.
      *
      * @param sSpec         Путь до дистрибутива.
      * @param sFileName     Наименование файла.
@@ -48,7 +54,7 @@ public interface IDistributionDownloader {
             @NonNls String sFileExt,
             @NonNls @NotNull String... sResolvePaths
     ) throws IOException {
-        return download(new URL(null, sSpec, new jcifs.smb.Handler()), sFileName, sFileExt, sResolvePaths);
+        return download(DownloaderRegistry.getInstance().toUrl(sSpec), sFileName, sFileExt, sResolvePaths);
     }
 
     /**
@@ -88,4 +94,67 @@ public interface IDistributionDownloader {
             @NonNls String sFileExt,
             @NonNls @NotNull String... sResolvePaths
     ) throws IOException;
+
+    /**
+     * Скачивает дистрибутив с отчётами о прогрессе.
+     * По умолчанию прогресс известен только по завершении скачивания: этап передачи и итоговый размер файла.
+     *
+     * @param url           Путь до дистрибутива.
+     * @param listener      Получатель прогресса.
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла.
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Файл дистрибутива.
+     * @throws IOException              Если не удалось создать файл.
+     * @throws IllegalArgumentException Если наименование файла содержит неразрешённые символы.
+     * @throws SecurityException        Если нет прав на создание файла.
+     */
+    default File download(
+            URL url,
+            @NotNull IProgressListener listener,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        ProgressTracker tracker = new ProgressTracker(listener);
+        try {
+            tracker.startPhase(ProgressPhase.Transfer);
+            File file = download(url, sFileName, sFileExt, sResolvePaths);
+            tracker.addBytes(file.length());
+            return file;
+        } finally {
+            tracker.complete();
+        }
+    }
+
+    /**
+     * Открывает поток дистрибутива без сохранения во временный файл.
+     *
+     * @param url Путь до дистрибутива.
+     * @return Поток дистрибутива (закрывает вызывающий).
+     * @throws IOException Если не удалось подключиться к источнику.
+     */
+    default InputStream openStream(URL url) throws IOException {
+        return url.openConnection().getInputStream();
+    }
+
+    /**
+     * Асинхронно скачивает дистрибутив.
+     * По умолчанию синхронное скачивание выполняется в общем пуле блокирующих операций,
+     * а отмена задачи прерывает его поток.
+     *
+     * @param url           Путь до дистрибутива.
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла.
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Задача с файлом дистрибутива.
+     */
+    default CompletableFuture<File> downloadAsync(
+            URL url,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) {
+        return AsyncTasks.supplyAsync(() -> download(url, sFileName, sFileExt, sResolvePaths));
+    }
 }
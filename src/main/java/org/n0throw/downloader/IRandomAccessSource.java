@@ -0,0 +1,44 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Источник данных с произвольным доступом, который можно читать параллельно несколькими читателями.
+ */
+public interface IRandomAccessSource {
+    /**
+     * Возвращает размер данных.
+     *
+     * @throws IOException Если не удалось получить размер.
+     */
+    long length() throws IOException;
+
+    /**
+     * Открывает читателя. Каждый читатель используется одним потоком.
+     *
+     * @return Читатель.
+     * @throws IOException Если не удалось открыть источник.
+     */
+    @NotNull
+    IReader openReader() throws IOException;
+
+    /**
+     * Читатель источника.
+     */
+    interface IReader extends Closeable {
+        /**
+         * Читает данные с указанной позиции.
+         *
+         * @param position Позиция в источнике.
+         * @param buffer   Буфер.
+         * @param offset   Смещение в буфере.
+         * @param length   Максимальное количество байт.
+         * @return Количество прочитанных байт (-1, если достигнут конец источника).
+         * @throws IOException Если не удалось прочитать данные.
+         */
+        int read(long position, byte[] buffer, int offset, int length) throws IOException;
+    }
+}
@@ -0,0 +1,23 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Общий интерфейс для получения версии ресурса без его скачивания.
+ */
+public interface IResourceVersionProvider {
+    /**
+     * Возвращает текущую версию ресурса.
+     * Если переданная известная версия всё ещё актуальна, то возвращается она же.
+     *
+     * @param url   Путь до ресурса.
+     * @param known Ранее полученная версия ресурса (null, если неизвестна).
+     * @return Текущая версия ресурса (null, если источник не сообщает версию).
+     * @throws IOException Если не удалось подключиться к источнику.
+     */
+    @Nullable
+    ResourceVersion getVersion(URL url, @Nullable ResourceVersion known) throws IOException;
+}
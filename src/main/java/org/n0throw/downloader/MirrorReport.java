@@ -0,0 +1,132 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+/**
+ * Отчёт о синхронизации зеркала SMB папки.
+ */
+public final class MirrorReport {
+    /**
+     * Количество скопированных (новых или изменённых) файлов.
+     */
+    private final int copiedFiles;
+
+    /**
+     * Объём скопированных данных в байтах.
+     */
+    private final long copiedBytes;
+
+    /**
+     * Количество файлов, не изменившихся с прошлой синхронизации.
+     */
+    private final int unchangedFiles;
+
+    /**
+     * Количество файлов и папок, удалённых из зеркала.
+     */
+    private final int deletedEntries;
+
+    /**
+     * Количество папок, содержимое которых запрошено у сервера.
+     */
+    private final int listedDirectories;
+
+    /**
+     * Количество папок, содержимое которых взято из снимка.
+     */
+    private final int cachedDirectories;
+
+    /**
+     * Длительность синхронизации.
+     */
+    private final Duration duration;
+
+    /**
+     * @param copiedFiles       Количество скопированных файлов.
+     * @param copiedBytes       Объём скопированных данных в байтах.
+     * @param unchangedFiles    Количество не изменившихся файлов.
+     * @param deletedEntries    Количество удалённых файлов и папок.
+     * @param listedDirectories Количество папок, содержимое которых запрошено у сервера.
+     * @param cachedDirectories Количество папок, содержимое которых взято из снимка.
+     * @param duration          Длительность синхронизации.
+     */
+    public MirrorReport(
+            int copiedFiles,
+            long copiedBytes,
+            int unchangedFiles,
+            int deletedEntries,
+            int listedDirectories,
+            int cachedDirectories,
+            @NotNull Duration duration
+    ) {
+        this.copiedFiles = copiedFiles;
+        this.copiedBytes = copiedBytes;
+        this.unchangedFiles = unchangedFiles;
+        this.deletedEntries = deletedEntries;
+        this.listedDirectories = listedDirectories;
+        this.cachedDirectories = cachedDirectories;
+        this.duration = duration;
+    }
+
+    /**
+     * Возвращает количество скопированных (новых или изменённых) файлов.
+     */
+    public int getCopiedFiles() {
+        return copiedFiles;
+    }
+
+    /**
+     * Возвращает объём скопированных данных в байтах.
+     */
+    public long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+    /**
+     * Возвращает количество файлов, не изменившихся с прошлой синхронизации.
+     */
+    public int getUnchangedFiles() {
+        return unchangedFiles;
+    }
+
+    /**
+     * Возвращает количество файлов и папок, удалённых из зеркала.
+     */
+    public int getDeletedEntries() {
+        return deletedEntries;
+    }
+
+    /**
+     * Возвращает количество папок, содержимое которых запрошено у сервера.
+     */
+    public int getListedDirectories() {
+        return listedDirectories;
+    }
+
+    /**
+     * Возвращает количество папок, содержимое которых взято из снимка без запроса к серверу.
+     */
+    public int getCachedDirectories() {
+        return cachedDirectories;
+    }
+
+    /**
+     * Возвращает длительность синхронизации.
+     */
+    @NotNull
+    public Duration getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return "скопировано " + copiedFiles + " файлов (" + copiedBytes + " байт)"
+                + ", без изменений " + unchangedFiles
+                + ", удалено " + deletedEntries
+                + ", папок запрошено " + listedDirectories
+                + ", из снимка " + cachedDirectories
+                + ", за " + duration;
+    }
+}
@@ -0,0 +1,187 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Снимок метаданных зеркала SMB папки: для каждой папки источника её дата изменения и содержимое на момент
+ * последней синхронизации. Хранится в корне зеркала.
+ */
+final class MirrorSnapshot {
+    /**
+     * Наименование файла снимка в корне зеркала.
+     */
+    static final String FILE_NAME = ".smb-mirror.bin";
+
+    /**
+     * Сигнатура и версия формата файла снимка.
+     */
+    private static final int SNAPSHOT_MAGIC = 0x534D5201;
+
+    /**
+     * Путь до папки источника, для которой сделан снимок.
+     */
+    private final String sSourceUrl;
+
+    /**
+     * Состояния папок по относительному пути ("" - корень, разделитель "/").
+     */
+    private final Map<String, DirectoryState> directories = new ConcurrentHashMap<>();
+
+    /**
+     * @param sSourceUrl Путь до папки источника.
+     */
+    MirrorSnapshot(String sSourceUrl) {
+        this.sSourceUrl = sSourceUrl;
+    }
+
+    /**
+     * Загружает снимок из корня зеркала.
+     *
+     * @param root       Корень зеркала.
+     * @param sSourceUrl Путь до папки источника.
+     * @return Снимок (пустой, если файла нет, он другого формата или сделан для другого источника).
+     * @throws IOException Если не удалось прочитать файл.
+     */
+    static MirrorSnapshot load(Path root, String sSourceUrl) throws IOException {
+        MirrorSnapshot snapshot = new MirrorSnapshot(sSourceUrl);
+        Path path = root.resolve(FILE_NAME);
+        if (!Files.exists(path)) return snapshot;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != SNAPSHOT_MAGIC || !input.readUTF().equals(sSourceUrl)) return snapshot;
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String sPath = input.readUTF();
+                long lastModified = input.readLong();
+                int fileCount = input.readInt();
+                List<FileState> files = new ArrayList<>(fileCount);
+                for (int j = 0; j < fileCount; j++) {
+                    files.add(new FileState(input.readUTF(), input.readLong(), input.readLong()));
+                }
+                int directoryCount = input.readInt();
+                List<String> sDirectories = new ArrayList<>(directoryCount);
+                for (int j = 0; j < directoryCount; j++) {
+                    sDirectories.add(input.readUTF());
+                }
+                snapshot.directories.put(sPath, new DirectoryState(lastModified, files, sDirectories));
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Атомарно сохраняет снимок в корень зеркала.
+     *
+     * @param root Корень зеркала.
+     * @throws IOException Если не удалось записать файл.
+     */
+    void save(Path root) throws IOException {
+        Path path = root.resolve(FILE_NAME);
+        Path tempPath = root.resolve(FILE_NAME + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeUTF(sSourceUrl);
+            output.writeInt(directories.size());
+            for (Map.Entry<String, DirectoryState> entry : directories.entrySet()) {
+                DirectoryState state = entry.getValue();
+                output.writeUTF(entry.getKey());
+                output.writeLong(state.lastModified);
+                output.writeInt(state.files.size());
+                for (FileState file : state.files) {
+                    output.writeUTF(file.sName);
+                    output.writeLong(file.size);
+                    output.writeLong(file.lastModified);
+                }
+                output.writeInt(state.sDirectories.size());
+                for (String sDirectory : state.sDirectories) {
+                    output.writeUTF(sDirectory);
+                }
+            }
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Возвращает состояние папки.
+     *
+     * @param sPath Относительный путь папки.
+     * @return Состояние (null, если папки нет в снимке).
+     */
+    @Nullable
+    DirectoryState get(String sPath) {
+        return directories.get(sPath);
+    }
+
+    /**
+     * Запоминает состояние папки.
+     *
+     * @param sPath Относительный путь папки.
+     * @param state Состояние папки.
+     */
+    void put(String sPath, DirectoryState state) {
+        directories.put(sPath, state);
+    }
+
+    /**
+     * Забывает состояние папки, чтобы при следующей синхронизации она была просмотрена заново.
+     *
+     * @param sPath Относительный путь папки.
+     */
+    void remove(String sPath) {
+        directories.remove(sPath);
+    }
+
+    /**
+     * Состояние папки источника.
+     */
+    static final class DirectoryState {
+        /**
+         * Дата изменения папки (меняется при добавлении, удалении и переименовании вложенных элементов).
+         */
+        final long lastModified;
+
+        /**
+         * Файлы папки.
+         */
+        final List<FileState> files;
+
+        /**
+         * Наименования вложенных папок.
+         */
+        final List<String> sDirectories;
+
+        DirectoryState(long lastModified, @NotNull List<FileState> files, @NotNull List<String> sDirectories) {
+            this.lastModified = lastModified;
+            this.files = List.copyOf(files);
+            this.sDirectories = List.copyOf(sDirectories);
+        }
+    }
+
+    /**
+     * Состояние файла источника.
+     */
+    static final class FileState {
+        final String sName;
+        final long size;
+        final long lastModified;
+
+        FileState(String sName, long size, long lastModified) {
+            this.sName = sName;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
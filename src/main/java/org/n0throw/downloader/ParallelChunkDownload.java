@@ -0,0 +1,217 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.progress.ProgressPhase;
+import org.n0throw.progress.ProgressTracker;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Параллельное чтение источника с произвольным доступом блоками.
+ * Каждый поток открывает своего читателя, берёт следующий непрочитанный блок и записывает его
+ * в файл по смещению блока. Соединения и полоса выдаются планировщиком передачи данных.
+ */
+final class ParallelChunkDownload {
+    /**
+     * Размер одного чтения из источника.
+     */
+    static final int READ_SIZE = 1024 * 1024;
+
+    /**
+     * Путь до ресурса (по нему планировщик ограничивает соединения с хостом).
+     */
+    private final URL url;
+
+    /**
+     * Источник данных.
+     */
+    private final IRandomAccessSource source;
+
+    /**
+     * Размер данных.
+     */
+    private final long length;
+
+    /**
+     * Размер блока.
+     */
+    private final long chunkSize;
+
+    /**
+     * Количество одновременно читаемых блоков.
+     */
+    private final int parallelism;
+
+    /**
+     * Планировщик передачи данных.
+     */
+    private final TransferScheduler scheduler;
+
+    /**
+     * Приоритет передачи.
+     */
+    private final TransferPriority priority;
+
+    /**
+     * Позиция следующего непрочитанного блока.
+     */
+    private final AtomicLong nextChunk = new AtomicLong();
+
+    /**
+     * Флаг, что один из потоков завершился ошибкой и остальным нужно остановиться.
+     */
+    private volatile boolean failed;
+
+    /**
+     * @param url         Путь до ресурса.
+     * @param source      Источник данных.
+     * @param length      Размер данных.
+     * @param chunkSize   Размер блока.
+     * @param parallelism Количество одновременно читаемых блоков.
+     * @param scheduler   Планировщик передачи данных.
+     * @param priority    Приоритет передачи.
+     */
+    ParallelChunkDownload(
+            URL url,
+            IRandomAccessSource source,
+            long length,
+            long chunkSize,
+            int parallelism,
+            TransferScheduler scheduler,
+            TransferPriority priority
+    ) {
+        this.url = url;
+        this.source = source;
+        this.length = length;
+        this.chunkSize = chunkSize;
+        long chunkCount = (length + chunkSize - 1) / chunkSize;
+        this.parallelism = (int) Math.max(1, Math.min(parallelism, chunkCount));
+        this.scheduler = scheduler;
+        this.priority = priority;
+    }
+
+    /**
+     * Читает все блоки в файл. Размер файла заранее выставляется равным размеру данных.
+     *
+     * @param file    Файл, в который записываются данные.
+     * @param tracker Отслеживание прогресса (null, если не требуется).
+     * @throws IOException Если не удалось прочитать один из блоков или записать его в файл.
+     */
+    void downloadTo(@NotNull File file, @Nullable ProgressTracker tracker) throws IOException {
+        if (tracker != null) tracker.setTotalBytes(length);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(length);
+            FileChannel channel = randomAccessFile.getChannel();
+
+            ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "ChunkRead");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<Void>> futures = new ArrayList<>(parallelism);
+                for (int i = 0; i < parallelism; i++) {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            readChunks(channel, tracker);
+                        } catch (IOException | RuntimeException e) {
+                            failed = true;
+                            throw e;
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    await(future);
+                }
+            } finally {
+                failed = true;
+                executor.shutdownNow();
+                awaitTermination(executor);
+            }
+        }
+    }
+
+    /**
+     * Дожидается остановки потоков, чтобы они не писали в закрытый файл и не удерживали читателей
+     * после выхода из {@link #downloadTo(File, ProgressTracker)}.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Потоки завершат текущее чтение и увидят флаг ошибки
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Читает блоки, пока они не закончатся. Читатель и соединение с хостом удерживаются на все блоки потока.
+     */
+    private void readChunks(FileChannel channel, @Nullable ProgressTracker tracker) throws IOException {
+        TransferScheduler.Permit permit = scheduler.acquireConnection(url, priority);
+        try (IRandomAccessSource.IReader reader = source.openReader()) {
+            byte[] buffer = new byte[(int) Math.min(READ_SIZE, chunkSize)];
+            long start;
+            while (!failed && (start = nextChunk.getAndAdd(chunkSize)) < length) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Скачивание прервано.");
+                }
+                long end = Math.min(length, start + chunkSize);
+                for (long position = start; position < end; ) {
+                    scheduler.awaitBandwidth(priority);
+                    int read = reader.read(position, buffer, 0, (int) Math.min(buffer.length, end - position));
+                    if (read < 0) {
+                        throw new EOFException("Источник оказался короче ожидаемого: " + url);
+                    }
+                    scheduler.consume(read);
+                    ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                    long writePosition = position;
+                    while (data.hasRemaining()) {
+                        writePosition += channel.write(data, writePosition);
+                    }
+                    position += read;
+                    if (tracker != null) {
+                        tracker.startPhase(ProgressPhase.Transfer);
+                        tracker.addBytes(read);
+                    }
+                }
+            }
+        } finally {
+            permit.close();
+        }
+    }
+
+    /**
+     * Ожидает завершения потока и пробрасывает его ошибку.
+     */
+    private static void await(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Скачивание прервано.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Не удалось прочитать блок.", cause);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.n0throw.diagnostics.DownloadRecording;
+import org.n0throw.utils.files.ChecksumMismatchException;
+import org.n0throw.utils.files.ExpectedChecksum;
+import org.n0throw.utils.files.FileHashHelper;
+import org.n0throw.utils.files.TempFile;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Скачивание дистрибутива с соседних узлов установки (см. {@link org.n0throw.cache.PeerCacheServer})
+ * с переходом к основному источнику.
+ * Содержимое ищется на узлах по SHA-256 хешу из файла контрольных сумм блоков ({@link BlockChecksums}),
+ * опубликованного рядом с дистрибутивом. Диапазоны скачиваются с узлов параллельно, каждый блок сверяется
+ * со строгой суммой, а диапазон с несовпадением запрашивается у следующего узла.
+ * Если файла контрольных сумм нет, ни у одного узла нет содержимого или диапазон не получен ни от одного узла,
+ * то дистрибутив скачивается основным загрузчиком.
+ */
+public class PeerDistributionDownloader implements IDistributionDownloader {
+    /**
+     * Размер диапазона, запрашиваемого у узла, по умолчанию.
+     */
+    public static final long DEFAULT_RANGE_SIZE = 4L * 1024 * 1024;
+
+    /**
+     * Путь содержимого на узле относительно его адреса.
+     */
+    @NonNls
+    private static final String OBJECTS_PATH = "objects/";
+
+    /**
+     * Основной загрузчик.
+     */
+    private final IDistributionDownloader origin;
+
+    /**
+     * Адреса узлов (например, {@code http://host:port/}).
+     */
+    private final List<URL> peers;
+
+    /**
+     * Размер диапазона, запрашиваемого у узла.
+     */
+    private final long rangeSize;
+
+    /**
+     * HTTP транспорт для обращения к узлам.
+     */
+    private final HttpTransport transport;
+
+    /**
+     * Планировщик передач.
+     */
+    private final TransferScheduler scheduler;
+
+    /**
+     * Приоритет передач.
+     */
+    private final TransferPriority priority;
+
+    /**
+     * @param origin Основной загрузчик.
+     * @param peers  Адреса узлов.
+     */
+    public PeerDistributionDownloader(@NotNull IDistributionDownloader origin, @NotNull List<URL> peers) {
+        this(
+                origin,
+                peers,
+                DEFAULT_RANGE_SIZE,
+                HttpTransport.getInstance(),
+                TransferScheduler.getInstance(),
+                TransferPriority.Interactive
+        );
+    }
+
+    /**
+     * @param origin    Основной загрузчик.
+     * @param peers     Адреса узлов.
+     * @param rangeSize Размер диапазона, запрашиваемого у узла (округляется вверх до размера блока).
+     * @param transport HTTP транспорт для обращения к узлам.
+     * @param scheduler Планировщик передач.
+     * @param priority  Приоритет передач.
+     * @throws IllegalArgumentException Если размер диапазона не положительный.
+     */
+    public PeerDistributionDownloader(
+            @NotNull IDistributionDownloader origin,
+            @NotNull List<URL> peers,
+            long rangeSize,
+            @NotNull HttpTransport transport,
+            @NotNull TransferScheduler scheduler,
+            @NotNull TransferPriority priority
+    ) {
+        if (rangeSize <= 0) {
+            throw new IllegalArgumentException("Размер диапазона должен быть положительным.");
+        }
+        this.origin = origin;
+        this.peers = List.copyOf(peers);
+        this.rangeSize = rangeSize;
+        this.transport = transport;
+        this.scheduler = scheduler;
+        this.priority = priority;
+    }
+
+    @Override
+    public File download(
+            URL url,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        BlockChecksums checksums;
+        try (InputStream stream = origin.openStream(BlockChecksums.getUrl(url))) {
+            checksums = BlockChecksums.read(stream);
+        } catch (IOException e) {
+            // todo slf4j: файл контрольных сумм не опубликован, без хеша узлы не опрашиваются
+            return origin.download(url, sFileName, sFileExt, sResolvePaths);
+        }
+        String sHash = checksums.getSha256().toLowerCase(Locale.ROOT);
+        List<URL> sources = findSources(sHash, checksums.getLength());
+        if (sources.isEmpty() || checksums.getLength() == 0) {
+            return origin.download(url, sFileName, sFileExt, sResolvePaths);
+        }
+
+        DownloadRecording recording = DownloadRecording.start(sources.get(0));
+        try {
+            return recording.succeeded(downloadFromPeers(sources, checksums, sFileName, sFileExt, sResolvePaths));
+        } catch (InterruptedIOException e) {
+            recording.failed(e);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.failed(e);
+            // todo slf4j: узлы не отдали содержимое, скачиваем из основного источника
+            return origin.download(url, sFileName, sFileExt, sResolvePaths);
+        }
+    }
+
+    @Override
+    public InputStream openStream(URL url) throws IOException {
+        return origin.openStream(url);
+    }
+
+    /**
+     * Возвращает адреса содержимого на узлах, у которых оно есть целиком.
+     * Узлы опрашиваются параллельно, недоступные узлы пропускаются.
+     */
+    private List<URL> findSources(String sHash, long length) throws InterruptedIOException {
+        if (peers.isEmpty()) return List.of();
+        ExecutorService executor = newExecutor(peers.size());
+        try {
+            List<Future<URL>> futures = new ArrayList<>(peers.size());
+            for (URL peer : peers) {
+                futures.add(executor.submit(() -> {
+                    URL object = new URL(peer, OBJECTS_PATH + sHash);
+                    HttpResponse<Void> response = transport.head(object, Map.of());
+                    boolean found = response.statusCode() == HttpURLConnection.HTTP_OK
+                            && response.headers().firstValueAsLong("Content-Length").orElse(-1) == length;
+                    return found ? object : null;
+                }));
+            }
+            List<URL> sources = new ArrayList<>(futures.size());
+            for (Future<URL> future : futures) {
+                try {
+                    URL object = future.get();
+                    if (object != null) sources.add(object);
+                } catch (ExecutionException e) {
+                    // todo slf4j: узел недоступен
+                }
+            }
+            return sources;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Опрос узлов прерван.");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Скачивает содержимое с узлов диапазонами, выровненными по блокам, и сверяет итоговый хеш.
+     */
+    private File downloadFromPeers(
+            List<URL> sources,
+            BlockChecksums checksums,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        long blockSize = checksums.getBlockSize();
+        long alignedRangeSize = (rangeSize + blockSize - 1) / blockSize * blockSize;
+        List<ByteRange> ranges = new ArrayList<>();
+        for (long start = 0; start < checksums.getLength(); start += alignedRangeSize) {
+            ranges.add(new ByteRange(start, Math.min(checksums.getLength(), start + alignedRangeSize) - 1));
+        }
+
+        final File tempFile = TempFile.createEmptyFile(sFileName, sFileExt, sResolvePaths);
+        try {
+            TempFile.reserve(tempFile, checksums.getLength());
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(tempFile, "rw")) {
+                randomAccessFile.setLength(checksums.getLength());
+                FileChannel channel = randomAccessFile.getChannel();
+                ExecutorService executor = newExecutor(Math.min(ranges.size(), sources.size() * 2));
+                try {
+                    List<Future<Void>> futures = new ArrayList<>(ranges.size());
+                    for (int i = 0; i < ranges.size(); i++) {
+                        ByteRange range = ranges.get(i);
+                        int first = i % sources.size();
+                        futures.add(executor.submit(() -> {
+                            downloadRange(sources, first, range, checksums, channel);
+                            return null;
+                        }));
+                    }
+                    for (Future<Void> future : futures) {
+                        await(future);
+                    }
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+
+            String sActual = FileHashHelper.sha256(tempFile.toPath());
+            if (!sActual.equalsIgnoreCase(checksums.getSha256())) {
+                throw new ChecksumMismatchException(ExpectedChecksum.sha256(checksums.getSha256()), sActual);
+            }
+        } catch (IOException | RuntimeException e) {
+            TempFile.delete(tempFile);
+            throw e;
+        }
+        return tempFile;
+    }
+
+    /**
+     * Скачивает диапазон, начиная с заданного узла, пока один из узлов не отдаст его без искажений.
+     *
+     * @throws IOException Если ни один узел не отдал диапазон.
+     */
+    private void downloadRange(
+            List<URL> sources,
+            int first,
+            ByteRange range,
+            BlockChecksums checksums,
+            FileChannel channel
+    ) throws IOException {
+        IOException failure = null;
+        for (int attempt = 0; attempt < sources.size(); attempt++) {
+            URL source = sources.get((first + attempt) % sources.size());
+            try {
+                fetch(source, range, channel);
+                if (isRangeValid(range, checksums, channel)) return;
+                failure = new IOException("Узел " + source + " отдал искажённый диапазон " + range + ".");
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    private void fetch(URL source, ByteRange range, FileChannel channel) throws IOException {
+        HttpResponse<Long> response;
+        TransferScheduler.Permit permit = scheduler.acquireConnection(source, priority);
+        try {
+            response = transport.download(
+                    source,
+                    Map.of("Range", range.toHeaderValue()),
+                    HttpURLConnection.HTTP_PARTIAL,
+                    channel,
+                    range.getStart(),
+                    range.length(),
+                    scheduler,
+                    priority,
+                    null
+            );
+        } finally {
+            permit.close();
+        }
+        if (response.statusCode() != HttpURLConnection.HTTP_PARTIAL) {
+            throw new IOException(
+                    "Узел " + source + " не вернул диапазон " + range + " (код ответа " + response.statusCode() + ")."
+            );
+        }
+        if (response.body() != range.length()) {
+            throw new EOFException("Соединение с узлом " + source + " оборвалось на диапазоне " + range + ".");
+        }
+    }
+
+    /**
+     * Сверяет блоки диапазона, записанные в файл, со строгими суммами.
+     */
+    private static boolean isRangeValid(ByteRange range, BlockChecksums checksums, FileChannel channel)
+            throws IOException {
+        int blockSize = checksums.getBlockSize();
+        MessageDigest digest = FileHashHelper.createDigest(BlockChecksums.STRONG_ALGORITHM);
+        ByteBuffer buffer = ByteBuffer.allocate(blockSize);
+        for (long position = range.getStart(); position <= range.getEnd(); position += blockSize) {
+            buffer.clear().limit((int) Math.min(blockSize, range.getEnd() + 1 - position));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) return false;
+            }
+            digest.update(buffer.flip());
+            if (!checksums.isStrongSumEqual((int) (position / blockSize), digest.digest())) return false;
+        }
+        return true;
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "PeerRange");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Ожидает завершения скачивания диапазона и пробрасывает его ошибку.
+     */
+    private static void await(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Скачивание прервано.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Не удалось скачать диапазон.", cause);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Версия ресурса на сервере, по которой проверяется актуальность ранее скачанной копии.
+ */
+public final class ResourceVersion {
+    /**
+     * Тег сущности (ETag для HTTP).
+     */
+    @Nullable
+    private final String eTag;
+
+    /**
+     * Дата последнего изменения в формате источника.
+     */
+    @Nullable
+    private final String lastModified;
+
+    /**
+     * Размер ресурса (-1, если неизвестен).
+     */
+    private final long length;
+
+    /**
+     * @param eTag         Тег сущности (ETag для HTTP).
+     * @param lastModified Дата последнего изменения в формате источника.
+     * @param length       Размер ресурса (-1, если неизвестен).
+     */
+    public ResourceVersion(@Nullable String eTag, @Nullable String lastModified, long length) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.length = length;
+    }
+
+    /**
+     * Возвращает тег сущности.
+     */
+    @Nullable
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Возвращает дату последнего изменения.
+     */
+    @Nullable
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Возвращает размер ресурса (-1, если неизвестен).
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Возвращает флаг, можно ли по версии судить об изменении ресурса.
+     * Одного размера для этого недостаточно.
+     */
+    public boolean isComparable() {
+        return eTag != null || lastModified != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ResourceVersion)) return false;
+        ResourceVersion other = (ResourceVersion) o;
+        return length == other.length
+                && Objects.equals(eTag, other.eTag)
+                && Objects.equals(lastModified, other.lastModified);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(eTag, lastModified, length);
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceVersion{eTag=" + eTag + ", lastModified=" + lastModified + ", length=" + length + "}";
+    }
+}
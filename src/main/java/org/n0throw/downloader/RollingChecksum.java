@@ -0,0 +1,86 @@
+package org.n0throw.downloader;
+
+/**
+ * Скользящая контрольная сумма блока (как в rsync/zsync): две 16-битные суммы, которые пересчитываются
+ * за O(1) при сдвиге окна на один байт.
+ */
+final class RollingChecksum {
+    /**
+     * Размер окна.
+     */
+    private final int blockSize;
+
+    /**
+     * Сумма байт окна.
+     */
+    private int a;
+
+    /**
+     * Сумма байт окна, взвешенных по расстоянию до конца окна.
+     */
+    private int b;
+
+    /**
+     * @param blockSize Размер окна.
+     */
+    RollingChecksum(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Вычисляет сумму блока. Блок короче окна считается дополненным нулями.
+     *
+     * @param blockSize Размер окна.
+     * @param data      Данные.
+     * @param offset    Смещение блока в данных.
+     * @param length    Длина блока (не больше размера окна).
+     * @return Контрольная сумма.
+     */
+    static int of(int blockSize, byte[] data, int offset, int length) {
+        RollingChecksum checksum = new RollingChecksum(blockSize);
+        checksum.update(data, offset, length, 0);
+        return checksum.getValue();
+    }
+
+    /**
+     * Обнуляет сумму.
+     */
+    void reset() {
+        a = 0;
+        b = 0;
+    }
+
+    /**
+     * Добавляет байты к окну.
+     *
+     * @param data     Данные.
+     * @param offset   Смещение в данных.
+     * @param length   Количество байт.
+     * @param position Позиция первого байта в окне.
+     */
+    void update(byte[] data, int offset, int length, int position) {
+        for (int i = 0; i < length; i++) {
+            int value = data[offset + i] & 0xFF;
+            a += value;
+            b += (blockSize - position - i) * value;
+        }
+    }
+
+    /**
+     * Сдвигает окно на один байт.
+     *
+     * @param out Байт, покидающий окно.
+     * @param in  Байт, входящий в окно.
+     */
+    void roll(byte out, byte in) {
+        a += (in & 0xFF) - (out & 0xFF);
+        b += a - blockSize * (out & 0xFF);
+    }
+
+    /**
+     * Возвращает значение суммы.
+     */
+    int getValue() {
+        return (b & 0xFFFF) << 16 | (a & 0xFFFF);
+    }
+}
@@ -0,0 +1,472 @@
+package org.n0throw.downloader;
+
+import jcifs.smb.NtlmPasswordAuthentication;
+import jcifs.smb.SmbFile;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.diagnostics.DownloadRecording;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Инкрементальное зеркало папки на SMB сервере в локальной папке.
+ * Копируются только новые и изменённые (по размеру и дате изменения) файлы, несколько файлов одновременно;
+ * файлы и папки, удалённые в источнике, удаляются из зеркала.
+ * <p>
+ * После синхронизации в корне зеркала сохраняется снимок содержимого папок источника. Дата изменения папки
+ * меняется при добавлении, удалении и переименовании вложенных элементов, поэтому если она совпадает со снимком,
+ * то содержимое папки берётся из снимка без запроса к серверу. Изменение файла на месте (без пересоздания)
+ * дату папки не меняет, такие изменения находит только полная синхронизация ({@link #sync(URL, boolean)}).
+ */
+public class SmbDirectoryMirror {
+    /**
+     * Количество одновременно копируемых файлов по умолчанию.
+     */
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    /**
+     * Расширение файла, в который копируются данные до замены файла зеркала.
+     */
+    @NonNls
+    private static final String TEMP_EXTENSION = ".mirror-tmp";
+
+    /**
+     * Данные пользователя для аутентификации.
+     */
+    private final NtlmPasswordAuthentication auth;
+
+    /**
+     * Корень зеркала.
+     */
+    private final Path root;
+
+    /**
+     * Планировщик передачи данных.
+     */
+    private final TransferScheduler scheduler;
+
+    /**
+     * Приоритет передачи.
+     */
+    private final TransferPriority priority;
+
+    /**
+     * Количество одновременно копируемых файлов.
+     */
+    private final int concurrency;
+
+    /**
+     * Пул SMB сессий.
+     */
+    private final SmbSessionPool sessionPool = SmbSessionPool.getInstance();
+
+    /**
+     * @param auth Данные для авторизации пользователя.
+     * @param root Корень зеркала.
+     */
+    public SmbDirectoryMirror(NtlmPasswordAuthentication auth, @NotNull Path root) {
+        this(auth, root, TransferScheduler.getInstance(), TransferPriority.Background, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * @param auth        Данные для авторизации пользователя.
+     * @param root        Корень зеркала.
+     * @param scheduler   Планировщик, ограничивающий скорость и количество соединений.
+     * @param priority    Приоритет передачи.
+     * @param concurrency Количество одновременно копируемых файлов.
+     * @throws IllegalArgumentException Если количество файлов меньше 1.
+     */
+    public SmbDirectoryMirror(
+            NtlmPasswordAuthentication auth,
+            @NotNull Path root,
+            @NotNull TransferScheduler scheduler,
+            @NotNull TransferPriority priority,
+            int concurrency
+    ) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Количество одновременно копируемых файлов должно быть не меньше 1.");
+        }
+        this.auth = auth;
+        this.root = root;
+        this.scheduler = scheduler;
+        this.priority = priority;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Синхронизирует зеркало с папкой источника, пропуская папки, не изменившиеся с прошлой синхронизации.
+     *
+     * @param url Путь до папки (smb://сервер/папка/путь/).
+     * @return Отчёт о синхронизации.
+     * @throws IOException Если не удалось получить содержимое папки, скопировать или удалить файлы.
+     */
+    @NotNull
+    public MirrorReport sync(@NotNull URL url) throws IOException {
+        return sync(url, false);
+    }
+
+    /**
+     * Синхронизирует зеркало с папкой источника.
+     * Если часть файлов скопировать не удалось, то остальные всё равно копируются, а папки с ошибками
+     * будут просмотрены заново при следующей синхронизации.
+     *
+     * @param url      Путь до папки (smb://сервер/папка/путь/).
+     * @param fullScan Запрашивать содержимое всех папок, даже если их дата изменения совпадает со снимком.
+     * @return Отчёт о синхронизации.
+     * @throws IOException Если не удалось получить содержимое папки, скопировать или удалить файлы.
+     */
+    @NotNull
+    public MirrorReport sync(@NotNull URL url, boolean fullScan) throws IOException {
+        long start = System.nanoTime();
+        // jcifs считает папкой только путь с завершающим "/"
+        URL directoryUrl = url.getPath().endsWith("/") ? url : new URL(url, url.getPath() + "/");
+        String sSourceUrl = directoryUrl.toString();
+
+        Files.createDirectories(root);
+        Sync sync = new Sync(MirrorSnapshot.load(root, sSourceUrl), new MirrorSnapshot(sSourceUrl), fullScan);
+        IOException error = null;
+        try {
+            SmbFile remoteRoot = openDirectory(directoryUrl);
+            sync.syncDirectory(remoteRoot, "", root, remoteRoot.lastModified());
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            error = sync.awaitCopies(error);
+        }
+
+        try {
+            sync.next.save(root);
+        } catch (IOException e) {
+            if (error == null) error = e;
+            else error.addSuppressed(e);
+        }
+        if (error != null) throw error;
+
+        return new MirrorReport(
+                sync.copiedFiles.get(),
+                sync.copiedBytes.get(),
+                sync.unchangedFiles,
+                sync.deletedEntries,
+                sync.listedDirectories,
+                sync.cachedDirectories,
+                Duration.ofNanos(System.nanoTime() - start)
+        );
+    }
+
+    /**
+     * Возвращает корень зеркала.
+     */
+    @NotNull
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Открывает папку источника через пул SMB сессий.
+     *
+     * @param url Путь до папки (с завершающим "/").
+     * @return Папка источника.
+     * @throws IOException Если не удалось подключиться к серверу.
+     */
+    @NotNull
+    protected SmbFile openDirectory(@NotNull URL url) throws IOException {
+        return sessionPool.open(url, auth);
+    }
+
+    /**
+     * Возвращает элемент папки источника по наименованию, не обращаясь к серверу.
+     * Используется для элементов, содержимое папки которых взято из снимка.
+     *
+     * @param directory Папка источника.
+     * @param sName     Наименование элемента (у папок - с завершающим "/").
+     * @return Элемент папки.
+     * @throws IOException Если наименование не образует корректный путь.
+     */
+    @NotNull
+    protected SmbFile openChild(@NotNull SmbFile directory, @NotNull String sName) throws IOException {
+        return new SmbFile(directory, sName);
+    }
+
+    /**
+     * Одна синхронизация. Папки обходятся в вызывающем потоке, файлы копируются в пуле.
+     */
+    private final class Sync {
+        /**
+         * Снимок прошлой синхронизации.
+         */
+        private final MirrorSnapshot previous;
+
+        /**
+         * Снимок текущей синхронизации.
+         */
+        private final MirrorSnapshot next;
+
+        private final boolean fullScan;
+
+        private final ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "SmbMirror");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        /**
+         * Запущенные копирования.
+         */
+        private final List<Future<?>> copies = new ArrayList<>();
+
+        /**
+         * Относительные пути папок, в которых не удалось скопировать файл.
+         */
+        private final Set<String> sFailedDirectories = ConcurrentHashMap.newKeySet();
+
+        private final AtomicInteger copiedFiles = new AtomicInteger();
+        private final AtomicLong copiedBytes = new AtomicLong();
+        private int unchangedFiles;
+        private int deletedEntries;
+        private int listedDirectories;
+        private int cachedDirectories;
+
+        Sync(MirrorSnapshot previous, MirrorSnapshot next, boolean fullScan) {
+            this.previous = previous;
+            this.next = next;
+            this.fullScan = fullScan;
+        }
+
+        /**
+         * Синхронизирует папку и рекурсивно вложенные папки.
+         *
+         * @param remote       Папка источника.
+         * @param sPath        Относительный путь папки ("" - корень).
+         * @param local        Папка зеркала.
+         * @param lastModified Дата изменения папки источника.
+         */
+        private void syncDirectory(SmbFile remote, String sPath, Path local, long lastModified) throws IOException {
+            MirrorSnapshot.DirectoryState state = previous.get(sPath);
+            List<MirrorSnapshot.FileState> files = new ArrayList<>();
+            List<String> sDirectories = new ArrayList<>();
+            Map<String, SmbFile> sources = new HashMap<>();
+
+            if (!fullScan && state != null && lastModified != 0 && state.lastModified == lastModified
+                    && Files.isDirectory(local)) {
+                cachedDirectories++;
+                files.addAll(state.files);
+                sDirectories.addAll(state.sDirectories);
+            } else {
+                listedDirectories++;
+                Map<String, Boolean> remoteNames = new HashMap<>();
+                for (SmbFile child : remote.listFiles()) {
+                    String sName = getName(child);
+                    if (sName == null || sPath.isEmpty() && isReserved(sName)) continue;
+                    boolean directory = child.isDirectory();
+                    remoteNames.put(sName, directory);
+                    sources.put(sName, child);
+                    if (directory) {
+                        sDirectories.add(sName);
+                    } else {
+                        files.add(new MirrorSnapshot.FileState(sName, child.length(), child.lastModified()));
+                    }
+                }
+                deleteRemoved(local, remoteNames, sPath.isEmpty());
+                Files.createDirectories(local);
+            }
+
+            for (MirrorSnapshot.FileState file : files) {
+                Path target = local.resolve(file.sName);
+                if (isUpToDate(target, file)) {
+                    unchangedFiles++;
+                    continue;
+                }
+                SmbFile source = sources.containsKey(file.sName)
+                        ? sources.get(file.sName)
+                        : openChild(remote, file.sName);
+                copies.add(executor.submit(() -> {
+                    try {
+                        copy(source, target, file);
+                    } catch (IOException | RuntimeException e) {
+                        sFailedDirectories.add(sPath);
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+            next.put(sPath, new MirrorSnapshot.DirectoryState(lastModified, files, sDirectories));
+
+            for (String sName : sDirectories) {
+                SmbFile child = sources.containsKey(sName) ? sources.get(sName) : openChild(remote, sName + "/");
+                String sChildPath = sPath.isEmpty() ? sName : sPath + "/" + sName;
+                syncDirectory(child, sChildPath, local.resolve(sName), child.lastModified());
+            }
+        }
+
+        /**
+         * Копирует файл источника во временный файл рядом с файлом зеркала и заменяет им файл зеркала.
+         * Дата изменения файла зеркала выставляется по источнику.
+         */
+        private void copy(SmbFile source, Path target, MirrorSnapshot.FileState file) throws IOException {
+            DownloadRecording recording = DownloadRecording.start(source.getURL());
+            Path temp = target.resolveSibling(target.getFileName() + TEMP_EXTENSION);
+            try (InputStream stream = scheduler.openStream(
+                    source.getURL(),
+                    priority,
+                    () -> new BufferedInputStream(source.getInputStream(), ParallelChunkDownload.READ_SIZE)
+            )) {
+                long copied = Files.copy(stream, temp, StandardCopyOption.REPLACE_EXISTING);
+                if (copied != file.size) {
+                    throw new IOException("Файл " + source.getURL() + " изменился во время копирования.");
+                }
+                Files.setLastModifiedTime(temp, FileTime.fromMillis(file.lastModified));
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                copiedFiles.incrementAndGet();
+                copiedBytes.addAndGet(copied);
+                recording.succeeded(target.toFile());
+            } catch (IOException | RuntimeException e) {
+                recording.failed(e);
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+        }
+
+        /**
+         * Удаляет из папки зеркала элементы, которых нет в источнике или которые сменили тип (файл/папка).
+         *
+         * @param local       Папка зеркала.
+         * @param remoteNames Элементы источника: наименование -> папка ли это.
+         * @param isRoot      Флаг, корень ли это зеркала (в нём хранится снимок).
+         */
+        private void deleteRemoved(Path local, Map<String, Boolean> remoteNames, boolean isRoot) throws IOException {
+            if (!Files.isDirectory(local)) {
+                if (Files.exists(local)) deleteRecursively(local);
+                return;
+            }
+            List<Path> removed = new ArrayList<>();
+            try (Stream<Path> entries = Files.list(local)) {
+                entries.forEach(entry -> {
+                    String sName = entry.getFileName().toString();
+                    if (isRoot && isReserved(sName)) return;
+                    Boolean directory = remoteNames.get(sName);
+                    if (directory == null || directory != Files.isDirectory(entry)) removed.add(entry);
+                });
+            }
+            for (Path entry : removed) {
+                deleteRecursively(entry);
+            }
+        }
+
+        private void deleteRecursively(Path path) throws IOException {
+            Files.walkFileTree(path, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    Files.delete(file);
+                    deletedEntries++;
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                    if (e != null) throw e;
+                    Files.delete(directory);
+                    deletedEntries++;
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        /**
+         * Ожидает завершения копирований. Папки с ошибками удаляются из снимка.
+         *
+         * @param error Ошибка обхода папок (null, если её не было).
+         * @return Первая ошибка (остальные добавлены к ней как подавленные) или null.
+         */
+        @Nullable
+        private IOException awaitCopies(@Nullable IOException error) {
+            try {
+                for (Future<?> copy : copies) {
+                    try {
+                        copy.get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        IOException copyError = cause instanceof IOException
+                                ? (IOException) cause
+                                : new IOException(cause);
+                        if (error == null) error = copyError;
+                        else error.addSuppressed(copyError);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                InterruptedIOException interrupted = new InterruptedIOException("Синхронизация зеркала прервана.");
+                if (error != null) interrupted.addSuppressed(error);
+                error = interrupted;
+            } finally {
+                executor.shutdownNow();
+            }
+            for (String sPath : sFailedDirectories) {
+                next.remove(sPath);
+            }
+            return error;
+        }
+    }
+
+    /**
+     * Возвращает наименование элемента папки без завершающего "/" у папок.
+     *
+     * @return Наименование (null, если оно выводит за пределы папки).
+     */
+    @Nullable
+    private static String getName(SmbFile file) {
+        String sName = file.getName();
+        if (sName.endsWith("/")) sName = sName.substring(0, sName.length() - 1);
+        if (sName.isEmpty() || sName.equals(".") || sName.equals("..") || sName.contains("/") || sName.contains("\\")) {
+            return null;
+        }
+        return sName;
+    }
+
+    /**
+     * Проверяет, что наименование в корне зеркала занято файлом снимка.
+     */
+    private static boolean isReserved(String sName) {
+        return sName.equals(MirrorSnapshot.FILE_NAME) || sName.equals(MirrorSnapshot.FILE_NAME + ".tmp");
+    }
+
+    /**
+     * Проверяет, что файл зеркала совпадает с файлом источника по размеру и дате изменения.
+     */
+    private static boolean isUpToDate(Path target, MirrorSnapshot.FileState file) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(target, BasicFileAttributes.class);
+            return attributes.isRegularFile()
+                    && attributes.size() == file.size
+                    && attributes.lastModifiedTime().toMillis() == file.lastModified;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+}
@@ -4,21 +4,58 @@ import jcifs.smb.NtlmPasswordAuthentication;
 import jcifs.smb.SmbFile;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.diagnostics.DownloadRecording;
+import org.n0throw.progress.IProgressListener;
+import org.n0throw.progress.ProgressPhase;
+import org.n0throw.progress.ProgressTracker;
 import org.n0throw.utils.files.TempFile;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.List;
 
 /**
  * Класс для скачивания дистрибутивов по SMB
+ * <p>
+ * Файлы открываются через общий пул сессий ({@link SmbSessionPool}), поэтому повторные скачивания с того же
+ * сервера не проходят авторизацию заново. Если задано несколько потоков, то крупные файлы читаются параллельно
+ * блоками по {@value #CHUNK_SIZE} байт, каждый поток через свой дескриптор файла.
  */
-public class SmbDistributionDownloader implements IDistributionDownloader {
+public class SmbDistributionDownloader implements IDistributionDownloader, IResourceVersionProvider {
+    /**
+     * Размер блока при параллельном чтении.
+     */
+    public static final long CHUNK_SIZE = 8L * 1024 * 1024;
+
     /**
      * Данные пользователя для аутентификации.
      */
     private final NtlmPasswordAuthentication auth;
 
+    /**
+     * Планировщик передачи данных.
+     */
+    private final TransferScheduler scheduler;
+
+    /**
+     * Приоритет передачи.
+     */
+    private final TransferPriority priority;
+
+    /**
+     * Количество одновременно читаемых блоков.
+     */
+    private final int parallelism;
+
+    /**
+     * Пул SMB сессий.
+     */
+    private final SmbSessionPool sessionPool = SmbSessionPool.getInstance();
+
     /**
      * @param login    Логин пользователя.
      * @param password Пароль пользователя.
@@ -35,14 +72,50 @@ public class SmbDistributionDownloader implements IDistributionDownloader {
      * @param auth Данные для авторизации пользователя.
      */
     public SmbDistributionDownloader(NtlmPasswordAuthentication auth) {
+        this(auth, TransferScheduler.getInstance(), TransferPriority.Interactive);
+    }
+
+    /**
+     * @param auth      Данные для авторизации пользователя.
+     * @param scheduler Планировщик, ограничивающий скорость и количество соединений.
+     * @param priority  Приоритет передачи.
+     */
+    public SmbDistributionDownloader(
+            NtlmPasswordAuthentication auth,
+            @NotNull TransferScheduler scheduler,
+            @NotNull TransferPriority priority
+    ) {
+        this(auth, scheduler, priority, 1);
+    }
+
+    /**
+     * @param auth        Данные для авторизации пользователя.
+     * @param scheduler   Планировщик, ограничивающий скорость и количество соединений.
+     * @param priority    Приоритет передачи.
+     * @param parallelism Количество одновременно читаемых блоков (1 - последовательное чтение).
+     *                    Фактически ограничено числом соединений с хостом в планировщике.
+     * @throws IllegalArgumentException Если количество блоков меньше 1.
+     */
+    public SmbDistributionDownloader(
+            NtlmPasswordAuthentication auth,
+            @NotNull TransferScheduler scheduler,
+            @NotNull TransferPriority priority,
+            int parallelism
+    ) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Количество одновременно читаемых блоков должно быть не меньше 1.");
+        }
         this.auth = auth;
+        this.scheduler = scheduler;
+        this.priority = priority;
+        this.parallelism = parallelism;
     }
 
     /**
      * Авторизация через анонимного пользователя.
      */
     public SmbDistributionDownloader() {
-        this.auth = NtlmPasswordAuthentication.ANONYMOUS;
+        this(NtlmPasswordAuthentication.ANONYMOUS);
     }
 
     /**
@@ -64,12 +137,139 @@ public class SmbDistributionDownloader implements IDistributionDownloader {
             @NonNls String sFileExt,
             @NonNls @NotNull String... sResolvePaths
     ) throws IOException {
-        SmbFile smbFile = new SmbFile(url, auth);
-        return TempFile.createFromInputStream(
-                smbFile.getInputStream(),
-                sFileName,
-                sFileExt,
-                sResolvePaths
-        );
+        return download(url, (ProgressTracker) null, sFileName, sFileExt, sResolvePaths);
+    }
+
+    /**
+     * Скачивает дистрибутив с отчётами о прогрессе. Размер файла запрашивается до начала передачи,
+     * поэтому оставшееся время известно с первого отчёта.
+     *
+     * @param url           Путь до дистрибутива.
+     * @param listener      Получатель прогресса.
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла.
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Файл дистрибутива.
+     * @throws IOException              Если не удалось создать файл или подключиться/получить данные по протоколу SMB.
+     * @throws IllegalArgumentException Если наименование файла содержит неразрешённые символы.
+     * @throws SecurityException        Если нет прав на создание файла.
+     */
+    @Override
+    public File download(
+            URL url,
+            @NotNull IProgressListener listener,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        ProgressTracker tracker = new ProgressTracker(listener);
+        try {
+            return download(url, tracker, sFileName, sFileExt, sResolvePaths);
+        } finally {
+            tracker.complete();
+        }
+    }
+
+    /**
+     * Скачивает дистрибутив с записью в JFR и реестр метрик.
+     */
+    private File download(
+            URL url,
+            @Nullable ProgressTracker tracker,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        DownloadRecording recording = DownloadRecording.start(url);
+        try {
+            return recording.succeeded(downloadFile(url, tracker, sFileName, sFileExt, sResolvePaths));
+        } catch (IOException | RuntimeException e) {
+            recording.failed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Скачивает дистрибутив параллельно блоками, если файл достаточно большой, иначе последовательно.
+     */
+    private File downloadFile(
+            URL url,
+            @Nullable ProgressTracker tracker,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        if (tracker != null) tracker.startPhase(ProgressPhase.Connect);
+        SmbFile smbFile = sessionPool.open(url, auth);
+        long length = smbFile.length();
+        if (tracker != null) tracker.setTotalBytes(length);
+
+        if (parallelism > 1 && length >= 2 * CHUNK_SIZE) {
+            final File tempFile = TempFile.createEmptyFile(sFileName, sFileExt, sResolvePaths);
+            try {
+                TempFile.reserve(tempFile, length);
+                new ParallelChunkDownload(
+                        url,
+                        new SmbRandomAccessSource(smbFile),
+                        length,
+                        CHUNK_SIZE,
+                        parallelism,
+                        scheduler,
+                        priority
+                ).downloadTo(tempFile, tracker);
+            } catch (IOException e) {
+                TempFile.delete(tempFile);
+                throw e;
+            }
+            return tempFile;
+        }
+
+        try (InputStream stream = scheduler.openStream(url, priority, () -> openBuffered(smbFile))) {
+            return TempFile.createFromInputStream(
+                    stream,
+                    List.of(),
+                    tracker,
+                    sFileName,
+                    sFileExt,
+                    sResolvePaths
+            );
+        }
+    }
+
+    /**
+     * Открывает поток файла по протоколу SMB через планировщик передачи данных.
+     * Соединение с хостом освобождается при закрытии потока.
+     *
+     * @param url Путь до дистрибутива.
+     * @return Поток дистрибутива.
+     * @throws IOException Если не удалось подключиться по протоколу SMB.
+     */
+    @Override
+    public InputStream openStream(URL url) throws IOException {
+        return scheduler.openStream(url, priority, () -> openBuffered(sessionPool.open(url, auth)));
+    }
+
+    /**
+     * Открывает поток файла с буфером в {@value ParallelChunkDownload#READ_SIZE} байт: jcifs читает не больше,
+     * чем запрошено, поэтому крупный буфер сокращает количество запросов к серверу.
+     */
+    private static InputStream openBuffered(SmbFile smbFile) throws IOException {
+        return new BufferedInputStream(smbFile.getInputStream(), ParallelChunkDownload.READ_SIZE);
+    }
+
+    /**
+     * Возвращает текущую версию файла по его размеру и дате последнего изменения.
+     *
+     * @param url   Путь до файла.
+     * @param known Ранее полученная версия файла (не используется).
+     * @return Текущая версия файла (null, если файл не существует).
+     * @throws IOException Если не удалось подключиться по протоколу SMB.
+     */
+    @Nullable
+    @Override
+    public ResourceVersion getVersion(URL url, @Nullable ResourceVersion known) throws IOException {
+        SmbFile smbFile = sessionPool.open(url, auth);
+        if (!smbFile.exists()) return null;
+        return new ResourceVersion(null, Long.toString(smbFile.lastModified()), smbFile.length());
     }
 }
@@ -0,0 +1,68 @@
+package org.n0throw.downloader;
+
+import jcifs.smb.SmbFile;
+import jcifs.smb.SmbRandomAccessFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Файл на SMB сервере как источник с произвольным доступом.
+ * Каждый читатель открывает свой дескриптор файла ({@link SmbRandomAccessFile}) в общей сессии.
+ */
+final class SmbRandomAccessSource implements IRandomAccessSource {
+    /**
+     * Файл на SMB сервере.
+     */
+    private final SmbFile file;
+
+    /**
+     * @param file Файл на SMB сервере.
+     */
+    SmbRandomAccessSource(SmbFile file) {
+        this.file = file;
+    }
+
+    @Override
+    public long length() throws IOException {
+        return file.length();
+    }
+
+    @NotNull
+    @Override
+    public IReader openReader() throws IOException {
+        return new Reader(new SmbRandomAccessFile(file, "r"));
+    }
+
+    /**
+     * Читатель одного дескриптора файла. Позиция меняется только при переходе к другому блоку.
+     */
+    private static final class Reader implements IReader {
+        private final SmbRandomAccessFile randomAccessFile;
+
+        /**
+         * Текущая позиция дескриптора.
+         */
+        private long position;
+
+        Reader(SmbRandomAccessFile randomAccessFile) {
+            this.randomAccessFile = randomAccessFile;
+        }
+
+        @Override
+        public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+            if (position != this.position) {
+                randomAccessFile.seek(position);
+                this.position = position;
+            }
+            int read = randomAccessFile.read(buffer, offset, length);
+            if (read > 0) this.position += read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            randomAccessFile.close();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.n0throw.downloader;
+
+import jcifs.smb.NtlmPasswordAuthentication;
+import jcifs.smb.SmbFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Пул авторизованных SMB сессий по серверу, общей папке и данным пользователя.
+ * Для каждой пары сервер/пользователь хранится подключённый корень общей папки. Файлы открываются
+ * относительно него, поэтому jcifs использует уже установленные соединение, сессию и дерево
+ * и не проходит авторизацию заново для каждого файла.
+ */
+public final class SmbSessionPool {
+    /**
+     * Время простоя, после которого сессия подключается заново.
+     */
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+
+    /**
+     * Общий пул.
+     */
+    private static final SmbSessionPool instance = new SmbSessionPool(DEFAULT_IDLE_TIMEOUT);
+
+    /**
+     * Время простоя в наносекундах.
+     */
+    private final long idleTimeoutNanos;
+
+    /**
+     * Сессии по ключу.
+     */
+    private final Map<Key, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Время следующей проверки простаивающих сессий.
+     */
+    private volatile long nextEviction;
+
+    /**
+     * @param idleTimeout Время простоя, после которого сессия подключается заново.
+     * @throws IllegalArgumentException Если время простоя не положительное.
+     */
+    public SmbSessionPool(@NotNull Duration idleTimeout) {
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("Время простоя должно быть положительным.");
+        }
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.nextEviction = System.nanoTime() + idleTimeoutNanos;
+    }
+
+    /**
+     * Возвращает общий пул.
+     */
+    public static SmbSessionPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Открывает файл через сессию пула. Если сессии для сервера, общей папки и пользователя ещё нет
+     * или она простаивала дольше допустимого, то подключается новая. Не чаще раза за время простоя
+     * из пула удаляются сессии других серверов, которые простаивали дольше допустимого.
+     *
+     * @param url  Путь до файла (smb://сервер/папка/путь).
+     * @param auth Данные для авторизации пользователя.
+     * @return Файл, использующий сессию пула.
+     * @throws IOException Если не удалось подключиться к серверу.
+     */
+    @NotNull
+    public SmbFile open(@NotNull URL url, @NotNull NtlmPasswordAuthentication auth) throws IOException {
+        String sPath = url.getPath();
+        int shareEnd = sPath.indexOf('/', 1);
+        if (shareEnd == -1 || shareEnd == sPath.length() - 1) {
+            // Сервер или общая папка целиком: держать для них сессию нет смысла
+            return new SmbFile(url, auth);
+        }
+
+        Key key = new Key(url.getAuthority(), sPath.substring(1, shareEnd), auth);
+        long now = System.nanoTime();
+        if (now - nextEviction >= 0) {
+            nextEviction = now + idleTimeoutNanos;
+            evictIdle();
+        }
+        Session session = sessions.get(key);
+        if (session == null || now - session.lastUsed > idleTimeoutNanos) {
+            SmbFile root = new SmbFile("smb://" + key.sAuthority + "/" + key.sShare + "/", auth);
+            root.connect();
+            session = new Session(root);
+            sessions.put(key, session);
+        }
+        session.lastUsed = now;
+        return new SmbFile(session.root, sPath.substring(shareEnd + 1));
+    }
+
+    /**
+     * Удаляет сессии, простаивающие дольше допустимого.
+     */
+    public void evictIdle() {
+        long now = System.nanoTime();
+        sessions.values().removeIf(session -> now - session.lastUsed > idleTimeoutNanos);
+    }
+
+    /**
+     * Возвращает количество сессий в пуле.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Подключённый корень общей папки.
+     */
+    private static final class Session {
+        private final SmbFile root;
+
+        /**
+         * Время последнего использования.
+         */
+        private volatile long lastUsed;
+
+        Session(SmbFile root) {
+            this.root = root;
+        }
+    }
+
+    /**
+     * Ключ сессии: сервер (с портом), общая папка и пользователь.
+     * Сервер и общая папка не зависят от регистра и хранятся в нижнем регистре.
+     */
+    private static final class Key {
+        private final String sAuthority;
+        private final String sShare;
+        private final NtlmPasswordAuthentication auth;
+
+        Key(String sAuthority, String sShare, NtlmPasswordAuthentication auth) {
+            this.sAuthority = sAuthority.toLowerCase(Locale.ROOT);
+            this.sShare = sShare.toLowerCase(Locale.ROOT);
+            this.auth = auth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return sAuthority.equals(key.sAuthority)
+                    && sShare.equals(key.sShare)
+                    && auth.equals(key.auth);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sAuthority, sShare, auth);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.n0throw.downloader;
+
+/**
+ * Класс приоритета передачи данных. Передачи с более высоким приоритетом получают соединения и полосу раньше.
+ * Порядок констант задаёт приоритет: первая константа - самый высокий.
+ */
+public enum TransferPriority {
+    /**
+     * Установка, которую ждёт пользователь.
+     */
+    Interactive,
+    /**
+     * Фоновая предзагрузка.
+     */
+    Background
+}
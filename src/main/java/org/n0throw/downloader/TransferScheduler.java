@@ -0,0 +1,578 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Планировщик передачи данных загрузчиками.
+ * Ограничивает общую скорость передачи (token bucket) и количество одновременных соединений с одним хостом.
+ * Передачи с более высоким {@link TransferPriority} получают соединения и полосу раньше.
+ */
+public final class TransferScheduler {
+    /**
+     * Значение лимита, означающее отсутствие ограничения.
+     */
+    public static final int UNLIMITED = 0;
+
+    /**
+     * Длительность одного интервала замера скорости.
+     */
+    private static final long RATE_BUCKET_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Количество интервалов замера скорости (в сумме одна секунда).
+     */
+    private static final int RATE_BUCKET_COUNT = 10;
+
+    /**
+     * Общий планировщик загрузчиков (без ограничений, пока они не заданы).
+     */
+    private static final TransferScheduler instance = new TransferScheduler(UNLIMITED, UNLIMITED);
+
+    /**
+     * Источник времени в наносекундах.
+     */
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Сигнал об освобождении соединения или изменении лимитов.
+     */
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * Максимальная общая скорость передачи (байт/с).
+     */
+    private long maxBytesPerSecond;
+
+    /**
+     * Максимальное количество одновременных соединений с одним хостом.
+     */
+    private int maxConnectionsPerHost;
+
+    /**
+     * Доступный объём передачи. Может быть отрицательным: передача, превысившая лимит, погашает долг ожиданием.
+     */
+    private double tokens;
+
+    /**
+     * Время последнего пополнения токенов.
+     */
+    private long refillTime;
+
+    /**
+     * Состояние соединений по хостам.
+     */
+    private final Map<String, HostState> hosts = new HashMap<>();
+
+    /**
+     * Количество передач, ожидающих полосы, по приоритетам.
+     */
+    private final int[] waitingTransfers = new int[TransferPriority.values().length];
+
+    /**
+     * Объём переданных данных по интервалам замера скорости.
+     */
+    private final long[] rateBuckets = new long[RATE_BUCKET_COUNT];
+
+    /**
+     * Номер последнего интервала замера скорости.
+     */
+    private long rateBucket;
+
+    /**
+     * Всего передано байт.
+     */
+    private long totalBytes;
+
+    /**
+     * @param maxBytesPerSecond     Максимальная общая скорость передачи в байт/с ({@link #UNLIMITED} - без ограничения).
+     * @param maxConnectionsPerHost Максимальное количество соединений с одним хостом ({@link #UNLIMITED} - без ограничения).
+     * @throws IllegalArgumentException Если лимиты отрицательные.
+     */
+    public TransferScheduler(long maxBytesPerSecond, int maxConnectionsPerHost) {
+        this(maxBytesPerSecond, maxConnectionsPerHost, System::nanoTime);
+    }
+
+    /**
+     * @param clock Источник времени в наносекундах.
+     */
+    TransferScheduler(long maxBytesPerSecond, int maxConnectionsPerHost, @NotNull LongSupplier clock) {
+        this.clock = clock;
+        this.rateBucket = clock.getAsLong() / RATE_BUCKET_NANOS;
+        setMaxBytesPerSecond(maxBytesPerSecond);
+        setMaxConnectionsPerHost(maxConnectionsPerHost);
+    }
+
+    /**
+     * Возвращает общий планировщик, через который по умолчанию работают все загрузчики.
+     */
+    @NotNull
+    public static TransferScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * Задаёт максимальную общую скорость передачи. Действует и на уже идущие передачи.
+     *
+     * @param maxBytesPerSecond Скорость в байт/с ({@link #UNLIMITED} - без ограничения).
+     * @throws IllegalArgumentException Если скорость отрицательная.
+     */
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        if (maxBytesPerSecond < 0) {
+            throw new IllegalArgumentException("Ограничение скорости не может быть отрицательным.");
+        }
+        lock.lock();
+        try {
+            this.maxBytesPerSecond = maxBytesPerSecond;
+            this.tokens = maxBytesPerSecond;
+            this.refillTime = clock.getAsLong();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Задаёт максимальное количество одновременных соединений с одним хостом. Открытые соединения не закрываются.
+     *
+     * @param maxConnectionsPerHost Количество соединений ({@link #UNLIMITED} - без ограничения).
+     * @throws IllegalArgumentException Если количество отрицательное.
+     */
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost < 0) {
+            throw new IllegalArgumentException("Ограничение соединений не может быть отрицательным.");
+        }
+        lock.lock();
+        try {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает максимальную общую скорость передачи (байт/с).
+     */
+    public long getMaxBytesPerSecond() {
+        lock.lock();
+        try {
+            return maxBytesPerSecond;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает максимальное количество одновременных соединений с одним хостом.
+     */
+    public int getMaxConnectionsPerHost() {
+        lock.lock();
+        try {
+            return maxConnectionsPerHost;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Открывает соединение с учётом лимита соединений и ограничивает скорость чтения из него.
+     * Соединение освобождается при закрытии возвращённого потока.
+     *
+     * @param url      Путь до ресурса (по нему определяется хост).
+     * @param priority Приоритет передачи.
+     * @param opener   Открытие потока ресурса.
+     * @return Поток ресурса.
+     * @throws InterruptedIOException Если ожидание соединения прервано.
+     * @throws IOException            Если не удалось открыть поток.
+     */
+    @NotNull
+    public InputStream openStream(
+            @NotNull URL url,
+            @NotNull TransferPriority priority,
+            @NotNull IStreamOpener opener
+    ) throws IOException {
+        Permit permit = acquireConnection(url, priority);
+        try {
+            return new ScheduledInputStream(opener.open(), priority, permit);
+        } catch (IOException | RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Ожидает свободного соединения с хостом ресурса.
+     *
+     * @param url      Путь до ресурса.
+     * @param priority Приоритет передачи.
+     * @return Разрешение, которое нужно закрыть после завершения работы с соединением.
+     * @throws InterruptedIOException Если ожидание прервано.
+     */
+    @NotNull
+    public Permit acquireConnection(@NotNull URL url, @NotNull TransferPriority priority) throws InterruptedIOException {
+        String sHost = getHostKey(url);
+        lock.lock();
+        try {
+            HostState host = hosts.computeIfAbsent(sHost, key -> new HostState());
+            host.waiting[priority.ordinal()]++;
+            try {
+                while (maxConnectionsPerHost != UNLIMITED
+                        && (host.active >= maxConnectionsPerHost || hasHigherWaiting(host.waiting, priority))) {
+                    changed.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                changed.signalAll();
+                throw new InterruptedIOException("Ожидание соединения прервано.");
+            } finally {
+                host.waiting[priority.ordinal()]--;
+                if (host.isIdle()) hosts.remove(sHost);
+            }
+            host.active++;
+            hosts.put(sHost, host);
+            return new Permit(sHost);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Занимает соединение с хостом ресурса, только если оно доступно без ожидания.
+     *
+     * @param url      Путь до ресурса.
+     * @param priority Приоритет передачи.
+     * @return Разрешение, которое нужно закрыть после завершения работы с соединением (null, если нужно ждать).
+     */
+    @Nullable
+    public Permit tryAcquireConnection(@NotNull URL url, @NotNull TransferPriority priority) {
+        String sHost = getHostKey(url);
+        lock.lock();
+        try {
+            HostState host = hosts.get(sHost);
+            if (host != null && maxConnectionsPerHost != UNLIMITED
+                    && (host.active >= maxConnectionsPerHost || hasHigherWaiting(host.waiting, priority)
+                    || host.waiting[priority.ordinal()] > 0)) {
+                return null;
+            }
+            if (host == null) {
+                host = new HostState();
+                hosts.put(sHost, host);
+            }
+            host.active++;
+            return new Permit(sHost);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Оборачивает поток ограничением скорости чтения. Соединения не учитываются.
+     *
+     * @param stream   Исходный поток.
+     * @param priority Приоритет передачи.
+     * @return Поток с ограничением скорости.
+     */
+    @NotNull
+    public InputStream throttle(@NotNull InputStream stream, @NotNull TransferPriority priority) {
+        return new ScheduledInputStream(stream, priority, null);
+    }
+
+    /**
+     * Возвращает текущее состояние планировщика.
+     */
+    @NotNull
+    public TransferStats getStats() {
+        lock.lock();
+        try {
+            advanceRate(clock.getAsLong());
+            long bytesPerSecond = 0;
+            for (long bytes : rateBuckets) {
+                bytesPerSecond += bytes;
+            }
+            int activeConnections = 0;
+            int queuedConnections = 0;
+            for (HostState host : hosts.values()) {
+                activeConnections += host.active;
+                for (int waiting : host.waiting) {
+                    queuedConnections += waiting;
+                }
+            }
+            int queuedTransfers = 0;
+            for (int waiting : waitingTransfers) {
+                queuedTransfers += waiting;
+            }
+            return new TransferStats(bytesPerSecond, totalBytes, activeConnections, queuedConnections, queuedTransfers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ожидает, пока у передачи не появится доступная полоса.
+     */
+    void awaitBandwidth(TransferPriority priority) throws InterruptedIOException {
+        lock.lock();
+        try {
+            waitingTransfers[priority.ordinal()]++;
+            try {
+                while (maxBytesPerSecond != UNLIMITED) {
+                    refill();
+                    if (tokens > 0 && !hasHigherWaiting(waitingTransfers, priority)) break;
+                    changed.awaitNanos(getDebtNanos());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Ожидание полосы прервано.");
+            } finally {
+                waitingTransfers[priority.ordinal()]--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает время, через которое у передачи появится доступная полоса, не блокируя поток.
+     * Используется асинхронными передачами: они запрашивают следующую порцию данных только по истечении
+     * этого времени, а не ждут полосы в потоке, доставляющем данные.
+     *
+     * @return 0, если полоса доступна сейчас, иначе время ожидания в наносекундах.
+     */
+    long getBandwidthDelayNanos(TransferPriority priority) {
+        lock.lock();
+        try {
+            if (maxBytesPerSecond == UNLIMITED) return 0;
+            refill();
+            if (tokens > 0 && !hasHigherWaiting(waitingTransfers, priority)) return 0;
+            return getDebtNanos();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает время, за которое погасится долг по полосе (не меньше миллисекунды).
+     */
+    private long getDebtNanos() {
+        double debt = Math.max(1, -tokens + 1);
+        return Math.max(TimeUnit.MILLISECONDS.toNanos(1), (long) Math.min(Long.MAX_VALUE, debt / maxBytesPerSecond * 1e9));
+    }
+
+    /**
+     * Учитывает переданные данные.
+     */
+    void consume(long bytes) {
+        lock.lock();
+        try {
+            long now = clock.getAsLong();
+            advanceRate(now);
+            rateBuckets[(int) (rateBucket % RATE_BUCKET_COUNT)] += bytes;
+            totalBytes += bytes;
+            if (maxBytesPerSecond != UNLIMITED) {
+                refill();
+                tokens -= bytes;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Пополняет токены за прошедшее время. Запас не превышает объёма передачи за одну секунду.
+     * Время считается в double: произведение наносекунд на скорость переполняет long уже через несколько секунд
+     * при скорости в гигабайты в секунду.
+     */
+    private void refill() {
+        long now = clock.getAsLong();
+        double elapsedSeconds = Math.max(0, now - refillTime) / 1e9;
+        tokens = Math.min(maxBytesPerSecond, tokens + elapsedSeconds * maxBytesPerSecond);
+        refillTime = now;
+    }
+
+    /**
+     * Сдвигает окно замера скорости до текущего интервала, обнуляя прошедшие интервалы.
+     */
+    private void advanceRate(long now) {
+        long bucket = now / RATE_BUCKET_NANOS;
+        long steps = Math.min(RATE_BUCKET_COUNT, bucket - rateBucket);
+        for (long i = 1; i <= steps; i++) {
+            rateBuckets[(int) ((rateBucket + i) % RATE_BUCKET_COUNT)] = 0;
+        }
+        rateBucket = Math.max(rateBucket, bucket);
+    }
+
+    /**
+     * Освобождает соединение с хостом.
+     */
+    private void releaseConnection(String sHost) {
+        lock.lock();
+        try {
+            HostState host = hosts.get(sHost);
+            if (host != null) {
+                host.active--;
+                if (host.isIdle()) hosts.remove(sHost);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает флаг, что передачи с более высоким приоритетом ожидают в очереди.
+     */
+    private static boolean hasHigherWaiting(int[] waiting, TransferPriority priority) {
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (waiting[i] > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает ключ хоста ресурса (хост и порт).
+     */
+    private static String getHostKey(URL url) {
+        return url.getHost().toLowerCase(Locale.ROOT) + ":" + url.getPort();
+    }
+
+    /**
+     * Открытие потока ресурса.
+     */
+    @FunctionalInterface
+    public interface IStreamOpener {
+        /**
+         * @return Поток ресурса.
+         * @throws IOException Если не удалось открыть поток.
+         */
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Разрешение на соединение с хостом. Закрытие освобождает соединение.
+     */
+    public final class Permit implements Closeable {
+        /**
+         * Ключ хоста.
+         */
+        private final String sHost;
+
+        /**
+         * Флаг, что соединение уже освобождено.
+         */
+        private boolean closed;
+
+        private Permit(String sHost) {
+            this.sHost = sHost;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) return;
+            closed = true;
+            releaseConnection(sHost);
+        }
+    }
+
+    /**
+     * Состояние соединений с одним хостом.
+     */
+    private static final class HostState {
+        /**
+         * Количество открытых соединений.
+         */
+        int active;
+
+        /**
+         * Количество передач, ожидающих соединения, по приоритетам.
+         */
+        final int[] waiting = new int[TransferPriority.values().length];
+
+        /**
+         * Возвращает флаг, что с хостом нет ни открытых, ни ожидающих соединений.
+         */
+        boolean isIdle() {
+            if (active > 0) return false;
+            for (int count : waiting) {
+                if (count > 0) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Поток с ограничением скорости чтения. Закрытие потока освобождает соединение.
+     */
+    private final class ScheduledInputStream extends FilterInputStream {
+        /**
+         * Размер порции при пропуске данных.
+         */
+        private static final int SKIP_SIZE = 64 * 1024;
+
+        /**
+         * Приоритет передачи.
+         */
+        private final TransferPriority priority;
+
+        /**
+         * Разрешение на соединение (null, если соединения не учитываются).
+         */
+        @Nullable
+        private final Permit permit;
+
+        ScheduledInputStream(InputStream stream, TransferPriority priority, @Nullable Permit permit) {
+            super(stream);
+            this.priority = priority;
+            this.permit = permit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            awaitBandwidth(priority);
+            int value = in.read();
+            if (value != -1) consume(1);
+            return value;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            awaitBandwidth(priority);
+            int read = in.read(bytes, offset, length);
+            if (read > 0) consume(read);
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            awaitBandwidth(priority);
+            long skipped = in.skip(Math.min(count, SKIP_SIZE));
+            if (skipped > 0) consume(skipped);
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (permit != null) permit.close();
+            }
+        }
+    }
+}
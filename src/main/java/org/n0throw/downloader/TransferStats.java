@@ -0,0 +1,95 @@
+package org.n0throw.downloader;
+
+/**
+ * Снимок состояния планировщика передач.
+ */
+public final class TransferStats {
+    /**
+     * Скорость передачи за последнюю секунду (байт/с).
+     */
+    private final long bytesPerSecond;
+
+    /**
+     * Всего передано байт.
+     */
+    private final long totalBytes;
+
+    /**
+     * Количество открытых соединений.
+     */
+    private final int activeConnections;
+
+    /**
+     * Количество передач, ожидающих соединения.
+     */
+    private final int queuedConnections;
+
+    /**
+     * Количество передач, ожидающих полосы.
+     */
+    private final int queuedTransfers;
+
+    /**
+     * @param bytesPerSecond    Скорость передачи за последнюю секунду (байт/с).
+     * @param totalBytes        Всего передано байт.
+     * @param activeConnections Количество открытых соединений.
+     * @param queuedConnections Количество передач, ожидающих соединения.
+     * @param queuedTransfers   Количество передач, ожидающих полосы.
+     */
+    public TransferStats(
+            long bytesPerSecond,
+            long totalBytes,
+            int activeConnections,
+            int queuedConnections,
+            int queuedTransfers
+    ) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.totalBytes = totalBytes;
+        this.activeConnections = activeConnections;
+        this.queuedConnections = queuedConnections;
+        this.queuedTransfers = queuedTransfers;
+    }
+
+    /**
+     * Возвращает скорость передачи за последнюю секунду (байт/с).
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Возвращает количество переданных байт.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Возвращает количество открытых соединений.
+     */
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    /**
+     * Возвращает количество передач, ожидающих соединения.
+     */
+    public int getQueuedConnections() {
+        return queuedConnections;
+    }
+
+    /**
+     * Возвращает количество передач, ожидающих полосы.
+     */
+    public int getQueuedTransfers() {
+        return queuedTransfers;
+    }
+
+    @Override
+    public String toString() {
+        return bytesPerSecond + " байт/с, передано " + totalBytes
+                + ", соединений " + activeConnections
+                + ", в очереди на соединение " + queuedConnections
+                + ", в очереди на полосу " + queuedTransfers;
+    }
+}
@@ -0,0 +1,176 @@
+package org.n0throw.installer;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.installer.archive.ArchiveExtractor;
+import org.n0throw.installer.archive.ArchiveFormat;
+import org.n0throw.installer.archive.ParallelArchiveExtractor;
+import org.n0throw.progress.IProgressListener;
+import org.n0throw.progress.ProgressPhase;
+import org.n0throw.progress.ProgressTracker;
+import org.n0throw.utils.files.FileFormat;
+import org.n0throw.utils.files.FileFormatRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Класс для установки дистрибутивов из архивов (zip, tar, tar.gz).
+ * Формат определяется по сигнатуре содержимого, поэтому временный файл с любым расширением распаковывается.
+ */
+public class ArchiveInstaller implements IDistributionInstaller, IStreamDistributionInstaller {
+    /**
+     * Распаковщик архивов.
+     */
+    private final ArchiveExtractor extractor;
+
+    public ArchiveInstaller() {
+        this(new ArchiveExtractor());
+    }
+
+    /**
+     * Многопоточная распаковка.
+     *
+     * @param parallelism Количество потоков распаковки.
+     * @throws IllegalArgumentException Если количество потоков не положительное.
+     */
+    public ArchiveInstaller(int parallelism) {
+        this(new ParallelArchiveExtractor(parallelism));
+    }
+
+    /**
+     * @param extractor Распаковщик архивов.
+     */
+    public ArchiveInstaller(@NotNull ArchiveExtractor extractor) {
+        this.extractor = extractor;
+    }
+
+    /**
+     * Распаковывает дистрибутив из файла архива.
+     *
+     * @param file                 Файл дистрибутива.
+     * @param path                 Путь куда распаковать дистрибутив.
+     * @param isWaitInstallProcess Для архивов данный параметр является излишним, распаковка всегда синхронная.
+     * @return Флаг, успешно ли завершился процесс установки.
+     * @throws FileSystemException Если файл не является поддерживаемым архивом, путь не указан
+     *                             или элемент архива выходит за пределы папки распаковки.
+     */
+    @Override
+    public boolean install(
+            @NotNull File file,
+            @Nullable Path path,
+            Boolean isWaitInstallProcess
+    ) throws FileSystemException {
+        ArchiveFormat format = getFormat(file);
+        if (path == null) {
+            throw new FileSystemException(file.getPath(), null, "Не указан путь для распаковки архива.");
+        }
+
+        try {
+            extractor.extract(file.toPath(), format, path);
+            return true;
+        } catch (FileSystemException e) {
+            throw e;
+        } catch (IOException e) {
+            // todo slf4j
+            return false;
+        }
+    }
+
+    /**
+     * Распаковывает дистрибутив из файла архива с отчётами о прогрессе по прочитанным байтам архива.
+     * Zip архив читается по центральному каталогу (в том числе параллельно), поэтому о нём прогресс
+     * сообщается только по завершении распаковки.
+     *
+     * @param file                 Файл дистрибутива.
+     * @param path                 Путь куда распаковать дистрибутив.
+     * @param isWaitInstallProcess Для архивов данный параметр является излишним, распаковка всегда синхронная.
+     * @param listener             Получатель прогресса.
+     * @return Флаг, успешно ли завершился процесс установки.
+     * @throws FileSystemException Если файл не является поддерживаемым архивом, путь не указан
+     *                             или элемент архива выходит за пределы папки распаковки.
+     */
+    @Override
+    public boolean install(
+            @NotNull File file,
+            @Nullable Path path,
+            Boolean isWaitInstallProcess,
+            @NotNull IProgressListener listener
+    ) throws FileSystemException {
+        ArchiveFormat format = getFormat(file);
+        if (path == null) {
+            throw new FileSystemException(file.getPath(), null, "Не указан путь для распаковки архива.");
+        }
+
+        ProgressTracker tracker = new ProgressTracker(listener);
+        tracker.setTotalBytes(file.length());
+        tracker.startPhase(ProgressPhase.Install);
+        try {
+            if (format == ArchiveFormat.Zip) {
+                extractor.extract(file.toPath(), format, path);
+                tracker.addBytes(file.length());
+            } else {
+                try (InputStream stream = tracker.wrap(Files.newInputStream(file.toPath()))) {
+                    extractor.extract(new BufferedInputStream(stream, 64 * 1024), format, path);
+                }
+            }
+            return true;
+        } catch (FileSystemException e) {
+            throw e;
+        } catch (IOException e) {
+            // todo slf4j
+            return false;
+        } finally {
+            tracker.complete();
+        }
+    }
+
+    /**
+     * Распаковывает дистрибутив из потока архива по мере получения данных, без временного файла.
+     *
+     * @param stream    Поток архива.
+     * @param sFileName Наименование файла архива (по нему определяется формат, если не распознана сигнатура).
+     * @param path      Путь куда распаковать дистрибутив.
+     * @return Флаг, успешно ли завершился процесс установки.
+     * @throws IOException Если архив повреждён, не является поддерживаемым архивом или не удалось записать файлы.
+     */
+    @Override
+    public boolean install(
+            @NotNull InputStream stream,
+            @NonNls @NotNull String sFileName,
+            @NotNull Path path
+    ) throws IOException {
+        BufferedInputStream bufferedStream = new BufferedInputStream(stream, 64 * 1024);
+        ArchiveFormat format = checkFormat(FileFormatRegistry.getInstance().detect(bufferedStream, sFileName));
+        extractor.extract(bufferedStream, format, path);
+        return true;
+    }
+
+    /**
+     * По сигнатуре содержимого (или наименованию) файла определяет формат архива.
+     */
+    private static ArchiveFormat getFormat(File file) throws FileSystemException {
+        FileFormat fileFormat;
+        try {
+            fileFormat = FileFormatRegistry.getInstance().detect(file.toPath());
+        } catch (IOException e) {
+            // todo slf4j: файл не прочитан, ошибка распаковки будет получена при установке
+            fileFormat = FileFormatRegistry.getInstance().fromFileName(file.getName());
+        }
+        return checkFormat(fileFormat);
+    }
+
+    private static ArchiveFormat checkFormat(@Nullable FileFormat fileFormat) throws FileSystemException {
+        ArchiveFormat format = ArchiveFormat.fromFileFormat(fileFormat);
+        if (format == null) {
+            throw new FileSystemException("Недопустимый формат файла.");
+        }
+        return format;
+    }
+}
@@ -3,10 +3,15 @@ package org.n0throw.installer;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.n0throw.progress.IProgressListener;
+import org.n0throw.progress.ProgressPhase;
+import org.n0throw.progress.ProgressTracker;
+import org.n0throw.utils.concurrent.AsyncTasks;
 
 import java.io.File;
 import java.nio.file.FileSystemException;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Общий интерфейс для установки дистрибутива.
@@ -59,4 +64,47 @@ public interface IDistributionInstaller {
             @Nullable Path path,
             Boolean isWaitInstallProcess
     ) throws FileSystemException;
+
+    /**
+     * Устанавливает дистрибутив из файла с отчётами о прогрессе.
+     * По умолчанию сообщается только длительность этапа установки.
+     *
+     * @param file                 Файл дистрибутива.
+     * @param path                 Путь куда установить дистрибутив (null, если указывать путь не требуется).
+     * @param isWaitInstallProcess Нужно ли ждать окончания процесса установки.
+     * @param listener             Получатель прогресса.
+     * @return Флаг, успешно ли завершился процесс установки.
+     * @throws FileSystemException Если файл имеет не валидное расширение.
+     */
+    default boolean install(
+            @NotNull File file,
+            @Nullable Path path,
+            Boolean isWaitInstallProcess,
+            @NotNull IProgressListener listener
+    ) throws FileSystemException {
+        ProgressTracker tracker = new ProgressTracker(listener);
+        try {
+            tracker.startPhase(ProgressPhase.Install);
+            return install(file, path, isWaitInstallProcess);
+        } finally {
+            tracker.complete();
+        }
+    }
+
+    /**
+     * Асинхронно устанавливает дистрибутив из файла и ожидает окончания процесса установки.
+     * По умолчанию синхронная установка выполняется в общем пуле блокирующих операций,
+     * а отмена задачи прерывает её поток.
+     *
+     * @param file Файл дистрибутива.
+     * @param path Путь куда установить дистрибутив (null, если указывать путь не требуется).
+     * @return Задача с результатом установки. Если файл имеет не валидное расширение,
+     * то задача завершается с {@link FileSystemException}.
+     */
+    default CompletableFuture<InstallResult> installAsync(
+            @NotNull File file,
+            @Nullable Path path
+    ) {
+        return AsyncTasks.supplyAsync(() -> new InstallResult(install(file, path, true), null));
+    }
 }
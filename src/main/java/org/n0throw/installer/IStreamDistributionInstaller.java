@@ -0,0 +1,51 @@
+package org.n0throw.installer;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.n0throw.downloader.IDistributionDownloader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Path;
+
+/**
+ * Общий интерфейс для установки дистрибутива прямо из потока, без промежуточного временного файла.
+ */
+public interface IStreamDistributionInstaller {
+    /**
+     * Устанавливает дистрибутив, скачивая его загрузчиком. Установка идёт по мере получения данных.
+     *
+     * @param downloader Загрузчик.
+     * @param url        Путь до дистрибутива.
+     * @param sFileName  Наименование файла дистрибутива (по нему определяется формат).
+     * @param path       Путь куда установить дистрибутив.
+     * @return Флаг, успешно ли завершился процесс установки.
+     * @throws IOException Если не удалось получить данные или установить дистрибутив.
+     */
+    default boolean install(
+            @NotNull IDistributionDownloader downloader,
+            @NotNull URL url,
+            @NonNls @NotNull String sFileName,
+            @NotNull Path path
+    ) throws IOException {
+        try (InputStream stream = downloader.openStream(url)) {
+            return install(stream, sFileName, path);
+        }
+    }
+
+    /**
+     * Устанавливает дистрибутив из потока. Поток не закрывается.
+     *
+     * @param stream    Поток дистрибутива.
+     * @param sFileName Наименование файла дистрибутива (по нему определяется формат).
+     * @param path      Путь куда установить дистрибутив.
+     * @return Флаг, успешно ли завершился процесс установки.
+     * @throws IOException Если не удалось прочитать поток или установить дистрибутив.
+     */
+    boolean install(
+            @NotNull InputStream stream,
+            @NonNls @NotNull String sFileName,
+            @NotNull Path path
+    ) throws IOException;
+}
@@ -0,0 +1,49 @@
+package org.n0throw.installer;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Результат асинхронной установки дистрибутива.
+ */
+public final class InstallResult {
+    /**
+     * Флаг, успешно ли завершился процесс установки.
+     */
+    private final boolean success;
+
+    /**
+     * Код завершения процесса установки.
+     */
+    @Nullable
+    private final Integer exitCode;
+
+    /**
+     * @param success  Флаг, успешно ли завершился процесс установки.
+     * @param exitCode Код завершения процесса установки (null, если установка не запускает процесс
+     *                 или его завершение не ожидалось).
+     */
+    public InstallResult(boolean success, @Nullable Integer exitCode) {
+        this.success = success;
+        this.exitCode = exitCode;
+    }
+
+    /**
+     * Возвращает флаг, успешно ли завершился процесс установки.
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Возвращает код завершения процесса установки (null, если процесса нет или его завершение не ожидалось).
+     */
+    @Nullable
+    public Integer getExitCode() {
+        return exitCode;
+    }
+
+    @Override
+    public String toString() {
+        return (success ? "Успешно" : "Неуспешно") + (exitCode != null ? " (код завершения " + exitCode + ")" : "");
+    }
+}
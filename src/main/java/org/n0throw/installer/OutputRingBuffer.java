@@ -0,0 +1,68 @@
+package org.n0throw.installer;
+
+import java.nio.charset.Charset;
+
+/**
+ * Кольцевой буфер вывода процесса: хранит последние байты, более ранние вытесняются.
+ * Ограничивает память на болтливые установщики, сохраняя конец вывода, где обычно и находится причина ошибки.
+ */
+final class OutputRingBuffer {
+    /**
+     * Данные буфера.
+     */
+    private final byte[] buffer;
+
+    /**
+     * Позиция следующей записи.
+     */
+    private int head;
+
+    /**
+     * Количество байт, записанных за всё время.
+     */
+    private long total;
+
+    /**
+     * @param capacity Размер буфера.
+     */
+    OutputRingBuffer(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Записывает порцию вывода.
+     */
+    synchronized void write(byte[] bytes, int offset, int length) {
+        total += length;
+        if (buffer.length == 0) return;
+        if (length >= buffer.length) {
+            System.arraycopy(bytes, offset + length - buffer.length, buffer, 0, buffer.length);
+            head = 0;
+            return;
+        }
+        int first = Math.min(length, buffer.length - head);
+        System.arraycopy(bytes, offset, buffer, head, first);
+        System.arraycopy(bytes, offset + first, buffer, 0, length - first);
+        head = (head + length) % buffer.length;
+    }
+
+    /**
+     * Возвращает количество байт, записанных за всё время.
+     */
+    synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Возвращает сохранённый конец вывода в виде текста.
+     */
+    synchronized String toString(Charset charset) {
+        int size = (int) Math.min(total, buffer.length);
+        byte[] tail = new byte[size];
+        int start = size < buffer.length ? 0 : head;
+        int first = Math.min(size, buffer.length - start);
+        System.arraycopy(buffer, start, tail, 0, first);
+        System.arraycopy(buffer, 0, tail, first, size - first);
+        return new String(tail, charset);
+    }
+}
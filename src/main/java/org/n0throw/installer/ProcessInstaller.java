@@ -0,0 +1,237 @@
+package org.n0throw.installer;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.diagnostics.InstallRecording;
+import org.n0throw.utils.os.OsManager;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystemException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Класс для установки дистрибутивов, которые запускаются как процесс: скрипты оболочки, самораспаковывающиеся
+ * файлы (.run, .bin), исполняемые файлы и пакетные файлы Windows.
+ * Процесс запускается через {@link ProcessRunner}, который ограничивает количество одновременных установок,
+ * читает вывод в ограниченные буферы и завершает дерево процессов по истечении времени.
+ */
+public class ProcessInstaller implements IDistributionInstaller {
+    /**
+     * Подстановка пути установки в аргументах.
+     */
+    @NonNls
+    public static final String PATH_PLACEHOLDER = "{path}";
+
+    /**
+     * Допустимое время установки по умолчанию.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(30);
+
+    /**
+     * Размер буфера для конца каждого из выводов по умолчанию.
+     */
+    public static final int DEFAULT_OUTPUT_LIMIT = 64 * 1024;
+
+    /**
+     * Аргументы установщика.
+     */
+    private final List<String> arguments;
+
+    /**
+     * Дополнительные переменные окружения.
+     */
+    private final Map<String, String> environment;
+
+    /**
+     * Допустимое время установки (null, если не ограничено).
+     */
+    @Nullable
+    private final Duration timeout;
+
+    /**
+     * Размер буфера для конца каждого из выводов.
+     */
+    private final int outputLimit;
+
+    /**
+     * Запуск процессов.
+     */
+    private final ProcessRunner runner;
+
+    public ProcessInstaller() {
+        this(List.of());
+    }
+
+    /**
+     * @param arguments Аргументы установщика ({@value #PATH_PLACEHOLDER} заменяется путём установки).
+     */
+    public ProcessInstaller(@NonNls @NotNull List<String> arguments) {
+        this(arguments, Map.of(), DEFAULT_TIMEOUT, DEFAULT_OUTPUT_LIMIT, ProcessRunner.getInstance());
+    }
+
+    /**
+     * @param arguments   Аргументы установщика ({@value #PATH_PLACEHOLDER} заменяется путём установки).
+     * @param environment Дополнительные переменные окружения.
+     * @param timeout     Допустимое время установки (null, если не ограничено).
+     * @param outputLimit Размер буфера для конца каждого из выводов.
+     * @param runner      Запуск процессов.
+     * @throws IllegalArgumentException Если размер буфера отрицательный или время не положительное.
+     */
+    public ProcessInstaller(
+            @NonNls @NotNull List<String> arguments,
+            @NonNls @NotNull Map<String, String> environment,
+            @Nullable Duration timeout,
+            int outputLimit,
+            @NotNull ProcessRunner runner
+    ) {
+        if (outputLimit < 0) {
+            throw new IllegalArgumentException("Размер буфера вывода не может быть отрицательным.");
+        }
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new IllegalArgumentException("Допустимое время установки должно быть положительным.");
+        }
+        this.arguments = List.copyOf(arguments);
+        this.environment = Map.copyOf(environment);
+        this.timeout = timeout;
+        this.outputLimit = outputLimit;
+        this.runner = runner;
+    }
+
+    /**
+     * Устанавливает дистрибутив, запуская его процессом.
+     *
+     * @param file                 Файл дистрибутива.
+     * @param path                 Путь установки: рабочая папка процесса и значение {@value #PATH_PLACEHOLDER}
+     *                             (null — папка дистрибутива).
+     * @param isWaitInstallProcess Нужно ли ждать окончания процесса установки.
+     * @return Флаг, успешно ли завершился процесс установки (без ожидания — удалось ли поставить его в очередь).
+     * @throws FileSystemException Если файл не найден или путь установки не указан, но требуется аргументами.
+     */
+    @Override
+    public boolean install(
+            @NotNull File file,
+            @Nullable Path path,
+            Boolean isWaitInstallProcess
+    ) throws FileSystemException {
+        CompletableFuture<InstallResult> result = installAsync(file, path);
+        try {
+            if (!isWaitInstallProcess) {
+                // Ошибка файла известна сразу, а процесс продолжает работать в очереди запуска
+                if (result.isCompletedExceptionally()) result.get();
+                return true;
+            }
+            return result.get().isSuccess();
+        } catch (InterruptedException e) {
+            // todo slf4j
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FileSystemException) throw (FileSystemException) e.getCause();
+            // todo slf4j
+            return false;
+        }
+    }
+
+    /**
+     * Асинхронно устанавливает дистрибутив. Поток на ожидание процесса не блокируется.
+     * Отмена задачи снимает установку с очереди или завершает дерево процессов.
+     *
+     * @param file Файл дистрибутива.
+     * @param path Путь установки (null — папка дистрибутива).
+     * @return Задача с результатом установки. Если файл не найден, то задача завершается с {@link FileSystemException}.
+     */
+    @Override
+    public CompletableFuture<InstallResult> installAsync(
+            @NotNull File file,
+            @Nullable Path path
+    ) {
+        CompletableFuture<ProcessOutput> output = run(file, path);
+        CompletableFuture<InstallResult> result = output.thenApply(
+                processOutput -> new InstallResult(processOutput.isSuccess(), processOutput.getExitCode())
+        );
+        result.whenComplete((installResult, error) -> {
+            if (result.isCancelled()) output.cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Запускает установку и возвращает результат процесса вместе с концом его вывода.
+     *
+     * @param file Файл дистрибутива.
+     * @param path Путь установки (null — папка дистрибутива).
+     * @return Задача с результатом процесса. Если файл не найден, то задача завершается с {@link FileSystemException},
+     * если процесс не удалось запустить — с {@link java.io.IOException}.
+     */
+    @NotNull
+    public CompletableFuture<ProcessOutput> run(@NotNull File file, @Nullable Path path) {
+        ProcessBuilder builder;
+        try {
+            builder = createProcess(file, path);
+        } catch (FileSystemException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        InstallRecording recording = InstallRecording.start(getClass(), file);
+        CompletableFuture<ProcessOutput> result = runner.run(builder, timeout, outputLimit, Charset.defaultCharset());
+        result.whenComplete((output, error) -> {
+            if (error != null) {
+                recording.failed(error);
+            } else if (output.isTimedOut()) {
+                recording.failed(new TimeoutException("Время установки истекло: " + timeout));
+            } else {
+                recording.finished(output.isSuccess(), output.getExitCode());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Составляет команду запуска по типу файла.
+     */
+    private ProcessBuilder createProcess(File file, @Nullable Path path) throws FileSystemException {
+        if (!file.isFile()) {
+            throw new FileSystemException(file.getPath(), null, "Файл дистрибутива не найден.");
+        }
+        String sFilePath = file.getAbsolutePath();
+        String sName = file.getName().toLowerCase(Locale.ROOT);
+        List<String> command = new ArrayList<>();
+        if (sName.endsWith(".sh")) {
+            command.add("/bin/sh");
+        } else if (OsManager.isWindows() && (sName.endsWith(".bat") || sName.endsWith(".cmd"))) {
+            command.addAll(List.of("cmd.exe", "/c"));
+        } else if (sName.endsWith(".ps1")) {
+            command.addAll(List.of("powershell", "-NoProfile", "-ExecutionPolicy", "Bypass", "-File"));
+        } else if (!OsManager.isWindows() && !file.canExecute() && !file.setExecutable(true)) {
+            throw new FileSystemException(file.getPath(), null, "Не удалось разрешить запуск файла.");
+        }
+        command.add(sFilePath);
+
+        for (String sArgument : arguments) {
+            if (sArgument.contains(PATH_PLACEHOLDER)) {
+                if (path == null) {
+                    throw new FileSystemException(file.getPath(), null, "Не указан путь установки.");
+                }
+                sArgument = sArgument.replace(PATH_PLACEHOLDER, path.toString());
+            }
+            command.add(sArgument);
+        }
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        File directory = path != null ? path.toFile() : file.getAbsoluteFile().getParentFile();
+        if (directory.isDirectory()) builder.directory(directory);
+        builder.environment().putAll(environment);
+        return builder;
+    }
+}
@@ -0,0 +1,120 @@
+package org.n0throw.installer;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Результат процесса установки: код завершения и конец вывода.
+ */
+public final class ProcessOutput {
+    /**
+     * Код завершения процесса.
+     */
+    private final int exitCode;
+
+    /**
+     * Флаг, был ли процесс завершён по истечении времени.
+     */
+    private final boolean timedOut;
+
+    /**
+     * Конец стандартного вывода.
+     */
+    private final String sStdout;
+
+    /**
+     * Конец вывода ошибок.
+     */
+    private final String sStderr;
+
+    /**
+     * Количество байт стандартного вывода за всё время.
+     */
+    private final long stdoutBytes;
+
+    /**
+     * Количество байт вывода ошибок за всё время.
+     */
+    private final long stderrBytes;
+
+    /**
+     * @param exitCode    Код завершения процесса.
+     * @param timedOut    Был ли процесс завершён по истечении времени.
+     * @param sStdout     Конец стандартного вывода.
+     * @param sStderr     Конец вывода ошибок.
+     * @param stdoutBytes Количество байт стандартного вывода за всё время.
+     * @param stderrBytes Количество байт вывода ошибок за всё время.
+     */
+    public ProcessOutput(
+            int exitCode,
+            boolean timedOut,
+            @NotNull String sStdout,
+            @NotNull String sStderr,
+            long stdoutBytes,
+            long stderrBytes
+    ) {
+        this.exitCode = exitCode;
+        this.timedOut = timedOut;
+        this.sStdout = sStdout;
+        this.sStderr = sStderr;
+        this.stdoutBytes = stdoutBytes;
+        this.stderrBytes = stderrBytes;
+    }
+
+    /**
+     * Возвращает флаг, успешно ли завершился процесс (код 0 и время не истекло).
+     */
+    public boolean isSuccess() {
+        return !timedOut && exitCode == 0;
+    }
+
+    /**
+     * Возвращает код завершения процесса.
+     */
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * Возвращает флаг, был ли процесс завершён по истечении времени.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Возвращает конец стандартного вывода (не больше размера буфера вывода).
+     */
+    @NotNull
+    public String getStdout() {
+        return sStdout;
+    }
+
+    /**
+     * Возвращает конец вывода ошибок (не больше размера буфера вывода).
+     */
+    @NotNull
+    public String getStderr() {
+        return sStderr;
+    }
+
+    /**
+     * Возвращает количество байт стандартного вывода за всё время.
+     */
+    public long getStdoutBytes() {
+        return stdoutBytes;
+    }
+
+    /**
+     * Возвращает количество байт вывода ошибок за всё время.
+     */
+    public long getStderrBytes() {
+        return stderrBytes;
+    }
+
+    @Override
+    public String toString() {
+        return (timedOut ? "Время истекло" : "Код завершения " + exitCode)
+                + ", вывод " + stdoutBytes + " байт"
+                + ", ошибки " + stderrBytes + " байт";
+    }
+}
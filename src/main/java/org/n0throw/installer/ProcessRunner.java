@@ -0,0 +1,277 @@
+package org.n0throw.installer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.utils.concurrent.AsyncTasks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запуск процессов установки с ограничением количества одновременно работающих процессов.
+ * Процессы сверх ограничения ждут в очереди, не занимая потоков. Вывод процесса читается асинхронно
+ * в кольцевые буферы, поэтому процесс не блокируется на заполненном канале вывода.
+ * По истечении времени или при отмене задачи завершается всё дерево процессов.
+ */
+public final class ProcessRunner {
+    /**
+     * Размер буфера чтения вывода.
+     */
+    private static final int READ_SIZE = 8 * 1024;
+
+    /**
+     * Время на корректное завершение процесса, после которого он завершается принудительно.
+     */
+    private static final Duration KILL_GRACE = Duration.ofSeconds(5);
+
+    /**
+     * Время ожидания конца вывода после завершения процесса. Вывод может держать открытым
+     * запущенный им фоновый процесс, тогда результат возвращается с уже прочитанным выводом.
+     */
+    private static final Duration DRAIN_GRACE = Duration.ofSeconds(2);
+
+    /**
+     * Общий экземпляр: не больше процессов, чем ядер процессора.
+     */
+    private static final ProcessRunner instance =
+            new ProcessRunner(Math.max(1, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Пул чтения вывода процессов.
+     */
+    private static final ExecutorService drainers = AsyncTasks.newBlockingExecutor("ProcessOutput");
+
+    /**
+     * Таймер ограничений времени.
+     */
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ProcessTimeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Процессы, ожидающие запуска.
+     */
+    private final Queue<Task> pending = new ArrayDeque<>();
+
+    /**
+     * Допустимое количество одновременно работающих процессов.
+     */
+    private int maxProcesses;
+
+    /**
+     * Количество работающих процессов.
+     */
+    private int running;
+
+    /**
+     * @param maxProcesses Допустимое количество одновременно работающих процессов.
+     * @throws IllegalArgumentException Если количество не положительное.
+     */
+    public ProcessRunner(int maxProcesses) {
+        setMaxProcesses(maxProcesses);
+    }
+
+    /**
+     * Возвращает общий экземпляр, через который работают установщики по умолчанию.
+     */
+    @NotNull
+    public static ProcessRunner getInstance() {
+        return instance;
+    }
+
+    /**
+     * Изменяет допустимое количество одновременно работающих процессов. Уже запущенные процессы не завершаются.
+     *
+     * @param maxProcesses Допустимое количество одновременно работающих процессов.
+     * @throws IllegalArgumentException Если количество не положительное.
+     */
+    public void setMaxProcesses(int maxProcesses) {
+        if (maxProcesses <= 0) {
+            throw new IllegalArgumentException("Допустимое количество процессов должно быть положительным.");
+        }
+        synchronized (this) {
+            this.maxProcesses = maxProcesses;
+        }
+        startPending();
+    }
+
+    /**
+     * Возвращает допустимое количество одновременно работающих процессов.
+     */
+    public synchronized int getMaxProcesses() {
+        return maxProcesses;
+    }
+
+    /**
+     * Запускает процесс, когда освободится место. Стандартный ввод процесса сразу закрывается.
+     *
+     * @param builder     Описание процесса (перенаправления вывода не учитываются).
+     * @param timeout     Допустимое время работы процесса (null, если не ограничено).
+     * @param outputLimit Размер буфера для конца каждого из выводов.
+     * @param charset     Кодировка вывода.
+     * @return Задача с результатом процесса. Отмена задачи снимает процесс с очереди или завершает его дерево.
+     * Если процесс не удалось запустить, то задача завершается с {@link IOException}.
+     */
+    @NotNull
+    public CompletableFuture<ProcessOutput> run(
+            @NotNull ProcessBuilder builder,
+            @Nullable Duration timeout,
+            int outputLimit,
+            @NotNull Charset charset
+    ) {
+        Task task = new Task(builder, timeout, outputLimit, charset);
+        task.result.whenComplete((output, error) -> {
+            if (!task.result.isCancelled()) return;
+            boolean removed;
+            synchronized (this) {
+                removed = pending.remove(task);
+            }
+            if (!removed) task.kill();
+        });
+        synchronized (this) {
+            pending.add(task);
+        }
+        startPending();
+        return task.result;
+    }
+
+    /**
+     * Запускает ожидающие процессы, пока есть место.
+     */
+    private void startPending() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                if (running >= maxProcesses || pending.isEmpty()) return;
+                task = pending.poll();
+                running++;
+            }
+            task.start();
+        }
+    }
+
+    private void release() {
+        synchronized (this) {
+            running--;
+        }
+        startPending();
+    }
+
+    /**
+     * Завершает процесс вместе с дочерними процессами: сначала корректно, а по истечении
+     * {@link #KILL_GRACE} принудительно.
+     */
+    private static void killTree(Process process) {
+        // Потомков нужно получить до завершения родителя, иначе они перейдут к другому процессу
+        List<ProcessHandle> descendants = process.descendants().toList();
+        process.destroy();
+        descendants.forEach(ProcessHandle::destroy);
+        timer.schedule(() -> {
+            if (process.isAlive()) process.destroyForcibly();
+            for (ProcessHandle descendant : descendants) {
+                if (descendant.isAlive()) descendant.destroyForcibly();
+            }
+        }, KILL_GRACE.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Читает вывод процесса в буфер до конца потока.
+     */
+    private static void drain(InputStream stream, OutputRingBuffer buffer) {
+        byte[] bytes = new byte[READ_SIZE];
+        try (stream) {
+            int read;
+            while ((read = stream.read(bytes)) != -1) {
+                buffer.write(bytes, 0, read);
+            }
+        } catch (IOException e) {
+            // Поток закрыт при завершении процесса
+        }
+    }
+
+    /**
+     * Процесс в очереди или в работе.
+     */
+    private final class Task {
+        private final ProcessBuilder builder;
+        private final Duration timeout;
+        private final Charset charset;
+        private final OutputRingBuffer stdout;
+        private final OutputRingBuffer stderr;
+        private final CompletableFuture<ProcessOutput> result = new CompletableFuture<>();
+        private volatile Process process;
+        private volatile boolean timedOut;
+
+        Task(ProcessBuilder builder, Duration timeout, int outputLimit, Charset charset) {
+            this.builder = builder;
+            this.timeout = timeout;
+            this.charset = charset;
+            this.stdout = new OutputRingBuffer(outputLimit);
+            this.stderr = new OutputRingBuffer(outputLimit);
+        }
+
+        void start() {
+            try {
+                process = builder
+                        .redirectInput(ProcessBuilder.Redirect.PIPE)
+                        .redirectOutput(ProcessBuilder.Redirect.PIPE)
+                        .redirectError(ProcessBuilder.Redirect.PIPE)
+                        .start();
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+                release();
+                return;
+            }
+            if (result.isCancelled()) {
+                kill();
+            }
+            try {
+                process.getOutputStream().close();
+            } catch (IOException e) {
+                // todo slf4j: процесс уже закрыл ввод
+            }
+
+            CompletableFuture<Void> drained = CompletableFuture.allOf(
+                    CompletableFuture.runAsync(() -> drain(process.getInputStream(), stdout), drainers),
+                    CompletableFuture.runAsync(() -> drain(process.getErrorStream(), stderr), drainers)
+            );
+            ScheduledFuture<?> timeoutTask = timeout == null ? null : timer.schedule(() -> {
+                timedOut = true;
+                kill();
+            }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+            process.onExit()
+                    .thenCompose(exited -> drained.completeOnTimeout(null, DRAIN_GRACE.toMillis(), TimeUnit.MILLISECONDS))
+                    .whenComplete((ignored, error) -> {
+                        if (timeoutTask != null) timeoutTask.cancel(false);
+                        result.complete(new ProcessOutput(
+                                process.exitValue(),
+                                timedOut,
+                                stdout.toString(charset),
+                                stderr.toString(charset),
+                                stdout.getTotal(),
+                                stderr.getTotal()
+                        ));
+                        release();
+                    });
+        }
+
+        void kill() {
+            Process started = process;
+            if (started != null && started.isAlive()) killTree(started);
+        }
+    }
+}
@@ -2,12 +2,14 @@ package org.n0throw.installer;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.n0throw.diagnostics.InstallRecording;
 import org.n0throw.utils.files.FileExtension;
 import org.n0throw.utils.files.FileExtensionHelper;
 
 import java.io.*;
 import java.nio.file.FileSystemException;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Класс для установки дистрибутивов c помощью установщика windows.
@@ -29,29 +31,102 @@ public class WindowsExecutableInstaller implements IDistributionInstaller {
             @Nullable Path path,
             Boolean isWaitInstallProcess
     ) throws FileSystemException {
-        FileExtension fileExt = FileExtensionHelper.getFromFile(file);
-        if (fileExt != FileExtension.WindowsExecutable) {
-            throw new FileSystemException("Недопустимое расширение файла.");
-        }
+        checkExtension(file);
 
+        InstallRecording recording = InstallRecording.start(getClass(), file);
         final Process process;
         try {
-            process = Runtime.getRuntime().exec(file.getName(), null, file.getParentFile());
+            process = start(file);
         } catch (IOException e) {
             // todo slf4j
+            recording.failed(e);
             return false;
         }
 
         if (isWaitInstallProcess) {
             try {
-                process.waitFor();
+                int exitCode = process.waitFor();
+                recording.finished(exitCode == 0, exitCode);
                 return true;
             } catch (InterruptedException e) {
                 // todo slf4j
+                recording.failed(e);
                 return false;
             }
         }
 
+        recording.started();
         return true;
     }
+
+    /**
+     * Асинхронно устанавливает дистрибутив. Завершение процесса установки отслеживается
+     * через {@link Process#onExit()}, поэтому поток на ожидание не блокируется.
+     * Отмена задачи завершает процесс установки вместе с дочерними процессами.
+     *
+     * @param file Файл дистрибутива.
+     * @param path Для исполняемых файлов данный параметр является излишним.
+     * @return Задача с результатом установки: успешна, если процесс завершился с кодом 0.
+     * Если файл имеет расширение отличное от .msi или .exe, то задача завершается с {@link FileSystemException}.
+     */
+    @Override
+    public CompletableFuture<InstallResult> installAsync(
+            @NotNull File file,
+            @Nullable Path path
+    ) {
+        try {
+            checkExtension(file);
+        } catch (FileSystemException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        InstallRecording recording = InstallRecording.start(getClass(), file);
+        final Process process;
+        try {
+            process = start(file);
+        } catch (IOException e) {
+            // todo slf4j
+            recording.failed(e);
+            return CompletableFuture.completedFuture(new InstallResult(false, null));
+        }
+
+        CompletableFuture<InstallResult> result = process.onExit()
+                .thenApply(exited -> new InstallResult(exited.exitValue() == 0, exited.exitValue()));
+        result.whenComplete((installResult, error) -> {
+            if (error != null) {
+                recording.failed(error);
+            } else {
+                recording.finished(installResult.isSuccess(), installResult.getExitCode());
+            }
+            if (!result.isCancelled()) return;
+            process.descendants().forEach(ProcessHandle::destroy);
+            process.destroy();
+        });
+        return result;
+    }
+
+    /**
+     * Проверяет, что файл является установщиком windows.
+     *
+     * @throws FileSystemException Если файл имеет расширение отличное от .msi или .exe.
+     */
+    private static void checkExtension(File file) throws FileSystemException {
+        FileExtension fileExt = FileExtensionHelper.getFromFile(file);
+        if (fileExt != FileExtension.WindowsExecutable) {
+            throw new FileSystemException("Недопустимое расширение файла.");
+        }
+    }
+
+    /**
+     * Запускает процесс установки в папке дистрибутива.
+     * Вывод не читается, поэтому отбрасывается: иначе установщик блокируется на заполненном канале вывода
+     * (для сохранения вывода см. {@link ProcessInstaller}).
+     */
+    private static Process start(File file) throws IOException {
+        return new ProcessBuilder(file.getName())
+                .directory(file.getParentFile())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
 }
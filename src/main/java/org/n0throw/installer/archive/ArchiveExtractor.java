@@ -0,0 +1,202 @@
+package org.n0throw.installer.archive;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Распаковка архивов в папку.
+ * Элементы, выходящие за пределы папки распаковки, не распаковываются.
+ */
+public class ArchiveExtractor {
+    /**
+     * Размер буфера чтения архива.
+     */
+    protected static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Максимальная длина цепочки символических ссылок при проверке цели ссылки.
+     */
+    private static final int MAX_LINK_DEPTH = 40;
+
+    /**
+     * Распаковывает архив из файла.
+     *
+     * @param archive Путь к архиву.
+     * @param format  Формат архива.
+     * @param target  Папка распаковки.
+     * @throws IOException Если архив повреждён или не удалось записать файлы.
+     */
+    public void extract(@NotNull Path archive, @NotNull ArchiveFormat format, @NotNull Path target) throws IOException {
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(archive), BUFFER_SIZE)) {
+            extract(stream, format, target);
+        }
+    }
+
+    /**
+     * Распаковывает архив из потока по мере чтения. Поток не закрывается.
+     *
+     * @param stream Поток архива.
+     * @param format Формат архива.
+     * @param target Папка распаковки.
+     * @throws IOException Если архив повреждён или не удалось записать файлы.
+     */
+    public void extract(@NotNull InputStream stream, @NotNull ArchiveFormat format, @NotNull Path target) throws IOException {
+        Path root = Files.createDirectories(target).toAbsolutePath().normalize();
+        switch (format) {
+            case Zip -> extractZip(new ZipInputStream(stream), root);
+            case Tar -> extractTar(new TarReader(stream), root);
+            case TarGz -> extractTar(new TarReader(new GZIPInputStream(stream, BUFFER_SIZE)), root);
+        }
+    }
+
+    /**
+     * Последовательно распаковывает zip архив из потока.
+     */
+    protected void extractZip(ZipInputStream stream, Path root) throws IOException {
+        ZipEntry entry;
+        while ((entry = stream.getNextEntry()) != null) {
+            Path path = resolveEntry(root, entry.getName());
+            if (entry.isDirectory()) {
+                Files.createDirectories(path);
+            } else {
+                Files.createDirectories(path.getParent());
+                Files.copy(stream, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (entry.getLastModifiedTime() != null) {
+                Files.setLastModifiedTime(path, entry.getLastModifiedTime());
+            }
+        }
+    }
+
+    /**
+     * Последовательно распаковывает tar архив из потока.
+     */
+    protected void extractTar(TarReader reader, Path root) throws IOException {
+        TarEntry entry;
+        while ((entry = reader.nextEntry()) != null) {
+            switch (entry.getType()) {
+                case Directory -> Files.createDirectories(resolveEntry(root, entry.getName()));
+                case File -> {
+                    Path path = resolveEntry(root, entry.getName());
+                    Files.createDirectories(path.getParent());
+                    Files.copy(reader.getEntryStream(), path, StandardCopyOption.REPLACE_EXISTING);
+                    applyAttributes(path, entry);
+                }
+                case SymbolicLink, HardLink -> createLink(root, entry);
+                default -> {
+                    // Устройства и каналы не распаковываются.
+                }
+            }
+        }
+    }
+
+    /**
+     * Выставляет файлу дату изменения и признак исполняемости из элемента tar архива.
+     */
+    protected static void applyAttributes(Path path, TarEntry entry) throws IOException {
+        if (entry.isExecutable() && !path.toFile().setExecutable(true, false)) {
+            throw new FileSystemException(path.toString(), null, "Не удалось сделать файл исполняемым.");
+        }
+        if (entry.getLastModified() > 0) {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(entry.getLastModified()));
+        }
+    }
+
+    /**
+     * Создаёт символическую или жёсткую ссылку. Ссылки за пределы папки распаковки запрещены,
+     * в том числе через цепочку уже распакованных символических ссылок.
+     */
+    protected static void createLink(Path root, TarEntry entry) throws IOException {
+        String sLinkName = entry.getLinkName();
+        if (sLinkName == null) {
+            throw new FileSystemException(entry.getName(), null, "У ссылки в архиве не указана цель.");
+        }
+        Path path = resolveEntry(root, entry.getName());
+        Files.createDirectories(path.getParent());
+        if (entry.getType() == TarEntry.Type.HardLink) {
+            Path existing = resolveEntry(root, sLinkName);
+            if (Files.isSymbolicLink(existing)) {
+                // Жёсткая ссылка на символическую ссылку указывала бы на другой путь из новой папки.
+                throw new FileSystemException(entry.getName(), sLinkName, "Жёсткая ссылка на символическую ссылку запрещена.");
+            }
+            Files.deleteIfExists(path);
+            Files.createLink(path, existing);
+            return;
+        }
+        if (!resolveLinkTarget(path.getParent(), sLinkName, 0).startsWith(root.toRealPath())) {
+            throw new FileSystemException(entry.getName(), sLinkName, "Ссылка указывает за пределы папки распаковки.");
+        }
+        Files.deleteIfExists(path);
+        Files.createSymbolicLink(path, path.getFileSystem().getPath(sLinkName));
+    }
+
+    /**
+     * Возвращает реальный путь, на который будет указывать символическая ссылка: части пути, которые уже
+     * являются символическими ссылками, раскрываются, поэтому {@code ..} после ссылки отсчитывается от её цели.
+     *
+     * @param directory Папка, в которой создаётся ссылка.
+     * @param sLinkName Цель ссылки.
+     * @param depth     Количество уже раскрытых ссылок.
+     */
+    private static Path resolveLinkTarget(Path directory, String sLinkName, int depth) throws IOException {
+        if (depth > MAX_LINK_DEPTH) {
+            throw new FileSystemException(directory.toString(), sLinkName, "Слишком длинная цепочка символических ссылок.");
+        }
+        Path linkName = directory.getFileSystem().getPath(sLinkName);
+        Path current = linkName.isAbsolute() ? linkName.getRoot() : directory.toRealPath();
+        for (Path part : linkName) {
+            String sPart = part.toString();
+            if (sPart.equals(".")) continue;
+            if (sPart.equals("..")) {
+                Path parent = current.getParent();
+                current = parent != null ? parent : current;
+                continue;
+            }
+            current = current.resolve(part);
+            if (Files.isSymbolicLink(current)) {
+                // Цель ссылки может ещё не существовать, поэтому путь раскрывается без toRealPath.
+                current = resolveLinkTarget(current.getParent(), Files.readSymbolicLink(current).toString(), depth + 1);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Возвращает путь элемента архива внутри папки распаковки.
+     *
+     * @param root  Папка распаковки (абсолютный нормализованный путь).
+     * @param sName Путь элемента внутри архива.
+     * @return Путь к файлу.
+     * @throws FileSystemException Если элемент выходит за пределы папки распаковки,
+     *                             в том числе через символическую ссылку в одной из папок его пути.
+     */
+    @NotNull
+    protected static Path resolveEntry(@NotNull Path root, @NotNull String sName) throws FileSystemException {
+        String sRelative = sName.replace('\\', '/');
+        while (sRelative.startsWith("/")) sRelative = sRelative.substring(1);
+        Path path = root.resolve(sRelative).normalize();
+        if (!path.startsWith(root)) {
+            throw new FileSystemException(sName, null, "Элемент архива выходит за пределы папки распаковки.");
+        }
+        // Запись через символическую ссылку, распакованную ранее, попала бы туда, куда указывает ссылка.
+        for (Path directory = path.getParent(); directory != null && directory.startsWith(root) && !directory.equals(root);
+             directory = directory.getParent()) {
+            if (Files.isSymbolicLink(directory)) {
+                throw new FileSystemException(sName, directory.toString(),
+                        "Элемент архива записывается через символическую ссылку.");
+            }
+        }
+        return path;
+    }
+}
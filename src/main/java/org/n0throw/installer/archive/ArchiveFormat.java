@@ -0,0 +1,42 @@
+package org.n0throw.installer.archive;
+
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.utils.files.FileFormat;
+import org.n0throw.utils.files.FileFormatRegistry;
+
+/**
+ * Формат архива.
+ */
+public enum ArchiveFormat {
+    Zip,
+    Tar,
+    TarGz;
+
+    /**
+     * По наименованию файла определяет формат архива.
+     *
+     * @param sFileName Наименование файла.
+     * @return Формат архива (null, если файл не является поддерживаемым архивом).
+     */
+    @Nullable
+    public static ArchiveFormat fromFileName(@Nullable String sFileName) {
+        return fromFileFormat(FileFormatRegistry.getInstance().fromFileName(sFileName));
+    }
+
+    /**
+     * По формату файла определяет формат архива.
+     *
+     * @param format Формат файла.
+     * @return Формат архива (null, если файл не является поддерживаемым архивом).
+     */
+    @Nullable
+    public static ArchiveFormat fromFileFormat(@Nullable FileFormat format) {
+        if (format == null) return null;
+        return switch (format) {
+            case Zip -> Zip;
+            case Tar -> Tar;
+            case TarGz -> TarGz;
+            default -> null;
+        };
+    }
+}
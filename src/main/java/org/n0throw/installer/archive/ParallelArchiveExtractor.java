@@ -0,0 +1,326 @@
+package org.n0throw.installer.archive;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Многопоточная распаковка архивов.
+ * Zip архив с диска распаковывается параллельно на пуле fork-join: центральный каталог читается один раз,
+ * а каждый элемент распаковывается из архива позиционными чтениями.
+ * Tar архив распаковывается в одном потоке, а содержимое элементов записывается ограниченным пулом потоков.
+ * Результат совпадает с последовательной распаковкой {@link ArchiveExtractor}.
+ */
+public class ParallelArchiveExtractor extends ArchiveExtractor {
+    /**
+     * Максимальный размер элемента tar архива, который буферизуется в памяти для записи в другом потоке.
+     * Элементы большего размера записываются потоком распаковки.
+     */
+    private static final int MAX_BUFFERED_ENTRY_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Объём памяти (в КБ) под содержимое tar элементов, ожидающее записи.
+     */
+    private static final int MAX_BUFFERED_KILOBYTES = 64 * 1024;
+
+    /**
+     * Количество потоков распаковки/записи.
+     */
+    private final int parallelism;
+
+    /**
+     * Распаковка с количеством потоков по числу процессоров.
+     */
+    public ParallelArchiveExtractor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism Количество потоков распаковки/записи.
+     * @throws IllegalArgumentException Если количество потоков не положительное.
+     */
+    public ParallelArchiveExtractor(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Количество потоков распаковки должно быть положительным.");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Возвращает количество потоков распаковки/записи.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Распаковывает архив из файла. Zip архивы распаковываются параллельно по центральному каталогу.
+     *
+     * @param archive Путь к архиву.
+     * @param format  Формат архива.
+     * @param target  Папка распаковки.
+     * @throws IOException Если архив повреждён или не удалось записать файлы.
+     */
+    @Override
+    public void extract(@NotNull Path archive, @NotNull ArchiveFormat format, @NotNull Path target) throws IOException {
+        if (format != ArchiveFormat.Zip || parallelism == 1) {
+            super.extract(archive, format, target);
+            return;
+        }
+        Path root = Files.createDirectories(target).toAbsolutePath().normalize();
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            extractZip(channel, root);
+        }
+    }
+
+    /**
+     * Распаковывает zip архив параллельно.
+     */
+    private void extractZip(FileChannel channel, Path root) throws IOException {
+        // Элементы с одинаковым путём: как и при последовательной распаковке, остаётся последний.
+        Map<Path, ZipCentralDirectory.Entry> files = new LinkedHashMap<>();
+        Map<Path, ZipCentralDirectory.Entry> directories = new LinkedHashMap<>();
+        for (ZipCentralDirectory.Entry entry : ZipCentralDirectory.read(channel)) {
+            Path path = resolveEntry(root, entry.sName);
+            if (entry.isDirectory()) {
+                files.remove(path);
+                directories.put(path, entry);
+            } else {
+                files.remove(path);
+                files.put(path, entry);
+            }
+        }
+        for (Path directory : directories.keySet()) {
+            Files.createDirectories(directory);
+        }
+        for (Path file : files.keySet()) {
+            Files.createDirectories(file.getParent());
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(files.size());
+            for (Map.Entry<Path, ZipCentralDirectory.Entry> file : files.entrySet()) {
+                futures.add(pool.submit(() -> {
+                    extractZipEntry(channel, file.getValue(), file.getKey());
+                    return null;
+                }));
+            }
+            awaitAll(futures);
+        } finally {
+            pool.shutdownNow();
+        }
+        // Дата изменения папок выставляется после записи файлов, иначе запись файлов её изменит.
+        for (Map.Entry<Path, ZipCentralDirectory.Entry> directory : directories.entrySet()) {
+            if (directory.getValue().lastModified > 0) {
+                Files.setLastModifiedTime(directory.getKey(), FileTime.fromMillis(directory.getValue().lastModified));
+            }
+        }
+    }
+
+    /**
+     * Распаковывает один элемент zip архива и проверяет его CRC32.
+     */
+    private static void extractZipEntry(FileChannel channel, ZipCentralDirectory.Entry entry, Path path) throws IOException {
+        if (entry.isEncrypted()) {
+            throw new ZipException("Зашифрованные элементы zip архива не поддерживаются: " + entry.sName);
+        }
+        long dataOffset = ZipCentralDirectory.getDataOffset(channel, entry);
+        InputStream raw = new ChannelInputStream(channel, dataOffset, entry.compressedSize);
+        Inflater inflater = null;
+        InputStream data;
+        if (entry.method == 0) {
+            data = raw;
+        } else if (entry.method == 8) {
+            inflater = new Inflater(true);
+            data = new InflaterInputStream(raw, inflater, BUFFER_SIZE);
+        } else {
+            throw new ZipException("Метод сжатия " + entry.method + " не поддерживается: " + entry.sName);
+        }
+        try (CheckedInputStream checked = new CheckedInputStream(data, new CRC32())) {
+            long written = Files.copy(checked, path, StandardCopyOption.REPLACE_EXISTING);
+            if (written != entry.size || checked.getChecksum().getValue() != entry.crc) {
+                throw new ZipException("Повреждён элемент zip архива: " + entry.sName);
+            }
+        } finally {
+            if (inflater != null) inflater.end();
+        }
+        if (entry.lastModified > 0) {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(entry.lastModified));
+        }
+    }
+
+    /**
+     * Распаковывает tar архив: чтение и распаковка идут в текущем потоке,
+     * а содержимое небольших элементов записывается пулом потоков.
+     */
+    @Override
+    protected void extractTar(TarReader reader, Path root) throws IOException {
+        if (parallelism == 1) {
+            super.extractTar(reader, root);
+            return;
+        }
+        ExecutorService writers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "ArchiveWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore memory = new Semaphore(MAX_BUFFERED_KILOBYTES);
+        Map<Path, Future<Void>> pending = new HashMap<>();
+        try {
+            TarEntry entry;
+            while ((entry = reader.nextEntry()) != null) {
+                switch (entry.getType()) {
+                    case Directory -> Files.createDirectories(resolveEntry(root, entry.getName()));
+                    case File -> {
+                        Path path = resolveEntry(root, entry.getName());
+                        Files.createDirectories(path.getParent());
+                        await(pending.remove(path));
+                        if (entry.getSize() > MAX_BUFFERED_ENTRY_SIZE) {
+                            Files.copy(reader.getEntryStream(), path, StandardCopyOption.REPLACE_EXISTING);
+                            applyAttributes(path, entry);
+                        } else {
+                            // Files.copy заменяет файл, а запись по существующему пути прошла бы через
+                            // символическую или жёсткую ссылку, поэтому файл удаляется и создаётся заново.
+                            Files.deleteIfExists(path);
+                            pending.put(path, submitWrite(writers, memory, reader, entry, path));
+                        }
+                    }
+                    case SymbolicLink, HardLink -> {
+                        // Ссылки создаются после записи всех предыдущих элементов, чтобы сохранить порядок архива.
+                        awaitAll(new ArrayList<>(pending.values()));
+                        pending.clear();
+                        createLink(root, entry);
+                    }
+                    default -> {
+                        // Устройства и каналы не распаковываются.
+                    }
+                }
+            }
+            awaitAll(new ArrayList<>(pending.values()));
+        } finally {
+            writers.shutdownNow();
+        }
+    }
+
+    /**
+     * Считывает содержимое элемента в память и отправляет его на запись.
+     * Если память под ожидающие записи элементы исчерпана, то ожидает её освобождения.
+     */
+    private static Future<Void> submitWrite(
+            ExecutorService writers,
+            Semaphore memory,
+            TarReader reader,
+            TarEntry entry,
+            Path path
+    ) throws IOException {
+        byte[] content = reader.getEntryStream().readNBytes((int) entry.getSize());
+        if (content.length != entry.getSize()) {
+            throw new FileSystemException(entry.getName(), null, "Элемент tar архива прочитан не полностью.");
+        }
+        int kilobytes = Math.max(1, (content.length + 1023) / 1024);
+        try {
+            memory.acquire(kilobytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Распаковка прервана.");
+        }
+        try {
+            return writers.submit(() -> {
+                try {
+                    Files.write(path, content, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                    applyAttributes(path, entry);
+                    return null;
+                } finally {
+                    memory.release(kilobytes);
+                }
+            });
+        } catch (RuntimeException e) {
+            memory.release(kilobytes);
+            throw e;
+        }
+    }
+
+    /**
+     * Ожидает завершения задачи и пробрасывает её ошибку.
+     */
+    private static void await(Future<Void> future) throws IOException {
+        if (future != null) awaitAll(List.of(future));
+    }
+
+    /**
+     * Ожидает завершения всех задач и пробрасывает первую ошибку.
+     */
+    private static void awaitAll(List<Future<Void>> futures) throws IOException {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Распаковка прервана.");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw new IOException("Не удалось распаковать элемент архива.", cause);
+            }
+        }
+    }
+
+    /**
+     * Поток чтения участка файла позиционными чтениями. Позволяет нескольким потокам читать один канал.
+     */
+    private static final class ChannelInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private long remaining;
+
+        ChannelInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (remaining <= 0) return -1;
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, (int) Math.min(length, remaining));
+            int read = channel.read(buffer, position);
+            if (read == -1) throw new ZipException("Zip архив обрывается.");
+            position += read;
+            remaining -= read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.n0throw.installer.archive;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Элемент tar архива.
+ */
+public final class TarEntry {
+    /**
+     * Тип элемента tar архива.
+     */
+    public enum Type {
+        File,
+        Directory,
+        SymbolicLink,
+        HardLink,
+        Other
+    }
+
+    /**
+     * Путь элемента внутри архива.
+     */
+    private final String sName;
+
+    /**
+     * Путь, на который ссылается ссылка (null, если элемент не является ссылкой).
+     */
+    @Nullable
+    private final String sLinkName;
+
+    /**
+     * Тип элемента.
+     */
+    private final Type type;
+
+    /**
+     * Размер содержимого.
+     */
+    private final long size;
+
+    /**
+     * Права доступа в формате POSIX.
+     */
+    private final int mode;
+
+    /**
+     * Дата последнего изменения в миллисекундах.
+     */
+    private final long lastModified;
+
+    /**
+     * @param sName        Путь элемента внутри архива.
+     * @param sLinkName    Путь, на который ссылается ссылка.
+     * @param type         Тип элемента.
+     * @param size         Размер содержимого.
+     * @param mode         Права доступа в формате POSIX.
+     * @param lastModified Дата последнего изменения в миллисекундах.
+     */
+    public TarEntry(
+            @NotNull String sName,
+            @Nullable String sLinkName,
+            @NotNull Type type,
+            long size,
+            int mode,
+            long lastModified
+    ) {
+        this.sName = sName;
+        this.sLinkName = sLinkName;
+        this.type = type;
+        this.size = size;
+        this.mode = mode;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Возвращает путь элемента внутри архива.
+     */
+    @NotNull
+    public String getName() {
+        return sName;
+    }
+
+    /**
+     * Возвращает путь, на который ссылается ссылка.
+     */
+    @Nullable
+    public String getLinkName() {
+        return sLinkName;
+    }
+
+    /**
+     * Возвращает тип элемента.
+     */
+    @NotNull
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Возвращает размер содержимого.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Возвращает права доступа в формате POSIX.
+     */
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * Возвращает флаг, что владелец может исполнять файл.
+     */
+    public boolean isExecutable() {
+        return (mode & 0100) != 0;
+    }
+
+    /**
+     * Возвращает дату последнего изменения в миллисекундах.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+}
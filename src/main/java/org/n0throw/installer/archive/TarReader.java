@@ -0,0 +1,391 @@
+package org.n0throw.installer.archive;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Последовательное чтение tar архива из потока (форматы ustar, GNU и pax).
+ * Архив читается один раз, поэтому его можно распаковывать по мере скачивания.
+ */
+public final class TarReader implements Closeable {
+    /**
+     * Размер блока tar архива.
+     */
+    private static final int BLOCK_SIZE = 512;
+
+    /**
+     * Допустимый размер служебного элемента (расширенного заголовка pax или длинного имени GNU).
+     */
+    private static final int MAX_METADATA_SIZE = 1024 * 1024;
+
+    /**
+     * Исходный поток.
+     */
+    private final InputStream stream;
+
+    /**
+     * Буфер заголовка.
+     */
+    private final byte[] header = new byte[BLOCK_SIZE];
+
+    /**
+     * Количество непрочитанных байт содержимого текущего элемента.
+     */
+    private long remaining;
+
+    /**
+     * Количество байт выравнивания после содержимого текущего элемента.
+     */
+    private long padding;
+
+    /**
+     * Поток содержимого текущего элемента.
+     */
+    private final InputStream entryStream = new EntryInputStream();
+
+    /**
+     * @param stream Исходный поток (уже распакованный, если архив сжат).
+     */
+    public TarReader(@NotNull InputStream stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * Переходит к следующему элементу архива. Непрочитанное содержимое текущего элемента пропускается.
+     *
+     * @return Элемент архива (null, если архив закончился).
+     * @throws IOException Если архив повреждён или не удалось прочитать поток.
+     */
+    @Nullable
+    public TarEntry nextEntry() throws IOException {
+        skipFully(remaining + padding);
+        remaining = 0;
+        padding = 0;
+
+        String sLongName = null;
+        String sLongLinkName = null;
+        Map<String, String> pax = new HashMap<>();
+        while (true) {
+            if (!readBlock()) return null;
+            if (isZeroBlock()) return null;
+            verifyChecksum();
+
+            char typeFlag = (char) header[156];
+            long size = parseNumber(124, 12);
+            if (size < 0) {
+                throw new IOException("Повреждён заголовок tar архива: отрицательный размер элемента.");
+            }
+            switch (typeFlag) {
+                case 'L' -> {
+                    sLongName = readString(size);
+                    continue;
+                }
+                case 'K' -> {
+                    sLongLinkName = readString(size);
+                    continue;
+                }
+                case 'x' -> {
+                    pax.putAll(parsePax(readData(size)));
+                    continue;
+                }
+                case 'g' -> {
+                    skipFully(size + getPadding(size));
+                    continue;
+                }
+                default -> {
+                }
+            }
+
+            String sName = sLongName != null ? sLongName : getHeaderName();
+            String sLinkName = sLongLinkName != null ? sLongLinkName : getString(157, 100);
+            sName = pax.getOrDefault("path", sName);
+            sLinkName = pax.getOrDefault("linkpath", sLinkName);
+            if (pax.containsKey("size")) size = parsePaxSize(pax.get("size"));
+            long lastModified = parseNumber(136, 12) * 1000;
+            if (pax.containsKey("mtime")) lastModified = parsePaxTime(pax.get("mtime"));
+
+            TarEntry.Type type = switch (typeFlag) {
+                case '0', '\0', '7' -> sName.endsWith("/") ? TarEntry.Type.Directory : TarEntry.Type.File;
+                case '5' -> TarEntry.Type.Directory;
+                case '2' -> TarEntry.Type.SymbolicLink;
+                case '1' -> TarEntry.Type.HardLink;
+                default -> TarEntry.Type.Other;
+            };
+            remaining = size;
+            padding = getPadding(size);
+            return new TarEntry(
+                    sName,
+                    sLinkName.isEmpty() ? null : sLinkName,
+                    type,
+                    size,
+                    (int) parseNumber(100, 8),
+                    lastModified
+            );
+        }
+    }
+
+    /**
+     * Возвращает поток содержимого текущего элемента. Закрытие потока не закрывает архив.
+     */
+    @NotNull
+    public InputStream getEntryStream() {
+        return entryStream;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+    /**
+     * Возвращает наименование элемента с учётом префикса ustar.
+     */
+    private String getHeaderName() {
+        String sName = getString(0, 100);
+        boolean isUstar = header[257] == 'u' && header[258] == 's' && header[259] == 't'
+                && header[260] == 'a' && header[261] == 'r';
+        if (isUstar) {
+            String sPrefix = getString(345, 155);
+            if (!sPrefix.isEmpty()) return sPrefix + "/" + sName;
+        }
+        return sName;
+    }
+
+    /**
+     * Читает строку из заголовка до первого нулевого байта.
+     */
+    private String getString(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) end++;
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Читает число из заголовка (восьмеричное или в формате base-256 GNU).
+     */
+    private long parseNumber(int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7F;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (header[i] & 0xFF);
+            }
+            return value;
+        }
+        long value = 0;
+        boolean hasDigits = false;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || (b == ' ' && hasDigits)) break;
+            if (b == ' ') continue;
+            if (b < '0' || b > '7') {
+                throw new IOException("Повреждён заголовок tar архива: некорректное число.");
+            }
+            value = (value << 3) + (b - '0');
+            hasDigits = true;
+        }
+        return value;
+    }
+
+    /**
+     * Проверяет контрольную сумму заголовка.
+     */
+    private void verifyChecksum() throws IOException {
+        long expected = parseNumber(148, 8);
+        long unsigned = 0;
+        long signed = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            byte b = i >= 148 && i < 156 ? (byte) ' ' : header[i];
+            unsigned += b & 0xFF;
+            signed += b;
+        }
+        if (expected != unsigned && expected != signed) {
+            throw new IOException("Повреждён заголовок tar архива: не совпадает контрольная сумма.");
+        }
+    }
+
+    /**
+     * Разбирает расширенные заголовки pax вида "длина ключ=значение\n".
+     */
+    private static Map<String, String> parsePax(byte[] data) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        int position = 0;
+        while (position < data.length) {
+            int space = position;
+            while (space < data.length && data[space] != ' ') space++;
+            if (space >= data.length) break;
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, position, space - position, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new IOException("Повреждён расширенный заголовок pax.", e);
+            }
+            if (length <= 0 || position + length > data.length) {
+                throw new IOException("Повреждён расширенный заголовок pax.");
+            }
+            String sRecord = new String(data, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+            int separator = sRecord.indexOf('=');
+            if (separator > 0) {
+                values.put(sRecord.substring(0, separator), sRecord.substring(separator + 1));
+            }
+            position += length;
+        }
+        return values;
+    }
+
+    /**
+     * Разбирает размер элемента из расширенного заголовка pax.
+     */
+    private static long parsePaxSize(String sValue) throws IOException {
+        long size;
+        try {
+            size = Long.parseLong(sValue);
+        } catch (NumberFormatException e) {
+            throw new IOException("Повреждён расширенный заголовок pax: некорректный размер элемента.", e);
+        }
+        if (size < 0) {
+            throw new IOException("Повреждён расширенный заголовок pax: отрицательный размер элемента.");
+        }
+        return size;
+    }
+
+    /**
+     * Разбирает время изменения элемента (секунды с дробной частью) из расширенного заголовка pax.
+     *
+     * @return Время изменения в миллисекундах.
+     */
+    private static long parsePaxTime(String sValue) throws IOException {
+        try {
+            return (long) (Double.parseDouble(sValue) * 1000);
+        } catch (NumberFormatException e) {
+            throw new IOException("Повреждён расширенный заголовок pax: некорректное время изменения.", e);
+        }
+    }
+
+    /**
+     * Читает строку из содержимого служебного элемента.
+     */
+    private String readString(long size) throws IOException {
+        byte[] data = readData(size);
+        int end = 0;
+        while (end < data.length && data[end] != 0) end++;
+        return new String(data, 0, end, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Читает содержимое служебного элемента вместе с выравниванием.
+     */
+    private byte[] readData(long size) throws IOException {
+        if (size > MAX_METADATA_SIZE) {
+            throw new IOException("Слишком большой служебный элемент tar архива.");
+        }
+        byte[] data = new byte[(int) size];
+        readFully(data, data.length);
+        skipFully(getPadding(size));
+        return data;
+    }
+
+    /**
+     * Читает очередной блок заголовка.
+     *
+     * @return false, если поток закончился ровно на границе блока.
+     */
+    private boolean readBlock() throws IOException {
+        int read = 0;
+        while (read < BLOCK_SIZE) {
+            int count = stream.read(header, read, BLOCK_SIZE - read);
+            if (count == -1) {
+                if (read == 0) return false;
+                throw new EOFException("Tar архив обрывается посреди заголовка.");
+            }
+            read += count;
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает флаг, что заголовок состоит из нулей (признак конца архива).
+     */
+    private boolean isZeroBlock() {
+        for (byte b : header) {
+            if (b != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Читает из потока ровно указанное количество байт.
+     */
+    private void readFully(byte[] data, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = stream.read(data, read, length - read);
+            if (count == -1) throw new EOFException("Tar архив обрывается посреди элемента.");
+            read += count;
+        }
+    }
+
+    /**
+     * Пропускает в потоке ровно указанное количество байт.
+     */
+    private void skipFully(long count) throws IOException {
+        byte[] buffer = null;
+        while (count > 0) {
+            long skipped = stream.skip(count);
+            if (skipped <= 0) {
+                if (buffer == null) buffer = new byte[BLOCK_SIZE * 16];
+                int read = stream.read(buffer, 0, (int) Math.min(buffer.length, count));
+                if (read == -1) throw new EOFException("Tar архив обрывается посреди элемента.");
+                skipped = read;
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Возвращает количество байт выравнивания до границы блока.
+     */
+    private static long getPadding(long size) {
+        long rest = size % BLOCK_SIZE;
+        return rest == 0 ? 0 : BLOCK_SIZE - rest;
+    }
+
+    /**
+     * Поток содержимого текущего элемента, ограниченный его размером.
+     */
+    private class EntryInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int value = stream.read();
+            if (value == -1) throw new EOFException("Tar архив обрывается посреди элемента.");
+            remaining--;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (remaining <= 0) return -1;
+            int count = stream.read(bytes, offset, (int) Math.min(length, remaining));
+            if (count == -1) throw new EOFException("Tar архив обрывается посреди элемента.");
+            remaining -= count;
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(stream.available(), remaining);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package org.n0throw.installer.archive;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Чтение центрального каталога zip архива (включая ZIP64) позиционными чтениями из канала.
+ */
+final class ZipCentralDirectory {
+    /**
+     * Сигнатура записи конца центрального каталога.
+     */
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    /**
+     * Сигнатура локатора записи конца центрального каталога ZIP64.
+     */
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    /**
+     * Сигнатура записи конца центрального каталога ZIP64.
+     */
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+
+    /**
+     * Сигнатура записи центрального каталога.
+     */
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    /**
+     * Сигнатура локального заголовка.
+     */
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    /**
+     * Минимальный размер записи конца центрального каталога.
+     */
+    private static final int END_SIZE = 22;
+
+    /**
+     * Размер локального заголовка без имени и дополнительных полей.
+     */
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    /**
+     * Размер записи центрального каталога без имени, дополнительных полей и комментария.
+     */
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    /**
+     * Заголовок дополнительного поля: тег и длина данных.
+     */
+    private static final int EXTRA_HEADER_SIZE = 4;
+
+    private ZipCentralDirectory() {
+    }
+
+    /**
+     * Элемент центрального каталога.
+     */
+    static final class Entry {
+        /**
+         * Путь элемента внутри архива.
+         */
+        final String sName;
+
+        /**
+         * Метод сжатия (0 - без сжатия, 8 - deflate).
+         */
+        final int method;
+
+        /**
+         * Флаги элемента.
+         */
+        final int flags;
+
+        /**
+         * Ожидаемая CRC32 содержимого.
+         */
+        final long crc;
+
+        /**
+         * Размер сжатого содержимого.
+         */
+        final long compressedSize;
+
+        /**
+         * Размер содержимого.
+         */
+        final long size;
+
+        /**
+         * Смещение локального заголовка.
+         */
+        final long localHeaderOffset;
+
+        /**
+         * Дата последнего изменения в миллисекундах.
+         */
+        final long lastModified;
+
+        Entry(
+                String sName,
+                int method,
+                int flags,
+                long crc,
+                long compressedSize,
+                long size,
+                long localHeaderOffset,
+                long lastModified
+        ) {
+            this.sName = sName;
+            this.method = method;
+            this.flags = flags;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Возвращает флаг, что элемент является папкой.
+         */
+        boolean isDirectory() {
+            return sName.endsWith("/");
+        }
+
+        /**
+         * Возвращает флаг, что элемент зашифрован.
+         */
+        boolean isEncrypted() {
+            return (flags & 1) != 0;
+        }
+    }
+
+    /**
+     * Читает центральный каталог архива.
+     *
+     * @param channel Канал файла архива.
+     * @return Элементы архива в порядке центрального каталога.
+     * @throws ZipException Если записи каталога или их поля выходят за объявленные размеры.
+     * @throws IOException  Если архив повреждён.
+     */
+    @NotNull
+    static List<Entry> read(@NotNull FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        int tailSize = (int) Math.min(fileSize, END_SIZE + 0xFFFF);
+        ByteBuffer tail = readAt(channel, fileSize - tailSize, tailSize);
+        int endOffset = -1;
+        for (int i = tailSize - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE) {
+                endOffset = i;
+                break;
+            }
+        }
+        if (endOffset == -1) {
+            throw new ZipException("Не найден конец центрального каталога zip архива.");
+        }
+
+        long entryCount = tail.getShort(endOffset + 10) & 0xFFFF;
+        long directorySize = tail.getInt(endOffset + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(endOffset + 16) & 0xFFFFFFFFL;
+
+        long locatorPosition = fileSize - tailSize + endOffset - 20;
+        if (locatorPosition >= 0) {
+            ByteBuffer locator = readAt(channel, locatorPosition, 20);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                long end64Position = locator.getLong(8);
+                if (end64Position < 0 || end64Position > fileSize - 56) {
+                    throw new ZipException("Повреждена запись ZIP64 zip архива.");
+                }
+                ByteBuffer end64 = readAt(channel, end64Position, 56);
+                if (end64.getInt(0) != ZIP64_END_SIGNATURE) {
+                    throw new ZipException("Повреждена запись ZIP64 zip архива.");
+                }
+                entryCount = end64.getLong(32);
+                directorySize = end64.getLong(40);
+                directoryOffset = end64.getLong(48);
+            }
+        }
+        if (directorySize > Integer.MAX_VALUE) {
+            throw new ZipException("Слишком большой центральный каталог zip архива.");
+        }
+        if (entryCount < 0 || directorySize < 0 || directoryOffset < 0 || directoryOffset > fileSize - directorySize) {
+            throw new ZipException("Центральный каталог zip архива выходит за пределы файла.");
+        }
+
+        ByteBuffer directory = readAt(channel, directoryOffset, (int) directorySize);
+        List<Entry> entries = new ArrayList<>((int) Math.min(entryCount, 1 << 16));
+        int position = 0;
+        for (long i = 0; i < entryCount; i++) {
+            if (directorySize - position < CENTRAL_HEADER_SIZE || directory.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new ZipException("Повреждён центральный каталог zip архива.");
+            }
+            int flags = directory.getShort(position + 8) & 0xFFFF;
+            int method = directory.getShort(position + 10) & 0xFFFF;
+            int dosTime = directory.getShort(position + 12) & 0xFFFF;
+            int dosDate = directory.getShort(position + 14) & 0xFFFF;
+            long crc = directory.getInt(position + 16) & 0xFFFFFFFFL;
+            long compressedSize = directory.getInt(position + 20) & 0xFFFFFFFFL;
+            long size = directory.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = directory.getShort(position + 28) & 0xFFFF;
+            int extraLength = directory.getShort(position + 30) & 0xFFFF;
+            int commentLength = directory.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = directory.getInt(position + 42) & 0xFFFFFFFFL;
+            if ((long) position + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength > directorySize) {
+                throw new ZipException("Запись центрального каталога zip архива выходит за его пределы.");
+            }
+
+            byte[] name = new byte[nameLength];
+            directory.get(position + CENTRAL_HEADER_SIZE, name);
+            long lastModified = fromDosTime(dosDate, dosTime);
+
+            int extra = position + CENTRAL_HEADER_SIZE + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + EXTRA_HEADER_SIZE <= extraEnd) {
+                int tag = directory.getShort(extra) & 0xFFFF;
+                int length = directory.getShort(extra + 2) & 0xFFFF;
+                int data = extra + EXTRA_HEADER_SIZE;
+                int dataEnd = data + length;
+                if (dataEnd > extraEnd) {
+                    throw new ZipException("Дополнительное поле элемента " + new String(name, StandardCharsets.UTF_8)
+                            + " выходит за пределы записи центрального каталога.");
+                }
+                if (tag == 0x0001) {
+                    // Поля ZIP64 идут в фиксированном порядке и присутствуют, только если в записи стоит 0xFFFFFFFF
+                    if (size == 0xFFFFFFFFL) {
+                        size = readZip64Value(directory, data, dataEnd, name);
+                        data += 8;
+                    }
+                    if (compressedSize == 0xFFFFFFFFL) {
+                        compressedSize = readZip64Value(directory, data, dataEnd, name);
+                        data += 8;
+                    }
+                    if (localHeaderOffset == 0xFFFFFFFFL) {
+                        localHeaderOffset = readZip64Value(directory, data, dataEnd, name);
+                    }
+                } else if (tag == 0x5455 && length >= 5 && (directory.get(data) & 1) != 0) {
+                    lastModified = (directory.getInt(data + 1) & 0xFFFFFFFFL) * 1000;
+                }
+                extra = dataEnd;
+            }
+
+            entries.add(new Entry(
+                    new String(name, StandardCharsets.UTF_8),
+                    method,
+                    flags,
+                    crc,
+                    compressedSize,
+                    size,
+                    localHeaderOffset,
+                    lastModified
+            ));
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    /**
+     * Читает значение из дополнительного поля ZIP64, проверяя объявленную длину поля.
+     *
+     * @throws ZipException Если значения нет в поле или оно отрицательное.
+     */
+    private static long readZip64Value(ByteBuffer directory, int position, int dataEnd, byte[] name)
+            throws ZipException {
+        if (position + 8 > dataEnd) {
+            throw new ZipException("Поле ZIP64 элемента " + new String(name, StandardCharsets.UTF_8) + " обрывается.");
+        }
+        long value = directory.getLong(position);
+        if (value < 0) {
+            throw new ZipException("Поле ZIP64 элемента " + new String(name, StandardCharsets.UTF_8) + " повреждено.");
+        }
+        return value;
+    }
+
+    /**
+     * Возвращает смещение содержимого элемента, читая его локальный заголовок.
+     *
+     * @param channel Канал файла архива.
+     * @param entry   Элемент архива.
+     * @return Смещение первого байта содержимого.
+     * @throws IOException Если локальный заголовок повреждён.
+     */
+    static long getDataOffset(@NotNull FileChannel channel, @NotNull Entry entry) throws IOException {
+        ByteBuffer header = readAt(channel, entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_SIGNATURE) {
+            throw new ZipException("Повреждён локальный заголовок элемента " + entry.sName + ".");
+        }
+        int nameLength = header.getShort(26) & 0xFFFF;
+        int extraLength = header.getShort(28) & 0xFFFF;
+        return entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    /**
+     * Читает участок файла позиционным чтением.
+     */
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read == -1) throw new EOFException("Zip архив обрывается.");
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Переводит дату и время в формате MS-DOS в миллисекунды (по локальному часовому поясу, как java.util.zip).
+     */
+    private static long fromDosTime(int dosDate, int dosTime) {
+        try {
+            return LocalDateTime.of(
+                    ((dosDate >> 9) & 0x7F) + 1980,
+                    (dosDate >> 5) & 0x0F,
+                    dosDate & 0x1F,
+                    (dosTime >> 11) & 0x1F,
+                    (dosTime >> 5) & 0x3F,
+                    (dosTime & 0x1F) * 2
+            ).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+}
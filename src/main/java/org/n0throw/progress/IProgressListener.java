@@ -0,0 +1,28 @@
+package org.n0throw.progress;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+/**
+ * Получатель прогресса скачивания или установки.
+ * Вызывается из потока, выполняющего операцию, поэтому не должен выполнять долгих действий.
+ */
+@FunctionalInterface
+public interface IProgressListener {
+    /**
+     * Вызывается не чаще интервала отчётов {@link ProgressTracker}, а также при смене этапа и завершении операции.
+     *
+     * @param snapshot Состояние операции.
+     */
+    void onProgress(@NotNull ProgressSnapshot snapshot);
+
+    /**
+     * Вызывается по завершении этапа.
+     *
+     * @param phase    Этап.
+     * @param duration Длительность этапа.
+     */
+    default void onPhaseFinished(@NotNull ProgressPhase phase, @NotNull Duration duration) {
+    }
+}
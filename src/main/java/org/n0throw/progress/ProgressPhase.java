@@ -0,0 +1,23 @@
+package org.n0throw.progress;
+
+/**
+ * Этап скачивания или установки дистрибутива.
+ */
+public enum ProgressPhase {
+    /**
+     * Подключение к источнику: от отправки запроса до получения первого байта.
+     */
+    Connect,
+    /**
+     * Передача данных.
+     */
+    Transfer,
+    /**
+     * Проверка контрольных сумм.
+     */
+    Verify,
+    /**
+     * Установка дистрибутива.
+     */
+    Install
+}
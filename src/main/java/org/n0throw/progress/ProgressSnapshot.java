@@ -0,0 +1,193 @@
+package org.n0throw.progress;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Состояние скачивания или установки на момент отчёта.
+ */
+public final class ProgressSnapshot {
+    /**
+     * Количество переданных байт.
+     */
+    private final long bytesTransferred;
+
+    /**
+     * Ожидаемое количество байт (-1, если неизвестно).
+     */
+    private final long totalBytes;
+
+    /**
+     * Скорость передачи с предыдущего отчёта (байт/с).
+     */
+    private final long currentRate;
+
+    /**
+     * Средняя скорость передачи с первого байта (байт/с).
+     */
+    private final long averageRate;
+
+    /**
+     * Время от начала операции до первого байта.
+     */
+    @Nullable
+    private final Duration timeToFirstByte;
+
+    /**
+     * Время от начала операции.
+     */
+    private final Duration elapsed;
+
+    /**
+     * Текущий этап.
+     */
+    @Nullable
+    private final ProgressPhase phase;
+
+    /**
+     * Длительности этапов (для текущего этапа - на момент отчёта).
+     */
+    private final Map<ProgressPhase, Duration> phaseDurations;
+
+    /**
+     * Флаг, что операция завершена.
+     */
+    private final boolean completed;
+
+    /**
+     * @param bytesTransferred Количество переданных байт.
+     * @param totalBytes       Ожидаемое количество байт (-1, если неизвестно).
+     * @param currentRate      Скорость передачи с предыдущего отчёта (байт/с).
+     * @param averageRate      Средняя скорость передачи с первого байта (байт/с).
+     * @param timeToFirstByte  Время от начала операции до первого байта (null, если данных ещё не было).
+     * @param elapsed          Время от начала операции.
+     * @param phase            Текущий этап (null, если операция завершена).
+     * @param phaseDurations   Длительности этапов.
+     * @param completed        Флаг, что операция завершена.
+     */
+    public ProgressSnapshot(
+            long bytesTransferred,
+            long totalBytes,
+            long currentRate,
+            long averageRate,
+            @Nullable Duration timeToFirstByte,
+            @NotNull Duration elapsed,
+            @Nullable ProgressPhase phase,
+            @NotNull Map<ProgressPhase, Duration> phaseDurations,
+            boolean completed
+    ) {
+        this.bytesTransferred = bytesTransferred;
+        this.totalBytes = totalBytes;
+        this.currentRate = currentRate;
+        this.averageRate = averageRate;
+        this.timeToFirstByte = timeToFirstByte;
+        this.elapsed = elapsed;
+        this.phase = phase;
+        this.phaseDurations = phaseDurations.isEmpty()
+                ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new EnumMap<>(phaseDurations));
+        this.completed = completed;
+    }
+
+    /**
+     * Возвращает количество переданных байт.
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * Возвращает ожидаемое количество байт (-1, если неизвестно).
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Возвращает скорость передачи с предыдущего отчёта (байт/с).
+     */
+    public long getCurrentRate() {
+        return currentRate;
+    }
+
+    /**
+     * Возвращает среднюю скорость передачи с первого байта (байт/с).
+     */
+    public long getAverageRate() {
+        return averageRate;
+    }
+
+    /**
+     * Возвращает оценку оставшегося времени передачи по средней скорости
+     * (null, если размер или скорость неизвестны).
+     */
+    @Nullable
+    public Duration getEta() {
+        if (completed) return Duration.ZERO;
+        if (totalBytes < 0 || averageRate <= 0) return null;
+        long remaining = Math.max(0, totalBytes - bytesTransferred);
+        return Duration.ofMillis((long) (remaining * 1000.0 / averageRate));
+    }
+
+    /**
+     * Возвращает долю переданных данных от 0 до 1 (-1, если размер неизвестен).
+     */
+    public double getFraction() {
+        if (totalBytes <= 0) return completed ? 1 : -1;
+        return Math.min(1.0, (double) bytesTransferred / totalBytes);
+    }
+
+    /**
+     * Возвращает время от начала операции до первого байта (null, если данных ещё не было).
+     */
+    @Nullable
+    public Duration getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    /**
+     * Возвращает время от начала операции.
+     */
+    @NotNull
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Возвращает текущий этап (null, если операция завершена).
+     */
+    @Nullable
+    public ProgressPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Возвращает длительности этапов (для текущего этапа - на момент отчёта).
+     */
+    @NotNull
+    public Map<ProgressPhase, Duration> getPhaseDurations() {
+        return phaseDurations;
+    }
+
+    /**
+     * Возвращает флаг, что операция завершена.
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    @Override
+    public String toString() {
+        Duration eta = getEta();
+        return (phase != null ? phase : "Завершено") + ": " + bytesTransferred
+                + (totalBytes >= 0 ? "/" + totalBytes : "") + " байт"
+                + ", " + currentRate + " байт/с (в среднем " + averageRate + " байт/с)"
+                + (eta != null ? ", осталось " + eta.toMillis() + " мс" : "")
+                + (timeToFirstByte != null ? ", первый байт через " + timeToFirstByte.toMillis() + " мс" : "");
+    }
+}
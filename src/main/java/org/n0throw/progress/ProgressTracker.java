@@ -0,0 +1,297 @@
+package org.n0throw.progress;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Отслеживание прогресса одной операции скачивания или установки.
+ * Учёт байт не блокирует поток и может вызываться из нескольких потоков (например, сегментами скачивания),
+ * а отчёты получателю отправляются не чаще заданного интервала, поэтому не замедляют копирование.
+ * Получатель вызывается вне блокировки трекера: медленный получатель не задерживает другие потоки.
+ */
+public final class ProgressTracker {
+    /**
+     * Интервал отчётов по умолчанию.
+     */
+    public static final Duration DEFAULT_REPORT_INTERVAL = Duration.ofMillis(250);
+
+    /**
+     * Получатель прогресса.
+     */
+    private final IProgressListener listener;
+
+    /**
+     * Интервал отчётов в наносекундах.
+     */
+    private final long reportIntervalNanos;
+
+    /**
+     * Время начала операции.
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * Количество переданных байт.
+     */
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * Время получения первого байта (0, если данных ещё не было).
+     */
+    private final AtomicLong firstByteTime = new AtomicLong();
+
+    /**
+     * Время, после которого можно отправить следующий отчёт.
+     */
+    private final AtomicLong nextReportTime = new AtomicLong(startTime);
+
+    /**
+     * Ожидаемое количество байт (-1, если неизвестно).
+     */
+    private volatile long totalBytes = -1;
+
+    /**
+     * Текущий этап.
+     */
+    @Nullable
+    private ProgressPhase phase;
+
+    /**
+     * Время начала текущего этапа.
+     */
+    private long phaseStartTime;
+
+    /**
+     * Длительности завершённых этапов.
+     */
+    private final Map<ProgressPhase, Duration> phaseDurations = new EnumMap<>(ProgressPhase.class);
+
+    /**
+     * Количество байт на момент предыдущего отчёта.
+     */
+    private long lastReportBytes;
+
+    /**
+     * Время предыдущего отчёта.
+     */
+    private long lastReportTime = startTime;
+
+    /**
+     * Флаг, что операция завершена.
+     */
+    private boolean completed;
+
+    /**
+     * @param listener Получатель прогресса.
+     */
+    public ProgressTracker(@NotNull IProgressListener listener) {
+        this(listener, DEFAULT_REPORT_INTERVAL);
+    }
+
+    /**
+     * @param listener       Получатель прогресса.
+     * @param reportInterval Минимальный интервал между отчётами о переданных байтах.
+     */
+    public ProgressTracker(@NotNull IProgressListener listener, @NotNull Duration reportInterval) {
+        this.listener = listener;
+        this.reportIntervalNanos = reportInterval.toNanos();
+    }
+
+    /**
+     * Задаёт ожидаемое количество байт.
+     *
+     * @param totalBytes Количество байт (-1, если неизвестно).
+     */
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Начинает этап, завершая текущий. Если этап уже идёт, то ничего не происходит.
+     *
+     * @param phase Этап.
+     */
+    public void startPhase(@NotNull ProgressPhase phase) {
+        ProgressPhase finished;
+        Duration duration;
+        synchronized (this) {
+            if (completed || this.phase == phase) return;
+            finished = this.phase;
+            duration = finishPhase(System.nanoTime());
+            this.phase = phase;
+            this.phaseStartTime = System.nanoTime();
+        }
+        if (finished != null) listener.onPhaseFinished(finished, duration);
+        report(true);
+    }
+
+    /**
+     * Возвращает текущий этап (null, если этап не начат или операция завершена).
+     */
+    @Nullable
+    public synchronized ProgressPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Учитывает переданные байты и, если прошёл интервал отчётов, отправляет отчёт.
+     *
+     * @param count Количество байт.
+     */
+    public void addBytes(long count) {
+        if (count <= 0) return;
+        bytes.add(count);
+        long now = System.nanoTime();
+        if (firstByteTime.get() == 0) firstByteTime.compareAndSet(0, now);
+        long next = nextReportTime.get();
+        if (now - next >= 0 && nextReportTime.compareAndSet(next, now + reportIntervalNanos)) {
+            report(false);
+        }
+    }
+
+    /**
+     * Возвращает количество переданных байт.
+     */
+    public long getBytesTransferred() {
+        return bytes.sum();
+    }
+
+    /**
+     * Завершает текущий этап и операцию и отправляет итоговый отчёт. Повторные вызовы ничего не делают.
+     */
+    public void complete() {
+        ProgressPhase finished;
+        Duration duration;
+        synchronized (this) {
+            if (completed) return;
+            finished = phase;
+            duration = finishPhase(System.nanoTime());
+            completed = true;
+        }
+        if (finished != null) listener.onPhaseFinished(finished, duration);
+        report(true);
+    }
+
+    /**
+     * Возвращает поток, учитывающий прочитанные байты.
+     *
+     * @param stream Исходный поток.
+     * @return Поток с учётом прогресса. Закрытие закрывает исходный поток.
+     */
+    @NotNull
+    public InputStream wrap(@NotNull InputStream stream) {
+        return new ProgressInputStream(stream);
+    }
+
+    /**
+     * Возвращает текущее состояние операции.
+     */
+    @NotNull
+    public synchronized ProgressSnapshot getSnapshot() {
+        return createSnapshot(System.nanoTime(), 0);
+    }
+
+    /**
+     * Отправляет отчёт получателю. Состояние снимается под блокировкой, а получатель вызывается вне её.
+     *
+     * @param force Отправить отчёт, даже если операция уже завершена.
+     */
+    private void report(boolean force) {
+        ProgressSnapshot snapshot;
+        synchronized (this) {
+            if (completed && !force) return;
+            long now = System.nanoTime();
+            long transferred = bytes.sum();
+            long currentRate = getRate(transferred - lastReportBytes, now - lastReportTime);
+            lastReportBytes = transferred;
+            lastReportTime = now;
+            snapshot = createSnapshot(now, currentRate);
+        }
+        listener.onProgress(snapshot);
+    }
+
+    /**
+     * Завершает текущий этап.
+     *
+     * @return Длительность этапа (null, если этап не начат).
+     */
+    @Nullable
+    private Duration finishPhase(long now) {
+        if (phase == null) return null;
+        Duration duration = Duration.ofNanos(now - phaseStartTime);
+        phaseDurations.merge(phase, duration, Duration::plus);
+        phase = null;
+        return duration;
+    }
+
+    /**
+     * Возвращает скорость передачи в байтах в секунду. Считается в double: произведение байт
+     * на количество наносекунд в секунде переполняет long уже на 9 ГБ.
+     *
+     * @param count    Количество байт.
+     * @param interval Интервал в наносекундах.
+     */
+    static long getRate(long count, long interval) {
+        return interval > 0 ? (long) (count / (interval / 1e9)) : 0;
+    }
+
+    private ProgressSnapshot createSnapshot(long now, long currentRate) {
+        long transferred = bytes.sum();
+        long firstByte = firstByteTime.get();
+        long transferTime = firstByte != 0 ? now - firstByte : 0;
+        Map<ProgressPhase, Duration> durations = new EnumMap<>(phaseDurations);
+        if (phase != null) {
+            durations.merge(phase, Duration.ofNanos(now - phaseStartTime), Duration::plus);
+        }
+        return new ProgressSnapshot(
+                transferred,
+                totalBytes,
+                currentRate,
+                getRate(transferred, transferTime),
+                firstByte != 0 ? Duration.ofNanos(firstByte - startTime) : null,
+                Duration.ofNanos(now - startTime),
+                phase,
+                durations,
+                completed
+        );
+    }
+
+    /**
+     * Поток, учитывающий прочитанные байты.
+     */
+    private final class ProgressInputStream extends FilterInputStream {
+        ProgressInputStream(InputStream stream) {
+            super(stream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = in.read();
+            if (value != -1) addBytes(1);
+            return value;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = in.read(bytes, offset, length);
+            if (read > 0) addBytes(read);
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = in.skip(count);
+            if (skipped > 0) addBytes(skipped);
+            return skipped;
+        }
+    }
+}
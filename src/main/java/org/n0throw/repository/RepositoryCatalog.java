@@ -0,0 +1,232 @@
+package org.n0throw.repository;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.n0throw.utils.files.ChecksumAlgorithm;
+import org.n0throw.utils.files.ExpectedChecksum;
+import org.n0throw.utils.os.OsName;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Текстовый каталог репозитория и изменения каталога. Каталог передаётся в кодировке UTF-8, по дистрибутиву
+ * на строку, поля разделены табуляцией:
+ * <pre>
+ * #serial  42
+ * name     version  os  arch  size  checksum  url [url ...]
+ * </pre>
+ * ОС — {@link OsName} или {@code *}, архитектура — {@code os.arch} или {@code *}, неизвестные размер
+ * и контрольная сумма — {@code -}, контрольная сумма в виде {@code sha256:<hex>}.
+ * Изменения каталога от номера {@code #from} до номера {@code #serial} содержат добавленные
+ * ({@code +} и поля дистрибутива) и удалённые ({@code -}, наименование, версия, ОС и архитектура) дистрибутивы.
+ * Строки, начинающиеся с {@code #}, кроме заголовков, и пустые строки пропускаются.
+ */
+final class RepositoryCatalog {
+    /**
+     * Заголовок номера каталога.
+     */
+    @NonNls
+    static final String SERIAL = "#serial";
+
+    /**
+     * Заголовок номера каталога, от которого отсчитываются изменения.
+     */
+    @NonNls
+    static final String FROM = "#from";
+
+    /**
+     * Обозначение любой ОС.
+     */
+    @NonNls
+    private static final String ANY = "*";
+
+    /**
+     * Обозначение неизвестного размера или контрольной суммы.
+     */
+    @NonNls
+    private static final String UNKNOWN = "-";
+
+    /**
+     * Признаки добавленного и удалённого дистрибутива в изменениях каталога.
+     */
+    @NonNls
+    private static final String ADDED = "+";
+
+    @NonNls
+    private static final String REMOVED = "-";
+
+    /**
+     * Количество обязательных полей дистрибутива (без путей).
+     */
+    private static final int ENTRY_FIELDS = 6;
+
+    /**
+     * Количество полей ключа дистрибутива.
+     */
+    private static final int KEY_FIELDS = 4;
+
+    /**
+     * Номер каталога (0, если каталог не нумеруется).
+     */
+    final long serial;
+
+    /**
+     * Номер каталога, от которого отсчитываются изменения (-1 для полного каталога).
+     */
+    final long from;
+
+    /**
+     * Дистрибутивы полного каталога или добавленные изменениями.
+     */
+    final List<RepositoryEntry> entries;
+
+    /**
+     * Ключи удалённых изменениями дистрибутивов ({@link RepositoryEntry#getKey()}).
+     */
+    final List<String> sRemovedKeys;
+
+    private RepositoryCatalog(long serial, long from, List<RepositoryEntry> entries, List<String> sRemovedKeys) {
+        this.serial = serial;
+        this.from = from;
+        this.entries = entries;
+        this.sRemovedKeys = sRemovedKeys;
+    }
+
+    /**
+     * Читает полный каталог.
+     *
+     * @param stream Поток каталога (не закрывается).
+     * @return Каталог.
+     * @throws IOException Если не удалось прочитать поток или каталог некорректен.
+     */
+    @NotNull
+    static RepositoryCatalog read(@NotNull InputStream stream) throws IOException {
+        return read(stream, false);
+    }
+
+    /**
+     * Читает изменения каталога.
+     *
+     * @param stream Поток изменений (не закрывается).
+     * @return Изменения каталога.
+     * @throws IOException Если не удалось прочитать поток, изменения некорректны или в них нет номеров.
+     */
+    @NotNull
+    static RepositoryCatalog readDelta(@NotNull InputStream stream) throws IOException {
+        return read(stream, true);
+    }
+
+    /**
+     * Записывает дистрибутив строкой каталога (без перевода строки).
+     */
+    @NotNull
+    static String format(@NotNull RepositoryEntry entry) {
+        StringBuilder builder = new StringBuilder(128)
+                .append(entry.getName()).append('\t')
+                .append(entry.getVersion()).append('\t')
+                .append(entry.getOs() == OsName.None ? ANY : entry.getOs().name()).append('\t')
+                .append(entry.getArch()).append('\t')
+                .append(entry.getSize() < 0 ? UNKNOWN : Long.toString(entry.getSize())).append('\t')
+                .append(entry.getChecksum() == null ? UNKNOWN : entry.getChecksum().toString());
+        for (String sUrl : entry.getUrlSpecs()) {
+            builder.append('\t').append(sUrl);
+        }
+        return builder.toString();
+    }
+
+    private static RepositoryCatalog read(InputStream stream, boolean delta) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        long serial = delta ? -1 : 0;
+        long from = -1;
+        List<RepositoryEntry> entries = new ArrayList<>();
+        List<String> sRemovedKeys = new ArrayList<>();
+        int lineNumber = 0;
+        String sLine;
+        while ((sLine = reader.readLine()) != null) {
+            lineNumber++;
+            if (sLine.isEmpty()) continue;
+            String[] sFields = sLine.split("\t");
+            try {
+                if (sFields[0].startsWith("#")) {
+                    if (sFields[0].equals(SERIAL)) serial = parseSerial(sFields);
+                    if (sFields[0].equals(FROM)) from = parseSerial(sFields);
+                } else if (!delta) {
+                    entries.add(parseEntry(sFields, 0));
+                } else if (sFields[0].equals(ADDED)) {
+                    entries.add(parseEntry(sFields, 1));
+                } else if (sFields[0].equals(REMOVED) && sFields.length == KEY_FIELDS + 1) {
+                    sRemovedKeys.add(parseKey(sFields));
+                } else {
+                    throw new IllegalArgumentException("неизвестное изменение " + sFields[0]);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Некорректная строка каталога " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        if (delta && (serial < 0 || from < 0)) {
+            throw new IOException("В изменениях каталога не указаны номера " + FROM + " и " + SERIAL + ".");
+        }
+        return new RepositoryCatalog(serial, from, entries, sRemovedKeys);
+    }
+
+    private static RepositoryEntry parseEntry(String[] sFields, int start) {
+        if (sFields.length - start < ENTRY_FIELDS) {
+            throw new IllegalArgumentException("не хватает полей дистрибутива");
+        }
+        String sSize = sFields[start + 4];
+        String sChecksum = sFields[start + 5];
+        return new RepositoryEntry(
+                sFields[start],
+                sFields[start + 1],
+                parseOs(sFields[start + 2]),
+                sFields[start + 3],
+                sSize.equals(UNKNOWN) ? -1 : Long.parseLong(sSize),
+                sChecksum.equals(UNKNOWN) ? null : parseChecksum(sChecksum),
+                Arrays.asList(sFields).subList(start + ENTRY_FIELDS, sFields.length)
+        );
+    }
+
+    /**
+     * Составляет ключ удалённого дистрибутива в том же виде, что и {@link RepositoryEntry#getKey()}.
+     */
+    private static String parseKey(String[] sFields) {
+        return new RepositoryEntry(sFields[1], sFields[2], parseOs(sFields[3]), sFields[4], -1, null, List.of())
+                .getKey();
+    }
+
+    @NotNull
+    static OsName parseOs(@NotNull String sOs) {
+        if (sOs.equals(ANY)) return OsName.None;
+        for (OsName os : OsName.values()) {
+            if (os.name().equalsIgnoreCase(sOs)) return os;
+        }
+        throw new IllegalArgumentException("неизвестная ОС " + sOs);
+    }
+
+    @NotNull
+    static ExpectedChecksum parseChecksum(@NotNull String sChecksum) {
+        int separator = sChecksum.indexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("контрольная сумма без алгоритма " + sChecksum);
+        }
+        return new ExpectedChecksum(
+                ChecksumAlgorithm.fromName(sChecksum.substring(0, separator)),
+                sChecksum.substring(separator + 1).toLowerCase(Locale.ROOT)
+        );
+    }
+
+    private static long parseSerial(String[] sFields) {
+        if (sFields.length != 2) throw new IllegalArgumentException("заголовок без номера");
+        long value = Long.parseLong(sFields[1].trim());
+        if (value < 0) throw new IllegalArgumentException("отрицательный номер каталога");
+        return value;
+    }
+}
@@ -0,0 +1,206 @@
+package org.n0throw.repository;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.diagnostics.MetricsRegistry;
+import org.n0throw.downloader.DownloaderRegistry;
+import org.n0throw.downloader.IDistributionDownloader;
+import org.n0throw.downloader.IResourceVersionProvider;
+import org.n0throw.downloader.ResourceVersion;
+import org.n0throw.utils.concurrent.AsyncTasks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Клиент репозитория дистрибутивов: скачивает каталог ({@link RepositoryCatalog}), компилирует его в индекс
+ * ({@link RepositoryIndex}) и обновляет индекс.
+ * <p>
+ * Обновление сначала проверяет версию каталога (для HTTP — условным запросом по ETag), и если каталог
+ * не изменился, то ничего не скачивается. Иначе запрашиваются изменения от номера текущего индекса
+ * ({@code <каталог>}{@value #DELTA_SUFFIX}{@code <номер>}), и только если их нет, скачивается весь каталог.
+ */
+public class RepositoryClient {
+    /**
+     * Окончание пути изменений каталога: за ним следует номер каталога, от которого отсчитываются изменения.
+     */
+    @NonNls
+    public static final String DELTA_SUFFIX = ".delta/";
+
+    /**
+     * Путь до каталога.
+     */
+    private final URL catalogUrl;
+
+    /**
+     * Путь к файлу индекса.
+     */
+    private final Path indexPath;
+
+    /**
+     * Загрузчик каталога и его изменений.
+     */
+    private final IDistributionDownloader downloader;
+
+    /**
+     * Открытый индекс (null, если ещё не открыт).
+     */
+    @Nullable
+    private volatile RepositoryIndex index;
+
+    /**
+     * @param catalogUrl Путь до каталога.
+     * @param indexPath  Путь к файлу индекса.
+     */
+    public RepositoryClient(@NotNull URL catalogUrl, @NotNull Path indexPath) {
+        this(catalogUrl, indexPath, DownloaderRegistry.getInstance());
+    }
+
+    /**
+     * @param catalogUrl Путь до каталога.
+     * @param indexPath  Путь к файлу индекса.
+     * @param downloader Загрузчик каталога и его изменений. Версия каталога проверяется, если загрузчик
+     *                   реализует {@link IResourceVersionProvider}.
+     */
+    public RepositoryClient(
+            @NotNull URL catalogUrl,
+            @NotNull Path indexPath,
+            @NotNull IDistributionDownloader downloader
+    ) {
+        this.catalogUrl = catalogUrl;
+        this.indexPath = indexPath;
+        this.downloader = downloader;
+    }
+
+    /**
+     * Возвращает индекс, сохранённый при последнем обновлении, без обращения к репозиторию.
+     *
+     * @return Индекс (null, если репозиторий ещё не обновлялся).
+     * @throws IOException Если не удалось прочитать файл индекса.
+     */
+    @Nullable
+    public RepositoryIndex getIndex() throws IOException {
+        RepositoryIndex current = index;
+        if (current != null) return current;
+        synchronized (this) {
+            if (index == null && Files.exists(indexPath)) {
+                index = RepositoryIndex.open(indexPath);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Обновляет индекс репозитория: ничего не скачивает, если каталог не изменился, применяет изменения
+     * каталога, если они опубликованы, и скачивает весь каталог в остальных случаях.
+     *
+     * @return Актуальный индекс.
+     * @throws IOException Если не удалось скачать каталог или записать индекс.
+     */
+    @NotNull
+    public synchronized RepositoryIndex refresh() throws IOException {
+        RepositoryIndex current;
+        try {
+            current = getIndex();
+        } catch (IOException e) {
+            // todo slf4j: индекс повреждён, каталог скачивается заново
+            current = null;
+        }
+
+        ResourceVersion known = current != null ? current.getVersion() : null;
+        ResourceVersion version = downloader instanceof IResourceVersionProvider
+                ? ((IResourceVersionProvider) downloader).getVersion(catalogUrl, known)
+                : null;
+        if (current != null && version != null && version.isComparable() && version.equals(known)) {
+            record("unchanged");
+            return current;
+        }
+
+        if (current != null && current.getSerial() > 0) {
+            try {
+                RepositoryIndex updated = applyDelta(current, version);
+                record("delta");
+                return updated;
+            } catch (IOException e) {
+                // todo slf4j: изменения от текущего номера не опубликованы, скачивается весь каталог
+            }
+        }
+
+        RepositoryCatalog catalog;
+        try (InputStream stream = downloader.openStream(catalogUrl)) {
+            catalog = RepositoryCatalog.read(stream);
+        }
+        RepositoryIndex.write(indexPath, catalog.serial, version, catalog.entries);
+        record("full");
+        return replaceIndex();
+    }
+
+    /**
+     * Асинхронно обновляет индекс репозитория.
+     *
+     * @return Задача с актуальным индексом.
+     */
+    @NotNull
+    public CompletableFuture<RepositoryIndex> refreshAsync() {
+        return AsyncTasks.supplyAsync(this::refresh);
+    }
+
+    /**
+     * Возвращает путь до изменений каталога от указанного номера.
+     *
+     * @param serial Номер каталога, от которого отсчитываются изменения.
+     * @throws IOException Если путь не удалось составить.
+     */
+    @NotNull
+    public URL getDeltaUrl(long serial) throws IOException {
+        return new URL(catalogUrl, catalogUrl.getPath() + DELTA_SUFFIX + serial);
+    }
+
+    /**
+     * Применяет к текущему индексу изменения каталога от его номера.
+     */
+    private RepositoryIndex applyDelta(RepositoryIndex current, @Nullable ResourceVersion version) throws IOException {
+        RepositoryCatalog delta;
+        try (InputStream stream = downloader.openStream(getDeltaUrl(current.getSerial()))) {
+            delta = RepositoryCatalog.readDelta(stream);
+        }
+        if (delta.from != current.getSerial()) {
+            throw new IOException("Изменения каталога отсчитываются от номера " + delta.from
+                    + ", а индекс составлен из каталога номер " + current.getSerial() + ".");
+        }
+
+        Map<String, RepositoryEntry> entries = new LinkedHashMap<>();
+        for (RepositoryEntry entry : current.readAll()) {
+            entries.put(entry.getKey(), entry);
+        }
+        delta.sRemovedKeys.forEach(entries::remove);
+        for (RepositoryEntry entry : delta.entries) {
+            entries.put(entry.getKey(), entry);
+        }
+        RepositoryIndex.write(indexPath, delta.serial, version, entries.values());
+        return replaceIndex();
+    }
+
+    private RepositoryIndex replaceIndex() throws IOException {
+        RepositoryIndex updated = RepositoryIndex.open(indexPath);
+        index = updated;
+        return updated;
+    }
+
+    private static void record(String sResult) {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        if (!registry.isEnabled()) return;
+        registry.counter(
+                "repository_refresh_total",
+                "Количество обновлений индекса репозитория.",
+                "result", sResult
+        ).increment();
+    }
+}
@@ -0,0 +1,313 @@
+package org.n0throw.repository;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.downloader.DownloaderRegistry;
+import org.n0throw.utils.files.ExpectedChecksum;
+import org.n0throw.utils.os.OsManager;
+import org.n0throw.utils.os.OsName;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Дистрибутив в индексе репозитория: наименование, версия, ОС и архитектура, размер, контрольная сумма и пути.
+ */
+public final class RepositoryEntry {
+    /**
+     * Архитектура дистрибутива, который подходит для любой архитектуры.
+     */
+    @NonNls
+    public static final String ANY_ARCH = "*";
+
+    // Порядок видов частей версии при сравнении
+    private static final int RANK_TEXT = 0;
+    private static final int RANK_END = 1;
+    private static final int RANK_NUMBER = 2;
+
+    /**
+     * Наименование дистрибутива.
+     */
+    private final String sName;
+
+    /**
+     * Версия дистрибутива.
+     */
+    private final String sVersion;
+
+    /**
+     * ОС дистрибутива ({@link OsName#None}, если дистрибутив подходит для любой ОС).
+     */
+    private final OsName os;
+
+    /**
+     * Архитектура дистрибутива ({@value #ANY_ARCH}, если подходит для любой).
+     */
+    private final String sArch;
+
+    /**
+     * Размер дистрибутива (-1, если неизвестен).
+     */
+    private final long size;
+
+    /**
+     * Контрольная сумма дистрибутива.
+     */
+    @Nullable
+    private final ExpectedChecksum checksum;
+
+    /**
+     * Пути до дистрибутива в порядке предпочтения.
+     */
+    private final List<String> sUrls;
+
+    /**
+     * @param sName    Наименование дистрибутива.
+     * @param sVersion Версия дистрибутива.
+     * @param os       ОС дистрибутива ({@link OsName#None}, если подходит для любой).
+     * @param sArch    Архитектура дистрибутива ({@value #ANY_ARCH}, если подходит для любой).
+     * @param size     Размер дистрибутива (-1, если неизвестен).
+     * @param checksum Контрольная сумма дистрибутива (null, если неизвестна).
+     * @param sUrls    Пути до дистрибутива в порядке предпочтения.
+     * @throws IllegalArgumentException Если наименование, версия или архитектура пустые или содержат
+     *                                  табуляцию или перевод строки.
+     */
+    public RepositoryEntry(
+            @NonNls @NotNull String sName,
+            @NonNls @NotNull String sVersion,
+            @NotNull OsName os,
+            @NonNls @NotNull String sArch,
+            long size,
+            @Nullable ExpectedChecksum checksum,
+            @NonNls @NotNull List<String> sUrls
+    ) {
+        this.sName = checkField(sName, "наименование");
+        this.sVersion = checkField(sVersion, "версия");
+        this.os = os;
+        this.sArch = normalizeArch(checkField(sArch, "архитектура"));
+        this.size = size;
+        this.checksum = checksum;
+        for (String sUrl : sUrls) checkField(sUrl, "путь");
+        this.sUrls = List.copyOf(sUrls);
+    }
+
+    /**
+     * Возвращает наименование дистрибутива.
+     */
+    @NotNull
+    public String getName() {
+        return sName;
+    }
+
+    /**
+     * Возвращает версию дистрибутива.
+     */
+    @NotNull
+    public String getVersion() {
+        return sVersion;
+    }
+
+    /**
+     * Возвращает ОС дистрибутива ({@link OsName#None}, если подходит для любой).
+     */
+    @NotNull
+    public OsName getOs() {
+        return os;
+    }
+
+    /**
+     * Возвращает архитектуру дистрибутива ({@value #ANY_ARCH}, если подходит для любой).
+     */
+    @NotNull
+    public String getArch() {
+        return sArch;
+    }
+
+    /**
+     * Возвращает размер дистрибутива (-1, если неизвестен).
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Возвращает контрольную сумму дистрибутива (null, если неизвестна).
+     */
+    @Nullable
+    public ExpectedChecksum getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Возвращает пути до дистрибутива в порядке предпочтения.
+     */
+    @NotNull
+    public List<String> getUrlSpecs() {
+        return sUrls;
+    }
+
+    /**
+     * Возвращает пути до дистрибутива в порядке предпочтения.
+     *
+     * @throws MalformedURLException Если путь не является URL или его схема не поддерживается.
+     */
+    @NotNull
+    public List<URL> getUrls() throws MalformedURLException {
+        List<URL> urls = new ArrayList<>(sUrls.size());
+        for (String sUrl : sUrls) {
+            urls.add(DownloaderRegistry.getInstance().toUrl(sUrl));
+        }
+        return urls;
+    }
+
+    /**
+     * Возвращает флаг, подходит ли дистрибутив для текущей ОС и архитектуры ({@link OsManager}).
+     */
+    public boolean isCompatible() {
+        return isCompatible(OsManager.getOS(), OsManager.getOsArch());
+    }
+
+    /**
+     * Возвращает флаг, подходит ли дистрибутив для ОС и архитектуры.
+     *
+     * @param os    ОС.
+     * @param sArch Архитектура (как в {@code os.arch}).
+     */
+    public boolean isCompatible(@NotNull OsName os, @NonNls @NotNull String sArch) {
+        return (this.os == OsName.None || this.os == os)
+                && (ANY_ARCH.equals(this.sArch) || this.sArch.equals(normalizeArch(sArch)));
+    }
+
+    /**
+     * Приводит архитектуру к единому наименованию: {@code x86_64} и {@code x64} — это {@code amd64},
+     * {@code arm64} — это {@code aarch64}, {@code i386}-{@code i686} — это {@code x86}.
+     *
+     * @param sArch Архитектура.
+     * @return Архитектура в нижнем регистре.
+     */
+    @NotNull
+    public static String normalizeArch(@NonNls @NotNull String sArch) {
+        String sNormalized = sArch.trim().toLowerCase(Locale.ROOT);
+        return switch (sNormalized) {
+            case "x86_64", "x64" -> "amd64";
+            case "arm64" -> "aarch64";
+            case "i386", "i486", "i586", "i686" -> "x86";
+            default -> sNormalized;
+        };
+    }
+
+    /**
+     * Сравнивает версии по частям: числовые части сравниваются как числа, буквенные — как строки, разделители
+     * ({@code . - _ +}) не учитываются. Буквенная часть старше числовой и старше конца версии, поэтому
+     * {@code 1.10} новее {@code 1.9}, а {@code 2.0} новее {@code 2.0-rc1}, но старше {@code 2.0.1}.
+     *
+     * @return Отрицательное число, если первая версия старше, положительное, если новее, и 0, если равны.
+     */
+    public static int compareVersions(@NonNls @NotNull String sFirst, @NonNls @NotNull String sSecond) {
+        int i = skipSeparators(sFirst, 0);
+        int j = skipSeparators(sSecond, 0);
+        while (i < sFirst.length() || j < sSecond.length()) {
+            int firstRank = rank(sFirst, i);
+            int secondRank = rank(sSecond, j);
+            if (firstRank != secondRank) return Integer.compare(firstRank, secondRank);
+
+            int iEnd = skipPart(sFirst, i);
+            int jEnd = skipPart(sSecond, j);
+            int result;
+            if (firstRank == RANK_NUMBER) {
+                int iStart = skipZeros(sFirst, i, iEnd);
+                int jStart = skipZeros(sSecond, j, jEnd);
+                result = Integer.compare(iEnd - iStart, jEnd - jStart);
+                if (result == 0) result = sFirst.substring(iStart, iEnd).compareTo(sSecond.substring(jStart, jEnd));
+            } else {
+                result = sFirst.substring(i, iEnd).compareTo(sSecond.substring(j, jEnd));
+            }
+            if (result != 0) return result;
+            i = skipSeparators(sFirst, iEnd);
+            j = skipSeparators(sSecond, jEnd);
+        }
+        return 0;
+    }
+
+    /**
+     * Возвращает ключ дистрибутива в индексе: наименование, версия, ОС и архитектура.
+     */
+    String getKey() {
+        return sName + '\t' + sVersion + '\t' + os + '\t' + sArch;
+    }
+
+    private static String checkField(String sValue, String sField) {
+        if (sValue.isEmpty() || sValue.indexOf('\t') >= 0 || sValue.indexOf('\n') >= 0 || sValue.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Некорректное поле дистрибутива (" + sField + "): " + sValue);
+        }
+        return sValue;
+    }
+
+    /**
+     * Возвращает порядок вида части версии: буквенная часть, конец версии, числовая часть.
+     */
+    private static int rank(String sVersion, int index) {
+        if (index >= sVersion.length()) return RANK_END;
+        return isDigit(sVersion.charAt(index)) ? RANK_NUMBER : RANK_TEXT;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '.' || c == '-' || c == '_' || c == '+';
+    }
+
+    private static int skipSeparators(String sVersion, int index) {
+        while (index < sVersion.length() && isSeparator(sVersion.charAt(index))) index++;
+        return index;
+    }
+
+    /**
+     * Возвращает конец части версии, которая начинается с указанной позиции.
+     */
+    private static int skipPart(String sVersion, int index) {
+        boolean digits = isDigit(sVersion.charAt(index));
+        while (index < sVersion.length()) {
+            char c = sVersion.charAt(index);
+            if (isSeparator(c) || isDigit(c) != digits) break;
+            index++;
+        }
+        return index;
+    }
+
+    private static int skipZeros(String sVersion, int start, int end) {
+        while (start < end - 1 && sVersion.charAt(start) == '0') start++;
+        return start;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RepositoryEntry)) return false;
+        RepositoryEntry other = (RepositoryEntry) o;
+        return size == other.size
+                && sName.equals(other.sName)
+                && sVersion.equals(other.sVersion)
+                && os == other.os
+                && sArch.equals(other.sArch)
+                && Objects.equals(Objects.toString(checksum, null), Objects.toString(other.checksum, null))
+                && sUrls.equals(other.sUrls);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sName, sVersion, os, sArch, size);
+    }
+
+    @Override
+    public String toString() {
+        return sName + " " + sVersion + " (" + os + ", " + sArch + ")";
+    }
+}
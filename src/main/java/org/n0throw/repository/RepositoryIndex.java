@@ -0,0 +1,531 @@
+package org.n0throw.repository;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.downloader.ResourceVersion;
+import org.n0throw.utils.os.OsManager;
+import org.n0throw.utils.os.OsName;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индекс репозитория: скомпилированный каталог в двоичном файле, который отображается в память.
+ * Записи фиксированного размера отсортированы по наименованию (от новых версий к старым), а строки хранятся
+ * один раз в общем пуле, поэтому поиск — это двоичный поиск по отображённому файлу без разбора каталога
+ * и без создания объектов для просмотренных записей.
+ * <p>
+ * В Windows отображённый файл нельзя заменить, поэтому там индекс читается в память целиком.
+ * В остальных ОС файл индекса заменяется атомарно, и открытый индекс продолжает читать прежнюю версию.
+ */
+public final class RepositoryIndex {
+    /**
+     * Сигнатура и версия формата файла индекса. Индексы прежних версий не открываются и составляются заново.
+     */
+    private static final int INDEX_MAGIC = 0x52494402;
+
+    /**
+     * Размер заголовка: сигнатура, количество записей, номер каталога, версия каталога, начало пула строк.
+     */
+    private static final int HEADER_SIZE = 40;
+
+    /**
+     * Размер записи: смещения наименования, версии, архитектуры, контрольной суммы, путей и ОС, размер.
+     * ОС хранится наименованием в пуле строк, а не порядковым номером, чтобы индекс не зависел
+     * от порядка значений {@link OsName}.
+     */
+    private static final int RECORD_SIZE = 32;
+
+    /**
+     * Смещение отсутствующей строки.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Максимальная длина строки пула в байтах.
+     */
+    private static final int MAX_STRING_LENGTH = 0xFFFF;
+
+    /**
+     * Наименования ОС в UTF-8 для сравнения с пулом строк без создания строк.
+     */
+    private static final Map<OsName, byte[]> OS_NAMES = new EnumMap<>(OsName.class);
+
+    static {
+        for (OsName os : OsName.values()) {
+            OS_NAMES.put(os, os.name().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Порядок записей с одинаковым наименованием: от новых версий к старым, сначала дистрибутивы
+     * для конкретной ОС и архитектуры.
+     */
+    private static final Comparator<RepositoryEntry> VERSION_ORDER = Comparator
+            .comparing(RepositoryEntry::getVersion, (sFirst, sSecond) -> RepositoryEntry.compareVersions(sSecond, sFirst))
+            .thenComparing(RepositoryEntry::getVersion)
+            .thenComparing(entry -> entry.getOs() == OsName.None)
+            .thenComparing(RepositoryEntry::getOs)
+            .thenComparing(entry -> RepositoryEntry.ANY_ARCH.equals(entry.getArch()))
+            .thenComparing(RepositoryEntry::getArch);
+
+    /**
+     * Содержимое файла индекса.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Количество записей.
+     */
+    private final int count;
+
+    /**
+     * Номер каталога (0, если каталог не нумеруется).
+     */
+    private final long serial;
+
+    /**
+     * Версия каталога на сервере (null, если источник не сообщает версию).
+     */
+    @Nullable
+    private final ResourceVersion version;
+
+    private RepositoryIndex(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != INDEX_MAGIC) {
+            throw new IOException("Файл не является индексом репозитория.");
+        }
+        this.buffer = buffer;
+        this.count = buffer.getInt(4);
+        this.serial = buffer.getLong(8);
+        int poolOffset = buffer.getInt(32);
+        if (count < 0 || poolOffset != HEADER_SIZE + (long) count * RECORD_SIZE || poolOffset > buffer.limit()) {
+            throw new IOException("Файл индекса репозитория повреждён.");
+        }
+        validate(poolOffset);
+        String sETag = readString(buffer.getInt(16));
+        String sLastModified = readString(buffer.getInt(20));
+        long length = buffer.getLong(24);
+        this.version = sETag != null || sLastModified != null ? new ResourceVersion(sETag, sLastModified, length) : null;
+    }
+
+    /**
+     * Открывает индекс репозитория. Смещения всех записей проверяются при открытии,
+     * поэтому поиск по открытому индексу не выходит за пределы файла.
+     *
+     * @param path Путь к файлу индекса.
+     * @return Индекс.
+     * @throws IOException Если не удалось прочитать файл, он не является индексом или повреждён.
+     */
+    @NotNull
+    public static RepositoryIndex open(@NotNull Path path) throws IOException {
+        if (OsManager.isWindows()) {
+            return new RepositoryIndex(ByteBuffer.wrap(Files.readAllBytes(path)));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Файл индекса репозитория слишком большой: " + path);
+            }
+            return new RepositoryIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Возвращает количество дистрибутивов в индексе.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Возвращает номер каталога, из которого составлен индекс (0, если каталог не нумеруется).
+     */
+    public long getSerial() {
+        return serial;
+    }
+
+    /**
+     * Возвращает версию каталога на сервере (null, если источник не сообщает версию).
+     */
+    @Nullable
+    public ResourceVersion getVersion() {
+        return version;
+    }
+
+    /**
+     * Возвращает все версии дистрибутива от новых к старым.
+     *
+     * @param sName Наименование дистрибутива.
+     */
+    @NotNull
+    public List<RepositoryEntry> find(@NonNls @NotNull String sName) {
+        byte[] name = sName.getBytes(StandardCharsets.UTF_8);
+        List<RepositoryEntry> entries = new ArrayList<>();
+        for (int i = lowerBound(name); i < count && compareName(i, name) == 0; i++) {
+            entries.add(readEntry(i));
+        }
+        return entries;
+    }
+
+    /**
+     * Возвращает дистрибутив конкретной версии для ОС и архитектуры.
+     *
+     * @param sName    Наименование дистрибутива.
+     * @param sVersion Версия дистрибутива.
+     * @param os       ОС.
+     * @param sArch    Архитектура (как в {@code os.arch}).
+     * @return Дистрибутив (null, если такой версии нет или она не подходит).
+     */
+    @Nullable
+    public RepositoryEntry find(
+            @NonNls @NotNull String sName,
+            @NonNls @NotNull String sVersion,
+            @NotNull OsName os,
+            @NonNls @NotNull String sArch
+    ) {
+        byte[] name = sName.getBytes(StandardCharsets.UTF_8);
+        for (int i = lowerBound(name); i < count && compareName(i, name) == 0; i++) {
+            if (sVersion.equals(readString(getField(i, 4))) && isCompatible(i, os, sArch)) return readEntry(i);
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает последнюю версию дистрибутива для текущей ОС и архитектуры ({@link OsManager}).
+     *
+     * @param sName Наименование дистрибутива.
+     * @return Дистрибутив (null, если подходящего нет).
+     */
+    @Nullable
+    public RepositoryEntry findLatest(@NonNls @NotNull String sName) {
+        return findLatest(sName, OsManager.getOS(), OsManager.getOsArch());
+    }
+
+    /**
+     * Возвращает последнюю версию дистрибутива для ОС и архитектуры. Если для одной версии есть
+     * и дистрибутив для конкретной ОС или архитектуры, и общий, то возвращается конкретный.
+     *
+     * @param sName Наименование дистрибутива.
+     * @param os    ОС.
+     * @param sArch Архитектура (как в {@code os.arch}).
+     * @return Дистрибутив (null, если подходящего нет).
+     */
+    @Nullable
+    public RepositoryEntry findLatest(@NonNls @NotNull String sName, @NotNull OsName os, @NonNls @NotNull String sArch) {
+        byte[] name = sName.getBytes(StandardCharsets.UTF_8);
+        for (int i = lowerBound(name); i < count && compareName(i, name) == 0; i++) {
+            if (isCompatible(i, os, sArch)) return readEntry(i);
+        }
+        return null;
+    }
+
+    /**
+     * Читает все дистрибутивы индекса.
+     */
+    @NotNull
+    List<RepositoryEntry> readAll() {
+        List<RepositoryEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(readEntry(i));
+        }
+        return entries;
+    }
+
+    /**
+     * Атомарно записывает индекс репозитория.
+     *
+     * @param path    Путь к файлу индекса.
+     * @param serial  Номер каталога (0, если каталог не нумеруется).
+     * @param version Версия каталога на сервере (null, если источник не сообщает версию).
+     * @param entries Дистрибутивы.
+     * @throws IOException Если не удалось записать файл или индекс получается больше 2 ГБ.
+     */
+    static void write(
+            @NotNull Path path,
+            long serial,
+            @Nullable ResourceVersion version,
+            @NotNull Collection<RepositoryEntry> entries
+    ) throws IOException {
+        // Наименования сравниваются побайтно в UTF-8, как при поиске
+        SortKey[] keys = new SortKey[entries.size()];
+        int index = 0;
+        for (RepositoryEntry entry : entries) {
+            keys[index++] = new SortKey(entry);
+        }
+        Arrays.sort(keys);
+        RepositoryEntry[] sorted = new RepositoryEntry[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = keys[i].entry;
+        }
+        long poolStart = HEADER_SIZE + (long) sorted.length * RECORD_SIZE;
+        StringPool pool = new StringPool(poolStart);
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream(sorted.length * RECORD_SIZE);
+        DataOutputStream recordOutput = new DataOutputStream(records);
+        for (RepositoryEntry entry : sorted) {
+            recordOutput.writeInt(pool.add(entry.getName()));
+            recordOutput.writeInt(pool.add(entry.getVersion()));
+            recordOutput.writeInt(pool.add(entry.getArch()));
+            recordOutput.writeInt(entry.getChecksum() == null ? NONE : pool.add(entry.getChecksum().toString()));
+            recordOutput.writeInt(pool.addList(entry.getUrlSpecs()));
+            recordOutput.writeInt(pool.add(entry.getOs().name()));
+            recordOutput.writeLong(entry.getSize());
+        }
+        int eTagOffset = version == null || version.getETag() == null ? NONE : pool.add(version.getETag());
+        int lastModifiedOffset = version == null || version.getLastModified() == null
+                ? NONE
+                : pool.add(version.getLastModified());
+        if (poolStart + pool.size() > Integer.MAX_VALUE) {
+            throw new IOException("Индекс репозитория получается больше 2 ГБ.");
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(sorted.length);
+            output.writeLong(serial);
+            output.writeInt(eTagOffset);
+            output.writeInt(lastModifiedOffset);
+            output.writeLong(version == null ? -1 : version.getLength());
+            output.writeInt((int) poolStart);
+            output.writeInt(0);
+            records.writeTo(output);
+            pool.writeTo(output);
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Возвращает номер первой записи, наименование которой не меньше искомого.
+     */
+    private int lowerBound(byte[] name) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareName(middle, name) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Проверяет, что строки и списки путей всех записей, а также строки заголовка лежат в пуле строк.
+     *
+     * @throws IOException Если смещение выходит за пределы пула или ОС записи неизвестна.
+     */
+    private void validate(int poolOffset) throws IOException {
+        checkString(buffer.getInt(16), poolOffset, true);
+        checkString(buffer.getInt(20), poolOffset, true);
+        for (int record = 0; record < count; record++) {
+            checkString(getField(record, 0), poolOffset, false);
+            checkString(getField(record, 4), poolOffset, false);
+            checkString(getField(record, 8), poolOffset, false);
+            checkString(getField(record, 12), poolOffset, true);
+            int urlsOffset = getField(record, 16);
+            if (urlsOffset < poolOffset || urlsOffset > buffer.limit() - 4) throw corrupted();
+            int urlCount = buffer.getInt(urlsOffset);
+            if (urlCount < 0 || urlsOffset + 4 + (long) urlCount * 4 > buffer.limit()) throw corrupted();
+            for (int i = 0; i < urlCount; i++) {
+                checkString(buffer.getInt(urlsOffset + 4 + i * 4), poolOffset, false);
+            }
+            int osOffset = getField(record, 20);
+            checkString(osOffset, poolOffset, false);
+            if (findOs(osOffset) == null) throw corrupted();
+        }
+    }
+
+    /**
+     * Проверяет, что строка со смещением целиком лежит в пуле строк.
+     */
+    private void checkString(int offset, int poolOffset, boolean optional) throws IOException {
+        if (optional && offset == NONE) return;
+        if (offset < poolOffset || offset > buffer.limit() - 2) throw corrupted();
+        if (offset + 2L + (buffer.getShort(offset) & MAX_STRING_LENGTH) > buffer.limit()) throw corrupted();
+    }
+
+    private static IOException corrupted() {
+        return new IOException("Файл индекса репозитория повреждён.");
+    }
+
+    /**
+     * Побайтно сравнивает наименование записи с искомым, не копируя его из файла.
+     */
+    private int compareName(int record, byte[] name) {
+        return compareString(getField(record, 0), name);
+    }
+
+    /**
+     * Побайтно сравнивает строку пула с искомой, не копируя её из файла.
+     */
+    private int compareString(int offset, byte[] value) {
+        int length = buffer.getShort(offset) & MAX_STRING_LENGTH;
+        int common = Math.min(length, value.length);
+        for (int i = 0; i < common; i++) {
+            int result = Integer.compare(buffer.get(offset + 2 + i) & 0xFF, value[i] & 0xFF);
+            if (result != 0) return result;
+        }
+        return Integer.compare(length, value.length);
+    }
+
+    /**
+     * Возвращает ОС по наименованию в пуле строк.
+     *
+     * @return ОС (null, если наименование неизвестно).
+     */
+    @Nullable
+    private OsName findOs(int offset) {
+        for (Map.Entry<OsName, byte[]> os : OS_NAMES.entrySet()) {
+            if (compareString(offset, os.getValue()) == 0) return os.getKey();
+        }
+        return null;
+    }
+
+    private boolean isCompatible(int record, OsName os, String sArch) {
+        int osOffset = getField(record, 20);
+        if (compareString(osOffset, OS_NAMES.get(OsName.None)) != 0 && compareString(osOffset, OS_NAMES.get(os)) != 0) {
+            return false;
+        }
+        String sRecordArch = readString(getField(record, 8));
+        return RepositoryEntry.ANY_ARCH.equals(sRecordArch) || RepositoryEntry.normalizeArch(sArch).equals(sRecordArch);
+    }
+
+    private RepositoryEntry readEntry(int record) {
+        int position = getPosition(record);
+        String sChecksum = readString(buffer.getInt(position + 12));
+        int urlsOffset = buffer.getInt(position + 16);
+        int urlCount = buffer.getInt(urlsOffset);
+        List<String> sUrls = new ArrayList<>(urlCount);
+        for (int i = 0; i < urlCount; i++) {
+            sUrls.add(readString(buffer.getInt(urlsOffset + 4 + i * 4)));
+        }
+        return new RepositoryEntry(
+                readString(buffer.getInt(position)),
+                readString(buffer.getInt(position + 4)),
+                findOs(buffer.getInt(position + 20)),
+                readString(buffer.getInt(position + 8)),
+                buffer.getLong(position + 24),
+                sChecksum == null ? null : RepositoryCatalog.parseChecksum(sChecksum),
+                sUrls
+        );
+    }
+
+    private static int getPosition(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    private int getField(int record, int fieldOffset) {
+        return buffer.getInt(getPosition(record) + fieldOffset);
+    }
+
+    @Nullable
+    private String readString(int offset) {
+        if (offset == NONE) return null;
+        int length = buffer.getShort(offset) & MAX_STRING_LENGTH;
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Дистрибутив с наименованием в UTF-8 для сортировки записей.
+     */
+    private static final class SortKey implements Comparable<SortKey> {
+        private final byte[] name;
+        private final RepositoryEntry entry;
+
+        SortKey(RepositoryEntry entry) {
+            this.name = entry.getName().getBytes(StandardCharsets.UTF_8);
+            this.entry = entry;
+        }
+
+        @Override
+        public int compareTo(@NotNull SortKey other) {
+            int result = Arrays.compareUnsigned(name, other.name);
+            return result != 0 ? result : VERSION_ORDER.compare(entry, other.entry);
+        }
+    }
+
+    /**
+     * Пул строк и списков путей индекса. Одинаковые строки и списки записываются один раз.
+     */
+    private static final class StringPool {
+        private final long start;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream output = new DataOutputStream(bytes);
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<List<String>, Integer> lists = new HashMap<>();
+
+        StringPool(long start) {
+            this.start = start;
+        }
+
+        int add(String sValue) throws IOException {
+            Integer known = strings.get(sValue);
+            if (known != null) return known;
+            byte[] value = sValue.getBytes(StandardCharsets.UTF_8);
+            if (value.length > MAX_STRING_LENGTH) {
+                throw new IOException("Строка каталога длиннее " + MAX_STRING_LENGTH + " байт.");
+            }
+            int offset = getOffset();
+            output.writeShort(value.length);
+            output.write(value);
+            strings.put(sValue, offset);
+            return offset;
+        }
+
+        int addList(List<String> sValues) throws IOException {
+            Integer known = lists.get(sValues);
+            if (known != null) return known;
+            int[] offsets = new int[sValues.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = add(sValues.get(i));
+            }
+            int offset = getOffset();
+            output.writeInt(offsets.length);
+            for (int value : offsets) {
+                output.writeInt(value);
+            }
+            lists.put(sValues, offset);
+            return offset;
+        }
+
+        long size() {
+            return bytes.size();
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            bytes.writeTo(target);
+        }
+
+        private int getOffset() throws IOException {
+            long offset = start + bytes.size();
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("Индекс репозитория получается больше 2 ГБ.");
+            }
+            return (int) offset;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.n0throw.utils.concurrent;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Запуск блокирующих операций как асинхронных.
+ * Операции выполняются на виртуальных потоках, если они доступны, иначе на неограниченном пуле daemon потоков.
+ */
+public final class AsyncTasks {
+    /**
+     * Общий пул блокирующих операций.
+     */
+    private static final ExecutorService executor = newBlockingExecutor("AsyncTask");
+
+    private AsyncTasks() {
+    }
+
+    /**
+     * Блокирующая операция.
+     *
+     * @param <T> Тип результата.
+     */
+    @FunctionalInterface
+    public interface IBlockingTask<T> {
+        /**
+         * @return Результат операции.
+         * @throws Exception Если операция завершилась с ошибкой.
+         */
+        T call() throws Exception;
+    }
+
+    /**
+     * Запускает блокирующую операцию в общем пуле.
+     * Отмена возвращённой задачи прерывает поток, выполняющий операцию. Если задача уже отменена к моменту
+     * завершения операции, а результат — {@link AutoCloseable} (например, разрешение на соединение), то он
+     * закрывается, иначе его никто не освободит.
+     *
+     * @param task Блокирующая операция.
+     * @param <T>  Тип результата.
+     * @return Задача с результатом операции.
+     */
+    @NotNull
+    public static <T> CompletableFuture<T> supplyAsync(@NotNull IBlockingTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> running = executor.submit(() -> {
+            if (future.isDone()) return;
+            try {
+                T result = task.call();
+                if (!future.complete(result) && result instanceof AutoCloseable) {
+                    closeQuietly((AutoCloseable) result);
+                }
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) running.cancel(true);
+        });
+        return future;
+    }
+
+    private static void closeQuietly(AutoCloseable resource) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            // todo slf4j
+        }
+    }
+
+    /**
+     * Создаёт пул для блокирующих операций, ограниченных вводом-выводом, а не процессором:
+     * виртуальные потоки, если они доступны, иначе неограниченный пул daemon потоков.
+     *
+     * @param sThreadName Наименование потоков пула (для виртуальных потоков не используется).
+     * @return Пул потоков.
+     */
+    @NotNull
+    public static ExecutorService newBlockingExecutor(@NonNls @NotNull String sThreadName) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, sThreadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
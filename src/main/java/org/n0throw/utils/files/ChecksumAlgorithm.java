@@ -0,0 +1,49 @@
+package org.n0throw.utils.files;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
+/**
+ * Алгоритм контрольной суммы файла.
+ */
+public enum ChecksumAlgorithm {
+    Sha256("SHA-256"),
+    Sha512("SHA-512"),
+    Crc32c("CRC32C");
+
+    /**
+     * Наименование алгоритма.
+     */
+    private final String sName;
+
+    ChecksumAlgorithm(String sName) {
+        this.sName = sName;
+    }
+
+    /**
+     * Возвращает наименование алгоритма.
+     */
+    @NotNull
+    public String getName() {
+        return sName;
+    }
+
+    /**
+     * По наименованию определяет алгоритм.
+     *
+     * @param sName Наименование алгоритма (регистр и дефисы не учитываются).
+     * @return Алгоритм.
+     * @throws IllegalArgumentException Если алгоритм не поддерживается.
+     */
+    @NotNull
+    public static ChecksumAlgorithm fromName(@NotNull String sName) {
+        String sNormalized = sName.replace("-", "").replace("_", "").toUpperCase(Locale.ROOT);
+        return switch (sNormalized) {
+            case "SHA256" -> Sha256;
+            case "SHA512" -> Sha512;
+            case "CRC32C" -> Crc32c;
+            default -> throw new IllegalArgumentException("Алгоритм контрольной суммы не поддерживается: " + sName);
+        };
+    }
+}
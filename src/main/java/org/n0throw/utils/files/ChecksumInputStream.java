@@ -0,0 +1,138 @@
+package org.n0throw.utils.files;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Поток, вычисляющий контрольные суммы по мере чтения данных.
+ * Позволяет проверить файл без повторного чтения с диска.
+ */
+public class ChecksumInputStream extends FilterInputStream {
+    /**
+     * Объекты вычисления хешей для криптографических алгоритмов.
+     */
+    private final Map<ChecksumAlgorithm, MessageDigest> digests = new EnumMap<>(ChecksumAlgorithm.class);
+
+    /**
+     * Объекты вычисления контрольных сумм для некриптографических алгоритмов.
+     */
+    private final Map<ChecksumAlgorithm, Checksum> checksums = new EnumMap<>(ChecksumAlgorithm.class);
+
+    /**
+     * Вычисленные значения (заполняются после окончания чтения).
+     */
+    private final Map<ChecksumAlgorithm, String> values = new EnumMap<>(ChecksumAlgorithm.class);
+
+    /**
+     * @param stream     Исходный поток.
+     * @param algorithms Алгоритмы контрольных сумм.
+     */
+    public ChecksumInputStream(@NotNull InputStream stream, @NotNull Collection<ChecksumAlgorithm> algorithms) {
+        super(stream);
+        for (ChecksumAlgorithm algorithm : algorithms) {
+            if (algorithm == ChecksumAlgorithm.Crc32c) {
+                checksums.put(algorithm, new CRC32C());
+            } else {
+                digests.put(algorithm, FileHashHelper.createDigest(algorithm.getName()));
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value != -1) {
+            for (MessageDigest digest : digests.values()) digest.update((byte) value);
+            for (Checksum checksum : checksums.values()) checksum.update(value);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        int read = super.read(bytes, offset, length);
+        if (read > 0) {
+            for (MessageDigest digest : digests.values()) digest.update(bytes, offset, read);
+            for (Checksum checksum : checksums.values()) checksum.update(bytes, offset, read);
+        }
+        return read;
+    }
+
+    /**
+     * Пропущенные байты тоже должны попасть в контрольную сумму, поэтому они читаются.
+     */
+    @Override
+    public long skip(long count) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(8192, Math.max(count, 1))];
+        long skipped = 0;
+        while (skipped < count) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, count - skipped));
+            if (read == -1) break;
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Поток контрольных сумм не поддерживает возврат.");
+    }
+
+    /**
+     * Возвращает значение контрольной суммы прочитанных данных.
+     * После первого вызова вычисление для алгоритма завершается.
+     *
+     * @param algorithm Алгоритм.
+     * @return Значение в шестнадцатеричном виде.
+     * @throws IllegalArgumentException Если алгоритм не был передан в конструктор.
+     */
+    @NotNull
+    public String getValue(@NotNull ChecksumAlgorithm algorithm) {
+        String sValue = values.get(algorithm);
+        if (sValue != null) return sValue;
+        MessageDigest digest = digests.get(algorithm);
+        Checksum checksum = checksums.get(algorithm);
+        if (digest != null) {
+            sValue = FileHashHelper.toHex(digest.digest());
+        } else if (checksum != null) {
+            sValue = String.format("%08x", checksum.getValue());
+        } else {
+            throw new IllegalArgumentException("Контрольная сумма не вычислялась: " + algorithm.getName());
+        }
+        values.put(algorithm, sValue);
+        return sValue;
+    }
+
+    /**
+     * Сравнивает вычисленные контрольные суммы с ожидаемыми.
+     *
+     * @param expected Ожидаемые контрольные суммы.
+     * @throws ChecksumMismatchException Если хотя бы одна сумма не совпала.
+     */
+    public void verify(@NotNull Collection<ExpectedChecksum> expected) throws ChecksumMismatchException {
+        for (ExpectedChecksum checksum : expected) {
+            String sActual = getValue(checksum.getAlgorithm());
+            if (!sActual.equals(checksum.getValue())) {
+                throw new ChecksumMismatchException(checksum, sActual);
+            }
+        }
+    }
+}
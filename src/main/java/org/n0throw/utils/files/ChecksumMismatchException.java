@@ -0,0 +1,45 @@
+package org.n0throw.utils.files;
+
+import java.io.IOException;
+
+/**
+ * Исключение, возникающее, если контрольная сумма файла не совпала с ожидаемой.
+ */
+public class ChecksumMismatchException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Ожидаемая контрольная сумма.
+     */
+    private final ExpectedChecksum expected;
+
+    /**
+     * Фактическое значение контрольной суммы.
+     */
+    private final String sActual;
+
+    /**
+     * @param expected Ожидаемая контрольная сумма.
+     * @param sActual  Фактическое значение контрольной суммы.
+     */
+    public ChecksumMismatchException(ExpectedChecksum expected, String sActual) {
+        super("Контрольная сумма " + expected.getAlgorithm().getName() + " не совпадает: ожидалось "
+                + expected.getValue() + ", получено " + sActual + ".");
+        this.expected = expected;
+        this.sActual = sActual;
+    }
+
+    /**
+     * Возвращает ожидаемую контрольную сумму.
+     */
+    public ExpectedChecksum getExpected() {
+        return expected;
+    }
+
+    /**
+     * Возвращает фактическое значение контрольной суммы.
+     */
+    public String getActual() {
+        return sActual;
+    }
+}
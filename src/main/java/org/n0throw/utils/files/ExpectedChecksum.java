@@ -0,0 +1,80 @@
+package org.n0throw.utils.files;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
+/**
+ * Ожидаемая контрольная сумма файла.
+ */
+public final class ExpectedChecksum {
+    /**
+     * Алгоритм контрольной суммы.
+     */
+    private final ChecksumAlgorithm algorithm;
+
+    /**
+     * Значение контрольной суммы в шестнадцатеричном виде (в нижнем регистре).
+     */
+    private final String sValue;
+
+    /**
+     * @param algorithm Алгоритм контрольной суммы.
+     * @param sValue    Значение контрольной суммы в шестнадцатеричном виде.
+     */
+    public ExpectedChecksum(@NotNull ChecksumAlgorithm algorithm, @NotNull String sValue) {
+        this.algorithm = algorithm;
+        this.sValue = sValue.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Создаёт ожидаемую SHA-256 сумму.
+     *
+     * @param sValue Значение в шестнадцатеричном виде.
+     */
+    @NotNull
+    public static ExpectedChecksum sha256(@NotNull String sValue) {
+        return new ExpectedChecksum(ChecksumAlgorithm.Sha256, sValue);
+    }
+
+    /**
+     * Создаёт ожидаемую SHA-512 сумму.
+     *
+     * @param sValue Значение в шестнадцатеричном виде.
+     */
+    @NotNull
+    public static ExpectedChecksum sha512(@NotNull String sValue) {
+        return new ExpectedChecksum(ChecksumAlgorithm.Sha512, sValue);
+    }
+
+    /**
+     * Создаёт ожидаемую CRC32C сумму.
+     *
+     * @param sValue Значение в шестнадцатеричном виде.
+     */
+    @NotNull
+    public static ExpectedChecksum crc32c(@NotNull String sValue) {
+        return new ExpectedChecksum(ChecksumAlgorithm.Crc32c, sValue);
+    }
+
+    /**
+     * Возвращает алгоритм контрольной суммы.
+     */
+    @NotNull
+    public ChecksumAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Возвращает значение контрольной суммы в шестнадцатеричном виде.
+     */
+    @NotNull
+    public String getValue() {
+        return sValue;
+    }
+
+    @Override
+    public String toString() {
+        return algorithm.getName() + ":" + sValue;
+    }
+}
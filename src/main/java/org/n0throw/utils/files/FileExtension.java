@@ -6,6 +6,7 @@ package org.n0throw.utils.files;
 public enum FileExtension {
     WindowsExecutable,
     OsXExecutable,
+    LinuxExecutable,
     Archive,
     None
 }
@@ -4,10 +4,11 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 
 /**
- * Класс для определения типов файлов по их расширению.
+ * Класс для определения типов файлов по их расширению (см. {@link FileFormatRegistry}).
  */
 public final class FileExtensionHelper {
 
@@ -61,36 +62,42 @@ public final class FileExtensionHelper {
 
     /**
      * По наименованию файла в виде строки определяет его тип.
+     * Учитывается самое длинное известное окончание, поэтому {@code app-1.2.3.tar.gz} — архив.
      *
      * @param sFileName Наименование файла.
      * @return Тип файла.
      */
     @NotNull
     public static FileExtension getFromFileName(@Nullable String sFileName) {
-        if (sFileName == null) return FileExtension.None;
-        int separatorIndex = sFileName.indexOf(".");
-        final String sFileExtension;
-        if (separatorIndex == -1) {
-            sFileExtension = "";
-        } else {
-            sFileExtension = sFileName.substring(separatorIndex);
-        }
-        return getFromExtName(sFileExtension);
+        return getType(FileFormatRegistry.getInstance().fromFileName(sFileName));
+    }
+
+    /**
+     * По содержимому файла определяет его тип: по сигнатуре первых байт, а если она не распознана —
+     * по наименованию. Подходит для временных файлов, наименование которых не отражает формат.
+     *
+     * @param path Путь к файлу.
+     * @return Тип файла.
+     * @throws IOException Если не удалось прочитать файл.
+     */
+    @NotNull
+    public static FileExtension getFromContent(@NotNull Path path) throws IOException {
+        return getType(FileFormatRegistry.getInstance().detect(path));
     }
 
     /**
      * По расширению файла определяет его тип.
      *
-     * @param sExtensionName Расширение файла (без точки).
+     * @param sExtensionName Расширение файла (с точкой или без, например {@code tar.gz}).
      * @return Тип файла.
      */
     @NotNull
-    public static FileExtension getFromExtName(String sExtensionName) {
-        return switch (sExtensionName) {
-            case "exe", "msi" -> FileExtension.WindowsExecutable;
-            case "pkg" -> FileExtension.OsXExecutable;
-            case "tar.gz", "tgz", "zip" -> FileExtension.Archive;
-            default -> FileExtension.None;
-        };
+    public static FileExtension getFromExtName(@Nullable String sExtensionName) {
+        if (sExtensionName == null || sExtensionName.isEmpty()) return FileExtension.None;
+        return getFromFileName(sExtensionName.startsWith(".") ? sExtensionName : "." + sExtensionName);
+    }
+
+    private static FileExtension getType(@Nullable FileFormat format) {
+        return format != null ? format.getType() : FileExtension.None;
     }
 }
@@ -0,0 +1,66 @@
+package org.n0throw.utils.files;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Формат файла дистрибутива.
+ */
+public enum FileFormat {
+    /**
+     * Исполняемый файл Windows (PE, сигнатура MZ).
+     */
+    WindowsPe(FileExtension.WindowsExecutable),
+    /**
+     * Пакет Windows Installer (составной документ OLE).
+     */
+    Msi(FileExtension.WindowsExecutable),
+    /**
+     * Пакет macOS (архив xar).
+     */
+    Xar(FileExtension.OsXExecutable),
+    /**
+     * Исполняемый файл Linux (ELF).
+     */
+    Elf(FileExtension.LinuxExecutable),
+    /**
+     * Архив zip.
+     */
+    Zip(FileExtension.Archive),
+    /**
+     * Архив tar без сжатия.
+     */
+    Tar(FileExtension.Archive),
+    /**
+     * Архив tar, сжатый gzip.
+     */
+    TarGz(FileExtension.Archive),
+    /**
+     * Файл, сжатый gzip, внутри которого не tar. Не устанавливается.
+     */
+    Gzip(FileExtension.None),
+    /**
+     * Файл, сжатый xz (в том числе tar.xz). Распаковка не поддерживается, поэтому не устанавливается.
+     */
+    Xz(FileExtension.None),
+    /**
+     * Файл, сжатый zstd (в том числе tar.zst). Распаковка не поддерживается, поэтому не устанавливается.
+     */
+    Zstd(FileExtension.None);
+
+    /**
+     * Тип файла.
+     */
+    private final FileExtension type;
+
+    FileFormat(FileExtension type) {
+        this.type = type;
+    }
+
+    /**
+     * Возвращает тип файла (какой установщик с ним работает).
+     */
+    @NotNull
+    public FileExtension getType() {
+        return type;
+    }
+}
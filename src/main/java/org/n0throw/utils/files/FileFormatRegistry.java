@@ -0,0 +1,372 @@
+package org.n0throw.utils.files;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Реестр форматов файлов: определение формата по окончанию наименования и по сигнатуре первых байт содержимого.
+ * Окончания хранятся в префиксном дереве перевёрнутых окончаний, которое перестраивается при регистрации,
+ * поэтому поиск проходит наименование с конца один раз и выбирает самое длинное окончание
+ * ({@code app-1.2.3.tar.gz} — это {@link FileFormat#TarGz}, а не {@link FileFormat#Gzip}).
+ * Сигнатура определяется по первым {@link #getProbeSize()} байтам, поэтому формат скачиваемого файла известен
+ * до окончания записи, и установщик может начать работу с потоком сразу.
+ */
+public final class FileFormatRegistry {
+    /**
+     * Смещение сигнатуры tar ("ustar") в заголовке первого элемента.
+     */
+    private static final int TAR_MAGIC_OFFSET = 257;
+
+    /**
+     * Сигнатура tar.
+     */
+    private static final byte[] TAR_MAGIC = "ustar".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Размер данных, читаемых для определения формата по умолчанию.
+     * Достаточен и для распаковки заголовка tar из начала gzip потока.
+     */
+    private static final int DEFAULT_PROBE_SIZE = 8 * 1024;
+
+    /**
+     * Общий реестр со встроенными форматами.
+     */
+    private static final FileFormatRegistry instance = createDefault();
+
+    /**
+     * Форматы по окончанию наименования (в нижнем регистре, с точкой).
+     */
+    private final Map<String, FileFormat> suffixes = new TreeMap<>();
+
+    /**
+     * Сигнатуры в порядке проверки (сначала длинные).
+     */
+    private final List<Signature> signatures = new ArrayList<>();
+
+    /**
+     * Префиксное дерево перевёрнутых окончаний (перестраивается при регистрации окончания).
+     */
+    private volatile SuffixTrie trie = SuffixTrie.build(Map.of());
+
+    /**
+     * Сигнатуры для проверки (копия при регистрации сигнатуры).
+     */
+    private volatile Signature[] signatureArray = new Signature[0];
+
+    /**
+     * Размер данных, читаемых для определения формата.
+     */
+    private volatile int probeSize = DEFAULT_PROBE_SIZE;
+
+    /**
+     * Создаёт пустой реестр.
+     */
+    public FileFormatRegistry() {
+    }
+
+    /**
+     * Возвращает общий реестр со встроенными форматами (PE, msi, xar, ELF, zip, tar, tar.gz, gzip, xz, zstd).
+     */
+    @NotNull
+    public static FileFormatRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Регистрирует окончание наименования файла. Регистр не учитывается.
+     *
+     * @param sSuffix Окончание (например, {@code .tar.gz}; точка в начале добавляется, если её нет).
+     * @param format  Формат файла.
+     * @throws IllegalArgumentException Если окончание пустое.
+     */
+    public synchronized void registerSuffix(@NonNls @NotNull String sSuffix, @NotNull FileFormat format) {
+        String sNormalized = sSuffix.toLowerCase(Locale.ROOT);
+        if (!sNormalized.startsWith(".")) sNormalized = "." + sNormalized;
+        if (sNormalized.length() == 1) {
+            throw new IllegalArgumentException("Окончание наименования файла не может быть пустым.");
+        }
+        suffixes.put(sNormalized, format);
+        trie = SuffixTrie.build(suffixes);
+    }
+
+    /**
+     * Регистрирует сигнатуру содержимого. Более длинные сигнатуры проверяются раньше.
+     *
+     * @param offset Смещение сигнатуры от начала файла.
+     * @param magic  Байты сигнатуры.
+     * @param format Формат файла.
+     * @throws IllegalArgumentException Если сигнатура пустая или смещение отрицательное.
+     */
+    public synchronized void registerSignature(int offset, byte @NotNull [] magic, @NotNull FileFormat format) {
+        if (magic.length == 0 || offset < 0) {
+            throw new IllegalArgumentException("Некорректная сигнатура формата " + format + ".");
+        }
+        signatures.add(new Signature(offset, magic.clone(), format));
+        signatures.sort(Comparator.comparingInt((Signature signature) -> signature.magic.length).reversed());
+        signatureArray = signatures.toArray(new Signature[0]);
+        probeSize = Math.max(probeSize, offset + magic.length);
+    }
+
+    /**
+     * Возвращает размер начала файла, по которому определяется формат.
+     */
+    public int getProbeSize() {
+        return probeSize;
+    }
+
+    /**
+     * Определяет формат по окончанию наименования файла (самое длинное зарегистрированное окончание).
+     *
+     * @param sFileName Наименование файла.
+     * @return Формат файла (null, если окончание не зарегистрировано).
+     */
+    @Nullable
+    public FileFormat fromFileName(@Nullable String sFileName) {
+        if (sFileName == null) return null;
+        return trie.find(sFileName);
+    }
+
+    /**
+     * Определяет формат по сигнатуре начала содержимого.
+     *
+     * @param header Начало содержимого.
+     * @param length Количество прочитанных байт.
+     * @return Формат файла (null, если сигнатура не распознана).
+     */
+    @Nullable
+    public FileFormat fromContent(byte @NotNull [] header, int length) {
+        for (Signature signature : signatureArray) {
+            if (!signature.matches(header, length)) continue;
+            if (signature.format == FileFormat.Gzip && isTarGz(header, length)) return FileFormat.TarGz;
+            return signature.format;
+        }
+        return null;
+    }
+
+    /**
+     * Определяет формат по началу потока, а если сигнатура не распознана — по наименованию файла.
+     * Прочитанные данные возвращаются в поток ({@link InputStream#mark(int)}), поэтому поток можно сразу
+     * передать установщику.
+     *
+     * @param stream    Поток содержимого (с поддержкой mark/reset, например {@link java.io.BufferedInputStream}).
+     * @param sFileName Наименование файла (null, если неизвестно).
+     * @return Формат файла (null, если формат не распознан).
+     * @throws IOException              Если не удалось прочитать поток.
+     * @throws IllegalArgumentException Если поток не поддерживает mark/reset.
+     */
+    @Nullable
+    public FileFormat detect(@NotNull InputStream stream, @Nullable String sFileName) throws IOException {
+        if (!stream.markSupported()) {
+            throw new IllegalArgumentException("Поток не поддерживает возврат прочитанных данных.");
+        }
+        int size = probeSize;
+        stream.mark(size);
+        byte[] header;
+        try {
+            header = stream.readNBytes(size);
+        } finally {
+            stream.reset();
+        }
+        FileFormat format = fromContent(header, header.length);
+        return format != null ? format : fromFileName(sFileName);
+    }
+
+    /**
+     * Определяет формат файла по сигнатуре содержимого, а если она не распознана — по наименованию.
+     *
+     * @param file Путь к файлу.
+     * @return Формат файла (null, если формат не распознан).
+     * @throws IOException Если не удалось прочитать файл.
+     */
+    @Nullable
+    public FileFormat detect(@NotNull Path file) throws IOException {
+        byte[] header;
+        try (InputStream stream = Files.newInputStream(file)) {
+            header = stream.readNBytes(probeSize);
+        }
+        FileFormat format = fromContent(header, header.length);
+        if (format != null) return format;
+        Path fileName = file.getFileName();
+        return fromFileName(fileName != null ? fileName.toString() : null);
+    }
+
+    /**
+     * Проверяет, что gzip поток содержит tar: распаковывает начало и ищет сигнатуру tar.
+     */
+    private static boolean isTarGz(byte[] header, int length) {
+        try (InputStream stream = new GZIPInputStream(new ByteArrayInputStream(header, 0, length))) {
+            byte[] tarHeader = stream.readNBytes(TAR_MAGIC_OFFSET + TAR_MAGIC.length);
+            return new Signature(TAR_MAGIC_OFFSET, TAR_MAGIC, FileFormat.Tar).matches(tarHeader, tarHeader.length);
+        } catch (IOException e) {
+            // Начала недостаточно для распаковки заголовка или поток повреждён
+            return false;
+        }
+    }
+
+    private static FileFormatRegistry createDefault() {
+        FileFormatRegistry registry = new FileFormatRegistry();
+        registry.registerSuffix(".exe", FileFormat.WindowsPe);
+        registry.registerSuffix(".msi", FileFormat.Msi);
+        registry.registerSuffix(".pkg", FileFormat.Xar);
+        registry.registerSuffix(".xar", FileFormat.Xar);
+        registry.registerSuffix(".appimage", FileFormat.Elf);
+        registry.registerSuffix(".zip", FileFormat.Zip);
+        registry.registerSuffix(".tar", FileFormat.Tar);
+        registry.registerSuffix(".tar.gz", FileFormat.TarGz);
+        registry.registerSuffix(".tgz", FileFormat.TarGz);
+        registry.registerSuffix(".gz", FileFormat.Gzip);
+        registry.registerSuffix(".xz", FileFormat.Xz);
+        registry.registerSuffix(".zst", FileFormat.Zstd);
+
+        registry.registerSignature(0, new byte[]{'M', 'Z'}, FileFormat.WindowsPe);
+        registry.registerSignature(
+                0,
+                new byte[]{(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1},
+                FileFormat.Msi
+        );
+        registry.registerSignature(0, new byte[]{'x', 'a', 'r', '!'}, FileFormat.Xar);
+        registry.registerSignature(0, new byte[]{0x7F, 'E', 'L', 'F'}, FileFormat.Elf);
+        registry.registerSignature(0, new byte[]{'P', 'K', 0x03, 0x04}, FileFormat.Zip);
+        // Пустой архив и архив, разбитый на тома
+        registry.registerSignature(0, new byte[]{'P', 'K', 0x05, 0x06}, FileFormat.Zip);
+        registry.registerSignature(0, new byte[]{'P', 'K', 0x07, 0x08}, FileFormat.Zip);
+        registry.registerSignature(TAR_MAGIC_OFFSET, TAR_MAGIC, FileFormat.Tar);
+        registry.registerSignature(0, new byte[]{0x1F, (byte) 0x8B}, FileFormat.Gzip);
+        registry.registerSignature(0, new byte[]{(byte) 0xFD, '7', 'z', 'X', 'Z', 0x00}, FileFormat.Xz);
+        registry.registerSignature(0, new byte[]{0x28, (byte) 0xB5, 0x2F, (byte) 0xFD}, FileFormat.Zstd);
+        return registry;
+    }
+
+    /**
+     * Сигнатура содержимого.
+     */
+    private static final class Signature {
+        private final int offset;
+        private final byte[] magic;
+        private final FileFormat format;
+
+        Signature(int offset, byte[] magic, FileFormat format) {
+            this.offset = offset;
+            this.magic = magic;
+            this.format = format;
+        }
+
+        boolean matches(byte[] header, int length) {
+            return length >= offset + magic.length
+                    && Arrays.equals(header, offset, offset + magic.length, magic, 0, magic.length);
+        }
+    }
+
+    /**
+     * Неизменяемое префиксное дерево перевёрнутых окончаний в массивах: дети узла идут подряд,
+     * поэтому поиск не создаёт объектов.
+     */
+    private static final class SuffixTrie {
+        /**
+         * Символ перехода в узел.
+         */
+        private final char[] labels;
+
+        /**
+         * Индекс первого ребёнка узла (-1, если детей нет).
+         */
+        private final int[] firstChild;
+
+        /**
+         * Количество детей узла.
+         */
+        private final int[] childCount;
+
+        /**
+         * Формат, окончание которого заканчивается в узле (null, если такого окончания нет).
+         */
+        private final FileFormat[] formats;
+
+        private SuffixTrie(char[] labels, int[] firstChild, int[] childCount, FileFormat[] formats) {
+            this.labels = labels;
+            this.firstChild = firstChild;
+            this.childCount = childCount;
+            this.formats = formats;
+        }
+
+        static SuffixTrie build(Map<String, FileFormat> suffixes) {
+            Node root = new Node('\0');
+            for (Map.Entry<String, FileFormat> entry : suffixes.entrySet()) {
+                Node node = root;
+                String sSuffix = entry.getKey();
+                for (int i = sSuffix.length() - 1; i >= 0; i--) {
+                    node = node.children.computeIfAbsent(sSuffix.charAt(i), Node::new);
+                }
+                node.format = entry.getValue();
+            }
+
+            // Обход в ширину: дети каждого узла получают соседние индексы
+            List<Node> order = new ArrayList<>();
+            order.add(root);
+            for (int i = 0; i < order.size(); i++) {
+                order.addAll(order.get(i).children.values());
+            }
+            char[] labels = new char[order.size()];
+            int[] firstChild = new int[order.size()];
+            int[] childCount = new int[order.size()];
+            FileFormat[] formats = new FileFormat[order.size()];
+            int next = 1;
+            for (int i = 0; i < order.size(); i++) {
+                Node node = order.get(i);
+                labels[i] = node.label;
+                formats[i] = node.format;
+                childCount[i] = node.children.size();
+                firstChild[i] = node.children.isEmpty() ? -1 : next;
+                next += node.children.size();
+            }
+            return new SuffixTrie(labels, firstChild, childCount, formats);
+        }
+
+        FileFormat find(String sFileName) {
+            FileFormat found = null;
+            int node = 0;
+            for (int i = sFileName.length() - 1; i >= 0; i--) {
+                int child = findChild(node, Character.toLowerCase(sFileName.charAt(i)));
+                if (child == -1) break;
+                node = child;
+                if (formats[node] != null) found = formats[node];
+            }
+            return found;
+        }
+
+        private int findChild(int node, char label) {
+            int first = firstChild[node];
+            if (first == -1) return -1;
+            for (int i = first; i < first + childCount[node]; i++) {
+                if (labels[i] == label) return i;
+            }
+            return -1;
+        }
+
+        private static final class Node {
+            private final char label;
+            private final Map<Character, Node> children = new TreeMap<>();
+            private FileFormat format;
+
+            Node(char label) {
+                this.label = label;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.n0throw.utils.files;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Класс для вычисления хешей файлов.
+ */
+public final class FileHashHelper {
+    /**
+     * Алгоритм хеширования, по которому адресуется содержимое файлов.
+     */
+    public static final String SHA_256 = "SHA-256";
+
+    /**
+     * Размер буфера чтения файла.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Символы шестнадцатеричной записи.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Вычисляет SHA-256 хеш содержимого файла.
+     *
+     * @param path Путь к файлу.
+     * @return Хеш в шестнадцатеричном виде.
+     * @throws IOException Если не удалось прочитать файл.
+     */
+    @NotNull
+    public static String sha256(@NotNull Path path) throws IOException {
+        MessageDigest digest = createDigest(SHA_256);
+        try (InputStream stream = Files.newInputStream(path)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Создаёт объект для вычисления хеша.
+     *
+     * @param sAlgorithm Наименование алгоритма.
+     * @return Объект для вычисления хеша.
+     * @throws IllegalArgumentException Если алгоритм не поддерживается JVM.
+     */
+    @NotNull
+    public static MessageDigest createDigest(@NotNull String sAlgorithm) {
+        try {
+            return MessageDigest.getInstance(sAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Алгоритм хеширования не поддерживается: " + sAlgorithm, e);
+        }
+    }
+
+    /**
+     * Переводит байты в шестнадцатеричную строку.
+     *
+     * @param bytes Байты.
+     * @return Строка в нижнем регистре.
+     */
+    @NotNull
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,19 @@
+package org.n0throw.utils.files;
+
+/**
+ * Способ получения локальной копии файла.
+ */
+public enum LocalCopyStrategy {
+    /**
+     * Жёсткая ссылка: данные не копируются и не занимают место, но копия разделяет изменения с исходным файлом.
+     */
+    HardLink,
+    /**
+     * Клон файла средствами файловой системы (reflink, clonefile): данные не копируются до первого изменения.
+     */
+    Reflink,
+    /**
+     * Копирование ядром ОС ({@link java.nio.channels.FileChannel#transferTo}) без передачи данных через кучу Java.
+     */
+    ZeroCopy
+}
@@ -0,0 +1,182 @@
+package org.n0throw.utils.files;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.n0throw.progress.ProgressTracker;
+import org.n0throw.utils.os.OsManager;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Копирование локальных файлов самым быстрым доступным способом: жёсткая ссылка, клон файловой системы
+ * или копирование ядром ОС. Данные ни одним из способов не проходят через кучу Java.
+ */
+public final class LocalFileCopier {
+    /**
+     * Минимальный размер файла, для которого пробуется клон: запуск процесса дороже копирования мелкого файла.
+     */
+    static final long REFLINK_MIN_SIZE = 16L * 1024 * 1024;
+
+    /**
+     * Размер одной передачи ядром ОС (между передачами обновляется прогресс).
+     */
+    private static final long TRANSFER_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Таймаут процесса клонирования в секундах.
+     */
+    private static final long REFLINK_TIMEOUT_SECONDS = 60;
+
+    /**
+     * Файловые хранилища, не поддерживающие клоны (чтобы не запускать процесс повторно).
+     */
+    private static final Map<FileStore, Boolean> reflinkUnsupported = new ConcurrentHashMap<>();
+
+    private LocalFileCopier() {
+    }
+
+    /**
+     * Пытается получить копию файла без копирования данных: жёсткой ссылкой (если разрешено) или клоном.
+     * Оба способа возможны только в пределах одного файлового хранилища.
+     *
+     * @param source        Исходный файл.
+     * @param target        Файл копии (если существует, то заменяется).
+     * @param allowHardLink Разрешена ли жёсткая ссылка.
+     * @return Использованный способ (null, если копию без копирования данных получить не удалось).
+     * @throws IOException Если не удалось прочитать атрибуты файлов.
+     */
+    @Nullable
+    public static LocalCopyStrategy tryClone(
+            @NotNull Path source,
+            @NotNull Path target,
+            boolean allowHardLink
+    ) throws IOException {
+        FileStore store = Files.getFileStore(source);
+        Path targetDirectory = target.toAbsolutePath().getParent();
+        if (targetDirectory == null || !store.equals(Files.getFileStore(targetDirectory))) return null;
+
+        if (allowHardLink) {
+            try {
+                Files.deleteIfExists(target);
+                Files.createLink(target, source);
+                return LocalCopyStrategy.HardLink;
+            } catch (IOException | UnsupportedOperationException e) {
+                // Жёсткие ссылки не поддерживаются (например, FAT или запрещены правами), пробуем клон
+            }
+        }
+
+        if (Files.size(source) < REFLINK_MIN_SIZE || reflinkUnsupported.containsKey(store)) return null;
+        if (reflink(source, target)) return LocalCopyStrategy.Reflink;
+        reflinkUnsupported.put(store, Boolean.TRUE);
+        return null;
+    }
+
+    /**
+     * Возвращает флаг, что у файла есть другие жёсткие ссылки (файл делит данные с другим путём).
+     * Если ОС не сообщает количество ссылок, то считается, что других ссылок нет.
+     *
+     * @param file Файл.
+     * @throws IOException Если не удалось прочитать атрибуты файла.
+     */
+    public static boolean hasOtherLinks(@NotNull Path file) throws IOException {
+        try {
+            return ((Number) Files.getAttribute(file, "unix:nlink")).intValue() > 1;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Копирует файл ядром ОС ({@link FileChannel#transferTo}).
+     *
+     * @param source  Исходный файл.
+     * @param target  Файл копии (если существует, то перезаписывается).
+     * @param tracker Отслеживание прогресса (null, если не требуется).
+     * @throws IOException Если не удалось скопировать файл.
+     */
+    public static void transfer(
+            @NotNull Path source,
+            @NotNull Path target,
+            @Nullable ProgressTracker tracker
+    ) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(
+                     target,
+                     StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING
+             )) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = in.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, size - position), out);
+                if (transferred <= 0) {
+                    throw new IOException("Файл изменился во время копирования: " + source);
+                }
+                position += transferred;
+                if (tracker != null) tracker.addBytes(transferred);
+            }
+        }
+    }
+
+    /**
+     * Копирует файл самым быстрым доступным способом.
+     *
+     * @param source        Исходный файл.
+     * @param target        Файл копии (если существует, то заменяется).
+     * @param allowHardLink Разрешена ли жёсткая ссылка.
+     * @return Использованный способ.
+     * @throws IOException Если не удалось скопировать файл.
+     */
+    @NotNull
+    public static LocalCopyStrategy copy(
+            @NotNull Path source,
+            @NotNull Path target,
+            boolean allowHardLink
+    ) throws IOException {
+        LocalCopyStrategy strategy = tryClone(source, target, allowHardLink);
+        if (strategy != null) return strategy;
+        transfer(source, target, null);
+        return LocalCopyStrategy.ZeroCopy;
+    }
+
+    /**
+     * Клонирует файл системной утилитой cp: в Java нет API для FICLONE (Linux) и clonefile (macOS).
+     * С ключом --reflink=always утилита завершается ошибкой, а не копирует данные, если клон невозможен.
+     */
+    private static boolean reflink(Path source, Path target) {
+        final List<String> command;
+        if (OsManager.isMac()) {
+            command = List.of("cp", "-c", source.toString(), target.toString());
+        } else if (OsManager.isUnix()) {
+            command = List.of("cp", "--reflink=always", source.toString(), target.toString());
+        } else {
+            return false;
+        }
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(REFLINK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
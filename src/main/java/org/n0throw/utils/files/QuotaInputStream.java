@@ -0,0 +1,45 @@
+package org.n0throw.utils.files;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Поток, учитывающий прочитанные байты в квоте временного файла, в который они записываются.
+ * Если квота превышена, то чтение прерывается, и запись файла не продолжается.
+ */
+class QuotaInputStream extends FilterInputStream {
+    /**
+     * Временный файл, в который записываются данные.
+     */
+    private final File file;
+
+    /**
+     * @param stream Исходный поток.
+     * @param file   Временный файл, в который записываются данные.
+     */
+    QuotaInputStream(InputStream stream, File file) {
+        super(stream);
+        this.file = file;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = in.read();
+        if (value != -1) TempFileFactory.getInstance().reserve(file, 1);
+        return value;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        int read = in.read(bytes, offset, length);
+        if (read > 0) TempFileFactory.getInstance().reserve(file, read);
+        return read;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
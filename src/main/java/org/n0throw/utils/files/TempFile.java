@@ -3,11 +3,17 @@ package org.n0throw.utils.files;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.n0throw.diagnostics.TempFileRecording;
+import org.n0throw.progress.ProgressPhase;
+import org.n0throw.progress.ProgressTracker;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Временный файл.
@@ -55,19 +61,31 @@ public class TempFile {
             @NonNls String sFileExt,
             @NonNls @NotNull String... sResolvePaths
     ) throws IOException {
-        Path path = Path.of(
-                System.getProperty("java.io.tmpdir"),
-                sResolvePaths
-        );
-
+        TempFileRecording recording = TempFileRecording.start();
         File tempFile = File.createTempFile(
                 sFileName,
                 sFileExt,
-                Files.createDirectories(path).toFile()
+                getDirectory(sResolvePaths).toFile()
         );
-        tempFile.deleteOnExit();
         tempFileFactory.registerForDelete(tempFile);
-        return tempFile;
+        return recording.created(tempFile);
+    }
+
+    /**
+     * Возвращает папку внутри темповой папки, создавая её при необходимости.
+     *
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Путь к папке.
+     * @throws IOException       Если не удалось создать папку.
+     * @throws SecurityException Если нет прав на создание папки.
+     */
+    @NotNull
+    public static Path getDirectory(@NonNls @NotNull String... sResolvePaths) throws IOException {
+        Path path = Path.of(
+                System.getProperty("java.io.tmpdir"),
+                sResolvePaths
+        );
+        return Files.createDirectories(path);
     }
 
     /**
@@ -163,11 +181,134 @@ public class TempFile {
             @NonNls @NotNull String... sResolvePaths
     ) throws IOException {
         final File tempFile = createEmptyFile(sFileName, sFileExt, sResolvePaths);
-        Files.copy(
-                stream,
-                tempFile.toPath(),
-                StandardCopyOption.REPLACE_EXISTING
-        );
+        try {
+            Files.copy(
+                    new QuotaInputStream(stream, tempFile),
+                    tempFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING
+            );
+        } catch (IOException e) {
+            deleteAfterFailure(tempFile, e);
+            throw e;
+        }
+        return tempFile;
+    }
+
+    /**
+     * Создание временного файла из потока с проверкой контрольных сумм.
+     * Суммы вычисляются по мере записи, поэтому данные читаются один раз.
+     * Если хотя бы одна сумма не совпала, то файл удаляется.
+     *
+     * @param stream        Поток.
+     * @param checksums     Ожидаемые контрольные суммы.
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла (Если null, то будет .tmp).
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Файл.
+     * @throws ChecksumMismatchException Если контрольная сумма не совпала с ожидаемой.
+     * @throws IOException               Если не удалось создать файл.
+     * @throws IllegalArgumentException  Если наименование файла содержит неразрешённые символы.
+     * @throws SecurityException         Если нет прав на создание файла.
+     */
+    @NotNull
+    public static File createFromInputStream(
+            @NotNull InputStream stream,
+            @NotNull Collection<ExpectedChecksum> checksums,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        return createFromInputStream(stream, checksums, null, sFileName, sFileExt, sResolvePaths);
+    }
+
+    /**
+     * Создание временного файла из потока с проверкой контрольных сумм и отчётами о прогрессе.
+     * Запись файла учитывается как этап передачи, сравнение сумм - как этап проверки.
+     * Если хотя бы одна сумма не совпала, то файл удаляется.
+     *
+     * @param stream        Поток.
+     * @param checksums     Ожидаемые контрольные суммы (может быть пустым).
+     * @param tracker       Отслеживание прогресса (null, если не требуется). Завершает его вызывающий.
+     * @param sFileName     Наименование файла.
+     * @param sFileExt      Расширение файла (Если null, то будет .tmp).
+     * @param sResolvePaths Относительный путь от темповой папки.
+     * @return Файл.
+     * @throws ChecksumMismatchException Если контрольная сумма не совпала с ожидаемой.
+     * @throws IOException               Если не удалось создать файл.
+     * @throws IllegalArgumentException  Если наименование файла содержит неразрешённые символы.
+     * @throws SecurityException         Если нет прав на создание файла.
+     */
+    @NotNull
+    public static File createFromInputStream(
+            @NotNull InputStream stream,
+            @NotNull Collection<ExpectedChecksum> checksums,
+            @Nullable ProgressTracker tracker,
+            @NonNls @NotNull String sFileName,
+            @NonNls String sFileExt,
+            @NonNls @NotNull String... sResolvePaths
+    ) throws IOException {
+        Set<ChecksumAlgorithm> algorithms = EnumSet.noneOf(ChecksumAlgorithm.class);
+        for (ExpectedChecksum checksum : checksums) {
+            algorithms.add(checksum.getAlgorithm());
+        }
+
+        final File tempFile = createEmptyFile(sFileName, sFileExt, sResolvePaths);
+        try {
+            if (tracker != null) {
+                tracker.startPhase(ProgressPhase.Transfer);
+                stream = tracker.wrap(stream);
+            }
+            ChecksumInputStream checksumStream = new ChecksumInputStream(new QuotaInputStream(stream, tempFile), algorithms);
+            Files.copy(
+                    checksumStream,
+                    tempFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING
+            );
+            if (tracker != null && !checksums.isEmpty()) {
+                tracker.startPhase(ProgressPhase.Verify);
+            }
+            checksumStream.verify(checksums);
+        } catch (IOException e) {
+            deleteAfterFailure(tempFile, e);
+            throw e;
+        }
         return tempFile;
     }
+
+    /**
+     * Немедленно удаляет временный файл и освобождает его квоту.
+     *
+     * @param file Временный файл.
+     * @return Флаг, был ли файл удалён (false, если файла уже не было).
+     * @throws IOException Если не удалось удалить файл.
+     */
+    public static boolean delete(@NotNull File file) throws IOException {
+        return tempFileFactory.delete(file);
+    }
+
+    /**
+     * Удаляет недописанный временный файл. Ошибка удаления не заменяет исходную ошибку, а добавляется к ней.
+     *
+     * @param file  Временный файл.
+     * @param error Ошибка, из-за которой файл не дописан.
+     */
+    private static void deleteAfterFailure(File file, IOException error) {
+        try {
+            delete(file);
+        } catch (IOException | RuntimeException e) {
+            error.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Учитывает данные временного файла в квоте (см. {@link TempFileFactory#reserve(File, long)}).
+     * Вызывается перед записью данных в файл, созданный не из потока.
+     *
+     * @param file  Временный файл.
+     * @param bytes Количество байт.
+     * @throws java.nio.file.FileSystemException Если квота будет превышена.
+     */
+    public static void reserve(@NotNull File file, long bytes) throws IOException {
+        tempFileFactory.reserve(file, bytes);
+    }
 }
@@ -1,129 +1,429 @@
 package org.n0throw.utils.files;
 
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.n0throw.diagnostics.TempFileRecording;
+
 import java.io.File;
-import java.lang.ref.PhantomReference;
-import java.lang.ref.ReferenceQueue;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystemException;
-import java.util.HashSet;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Фабрика временных файлов.
+ * Файл удаляется, когда JVM освобождает его объект {@link File} (через {@link Cleaner}), при явном вызове
+ * {@link #delete(File)} или при завершении JVM. Удаления после освобождения выполняются пачками в одном фоновом потоке.
+ * <p>
+ * Созданные файлы записываются в журнал процесса, поэтому файлы, оставшиеся после аварийного завершения
+ * предыдущих запусков, удаляются при первом обращении к фабрике.
+ * Данные временных файлов учитываются в квоте ({@link #reserve(File, long)}), превышение квоты прерывает запись.
  */
 public class TempFileFactory {
     /**
-     * Поток для удаления временных файлов.
+     * Значение квоты "без ограничения".
+     */
+    public static final long UNLIMITED = 0;
+
+    /**
+     * Наименование папки журналов внутри темповой папки.
+     */
+    @NonNls
+    private static final String JOURNAL_DIRECTORY = ".distribution-installer";
+
+    /**
+     * Задержка перед удалением пачки освобождённых файлов.
+     */
+    private static final long DELETE_BATCH_DELAY_MILLIS = 100;
+
+    /**
+     * Количество строк журнала, после которого он переписывается, если удалённых файлов в нём больше живых.
+     */
+    private static final int JOURNAL_COMPACT_LINES = 64;
+
+    /**
+     * Общая фабрика.
+     */
+    private static final TempFileFactory instance = new TempFileFactory();
+
+    /**
+     * Отслеживание освобождения файлов.
+     */
+    private final Cleaner cleaner = Cleaner.create(runnable -> {
+        Thread thread = new Thread(runnable, "TempFileCleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Поток удаления временных файлов.
+     */
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "TempFile");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Зарегистрированные временные файлы по пути.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Пути освобождённых файлов, ожидающих удаления.
+     */
+    private final Queue<String> deleteQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Флаг, запланировано ли удаление пачки.
+     */
+    private final AtomicBoolean deleteScheduled = new AtomicBoolean();
+
+    /**
+     * Объём данных временных файлов, учтённый в квоте.
+     */
+    private final AtomicLong usage = new AtomicLong();
+
+    /**
+     * Квота на объём данных временных файлов (0 - без ограничения).
      */
-    private volatile TempFileThread thread;
+    private volatile long quota = UNLIMITED;
 
     /**
-     * Очередь временных файлов, которая позволяет понять, освободила ли JVM файл или нет.
+     * Журнал созданных файлов текущего процесса.
      */
-    private final ReferenceQueue<File> referenceQueue;
+    private final Path journal;
 
     /**
-     * Уникальный набор ссылок на временные файлы.
+     * Количество путей в журнале, включая уже удалённые файлы. Изменяется под блокировкой фабрики.
      */
-    private final HashSet<TempFileReference> references;
+    private int journalLines;
 
     private TempFileFactory() {
-        thread = new TempFileThread();
-        referenceQueue = new ReferenceQueue<>();
-        references = new HashSet<>();
+        Path directory = Path.of(System.getProperty("java.io.tmpdir"), JOURNAL_DIRECTORY);
+        journal = directory.resolve(ProcessHandle.current().pid() + ".journal");
+        try {
+            // Журнал с тем же pid остался от завершившегося процесса: переименовываем, чтобы удалить его файлы
+            if (Files.exists(journal)) {
+                Files.move(journal, directory.resolve(ProcessHandle.current().pid() + "-" + System.nanoTime() + ".journal"));
+            }
+        } catch (IOException e) {
+            // todo slf4j
+        }
+        executor.setRemoveOnCancelPolicy(true);
+        executor.execute(() -> deleteOrphans(directory));
+        Runtime.getRuntime().addShutdownHook(new Thread(this::deleteAll, "TempFileShutdown"));
     }
 
     /**
      * Возвращает инстанцию фабрики для работы с временными файлами.
      */
     public static TempFileFactory getInstance() {
-        return new TempFileFactory();
+        return instance;
     }
 
-
     /**
      * Метод регистрации файла на удаление.
-     * Синхронизирует потоки, что бы случайно не удалить один файл два раза и не словить ошибку.
      *
      * @param file Файл, который нужно будет удалить.
      */
-    public synchronized void registerForDelete(File file) {
-        references.add(new TempFileReference(file, referenceQueue));
-        if (thread == null) {
-            thread = new TempFileThread();
-            thread.start();
+    public void registerForDelete(@NotNull File file) {
+        String sPath = file.getAbsolutePath();
+        Entry entry = new Entry();
+        entries.put(sPath, entry);
+        entry.cleanable = cleaner.register(file, new ReleaseAction(this, sPath));
+        appendToJournal(sPath);
+    }
+
+    /**
+     * Немедленно удаляет временный файл и освобождает его квоту.
+     *
+     * @param file Временный файл.
+     * @return Флаг, был ли файл удалён (false, если файла уже не было).
+     * @throws IOException Если не удалось удалить файл.
+     */
+    public boolean delete(@NotNull File file) throws IOException {
+        Entry entry = entries.remove(file.getAbsolutePath());
+        if (entry != null) {
+            usage.addAndGet(-entry.reserved.getAndSet(0));
+            if (entry.cleanable != null) entry.cleanable.clean();
         }
+        return Files.deleteIfExists(file.toPath());
     }
 
     /**
-     * Поток удаления временных файлов. Ждёт пока JVM, освободит файл, что бы его удалить.
+     * Учитывает данные временного файла в квоте.
+     *
+     * @param file  Временный файл.
+     * @param bytes Количество байт.
+     * @throws FileSystemException      Если квота будет превышена. Байты в этом случае не учитываются.
+     * @throws IllegalArgumentException Если файл не зарегистрирован как временный.
      */
-    class TempFileThread extends Thread {
+    public void reserve(@NotNull File file, long bytes) throws FileSystemException {
+        if (bytes <= 0) return;
+        Entry entry = entries.get(file.getAbsolutePath());
+        if (entry == null) {
+            throw new IllegalArgumentException("Файл не зарегистрирован как временный: " + file);
+        }
+        long limit = quota;
+        long used = usage.addAndGet(bytes);
+        if (limit != UNLIMITED && used > limit) {
+            usage.addAndGet(-bytes);
+            throw new FileSystemException(
+                    file.getPath(),
+                    null,
+                    "Превышена квота временных файлов (" + limit + " байт)."
+            );
+        }
+        entry.reserved.addAndGet(bytes);
+    }
 
-        public TempFileThread() {
-            super("TempFile");
-            setDaemon(true);
+    /**
+     * Задаёт квоту на объём данных временных файлов. Уже учтённые данные не проверяются.
+     *
+     * @param quota Квота в байтах ({@link #UNLIMITED} - без ограничения).
+     * @throws IllegalArgumentException Если квота отрицательная.
+     */
+    public void setQuota(long quota) {
+        if (quota < 0) {
+            throw new IllegalArgumentException("Квота не может быть отрицательной.");
         }
+        this.quota = quota;
+    }
 
-        /**
-         * Процесс потока для удаления файлов.
-         */
-        @Override
-        public void run() {
-            while (!references.isEmpty()) {
-                try {
-                    // Получаем уже не использованный файл
-                    TempFileReference unusedReference = (TempFileReference) referenceQueue.remove();
-                    // пытаемся удалить этот файл
-                    references.remove(unusedReference);
-                    boolean isDeleteFile = unusedReference.delete();
-                    if (!isDeleteFile) {
-                        throw new FileSystemException(unusedReference.getPath());
-                    }
-                    unusedReference.clear();
-                } catch (InterruptedException | FileSystemException e) {
-                    // todo slf4j
-                    throw new RuntimeException("Не удалось удалить файл", e);
+    /**
+     * Возвращает квоту на объём данных временных файлов (0 - без ограничения).
+     */
+    public long getQuota() {
+        return quota;
+    }
+
+    /**
+     * Возвращает объём данных временных файлов, учтённый в квоте.
+     */
+    public long getUsage() {
+        return usage.get();
+    }
+
+    /**
+     * Возвращает количество зарегистрированных временных файлов.
+     */
+    public int getFileCount() {
+        return entries.size();
+    }
+
+    /**
+     * Ставит освобождённый файл в очередь на удаление. Вызывается потоком {@link Cleaner}.
+     */
+    private void release(String sPath) {
+        Entry entry = entries.remove(sPath);
+        if (entry == null) return;
+        usage.addAndGet(-entry.reserved.getAndSet(0));
+        deleteQueue.add(sPath);
+        if (deleteScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::deleteQueued, DELETE_BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Удаляет пачку освобождённых файлов.
+     */
+    private void deleteQueued() {
+        deleteScheduled.set(false);
+        String sPath;
+        while ((sPath = deleteQueue.poll()) != null) {
+            TempFileRecording recording = TempFileRecording.start();
+            File file = new File(sPath);
+            long size = file.length();
+            // todo slf4j, если файл не удалился
+            recording.deleted(sPath, size, !file.exists() || file.delete());
+        }
+        compactJournal();
+    }
+
+    /**
+     * Удаляет все зарегистрированные файлы и журнал процесса при завершении JVM.
+     */
+    private void deleteAll() {
+        for (String sPath : entries.keySet()) {
+            new File(sPath).delete();
+        }
+        for (String sPath : deleteQueue) {
+            new File(sPath).delete();
+        }
+        try {
+            Files.deleteIfExists(journal);
+        } catch (IOException e) {
+            // todo slf4j
+        }
+    }
+
+    /**
+     * Дописывает путь файла в журнал процесса. Первая строка журнала - время запуска процесса,
+     * чтобы журнал не принимался за журнал живого процесса при повторном использовании pid.
+     */
+    private synchronized void appendToJournal(String sPath) {
+        if (isJournalSparse()) {
+            // Новый путь уже в entries, поэтому попадёт в переписанный журнал
+            rewriteJournal();
+            return;
+        }
+        try {
+            Files.createDirectories(journal.getParent());
+            try (FileChannel channel = FileChannel.open(
+                    journal,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND
+            )) {
+                String sLines = (channel.size() == 0 ? getStartTime(ProcessHandle.current()) + "\n" : "") + sPath + "\n";
+                channel.write(StandardCharsets.UTF_8.encode(sLines));
+            }
+            journalLines++;
+        } catch (IOException e) {
+            // todo slf4j
+        }
+    }
+
+    /**
+     * Удаляет журнал процесса, когда все записанные в нём файлы удалены, и переписывает его из живых файлов,
+     * когда удалённых файлов в нём больше, чем живых. Иначе журнал долгоживущего процесса растёт без ограничений.
+     */
+    private synchronized void compactJournal() {
+        if (entries.isEmpty()) {
+            try {
+                Files.deleteIfExists(journal);
+                journalLines = 0;
+            } catch (IOException e) {
+                // todo slf4j
+            }
+        } else if (isJournalSparse()) {
+            rewriteJournal();
+        }
+    }
+
+    /**
+     * Возвращает флаг, что удалённых файлов в журнале больше, чем живых.
+     */
+    private boolean isJournalSparse() {
+        return journalLines >= JOURNAL_COMPACT_LINES && journalLines > 2 * entries.size();
+    }
+
+    /**
+     * Атомарно переписывает журнал процесса из зарегистрированных файлов.
+     */
+    private void rewriteJournal() {
+        StringBuilder builder = new StringBuilder(getStartTime(ProcessHandle.current())).append('\n');
+        int lines = 0;
+        for (String sPath : entries.keySet()) {
+            builder.append(sPath).append('\n');
+            lines++;
+        }
+        Path tempJournal = journal.resolveSibling(journal.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(journal.getParent());
+            Files.writeString(tempJournal, builder, StandardCharsets.UTF_8);
+            Files.move(tempJournal, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journalLines = lines;
+        } catch (IOException e) {
+            // todo slf4j
+        }
+    }
+
+    /**
+     * Удаляет файлы из журналов завершившихся процессов.
+     *
+     * @param directory Папка журналов.
+     */
+    private void deleteOrphans(Path directory) {
+        if (!Files.isDirectory(directory)) return;
+        try (DirectoryStream<Path> journals = Files.newDirectoryStream(directory, "*.journal")) {
+            for (Path orphanJournal : journals) {
+                if (orphanJournal.equals(journal)) continue;
+                List<String> sLines = Files.readAllLines(orphanJournal, StandardCharsets.UTF_8);
+                if (sLines.isEmpty() || isAlive(orphanJournal, sLines.get(0))) continue;
+                for (String sPath : sLines.subList(1, sLines.size())) {
+                    if (sPath.isEmpty()) continue;
+                    TempFileRecording recording = TempFileRecording.start();
+                    File file = new File(sPath);
+                    long size = file.length();
+                    if (file.exists()) recording.deleted(sPath, size, file.delete());
                 }
+                Files.deleteIfExists(orphanJournal);
             }
-            thread = null;
+        } catch (IOException e) {
+            // todo slf4j
         }
     }
 
     /**
-     * Ссылка на временный файл.
+     * Проверяет, жив ли процесс, которому принадлежит журнал.
      */
-    static class TempFileReference extends PhantomReference<File> {
-        /**
-         * Путь к временному файлу.
-         */
-        private final String path;
+    private static boolean isAlive(Path journal, String sStartTime) {
+        String sFileName = journal.getFileName().toString();
+        int end = sFileName.indexOf('-');
+        if (end == -1) end = sFileName.length() - ".journal".length();
+        final long pid;
+        try {
+            pid = Long.parseLong(sFileName.substring(0, end));
+        } catch (NumberFormatException e) {
+            return true;
+        }
+        Optional<ProcessHandle> process = ProcessHandle.of(pid);
+        return process.isPresent() && process.get().isAlive() && getStartTime(process.get()).equals(sStartTime);
+    }
+
+    private static String getStartTime(ProcessHandle process) {
+        return process.info().startInstant().map(Instant::toString).orElse("");
+    }
 
+    /**
+     * Зарегистрированный временный файл.
+     */
+    private static final class Entry {
         /**
-         * Создаёт ссылку на временный файл.
-         *
-         * @param file  Файл.
-         * @param queue Очередь ссылок на временный файл.
+         * Объём данных файла, учтённый в квоте.
          */
-        TempFileReference(File file, ReferenceQueue<File> queue) {
-            super(file, queue);
-            this.path = file.getPath();
-        }
+        private final AtomicLong reserved = new AtomicLong();
 
         /**
-         * Возвращает путь к временному файлу.
+         * Регистрация в {@link Cleaner}.
          */
-        public String getPath() {
-            return path;
+        private volatile Cleaner.Cleanable cleanable;
+    }
+
+    /**
+     * Действие при освобождении файла. Не ссылается на сам файл, иначе он никогда не будет освобождён.
+     */
+    private static final class ReleaseAction implements Runnable {
+        private final TempFileFactory factory;
+        private final String sPath;
+
+        ReleaseAction(TempFileFactory factory, String sPath) {
+            this.factory = factory;
+            this.sPath = sPath;
         }
 
-        /**
-         * Удаляет временный файл.
-         */
-        public boolean delete() {
-            File file = new File(path);
-            if (!file.exists()) {
-                return false;
-            }
-            return file.delete();
+        @Override
+        public void run() {
+            factory.release(sPath);
         }
     }
-}
\ No newline at end of file
+}
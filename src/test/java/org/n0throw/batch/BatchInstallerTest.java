@@ -0,0 +1,114 @@
+package org.n0throw.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.n0throw.downloader.IDistributionDownloader;
+import org.n0throw.installer.IDistributionInstaller;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchInstallerTest {
+    @TempDir
+    Path temp;
+
+    /**
+     * Порядок, в котором установщик получал дистрибутивы.
+     */
+    private final List<String> installed = new CopyOnWriteArrayList<>();
+
+    @Test
+    void dependenciesAreInstalledFirst() throws Exception {
+        InstallPlan plan = new InstallPlan()
+                .add(item("app", "runtime", "database"))
+                .add(item("runtime", "base"))
+                .add(item("database", "base"))
+                .add(item("base"));
+
+        List<String> ordered = plan.getOrderedItems().stream().map(InstallItem::getId).toList();
+        assertEquals(List.of("base", "runtime", "database", "app"), ordered);
+
+        InstallReport report = new BatchInstaller(4).execute(plan);
+
+        assertTrue(report.isSuccessful());
+        assertEquals(4, installed.size());
+        assertEquals("base", installed.get(0));
+        assertEquals("app", installed.get(3));
+    }
+
+    @Test
+    void cycleIsRejected() throws Exception {
+        InstallPlan plan = new InstallPlan()
+                .add(item("a", "c"))
+                .add(item("b", "a"))
+                .add(item("c", "b"));
+
+        assertThrows(IllegalArgumentException.class, () -> new BatchInstaller(2).execute(plan));
+        assertTrue(installed.isEmpty());
+    }
+
+    @Test
+    void missingDependencyIsRejected() throws Exception {
+        InstallPlan plan = new InstallPlan().add(item("a", "absent"));
+
+        assertThrows(IllegalArgumentException.class, plan::getOrderedItems);
+    }
+
+    @Test
+    void dependantsOfFailedItemAreSkipped() throws Exception {
+        InstallPlan plan = new InstallPlan()
+                .add(item("broken"))
+                .add(item("child", "broken"))
+                .add(item("grandchild", "child"))
+                .add(item("independent"));
+
+        InstallReport report = new BatchInstaller(2).execute(plan);
+
+        assertFalse(report.isSuccessful());
+        assertEquals(InstallStatus.Failed, report.getResult("broken").getStatus());
+        assertEquals(InstallStatus.Skipped, report.getResult("child").getStatus());
+        assertEquals(InstallStatus.Skipped, report.getResult("grandchild").getStatus());
+        assertEquals(InstallStatus.Success, report.getResult("independent").getStatus());
+        assertEquals(Set.of("broken", "independent"), Set.copyOf(installed));
+    }
+
+    @Test
+    void failedDownloadFailsItemAndSkipsDependants() throws Exception {
+        InstallPlan plan = new InstallPlan()
+                .add(item("unreachable"))
+                .add(item("child", "unreachable"));
+
+        InstallReport report = new BatchInstaller(2).execute(plan);
+
+        InstallItemResult result = report.getResult("unreachable");
+        assertEquals(InstallStatus.Failed, result.getStatus());
+        assertTrue(result.getError() instanceof IOException);
+        assertEquals(InstallStatus.Skipped, report.getResult("child").getStatus());
+        assertTrue(installed.isEmpty());
+    }
+
+    /**
+     * Элемент плана: дистрибутив "unreachable" не скачивается, а "broken" не устанавливается.
+     */
+    private InstallItem item(String sId, String... sDependencies) throws IOException {
+        IDistributionDownloader downloader = (url, sFileName, sFileExt, sResolvePaths) -> {
+            if (sFileName.equals("unreachable")) throw new IOException("Сервер недоступен");
+            return Files.createTempFile(temp, sFileName, ".bin").toFile();
+        };
+        IDistributionInstaller installer = (file, path, isWaitInstallProcess) -> {
+            installed.add(sId);
+            return !sId.equals("broken");
+        };
+        return new InstallItem(sId, downloader, new URL("http://server/" + sId), sId, "bin", installer, null, List.of(sDependencies));
+    }
+}
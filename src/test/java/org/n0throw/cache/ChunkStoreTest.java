@@ -0,0 +1,96 @@
+package org.n0throw.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.n0throw.utils.files.ChecksumMismatchException;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkStoreTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    void streamRejectsChunkReplacedWithSameSize() throws Exception {
+        ChunkStore store = new ChunkStore(temp.resolve("store"));
+        byte[] data = new byte[1024 * 1024];
+        new Random(1).nextBytes(data);
+        store.put("dist-1", Files.write(temp.resolve("dist.bin"), data));
+
+        try (InputStream stream = store.openStream("dist-1")) {
+            assertArrayEquals(data, stream.readAllBytes());
+        }
+
+        // Содержимое блока испортилось на диске, размер прежний
+        Path chunk = chunks(store).get(0);
+        byte[] bytes = Files.readAllBytes(chunk);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(chunk, bytes);
+
+        try (InputStream stream = store.openStream("dist-1")) {
+            assertThrows(ChecksumMismatchException.class, stream::readAllBytes);
+        }
+        Path target = temp.resolve("restored.bin");
+        assertThrows(ChecksumMismatchException.class, () -> store.restore("dist-1", target));
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    void garbageCollectionRemovesAbandonedManifests() throws Exception {
+        ChunkStore store = new ChunkStore(temp.resolve("store"));
+        store.put("dist-1", Files.write(temp.resolve("dist.bin"), new byte[]{1, 2, 3}));
+        Path manifests = store.getDirectory().resolve("manifests");
+        Path abandoned = Files.write(manifests.resolve("0123.manifest.tmp"), new byte[100]);
+
+        assertEquals(100, store.collectGarbage());
+
+        assertFalse(Files.exists(abandoned));
+        assertEquals(1, new ChunkStore(store.getDirectory()).getStats().getFileCount());
+    }
+
+    @Test
+    void truncatedManifestIsSkippedAndCollected() throws Exception {
+        ChunkStore store = new ChunkStore(temp.resolve("store"));
+        store.put("dist-1", Files.write(temp.resolve("dist-1.bin"), new byte[]{1, 2, 3}));
+        store.put("dist-2", Files.write(temp.resolve("dist-2.bin"), new byte[]{4, 5, 6}));
+        List<Path> manifests = manifests(store);
+        assertEquals(2, manifests.size());
+
+        // Запись описания прервалась на середине
+        Path truncated = manifests.get(0);
+        byte[] bytes = Files.readAllBytes(truncated);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length / 2));
+
+        ChunkStore reopened = new ChunkStore(store.getDirectory());
+        assertEquals(1, reopened.getStats().getFileCount());
+
+        assertTrue(reopened.collectGarbage() >= bytes.length / 2);
+        assertFalse(Files.exists(truncated));
+        assertEquals(1, manifests(reopened).size());
+        assertEquals(1, new ChunkStore(store.getDirectory()).getStats().getFileCount());
+    }
+
+    private static List<Path> manifests(ChunkStore store) throws Exception {
+        try (Stream<Path> list = Files.list(store.getDirectory().resolve("manifests"))) {
+            return list.toList();
+        }
+    }
+
+    private static List<Path> chunks(ChunkStore store) throws Exception {
+        try (Stream<Path> walk = Files.walk(store.getDirectory().resolve("chunks"))) {
+            return walk.filter(Files::isRegularFile).toList();
+        }
+    }
+}
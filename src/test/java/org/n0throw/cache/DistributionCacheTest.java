@@ -0,0 +1,86 @@
+package org.n0throw.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DistributionCacheTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    void putCopiesHardLinkedFile() throws Exception {
+        DistributionCache cache = new DistributionCache(temp.resolve("cache"));
+        Path source = Files.writeString(temp.resolve("source.txt"), "content");
+        Path link = Files.createLink(temp.resolve("link.txt"), source);
+
+        CacheEntry entry = cache.put("file:/source.txt", null, link);
+
+        Path object = cache.findByHash(entry.getHash());
+        assertNotNull(object);
+        assertFalse(Files.isSameFile(source, object));
+        Files.writeString(source, "changed");
+        assertEquals("content", Files.readString(object));
+    }
+
+    @Test
+    void modifiedObjectIsNotServed() throws Exception {
+        DistributionCache cache = new DistributionCache(temp.resolve("cache"));
+        CacheEntry entry = cache.put("file:/a.txt", null, Files.writeString(temp.resolve("a.txt"), "content"));
+        Path object = cache.findByHash(entry.getHash());
+        assertNotNull(object);
+
+        // Тот же размер, другое содержимое
+        Files.writeString(object, "CONTENT");
+        Files.setLastModifiedTime(object, FileTime.fromMillis(Files.getLastModifiedTime(object).toMillis() + 10_000));
+
+        assertNull(cache.get("file:/a.txt"));
+        assertThrows(NoSuchFileException.class, () -> cache.copyTo(entry, temp.resolve("copy.txt")));
+    }
+
+    @Test
+    void copyToRejectsEvictedEntry() throws Exception {
+        DistributionCache cache = new DistributionCache(temp.resolve("cache"));
+        CacheEntry entry = cache.put("file:/a.txt", null, Files.writeString(temp.resolve("a.txt"), "content"));
+        cache.remove("file:/a.txt");
+
+        assertThrows(NoSuchFileException.class, () -> cache.copyTo(entry, temp.resolve("copy.txt")));
+    }
+
+    @Test
+    void indexKeepsObjectTimesAcrossReload() throws Exception {
+        Path directory = temp.resolve("cache");
+        CacheEntry entry = new DistributionCache(directory)
+                .put("file:/a.txt", null, Files.writeString(temp.resolve("a.txt"), "content"));
+
+        DistributionCache reloaded = new DistributionCache(directory);
+        assertNotNull(reloaded.get("file:/a.txt"));
+        reloaded.copyTo(entry, temp.resolve("copy.txt"));
+        assertEquals("content", Files.readString(temp.resolve("copy.txt")));
+    }
+
+    @Test
+    void indexOfOtherVersionIsRebuilt() throws Exception {
+        Path directory = temp.resolve("cache");
+        CacheEntry entry = new DistributionCache(directory)
+                .put("file:/a.txt", null, Files.writeString(temp.resolve("a.txt"), "content"));
+        // Индекс записан другой версией формата
+        Files.write(directory.resolve("index.bin"), new byte[]{0x44, 0x43, 0x49, 0x01, 0, 0, 0, 0});
+
+        DistributionCache reloaded = new DistributionCache(directory);
+
+        assertNull(reloaded.get("file:/a.txt"));
+        assertNull(reloaded.findByHash(entry.getHash()));
+        assertEquals(0, reloaded.getSize());
+    }
+}
@@ -0,0 +1,70 @@
+package org.n0throw.downloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BlockChecksumsTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    void readsWrittenChecksums() throws Exception {
+        byte[] data = new byte[3 * BlockChecksums.DEFAULT_BLOCK_SIZE + 100];
+        new Random(1).nextBytes(data);
+        BlockChecksums checksums = BlockChecksums.compute(Files.write(temp.resolve("dist.bin"), data));
+
+        BlockChecksums read = BlockChecksums.read(new ByteArrayInputStream(write(checksums)));
+
+        assertEquals(data.length, read.getLength());
+        assertEquals(4, read.getBlockCount());
+        assertEquals(checksums.getSha256(), read.getSha256());
+    }
+
+    @Test
+    void rejectsHeaderWithWrongBlockCount() {
+        IOException e = assertThrows(IOException.class, () -> read(BlockChecksums.DEFAULT_BLOCK_SIZE, 1L << 40, 1));
+        assertFalse(e instanceof EOFException);
+        assertThrows(IOException.class, () -> read(0, 100, 1));
+        assertThrows(IOException.class, () -> read(BlockChecksums.DEFAULT_BLOCK_SIZE, -1, 0));
+        // Количество блоков не помещается в память под строгие суммы
+        assertThrows(IOException.class, () -> read(1, Long.MAX_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void largeHeaderWithoutDataFailsWithoutPreallocation() {
+        // Заголовок корректен, но данных блоков нет: поток заканчивается раньше, чем понадобится вся память
+        int blockCount = Integer.MAX_VALUE / 32;
+        assertThrows(EOFException.class, () -> read(1, blockCount, blockCount));
+    }
+
+    private BlockChecksums read(int blockSize, long length, int blockCount) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(out);
+        header.write(Arrays.copyOf(write(BlockChecksums.compute(Files.write(temp.resolve("magic.bin"), new byte[1]))), 4));
+        header.writeInt(blockSize);
+        header.writeLong(length);
+        header.writeInt(blockCount);
+        header.write(new byte[32]);
+        return BlockChecksums.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static byte[] write(BlockChecksums checksums) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        checksums.write(out);
+        return out.toByteArray();
+    }
+}
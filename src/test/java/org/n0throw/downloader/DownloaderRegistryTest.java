@@ -0,0 +1,99 @@
+package org.n0throw.downloader;
+
+import jcifs.smb.NtlmPasswordAuthentication;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloaderRegistryTest {
+    @Test
+    void downloaderIsFoundBySchemeIgnoringCase() throws Exception {
+        DownloaderRegistry registry = DownloaderRegistry.getInstance();
+
+        assertTrue(registry.get(new URL("HTTPS://server/a.zip")) instanceof HttpDistributionDownloader);
+        // http и https обслуживает один загрузчик
+        assertSame(registry.get("http"), registry.get("Https"));
+        assertTrue(registry.get(new URL("file:///tmp/a.zip")) instanceof FileDistributionDownloader);
+        assertTrue(registry.isRegistered("SMB"));
+        assertFalse(registry.isRegistered("ftp"));
+        assertThrows(IllegalArgumentException.class, () -> registry.get("ftp"));
+    }
+
+    @Test
+    void invalidSchemeIsRejectedEverywhere() {
+        DownloaderRegistry registry = new DownloaderRegistry();
+
+        for (String sScheme : new String[]{"", "1http", "ht tp", "http:"}) {
+            assertThrows(IllegalArgumentException.class, () -> registry.isRegistered(sScheme), sScheme);
+            assertThrows(IllegalArgumentException.class, () -> registry.get(sScheme), sScheme);
+            assertThrows(IllegalArgumentException.class,
+                    () -> registry.register(sScheme, FileDistributionDownloader::new), sScheme);
+        }
+    }
+
+    @Test
+    void downloaderIsCreatedOnFirstUseAndReplacedOnRegister() {
+        DownloaderRegistry registry = new DownloaderRegistry();
+        AtomicInteger created = new AtomicInteger();
+        registry.register("repo", () -> {
+            created.incrementAndGet();
+            return new FileDistributionDownloader();
+        });
+
+        assertTrue(registry.isRegistered("repo"));
+        assertEquals(0, created.get());
+        IDistributionDownloader first = registry.get("REPO");
+        assertSame(first, registry.get("repo"));
+        assertEquals(1, created.get());
+
+        FileDistributionDownloader replacement = new FileDistributionDownloader();
+        registry.register("Repo", () -> replacement);
+        assertSame(replacement, registry.get("repo"));
+    }
+
+    @Test
+    void smbClassesAreLoadedOnlyForSmbScheme() throws Exception {
+        // Реестр загружается заново, чтобы классы jcifs не были загружены другими тестами
+        try (IsolatedClassLoader loader = new IsolatedClassLoader()) {
+            Class<?> registryClass = Class.forName(DownloaderRegistry.class.getName(), true, loader);
+            Object registry = registryClass.getMethod("getInstance").invoke(null);
+            registryClass.getMethod("toUrl", String.class).invoke(registry, "http://server/a.zip");
+            registryClass.getMethod("get", String.class).invoke(registry, "http");
+            assertNull(loader.findLoaded("jcifs.smb.Handler"));
+            assertNull(loader.findLoaded("jcifs.smb.NtlmPasswordAuthentication"));
+
+            URL url = (URL) registryClass.getMethod("toUrl", String.class).invoke(registry, "smb://server/share/a.zip");
+            assertEquals("smb", url.getProtocol());
+            assertNotNull(loader.findLoaded("jcifs.smb.Handler"));
+
+            registryClass.getMethod("get", String.class).invoke(registry, "smb");
+            assertNotNull(loader.findLoaded("jcifs.smb.NtlmPasswordAuthentication"));
+        }
+    }
+
+    /**
+     * Загрузчик классов проекта и jcifs, не делегирующий их загрузку загрузчику тестов.
+     */
+    private static final class IsolatedClassLoader extends URLClassLoader {
+        IsolatedClassLoader() {
+            super(new URL[]{
+                    DownloaderRegistry.class.getProtectionDomain().getCodeSource().getLocation(),
+                    NtlmPasswordAuthentication.class.getProtectionDomain().getCodeSource().getLocation()
+            }, ClassLoader.getPlatformClassLoader());
+        }
+
+        Class<?> findLoaded(String sName) {
+            return findLoadedClass(sName);
+        }
+    }
+}
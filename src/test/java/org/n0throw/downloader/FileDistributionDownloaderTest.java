@@ -0,0 +1,30 @@
+package org.n0throw.downloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class FileDistributionDownloaderTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    void defaultDownloaderDoesNotShareSourceInode() throws Exception {
+        Path source = Files.writeString(temp.resolve("dist.txt"), "source");
+
+        File file = new FileDistributionDownloader().download(source.toUri().toURL(), "dist", "txt", new String[]{"file-test"});
+        try {
+            assertFalse(Files.isSameFile(source, file.toPath()));
+            Files.writeString(file.toPath(), "changed");
+            assertEquals("source", Files.readString(source));
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+}
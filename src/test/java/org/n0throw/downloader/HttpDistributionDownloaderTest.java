@@ -0,0 +1,219 @@
+package org.n0throw.downloader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.n0throw.utils.files.ChecksumMismatchException;
+import org.n0throw.utils.files.FileHashHelper;
+import org.n0throw.utils.files.TempFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpDistributionDownloaderTest {
+    private static final int LENGTH = 64 * 1024;
+
+    @TempDir
+    Path temp;
+
+    private HttpServer server;
+
+    private final AtomicInteger fullRequests = new AtomicInteger();
+
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+
+    private byte[] content;
+
+    private byte[] blocks;
+
+    /**
+     * Данные, которые сервер отдаёт вместо содержимого (null, если отдаёт содержимое без искажений).
+     */
+    private byte[] served;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/dist.bin", this::serveContent);
+        server.createContext("/dist.bin" + BlockChecksums.FILE_SUFFIX, exchange -> send(exchange, 200, blocks));
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void deltaReusesBasisBlocks() throws Exception {
+        byte[] basis = random(1);
+        content = modify(basis, 3, 2);
+        blocks = checksums(content);
+
+        byte[] result = downloadDelta(basis);
+
+        assertArrayEquals(content, result);
+        assertEquals(0, fullRequests.get());
+        assertTrue(rangeRequests.get() > 0);
+    }
+
+    @Test
+    void staleBlocksFallBackToFullDownload() throws Exception {
+        // Файл контрольных сумм остался от другой сборки той же длины
+        byte[] basis = random(1);
+        content = modify(basis, 3, 2);
+        blocks = checksums(modify(basis, 5, 3));
+
+        byte[] result = downloadDelta(basis);
+
+        assertArrayEquals(content, result);
+        assertEquals(1, fullRequests.get());
+    }
+
+    @Test
+    void fullDownloadFallbackIsVerified() throws Exception {
+        byte[] basis = random(1);
+        content = modify(basis, 3, 2);
+        blocks = checksums(content);
+        // Сервер отдаёт искажённые данные: не совпадает ни собранный файл, ни скачанный целиком
+        served = modify(content, 7, 0);
+
+        assertThrows(ChecksumMismatchException.class, () -> downloadDelta(basis));
+        assertEquals(1, fullRequests.get());
+    }
+
+    @Test
+    void corruptPartFromPreviousRunIsDownloadedAgain() throws Exception {
+        content = random(2);
+        URL url = url();
+        Path partPath = DownloadJournal.getPartPath(TempFile.getDirectory("resume-test"), url, "dist");
+        // Прошлый запуск «докачал» файл, но данные на диске испорчены
+        DownloadJournal journal = DownloadJournal.open(partPath, url, HttpResourceInfo.probe(url));
+        Files.write(partPath, modify(content, 4, 1));
+        journal.markCompleted(new ByteRange(0, content.length - 1));
+        journal.save();
+
+        File file = new HttpDistributionDownloader(1, HttpDistributionDownloader.DEFAULT_MIN_SEGMENT_SIZE, true)
+                .download(url, "dist", "bin", new String[]{"resume-test"});
+        try {
+            assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        } finally {
+            Files.delete(file.toPath());
+        }
+        assertTrue(rangeRequests.get() > 0);
+        assertFalse(Files.exists(partPath));
+    }
+
+    @Test
+    void abandonedPartsAreDeleted() throws Exception {
+        Path directory = Files.createDirectory(temp.resolve("parts"));
+        Path old = Files.write(directory.resolve("old-0123.part"), new byte[10]);
+        Path oldJournal = Files.write(directory.resolve("old-0123.part.journal"), new byte[10]);
+        Path fresh = Files.write(directory.resolve("fresh-4567.part"), new byte[10]);
+        Path unrelated = Files.write(directory.resolve("other.bin"), new byte[10]);
+        FileTime longAgo = FileTime.fromMillis(System.currentTimeMillis() - DownloadJournal.ABANDONED_AGE.toMillis() - 60_000);
+        for (Path path : new Path[]{old, oldJournal, unrelated}) Files.setLastModifiedTime(path, longAgo);
+
+        DownloadJournal.deleteAbandoned(directory, directory.resolve("current-89ab.part"));
+
+        assertFalse(Files.exists(old));
+        assertFalse(Files.exists(oldJournal));
+        assertTrue(Files.exists(fresh));
+        assertTrue(Files.exists(unrelated));
+    }
+
+    private URL url() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/dist.bin");
+    }
+
+    private byte[] downloadDelta(byte[] basis) throws IOException {
+        Path basisFile = Files.write(temp.resolve("basis.bin"), basis);
+        File file = new HttpDistributionDownloader().downloadDelta(url(), basisFile, "dist", "bin", "delta-test");
+        try {
+            return Files.readAllBytes(file.toPath());
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    private void serveContent(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().add("Content-Length", Integer.toString(content.length));
+            exchange.getResponseHeaders().add("Repr-Digest", "sha-256=:" + Base64.getEncoder().encodeToString(
+                    FileHashHelper.createDigest(FileHashHelper.SHA_256).digest(content)) + ":");
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = served != null ? served : content;
+        String sRange = exchange.getRequestHeaders().getFirst("Range");
+        if (sRange == null) {
+            fullRequests.incrementAndGet();
+            send(exchange, 200, body);
+            return;
+        }
+        rangeRequests.incrementAndGet();
+        String[] sBounds = sRange.substring("bytes=".length()).split("-");
+        int start = Integer.parseInt(sBounds[0]);
+        int end = sBounds.length > 1 ? Integer.parseInt(sBounds[1]) : content.length - 1;
+        exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        send(exchange, 206, Arrays.copyOfRange(body, start, end + 1));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private byte[] checksums(byte[] data) throws IOException {
+        Path file = Files.write(Files.createTempFile(temp, "blocks", ".bin"), data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BlockChecksums.compute(file).write(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] random(long seed) {
+        byte[] data = new byte[LENGTH];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Заменяет каждый {@code step}-й блок, начиная с {@code first}, случайными байтами.
+     */
+    private static byte[] modify(byte[] data, int step, int first) {
+        byte[] result = data.clone();
+        Random random = new Random(step * 31L + first);
+        for (int block = first; block * BlockChecksums.DEFAULT_BLOCK_SIZE < result.length; block += step) {
+            byte[] replacement = new byte[BlockChecksums.DEFAULT_BLOCK_SIZE];
+            random.nextBytes(replacement);
+            System.arraycopy(replacement, 0, result, block * BlockChecksums.DEFAULT_BLOCK_SIZE, replacement.length);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,158 @@
+package org.n0throw.downloader;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpTransportTest {
+    private static final byte[] CONTENT = new byte[256 * 1024];
+
+    static {
+        for (int i = 0; i < CONTENT.length; i++) CONTENT[i] = (byte) (i * 31 + i / 7);
+    }
+
+    @TempDir
+    Path temp;
+
+    private HttpServer server;
+
+    /**
+     * Освобождает зависшие обработчики сервера в конце теста.
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private HttpTransport transport;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/full", exchange -> {
+            exchange.sendResponseHeaders(200, CONTENT.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(CONTENT);
+            }
+        });
+        server.createContext("/stall", exchange -> {
+            exchange.sendResponseHeaders(200, CONTENT.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(CONTENT, 0, 1024);
+            out.flush();
+            awaitRelease();
+            exchange.close();
+        });
+        server.createContext("/stall-gzip", exchange -> {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(CONTENT);
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, compressed.size());
+            OutputStream out = exchange.getResponseBody();
+            out.write(compressed.toByteArray(), 0, compressed.size() / 2);
+            out.flush();
+            awaitRelease();
+            exchange.close();
+        });
+        server.start();
+        transport = new HttpTransport(Duration.ofSeconds(5), Duration.ofMillis(500), HttpClient.Redirect.NORMAL);
+    }
+
+    @AfterEach
+    void stopServer() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void openStreamTimesOutWhenBodyStalls() throws Exception {
+        try (InputStream stream = transport.openStream(url("/stall"))) {
+            byte[] buffer = new byte[CONTENT.length];
+            long started = System.nanoTime();
+            assertThrows(HttpTimeoutException.class, () -> stream.readNBytes(buffer, 0, buffer.length));
+            assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(10));
+        }
+    }
+
+    @Test
+    void compressedDownloadTimesOutWhenBodyStalls() throws Exception {
+        try (FileChannel channel = open("stall.bin")) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> transport.downloadAsync(
+                    url("/stall-gzip"),
+                    Map.of(HttpTransport.ACCEPT_ENCODING, ContentDecoder.ACCEPT_ENCODING),
+                    200, channel, 0, Long.MAX_VALUE, null, TransferPriority.Interactive, null
+            ).get(10, TimeUnit.SECONDS));
+            assertInstanceOf(HttpTimeoutException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void throttledDownloadIsNotTimedOutWhileWaitingForBandwidth() throws Exception {
+        // Порция в 16 КБ при 64 КБ/с ждёт полосы около 250 мс — дольше таймаута чтения
+        HttpTransport strictTransport = new HttpTransport(Duration.ofSeconds(5), Duration.ofMillis(100), HttpClient.Redirect.NORMAL);
+        TransferScheduler scheduler = new TransferScheduler(64 * 1024, TransferScheduler.UNLIMITED);
+        Path file = temp.resolve("full.bin");
+        try (FileChannel channel = open("full.bin")) {
+            long written = strictTransport.downloadAsync(
+                    url("/full"), Map.of(), 200, channel, 0, Long.MAX_VALUE, scheduler, TransferPriority.Interactive, null
+            ).get(30, TimeUnit.SECONDS).body();
+            assertEquals(CONTENT.length, written);
+        }
+        assertArrayEquals(CONTENT, Files.readAllBytes(file));
+        assertEquals(CONTENT.length, scheduler.getStats().getTotalBytes());
+    }
+
+    @Test
+    void downloadWritesWholeBody() throws Exception {
+        try (FileChannel channel = open("plain.bin")) {
+            long written = transport.download(
+                    url("/full"), Map.of(), 200, channel, 0, Long.MAX_VALUE, null, TransferPriority.Interactive, null
+            ).body();
+            assertEquals(CONTENT.length, written);
+        }
+        assertArrayEquals(CONTENT, Files.readAllBytes(temp.resolve("plain.bin")));
+    }
+
+    private FileChannel open(String sName) throws IOException {
+        return FileChannel.open(temp.resolve(sName), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private URL url(String sPath) throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + sPath);
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelChunkDownloadTest {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void assemblesChunksFromShortReads() throws Exception {
+        byte[] data = random(10 * CHUNK_SIZE + 123);
+        FakeSource source = new FakeSource(data, 1000);
+
+        byte[] result = download(source, data.length, 4, new TransferScheduler(TransferScheduler.UNLIMITED, TransferScheduler.UNLIMITED));
+
+        assertArrayEquals(data, result);
+        assertEquals(4, source.opened.get());
+        assertEquals(0, source.open.get());
+    }
+
+    @Test
+    void connectionsArePerHostLimited() throws Exception {
+        byte[] data = random(16 * CHUNK_SIZE);
+        FakeSource source = new FakeSource(data, 4096);
+
+        byte[] result = download(source, data.length, 8, new TransferScheduler(TransferScheduler.UNLIMITED, 2));
+
+        assertArrayEquals(data, result);
+        assertTrue(source.maxOpen.get() <= 2, "Одновременно открыто читателей: " + source.maxOpen.get());
+    }
+
+    @Test
+    void shortSourceFails() {
+        byte[] data = random(3 * CHUNK_SIZE);
+        FakeSource source = new FakeSource(data, CHUNK_SIZE);
+
+        assertThrows(EOFException.class, () -> download(source, data.length + CHUNK_SIZE, 2,
+                new TransferScheduler(TransferScheduler.UNLIMITED, TransferScheduler.UNLIMITED)));
+        assertEquals(0, source.open.get());
+    }
+
+    @Test
+    void readErrorStopsOtherReaders() {
+        byte[] data = random(64 * CHUNK_SIZE);
+        FakeSource source = new FakeSource(data, CHUNK_SIZE);
+        source.failAt = 5L * CHUNK_SIZE;
+
+        IOException e = assertThrows(IOException.class, () -> download(source, data.length, 4,
+                new TransferScheduler(TransferScheduler.UNLIMITED, TransferScheduler.UNLIMITED)));
+        assertEquals("Сбой чтения", e.getMessage());
+        assertTrue(source.reads.get() < 64, "Прочитано блоков после ошибки: " + source.reads.get());
+        assertEquals(0, source.open.get());
+    }
+
+    private byte[] download(FakeSource source, long length, int parallelism, TransferScheduler scheduler) throws IOException {
+        File file = Files.createTempFile(temp, "chunks", ".bin").toFile();
+        new ParallelChunkDownload(
+                new URL("http://server/share/file.bin"),
+                source,
+                length,
+                CHUNK_SIZE,
+                parallelism,
+                scheduler,
+                TransferPriority.Interactive
+        ).downloadTo(file, null);
+        return Files.readAllBytes(file.toPath());
+    }
+
+    private static byte[] random(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Источник в памяти, который отдаёт не больше {@code maxRead} байт за чтение.
+     */
+    private static final class FakeSource implements IRandomAccessSource {
+        private final byte[] data;
+        private final int maxRead;
+        private final AtomicInteger opened = new AtomicInteger();
+        private final AtomicInteger open = new AtomicInteger();
+        private final AtomicInteger maxOpen = new AtomicInteger();
+        private final AtomicInteger reads = new AtomicInteger();
+        private volatile long failAt = -1;
+
+        FakeSource(byte[] data, int maxRead) {
+            this.data = data;
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public long length() {
+            return data.length;
+        }
+
+        @NotNull
+        @Override
+        public IReader openReader() {
+            opened.incrementAndGet();
+            maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+            return new IReader() {
+                @Override
+                public int read(long position, @NotNull byte[] buffer, int offset, int length) throws IOException {
+                    reads.incrementAndGet();
+                    if (position == failAt) throw new IOException("Сбой чтения");
+                    if (position >= data.length) return -1;
+                    // Даём другим читателям поработать одновременно
+                    Thread.yield();
+                    int count = (int) Math.min(Math.min(length, maxRead), data.length - position);
+                    System.arraycopy(data, (int) position, buffer, offset, count);
+                    return count;
+                }
+
+                @Override
+                public void close() {
+                    open.decrementAndGet();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.n0throw.downloader;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.n0throw.cache.CacheEntry;
+import org.n0throw.cache.DistributionCache;
+import org.n0throw.cache.PeerCacheServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class PeerDistributionDownloaderTest {
+    private static final int LENGTH = 16 * BlockChecksums.DEFAULT_BLOCK_SIZE + 100;
+
+    @TempDir
+    Path temp;
+
+    private final byte[] content = new byte[LENGTH];
+
+    private byte[] blocks;
+
+    private PeerCacheServer healthy;
+
+    private PeerCacheServer corrupt;
+
+    private final Origin origin = new Origin();
+
+    @BeforeEach
+    void startPeers() throws IOException {
+        new Random(LENGTH).nextBytes(content);
+        Path file = Files.write(temp.resolve("dist.bin"), content);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BlockChecksums.compute(file).write(out);
+        blocks = out.toByteArray();
+
+        healthy = startPeer("healthy", false);
+        corrupt = startPeer("corrupt", true);
+    }
+
+    @AfterEach
+    void stopPeers() {
+        healthy.close();
+        corrupt.close();
+    }
+
+    @Test
+    void corruptRangesAreRefetchedFromAnotherPeer() throws Exception {
+        // Искажённый узел первый: половина диапазонов сначала запрашивается у него
+        byte[] result = download(List.of(url(corrupt), url(healthy)));
+
+        assertArrayEquals(content, result);
+        assertEquals(0, origin.downloads.get());
+    }
+
+    @Test
+    void fallsBackToOriginWhenNoPeerServesValidRange() throws Exception {
+        byte[] result = download(List.of(url(corrupt)));
+
+        assertArrayEquals(content, result);
+        assertEquals(1, origin.downloads.get());
+    }
+
+    private byte[] download(List<URL> peers) throws IOException {
+        PeerDistributionDownloader downloader = new PeerDistributionDownloader(
+                origin,
+                peers,
+                BlockChecksums.DEFAULT_BLOCK_SIZE,
+                new HttpTransport(Duration.ofSeconds(5), Duration.ofSeconds(5), HttpClient.Redirect.NORMAL),
+                new TransferScheduler(TransferScheduler.UNLIMITED, TransferScheduler.UNLIMITED),
+                TransferPriority.Interactive
+        );
+        File file = downloader.download(new URL("http://origin.invalid/dist.bin"), "dist", "bin", new String[]{"peer-test"});
+        try {
+            return Files.readAllBytes(file.toPath());
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    private PeerCacheServer startPeer(String sName, boolean damaged) throws IOException {
+        DistributionCache cache = new DistributionCache(temp.resolve(sName));
+        Path file = Files.write(temp.resolve(sName + ".bin"), content);
+        CacheEntry entry = cache.put("http://origin.invalid/dist.bin", null, file);
+        if (damaged) {
+            // Содержимое испортилось на диске узла, размер прежний
+            Path object = cache.findByHash(entry.getHash());
+            assertNotNull(object);
+            byte[] data = Files.readAllBytes(object);
+            for (int i = 0; i < data.length; i += 1024) data[i] ^= 0x5A;
+            Files.write(object, data);
+        }
+        PeerCacheServer server = new PeerCacheServer(cache, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        return server;
+    }
+
+    private static URL url(PeerCacheServer server) throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    }
+
+    /**
+     * Основной источник: отдаёт файл контрольных сумм и считает полные скачивания.
+     */
+    private final class Origin implements IDistributionDownloader {
+        private final AtomicInteger downloads = new AtomicInteger();
+
+        @Override
+        public File download(URL url, @NotNull String sFileName, String sFileExt, @NotNull String... sResolvePaths)
+                throws IOException {
+            downloads.incrementAndGet();
+            return Files.write(Files.createTempFile(temp, sFileName, "." + sFileExt), content).toFile();
+        }
+
+        @Override
+        public InputStream openStream(URL url) {
+            return new ByteArrayInputStream(blocks);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.n0throw.downloader;
+
+import jcifs.smb.NtlmPasswordAuthentication;
+import jcifs.smb.SmbFile;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class SmbDirectoryMirrorTest {
+    private static final long TIME = 1_700_000_000_000L;
+
+    @TempDir
+    Path temp;
+
+    /**
+     * Количество запросов содержимого папок к серверу.
+     */
+    private final AtomicInteger listings = new AtomicInteger();
+
+    /**
+     * Количество открытых на чтение файлов источника.
+     */
+    private final AtomicInteger reads = new AtomicInteger();
+
+    private final FakeSmbFile remoteRoot = directory("", TIME);
+
+    @Test
+    void copiesOnlyNewAndChangedFiles() throws Exception {
+        FakeSmbFile sub = remoteRoot.add(directory("sub/", TIME));
+        remoteRoot.add(file("a.txt", "a", TIME));
+        FakeSmbFile b = sub.add(file("b.txt", "b", TIME));
+        Mirror mirror = new Mirror();
+
+        MirrorReport first = mirror.sync(url());
+        assertEquals(2, first.getCopiedFiles());
+        assertEquals(2, first.getListedDirectories());
+        assertEquals("b", Files.readString(mirror.getRoot().resolve("sub/b.txt")));
+
+        // Ничего не изменилось: содержимое обеих папок берётся из снимка, файлы не читаются
+        MirrorReport second = mirror.sync(url());
+        assertEquals(0, second.getCopiedFiles());
+        assertEquals(2, second.getUnchangedFiles());
+        assertEquals(2, second.getCachedDirectories());
+        assertEquals(2, listings.get());
+        assertEquals(2, reads.get());
+
+        // Файл пересоздан: дата изменения папки сменилась, копируется только он
+        b.set("b2", TIME + 2000);
+        sub.lastModified = TIME + 2000;
+        MirrorReport third = mirror.sync(url());
+        assertEquals(1, third.getCopiedFiles());
+        assertEquals(1, third.getListedDirectories());
+        assertEquals(1, third.getCachedDirectories());
+        assertEquals("b2", Files.readString(mirror.getRoot().resolve("sub/b.txt")));
+    }
+
+    @Test
+    void unchangedDirectoryTimeSkipsListingUntilFullScan() throws Exception {
+        FakeSmbFile a = remoteRoot.add(file("a.txt", "a", TIME));
+        Mirror mirror = new Mirror();
+        mirror.sync(url());
+
+        // Файл изменён на месте: дата изменения папки прежняя
+        a.set("changed", TIME + 5000);
+        MirrorReport incremental = mirror.sync(url());
+        assertEquals(0, incremental.getCopiedFiles());
+        assertEquals(1, incremental.getCachedDirectories());
+        assertEquals("a", Files.readString(mirror.getRoot().resolve("a.txt")));
+
+        MirrorReport full = mirror.sync(url(), true);
+        assertEquals(1, full.getCopiedFiles());
+        assertEquals(1, full.getListedDirectories());
+        assertEquals("changed", Files.readString(mirror.getRoot().resolve("a.txt")));
+    }
+
+    @Test
+    void removedEntriesAreDeleted() throws Exception {
+        remoteRoot.add(file("a.txt", "a", TIME));
+        FakeSmbFile sub = remoteRoot.add(directory("sub/", TIME));
+        sub.add(file("b.txt", "b", TIME));
+        Mirror mirror = new Mirror();
+        mirror.sync(url());
+
+        remoteRoot.children.remove("sub/");
+        remoteRoot.lastModified = TIME + 1000;
+        MirrorReport report = mirror.sync(url());
+
+        assertEquals(2, report.getDeletedEntries());
+        assertFalse(Files.exists(mirror.getRoot().resolve("sub")));
+        assertEquals("a", Files.readString(mirror.getRoot().resolve("a.txt")));
+    }
+
+    private static URL url() throws MalformedURLException {
+        return new URL("http://server/share/dist/");
+    }
+
+    private FakeSmbFile directory(String sName, long lastModified) {
+        FakeSmbFile directory = new FakeSmbFile(sName, null);
+        directory.lastModified = lastModified;
+        return directory;
+    }
+
+    private FakeSmbFile file(String sName, String sContent, long lastModified) {
+        FakeSmbFile file = new FakeSmbFile(sName, new byte[0]);
+        file.set(sContent, lastModified);
+        return file;
+    }
+
+    /**
+     * Зеркало, которое вместо SMB сервера обходит папки в памяти.
+     */
+    private final class Mirror extends SmbDirectoryMirror {
+        Mirror() {
+            super(NtlmPasswordAuthentication.ANONYMOUS, temp.resolve("mirror"),
+                    new TransferScheduler(TransferScheduler.UNLIMITED, TransferScheduler.UNLIMITED),
+                    TransferPriority.Background, 2);
+        }
+
+        @NotNull
+        @Override
+        protected SmbFile openDirectory(@NotNull URL url) {
+            return remoteRoot;
+        }
+
+        @NotNull
+        @Override
+        protected SmbFile openChild(@NotNull SmbFile directory, @NotNull String sName) {
+            return ((FakeSmbFile) directory).children.get(sName);
+        }
+    }
+
+    /**
+     * Файл или папка (если содержимое null) источника в памяти.
+     */
+    private final class FakeSmbFile extends SmbFile {
+        private final String sName;
+        private final Map<String, FakeSmbFile> children = new LinkedHashMap<>();
+        private volatile byte[] content;
+        private volatile long lastModified;
+
+        FakeSmbFile(String sName, byte[] content) {
+            super(fakeUrl(sName), NtlmPasswordAuthentication.ANONYMOUS);
+            this.sName = sName;
+            this.content = content;
+        }
+
+        FakeSmbFile add(FakeSmbFile child) {
+            children.put(child.sName, child);
+            return child;
+        }
+
+        void set(String sContent, long lastModified) {
+            this.content = sContent.getBytes(StandardCharsets.UTF_8);
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public SmbFile[] listFiles() {
+            listings.incrementAndGet();
+            return children.values().toArray(new SmbFile[0]);
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return content == null;
+        }
+
+        @Override
+        public long length() {
+            return content == null ? 0 : content.length;
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public String getName() {
+            return sName;
+        }
+
+        @Override
+        public URL getURL() {
+            return fakeUrl(sName);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (content == null) throw new IOException("Папку нельзя прочитать: " + sName);
+            reads.incrementAndGet();
+            return new ByteArrayInputStream(content);
+        }
+    }
+
+    private static URL fakeUrl(String sName) {
+        try {
+            return new URL("http://server/share/dist/" + sName);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.n0throw.downloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class TransferSchedulerTest {
+    @Test
+    void refillAfterLongIdleDoesNotOverflow() {
+        long maxBytesPerSecond = 1L << 30;
+        AtomicLong clock = new AtomicLong(1_000);
+        TransferScheduler scheduler = new TransferScheduler(maxBytesPerSecond, TransferScheduler.UNLIMITED, clock::get);
+
+        scheduler.consume(maxBytesPerSecond * 2);
+        // 1 час простоя: наносекунды, умноженные на скорость, не помещаются в long
+        clock.addAndGet(TimeUnit.HOURS.toNanos(1));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> scheduler.awaitBandwidth(TransferPriority.Interactive));
+    }
+
+    @Test
+    void debtIsRepaidOverTime() {
+        AtomicLong clock = new AtomicLong();
+        TransferScheduler scheduler = new TransferScheduler(1_000, TransferScheduler.UNLIMITED, clock::get);
+
+        scheduler.consume(1_500);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> scheduler.awaitBandwidth(TransferPriority.Interactive));
+        assertEquals(1_500, scheduler.getStats().getTotalBytes());
+    }
+}
@@ -0,0 +1,101 @@
+package org.n0throw.installer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisabledOnOs(OS.WINDOWS)
+class ProcessInstallerTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    void timeoutKillsChildProcesses() throws Exception {
+        Path pidFile = temp.resolve("child.pid");
+        File script = script("hang.sh",
+                "sleep 60 > /dev/null 2>&1 &",
+                "echo $! > '" + pidFile + "'",
+                "sleep 60");
+        ProcessInstaller installer = installer(Duration.ofSeconds(1), 1024, new ProcessRunner(1));
+
+        ProcessOutput output = installer.run(script, null).get(30, TimeUnit.SECONDS);
+
+        assertTrue(output.isTimedOut());
+        assertFalse(output.isSuccess());
+        long pid = Long.parseLong(Files.readString(pidFile).trim());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        Optional<ProcessHandle> child = ProcessHandle.of(pid);
+        while (child.isPresent() && child.get().isAlive() && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        assertFalse(child.isPresent() && child.get().isAlive(), "Дочерний процесс " + pid + " не завершён");
+    }
+
+    @Test
+    void noisyOutputKeepsTail() throws Exception {
+        int lines = 100_000;
+        File script = script("noisy.sh",
+                "seq 1 " + lines,
+                "seq 1 " + lines + " >&2");
+        ProcessInstaller installer = installer(Duration.ofSeconds(30), 1024, new ProcessRunner(1));
+
+        ProcessOutput output = installer.run(script, null).get(30, TimeUnit.SECONDS);
+
+        assertTrue(output.isSuccess());
+        StringBuilder expected = new StringBuilder();
+        for (int i = 1; i <= lines; i++) expected.append(i).append('\n');
+        assertEquals(expected.length(), output.getStdoutBytes());
+        assertEquals(expected.length(), output.getStderrBytes());
+        String sTail = expected.substring(expected.length() - 1024);
+        assertEquals(sTail, output.getStdout());
+        assertEquals(sTail, output.getStderr());
+    }
+
+    @Test
+    void concurrentProcessesAreLimited() throws Exception {
+        Path log = temp.resolve("log.txt");
+        File script = script("slow.sh",
+                "echo start >> '" + log + "'",
+                "sleep 0.3",
+                "echo end >> '" + log + "'");
+        ProcessInstaller installer = installer(Duration.ofSeconds(30), 1024, new ProcessRunner(2));
+
+        List<CompletableFuture<InstallResult>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) results.add(installer.installAsync(script, null));
+        for (CompletableFuture<InstallResult> result : results) {
+            assertTrue(result.get(30, TimeUnit.SECONDS).isSuccess());
+        }
+
+        int running = 0;
+        int maxRunning = 0;
+        for (String sLine : Files.readAllLines(log)) {
+            running += sLine.equals("start") ? 1 : -1;
+            maxRunning = Math.max(maxRunning, running);
+        }
+        assertEquals(2, maxRunning);
+    }
+
+    private ProcessInstaller installer(Duration timeout, int outputLimit, ProcessRunner runner) {
+        return new ProcessInstaller(List.of(), Map.of(), timeout, outputLimit, runner);
+    }
+
+    private File script(String sName, String... sLines) throws Exception {
+        return Files.write(temp.resolve(sName), List.of(sLines)).toFile();
+    }
+}
@@ -0,0 +1,158 @@
+package org.n0throw.installer.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveExtractorTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    void extractsLinksInsideRoot() throws Exception {
+        byte[] archive = new TarBuilder()
+                .directory("sub/")
+                .file("sub/a.txt", "a")
+                .symlink("sub/link", "a.txt")
+                .symlink("up", "sub/..")
+                .hardLink("b.txt", "sub/a.txt")
+                .build();
+        Path root = temp.resolve("root");
+
+        new ArchiveExtractor().extract(new ByteArrayInputStream(archive), ArchiveFormat.Tar, root);
+
+        assertEquals("a", Files.readString(root.resolve("sub/link")));
+        assertEquals("a", Files.readString(root.resolve("b.txt")));
+        assertTrue(Files.isSymbolicLink(root.resolve("up")));
+    }
+
+    @Test
+    void rejectsSymlinkChainOutsideRoot() throws Exception {
+        // sub/up указывает на корень, а sub/up/.. лексически внутри корня, но на деле — папка над ним
+        byte[] archive = new TarBuilder()
+                .directory("sub/")
+                .symlink("sub/up", "..")
+                .symlink("escape", "sub/up/..")
+                .build();
+
+        for (ArchiveExtractor extractor : new ArchiveExtractor[]{new ArchiveExtractor(), new ParallelArchiveExtractor(2)}) {
+            Path root = Files.createTempDirectory(temp, "root");
+            assertThrows(FileSystemException.class,
+                    () -> extractor.extract(new ByteArrayInputStream(archive), ArchiveFormat.Tar, root));
+            assertFalse(Files.exists(root.resolve("escape"), LinkOption.NOFOLLOW_LINKS));
+        }
+    }
+
+    @Test
+    void rejectsWriteThroughSymlink() throws Exception {
+        Path outside = Files.createDirectory(temp.resolve("outside"));
+        byte[] archive = new TarBuilder().file("dir/evil.txt", "x").build();
+
+        for (ArchiveExtractor extractor : new ArchiveExtractor[]{new ArchiveExtractor(), new ParallelArchiveExtractor(2)}) {
+            // Ссылка осталась в папке от предыдущей распаковки
+            Path root = Files.createTempDirectory(temp, "root");
+            Files.createSymbolicLink(root.resolve("dir"), outside);
+            assertThrows(FileSystemException.class,
+                    () -> extractor.extract(new ByteArrayInputStream(archive), ArchiveFormat.Tar, root));
+        }
+        assertFalse(Files.exists(outside.resolve("evil.txt")));
+    }
+
+    @Test
+    void replacesSymlinkWithFileInsteadOfWritingThroughIt() throws Exception {
+        Path victim = Files.writeString(temp.resolve("victim.txt"), "keep");
+        Path root = Files.createDirectory(temp.resolve("root"));
+        Files.createSymbolicLink(root.resolve("f.txt"), victim);
+        byte[] archive = new TarBuilder().file("f.txt", "new").build();
+
+        new ParallelArchiveExtractor(2).extract(new ByteArrayInputStream(archive), ArchiveFormat.Tar, root);
+
+        assertEquals("keep", Files.readString(victim));
+        assertFalse(Files.isSymbolicLink(root.resolve("f.txt")));
+        assertEquals("new", Files.readString(root.resolve("f.txt")));
+    }
+
+    @Test
+    void replacesHardLinkWithFileInsteadOfWritingThroughIt() throws Exception {
+        byte[] archive = new TarBuilder()
+                .file("a.txt", "old")
+                .hardLink("b.txt", "a.txt")
+                .file("b.txt", "new")
+                .build();
+
+        for (ArchiveExtractor extractor : new ArchiveExtractor[]{new ArchiveExtractor(), new ParallelArchiveExtractor(2)}) {
+            Path root = Files.createTempDirectory(temp, "root");
+            extractor.extract(new ByteArrayInputStream(archive), ArchiveFormat.Tar, root);
+
+            assertEquals("old", Files.readString(root.resolve("a.txt")), extractor.getClass().getSimpleName());
+            assertEquals("new", Files.readString(root.resolve("b.txt")), extractor.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Составляет ustar архив в памяти.
+     */
+    private static final class TarBuilder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        TarBuilder directory(String sName) {
+            return entry(sName, '5', "", new byte[0]);
+        }
+
+        TarBuilder file(String sName, String sContent) {
+            return entry(sName, '0', "", sContent.getBytes(StandardCharsets.UTF_8));
+        }
+
+        TarBuilder symlink(String sName, String sTarget) {
+            return entry(sName, '2', sTarget, new byte[0]);
+        }
+
+        TarBuilder hardLink(String sName, String sTarget) {
+            return entry(sName, '1', sTarget, new byte[0]);
+        }
+
+        byte[] build() {
+            out.writeBytes(new byte[1024]);
+            return out.toByteArray();
+        }
+
+        private TarBuilder entry(String sName, char type, String sLinkName, byte[] content) {
+            byte[] header = new byte[512];
+            put(header, 0, sName);
+            put(header, 100, "0000644");
+            put(header, 108, "0000000");
+            put(header, 116, "0000000");
+            put(header, 124, String.format("%011o", content.length));
+            put(header, 136, String.format("%011o", 0));
+            header[156] = (byte) type;
+            put(header, 157, sLinkName);
+            put(header, 257, "ustar");
+            put(header, 263, "00");
+            for (int i = 148; i < 156; i++) header[i] = ' ';
+            int checksum = 0;
+            for (byte b : header) checksum += b & 0xFF;
+            put(header, 148, String.format("%06o", checksum));
+            out.writeBytes(header);
+            out.writeBytes(content);
+            out.writeBytes(new byte[(512 - content.length % 512) % 512]);
+            return this;
+        }
+
+        private static void put(byte[] header, int offset, String sValue) {
+            byte[] bytes = sValue.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(bytes, 0, header, offset, bytes.length);
+        }
+    }
+}
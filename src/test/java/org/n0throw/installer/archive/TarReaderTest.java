@@ -0,0 +1,113 @@
+package org.n0throw.installer.archive;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TarReaderTest {
+    @Test
+    void readsPaxSizeAndTime() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeEntry(out, "pax", 'x', pax("size=3\n", "mtime=1700000000.5\n"));
+        writeEntry(out, "a.txt", '0', new byte[0]);
+        out.writeBytes("abc".getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(new byte[509 + 1024]);
+
+        TarEntry entry = new TarReader(new ByteArrayInputStream(out.toByteArray())).nextEntry();
+
+        assertNotNull(entry);
+        assertEquals(3, entry.getSize());
+        assertEquals(1_700_000_000_500L, entry.getLastModified());
+    }
+
+    @Test
+    void rejectsOversizedMetadata() {
+        // Содержимое служебных элементов не передаётся: размер проверяется до выделения памяти
+        ByteArrayOutputStream pax = new ByteArrayOutputStream();
+        pax.writeBytes(header("pax", 'x', 2L * 1024 * 1024));
+        assertFalse(assertThrows(IOException.class, () -> read(pax.toByteArray())) instanceof EOFException);
+
+        ByteArrayOutputStream longName = new ByteArrayOutputStream();
+        longName.writeBytes(header("././@LongLink", 'L', Integer.MAX_VALUE));
+        assertFalse(assertThrows(IOException.class, () -> read(longName.toByteArray())) instanceof EOFException);
+    }
+
+    @Test
+    void rejectsMalformedPaxNumbers() {
+        for (String sRecord : new String[]{"size=abc\n", "size=-5\n", "mtime=yesterday\n"}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writeEntry(out, "pax", 'x', pax(sRecord));
+            writeEntry(out, "a.txt", '0', new byte[0]);
+            out.writeBytes(new byte[1024]);
+            assertThrows(IOException.class, () -> read(out.toByteArray()), sRecord);
+        }
+    }
+
+    @Test
+    void rejectsNegativeHeaderSize() {
+        byte[] header = header("a.txt", '0', 0);
+        // Размер в формате base-256 GNU, который переполняет long
+        Arrays.fill(header, 124, 136, (byte) 0xFF);
+        checksum(header);
+
+        assertThrows(IOException.class, () -> read(header));
+    }
+
+    private static TarEntry read(byte[] archive) throws IOException {
+        return new TarReader(new ByteArrayInputStream(archive)).nextEntry();
+    }
+
+    /**
+     * Собирает записи pax вида "длина ключ=значение\n".
+     */
+    private static byte[] pax(String... sRecords) {
+        StringBuilder builder = new StringBuilder();
+        for (String sRecord : sRecords) {
+            int length = sRecord.length() + 2;
+            while (String.valueOf(length).length() + 1 + sRecord.length() != length) length++;
+            builder.append(length).append(' ').append(sRecord);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeEntry(ByteArrayOutputStream out, String sName, char type, byte[] content) {
+        out.writeBytes(header(sName, type, content.length));
+        out.writeBytes(content);
+        out.writeBytes(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private static byte[] header(String sName, char type, long size) {
+        byte[] header = new byte[512];
+        put(header, 0, sName);
+        put(header, 100, "0000644");
+        put(header, 124, String.format("%011o", size));
+        put(header, 136, String.format("%011o", 0));
+        header[156] = (byte) type;
+        put(header, 257, "ustar");
+        put(header, 263, "00");
+        checksum(header);
+        return header;
+    }
+
+    private static void checksum(byte[] header) {
+        for (int i = 148; i < 156; i++) header[i] = ' ';
+        int checksum = 0;
+        for (byte b : header) checksum += b & 0xFF;
+        put(header, 148, String.format("%06o", checksum));
+    }
+
+    private static void put(byte[] header, int offset, String sValue) {
+        byte[] bytes = sValue.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+}
@@ -0,0 +1,109 @@
+package org.n0throw.installer.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ZipCentralDirectoryTest {
+    private static final byte[] NAME = "a.txt".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] CONTENT = "hello".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void readsZip64Size() throws Exception {
+        List<ZipCentralDirectory.Entry> entries = read(zip(0xFFFFFFFFL, extra(0x0001, 8, CONTENT.length), 0));
+
+        assertEquals(1, entries.size());
+        assertEquals(CONTENT.length, entries.get(0).size);
+        assertEquals("a.txt", entries.get(0).sName);
+    }
+
+    @Test
+    void rejectsZip64FieldShorterThanValue() {
+        // Размер вынесен в ZIP64, но поле объявлено длиной 4 байта
+        byte[] archive = zip(0xFFFFFFFFL, extra(0x0001, 4, CONTENT.length), 0);
+
+        assertThrows(ZipException.class, () -> read(archive));
+    }
+
+    @Test
+    void rejectsExtraFieldBeyondRecord() {
+        // Поле объявлено длиннее, чем осталось в записи
+        byte[] extra = Arrays.copyOf(extra(0x5455, 64, 0), 4 + 5);
+
+        assertThrows(ZipException.class, () -> read(zip(CONTENT.length, extra, 0)));
+    }
+
+    @Test
+    void rejectsEntryBeyondDirectorySize() {
+        byte[] archive = zip(CONTENT.length, new byte[0], -10);
+
+        assertThrows(ZipException.class, () -> read(archive));
+    }
+
+    private List<ZipCentralDirectory.Entry> read(byte[] archive) throws IOException {
+        Path path = Files.write(Files.createTempFile(temp, "archive", ".zip"), archive);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return ZipCentralDirectory.read(channel);
+        }
+    }
+
+    /**
+     * Составляет дополнительное поле с объявленной длиной и значением (8 байт, обрезается до длины).
+     */
+    private static byte[] extra(int tag, int length, long value) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + Math.max(length, 8)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort((short) tag).putShort((short) length).putLong(value);
+        return Arrays.copyOf(buffer.array(), 4 + length);
+    }
+
+    /**
+     * Составляет архив с одним несжатым элементом.
+     *
+     * @param sizeField           Размер в записи центрального каталога (0xFFFFFFFF — размер в ZIP64).
+     * @param extra               Дополнительные поля записи центрального каталога.
+     * @param directorySizeChange Искажение размера каталога в записи конца каталога.
+     */
+    private static byte[] zip(long sizeField, byte[] extra, int directorySizeChange) {
+        CRC32 crc = new CRC32();
+        crc.update(CONTENT);
+        ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(0x04034b50).putShort((short) 20).putShort((short) 0).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0x21)
+                .putInt((int) crc.getValue()).putInt(CONTENT.length).putInt(CONTENT.length)
+                .putShort((short) NAME.length).putShort((short) 0)
+                .put(NAME).put(CONTENT);
+
+        int directoryOffset = buffer.position();
+        buffer.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0x21)
+                .putInt((int) crc.getValue()).putInt(CONTENT.length).putInt((int) sizeField)
+                .putShort((short) NAME.length).putShort((short) extra.length).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0).putInt(0).putInt(0)
+                .put(NAME).put(extra);
+        int directorySize = buffer.position() - directoryOffset;
+
+        buffer.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 1).putShort((short) 1)
+                .putInt(directorySize + directorySizeChange).putInt(directoryOffset).putShort((short) 0);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+}
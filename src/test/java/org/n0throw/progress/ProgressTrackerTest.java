@@ -0,0 +1,75 @@
+package org.n0throw.progress;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgressTrackerTest {
+    private static final long GIGABYTE = 1024L * 1024 * 1024;
+
+    @Test
+    void rateDoesNotOverflowForLargeTransfers() {
+        // 100 ГБ за 10 секунд: произведение байт на наносекунды в секунде не помещается в long
+        assertEquals(10 * GIGABYTE, ProgressTracker.getRate(100 * GIGABYTE, 10_000_000_000L));
+        assertEquals(Long.MAX_VALUE, ProgressTracker.getRate(Long.MAX_VALUE, 1));
+        assertEquals(500, ProgressTracker.getRate(1, 2_000_000));
+        assertEquals(0, ProgressTracker.getRate(1000, 0));
+    }
+
+    @Test
+    void averageRateOfLargeTransferIsPositive() throws Exception {
+        ProgressTracker tracker = new ProgressTracker(snapshot -> {
+        });
+        tracker.addBytes(1);
+        Thread.sleep(20);
+        tracker.addBytes(20 * GIGABYTE);
+
+        ProgressSnapshot snapshot = tracker.getSnapshot();
+
+        assertTrue(snapshot.getAverageRate() > GIGABYTE, "Скорость: " + snapshot.getAverageRate());
+    }
+
+    @Test
+    void etaFollowsAverageRate() {
+        assertEquals(Duration.ofSeconds(5), snapshot(500, 1000, 100, false).getEta());
+        assertEquals(Duration.ZERO, snapshot(1000, 1000, 100, true).getEta());
+        assertEquals(Duration.ZERO, snapshot(1200, 1000, 100, false).getEta());
+        assertNull(snapshot(500, -1, 100, false).getEta());
+        assertNull(snapshot(0, 1000, 0, false).getEta());
+
+        // Остаток в 10 ПБ: миллисекунды считаются без переполнения
+        Duration eta = snapshot(0, 10_000 * 1024 * GIGABYTE, GIGABYTE, false).getEta();
+        assertNotNull(eta);
+        assertEquals(10_000 * 1024, eta.toSeconds());
+    }
+
+    @Test
+    void listenerIsNotifiedOutsideLock() throws Exception {
+        // Получатель ждёт другой поток, которому нужна блокировка трекера
+        ProgressTracker[] holder = new ProgressTracker[1];
+        ProgressTracker tracker = new ProgressTracker(snapshot -> CompletableFuture
+                .supplyAsync(() -> holder[0].getSnapshot())
+                .orTimeout(5, TimeUnit.SECONDS)
+                .join());
+        holder[0] = tracker;
+
+        tracker.startPhase(ProgressPhase.Transfer);
+        tracker.addBytes(100);
+        tracker.complete();
+
+        assertTrue(tracker.getSnapshot().isCompleted());
+    }
+
+    private static ProgressSnapshot snapshot(long transferred, long total, long averageRate, boolean completed) {
+        return new ProgressSnapshot(transferred, total, averageRate, averageRate, null, Duration.ofSeconds(1), null,
+                Map.of(), completed);
+    }
+}
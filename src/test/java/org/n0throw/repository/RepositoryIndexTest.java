@@ -0,0 +1,73 @@
+package org.n0throw.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.n0throw.utils.os.OsName;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RepositoryIndexTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    void osIsStoredByName() throws Exception {
+        Path path = writeIndex();
+
+        RepositoryIndex index = RepositoryIndex.open(path);
+        RepositoryEntry linux = index.findLatest("tool", OsName.Linux, "amd64");
+        assertNotNull(linux);
+        assertEquals("2.0", linux.getVersion());
+        assertEquals(OsName.Linux, linux.getOs());
+        RepositoryEntry windows = index.findLatest("tool", OsName.Windows, "amd64");
+        assertNotNull(windows);
+        assertEquals("1.0", windows.getVersion());
+        assertEquals(OsName.None, windows.getOs());
+        assertNull(index.find("tool", "2.0", OsName.Mac, "amd64"));
+
+        // Поле ОС первой записи указывает на строку пула, а не на порядковый номер
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        int offset = buffer.getInt(40 + 20);
+        byte[] name = new byte[buffer.getShort(offset)];
+        buffer.get(offset + 2, name);
+        assertEquals("Linux", new String(name, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void damagedOffsetsAreRejectedOnOpen() throws Exception {
+        Path path = writeIndex();
+        byte[] original = Files.readAllBytes(path);
+
+        // Смещение наименования первой записи за пределами файла
+        byte[] damaged = original.clone();
+        ByteBuffer.wrap(damaged).putInt(40, original.length + 100);
+        Files.write(path, damaged);
+        assertThrows(IOException.class, () -> RepositoryIndex.open(path));
+
+        // Пул строк обрезан
+        Files.write(path, Arrays.copyOf(original, original.length - 3));
+        assertThrows(IOException.class, () -> RepositoryIndex.open(path));
+    }
+
+    private Path writeIndex() throws IOException {
+        Path path = temp.resolve("index.bin");
+        RepositoryIndex.write(path, 1, null, List.of(
+                new RepositoryEntry("tool", "1.0", OsName.None, RepositoryEntry.ANY_ARCH, 10, null,
+                        List.of("http://example.invalid/tool-1.0.zip")),
+                new RepositoryEntry("tool", "2.0", OsName.Linux, RepositoryEntry.ANY_ARCH, 20, null,
+                        List.of("http://example.invalid/tool-2.0.tar"))
+        ));
+        return path;
+    }
+}
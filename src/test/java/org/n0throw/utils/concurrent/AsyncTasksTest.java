@@ -0,0 +1,37 @@
+package org.n0throw.utils.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncTasksTest {
+    @Test
+    void closesResultCompletedAfterCancellation() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        CompletableFuture<AutoCloseable> future = AsyncTasks.supplyAsync(() -> {
+            started.countDown();
+            // Операция не реагирует на прерывание, как захват соединения, завершившийся одновременно с отменой
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+            while (System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            return closed::countDown;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        future.cancel(true);
+
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void returnsResult() throws Exception {
+        assertEquals("ok", AsyncTasks.supplyAsync(() -> "ok").get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,48 @@
+package org.n0throw.utils.files;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FileFormatRegistryTest {
+    private final FileFormatRegistry registry = FileFormatRegistry.getInstance();
+
+    @Test
+    void longestSuffixWins() {
+        assertEquals(FileFormat.TarGz, registry.fromFileName("app-1.2.3.tar.gz"));
+        assertEquals(FileFormat.Gzip, registry.fromFileName("app-1.2.3.gz"));
+        // Без точки перед tar это не окончание .tar.gz
+        assertEquals(FileFormat.Gzip, registry.fromFileName("footar.gz"));
+        assertEquals(FileFormat.WindowsPe, registry.fromFileName("setup-2.0.exe"));
+        assertEquals(FileFormat.Tar, registry.fromFileName("backup.tar"));
+    }
+
+    @Test
+    void caseIsIgnored() {
+        assertEquals(FileFormat.TarGz, registry.fromFileName("APP.TAR.GZ"));
+        assertEquals(FileFormat.Msi, registry.fromFileName("Setup.Msi"));
+
+        FileFormatRegistry custom = new FileFormatRegistry();
+        custom.registerSuffix("TAR.BZ2", FileFormat.Tar);
+        assertEquals(FileFormat.Tar, custom.fromFileName("data.tar.bz2"));
+    }
+
+    @Test
+    void unknownExtensionIsNotRecognised() {
+        assertNull(registry.fromFileName("readme.txt"));
+        assertNull(registry.fromFileName("noextension"));
+        assertNull(registry.fromFileName(".tar.gz.bak"));
+        assertNull(registry.fromFileName(""));
+        assertNull(registry.fromFileName(null));
+        assertEquals(FileExtension.None, FileExtensionHelper.getFromFileName("readme.txt"));
+    }
+
+    @Test
+    void compressedFilesWithoutArchiveAreNotInstallable() {
+        assertEquals(FileExtension.Archive, FileExtensionHelper.getFromFileName("app.tgz"));
+        assertEquals(FileExtension.None, FileExtensionHelper.getFromFileName("app.tar.xz"));
+        assertEquals(FileExtension.None, FileExtensionHelper.getFromFileName("app.tar.zst"));
+        assertEquals(FileExtension.None, FileExtensionHelper.getFromFileName("dump.gz"));
+    }
+}
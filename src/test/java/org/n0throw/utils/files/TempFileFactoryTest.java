@@ -0,0 +1,47 @@
+package org.n0throw.utils.files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TempFileFactoryTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    void journalIsRewrittenWhenDeletedFilesOutnumberLiveOnes() throws Exception {
+        TempFileFactory factory = TempFileFactory.getInstance();
+        Path journal = Path.of(System.getProperty("java.io.tmpdir"), ".distribution-installer",
+                ProcessHandle.current().pid() + ".journal");
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            File file = Files.createFile(temp.resolve("file" + i)).toFile();
+            factory.registerForDelete(file);
+            files.add(file);
+        }
+        for (File file : files.subList(10, files.size())) {
+            factory.delete(file);
+        }
+
+        File last = Files.createFile(temp.resolve("last")).toFile();
+        factory.registerForDelete(last);
+
+        List<String> sLines = Files.readAllLines(journal, StandardCharsets.UTF_8);
+        assertTrue(sLines.size() <= factory.getFileCount() + 1, "Строк в журнале: " + sLines.size());
+        assertTrue(sLines.contains(last.getAbsolutePath()));
+        assertTrue(sLines.contains(files.get(0).getAbsolutePath()));
+
+        for (File file : files.subList(0, 10)) {
+            factory.delete(file);
+        }
+        factory.delete(last);
+    }
+}